@@ -0,0 +1,38 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import java.util.List;
+
+/**
+ * {@link EventListener} that receives all events of a window at once when event batching is
+ * configured for its type with {@link KurentoClient#batchEvents(Class, long)}. If batching is not
+ * configured, {@link #onEvent(Event)} is called for each event as usual.
+ *
+ * @param <T>
+ *          A class that extends from {@link Event}
+ */
+public interface EventBatchListener<T extends Event> extends EventListener<T> {
+
+  /**
+   * Called with the events received during a batching window, in order of arrival. It is also
+   * called for windows with a single event.
+   */
+  void onEvents(List<T> events);
+
+}
@@ -19,14 +19,20 @@ package org.kurento.client;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.PreDestroy;
 
 import org.kurento.client.internal.KmsUrlLoader;
 import org.kurento.client.internal.TransactionImpl;
+import org.kurento.client.internal.client.EventCoalescer;
+import org.kurento.client.internal.client.RomClient;
 import org.kurento.client.internal.client.RomManager;
 import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
+import org.kurento.client.internal.transport.jsonrpc.StripedRomClient;
+import org.kurento.client.internal.transport.serialization.ParamsFlattener;
 import org.kurento.commons.PropertiesManager;
 import org.kurento.commons.exception.KurentoException;
 import org.kurento.jsonrpc.client.AbstractJsonRpcClientWebSocket;
@@ -53,6 +59,10 @@ public class KurentoClient {
 
   private static Logger log = LoggerFactory.getLogger(KurentoClient.class);
 
+  static {
+    initModules();
+  }
+
   protected RomManager manager;
 
   private long requesTimeout =
@@ -67,6 +77,8 @@ public class KurentoClient {
 
   private JsonRpcClient client;
 
+  private boolean sharedConnection;
+
   private static KmsUrlLoader kmsUrlLoader;
 
   private String label;
@@ -97,6 +109,28 @@ public class KurentoClient {
     }
   }
 
+  /**
+   * Registers the classes of the modules found in the classpath. If property
+   * {@code kurento.client.warmUp} is true, proxies and serialization of all those classes are also
+   * prepared, so the first requests and events of each class are not slower than the rest.
+   * Missing indexes of kurento-client's own modules make class initialization fail.
+   */
+  private static void initModules() {
+
+    ParamsFlattener flattener = ParamsFlattener.getInstance();
+    flattener.loadModuleIndexes();
+
+    try {
+      if (PropertiesManager.getProperty("kurento.client.warmUp", false)) {
+        long start = System.currentTimeMillis();
+        int numClasses = flattener.warmUp();
+        log.debug("Warmed up {} classes in {} ms", numClasses, System.currentTimeMillis() - start);
+      }
+    } catch (Exception e) {
+      log.warn("Exception warming up module classes", e);
+    }
+  }
+
   private void setId(String id) {
     this.id = id;
   }
@@ -123,6 +157,49 @@ public class KurentoClient {
     return new KurentoClient(client);
   }
 
+  /**
+   * Creates a client that opens several connections to the media server and spreads requests
+   * among them. Requests for objects of the same media pipeline always use the same connection,
+   * so they are executed in order. Events are received through the first connection.
+   * <p>
+   * Each connection is a separate session in the media server, which owns the objects created
+   * through it.
+   *
+   * @param websocketUrl
+   *          url of the media server
+   * @param numConnections
+   *          number of connections to be opened
+   */
+  public static KurentoClient createStriped(String websocketUrl, int numConnections) {
+    return createStriped(websocketUrl, numConnections, null);
+  }
+
+  /**
+   * Same as {@link #createStriped(String, int)}, notifying to {@code listener} the events of the
+   * first connection.
+   */
+  public static KurentoClient createStriped(String websocketUrl, int numConnections,
+      KurentoConnectionListener listener) {
+
+    if (numConnections < 1) {
+      throw new IllegalArgumentException("numConnections must be positive: " + numConnections);
+    }
+
+    log.debug("Connecting to KMS in {} with {} connections", websocketUrl, numConnections);
+
+    List<JsonRpcClient> clients = new ArrayList<>(numConnections);
+    for (int i = 0; i < numConnections; i++) {
+      JsonRpcClientNettyWebSocket client = i == 0 && listener != null
+          ? new JsonRpcClientNettyWebSocket(websocketUrl,
+              JsonRpcConnectionListenerKurento.create(listener))
+          : new JsonRpcClientNettyWebSocket(websocketUrl);
+      configureJsonRpcClient(client);
+      clients.add(client);
+    }
+
+    return new KurentoClient(clients);
+  }
+
   protected static void configureJsonRpcClient(AbstractJsonRpcClientWebSocket client) {
     client.enableHeartbeat(KEEPALIVE_TIME);
     client.setTryReconnectingForever(true);
@@ -235,7 +312,37 @@ public class KurentoClient {
   protected KurentoClient(JsonRpcClient client) {
     this.client = client;
     this.manager = new RomManager(new RomClientJsonRpcClient(client));
-    client.setRequestTimeout(requesTimeout);
+    connect(client, requesTimeout, connectionTimeout);
+  }
+
+  protected KurentoClient(List<JsonRpcClient> clients) {
+    this.client = clients.get(0);
+    StripedRomClient romClient = new StripedRomClient(clients);
+    this.manager = new RomManager(romClient);
+    try {
+      for (JsonRpcClient stripeClient : clients) {
+        connect(stripeClient, requesTimeout, connectionTimeout);
+      }
+    } catch (KurentoException e) {
+      romClient.destroy();
+      throw e;
+    }
+  }
+
+  /**
+   * Creates a client that uses a connection shared with other clients. The connection is not
+   * closed when this client is destroyed.
+   *
+   * @see SharedKurentoConnection
+   */
+  KurentoClient(JsonRpcClient client, RomClient romClient) {
+    this.client = client;
+    this.sharedConnection = true;
+    this.manager = new RomManager(romClient);
+  }
+
+  static void connect(JsonRpcClient client, long requestTimeout, long connectionTimeout) {
+    client.setRequestTimeout(requestTimeout);
     client.setConnectionTimeout((int) connectionTimeout);
     if (client instanceof AbstractJsonRpcClientWebSocket) {
       ((AbstractJsonRpcClientWebSocket) client).enableHeartbeat(KEEPALIVE_TIME);
@@ -337,6 +444,17 @@ public class KurentoClient {
     return new TransactionImpl(manager);
   }
 
+  /**
+   * Sets the policy used to retry transactions that could not be committed.
+   */
+  public void setTransactionCommitPolicy(TransactionCommitPolicy commitPolicy) {
+    manager.setCommitPolicy(commitPolicy);
+  }
+
+  public TransactionCommitPolicy getTransactionCommitPolicy() {
+    return manager.getCommitPolicy();
+  }
+
   public ServerManager getServerManager() {
     if (serverManager == null) {
       serverManager = getById("manager_ServerManager", ServerManager.class);
@@ -344,6 +462,44 @@ public class KurentoClient {
     return serverManager;
   }
 
+  /**
+   * Coalesces events of the given type: when several events of this type are received from the
+   * same object within the interval (starting with the first one), only the last one is delivered
+   * to the listeners, at the end of the interval.
+   *
+   * Coalesced events are delivered from a thread of this client, after the interval. Events of
+   * other types are not delayed.
+   */
+  public void coalesceEvents(Class<? extends Event> eventClass, long intervalMillis) {
+    manager.getOrCreateEventCoalescer().setPolicy(getEventType(eventClass),
+        EventCoalescer.Mode.LATEST, intervalMillis);
+  }
+
+  /**
+   * Batches events of the given type: events received from the same object within the interval
+   * (starting with the first one) are delivered together at the end of the interval.
+   * {@link EventBatchListener}s receive them in a single call, and other listeners one by one.
+   */
+  public void batchEvents(Class<? extends Event> eventClass, long intervalMillis) {
+    manager.getOrCreateEventCoalescer().setPolicy(getEventType(eventClass),
+        EventCoalescer.Mode.BATCH, intervalMillis);
+  }
+
+  /**
+   * Delivers again events of the given type as soon as they are received.
+   */
+  public void removeEventCoalescing(Class<? extends Event> eventClass) {
+    EventCoalescer coalescer = manager.getEventCoalescer();
+    if (coalescer != null) {
+      coalescer.removePolicy(getEventType(eventClass));
+    }
+  }
+
+  private static String getEventType(Class<? extends Event> eventClass) {
+    String name = eventClass.getSimpleName();
+    return name.endsWith("Event") ? name.substring(0, name.length() - "Event".length()) : name;
+  }
+
   public <T extends KurentoObject> T getById(String id, Class<T> clazz) {
     return manager.getById(id, clazz);
   }
@@ -354,14 +510,16 @@ public class KurentoClient {
 
   public void setLabel(String label) {
     this.label = label;
-    updateLabel(client, label);
+    if (!sharedConnection) {
+      updateLabel(client, label);
+    }
   }
 
   public String getLabel() {
     return label;
   }
 
-  private static void updateLabel(JsonRpcClient client, String label) {
+  static void updateLabel(JsonRpcClient client, String label) {
     String clientLabel = "KurentoClient";
     if (label != null) {
       clientLabel += ":" + label;
@@ -0,0 +1,459 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.kurento.commons.exception.KurentoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a number of idle media pipelines, optionally with some elements already created in them,
+ * so they can be handed out without waiting for the media server.
+ *
+ * Each pipeline and its elements are created with a single transaction. When a pipeline is
+ * acquired, the pool is refilled in background. If the pool is empty, the pipeline is created in
+ * the calling thread. When pipelines can't be created in background, refilling is retried with an
+ * exponential backoff. Pipelines idle for longer than the idle timeout are released, keeping at
+ * least {@code minIdle} of them. Acquired pipelines belong to the caller, who has to release them
+ * when they are not needed anymore.
+ *
+ * Elements are created with the pipeline as their only constructor param, so only element types
+ * that can be built that way (for example, {@link WebRtcEndpoint} or {@link PassThrough}) are
+ * supported.
+ *
+ * <pre>
+ * MediaPipelinePool pool = new MediaPipelinePool(kurentoClient, 10)
+ *     .withElements(WebRtcEndpoint.class, WebRtcEndpoint.class);
+ * pool.start();
+ * MediaPipelinePool.PooledPipeline pooled = pool.acquire();
+ * WebRtcEndpoint caller = pooled.getElement(WebRtcEndpoint.class, 0);
+ * WebRtcEndpoint callee = pooled.getElement(WebRtcEndpoint.class, 1);
+ * </pre>
+ */
+public class MediaPipelinePool {
+
+  private static final Logger log = LoggerFactory.getLogger(MediaPipelinePool.class);
+
+  private static final int LATENCY_SAMPLES = 1024;
+
+  private static final long INITIAL_RETRY_DELAY_MILLIS = 100;
+  private static final long MAX_RETRY_DELAY_MILLIS = 30000;
+
+  /**
+   * A pipeline handed out by the pool, with the elements created in it.
+   */
+  public static class PooledPipeline {
+
+    private final MediaPipeline pipeline;
+    private final List<MediaElement> elements;
+    private final long creationTime;
+
+    private PooledPipeline(MediaPipeline pipeline, List<MediaElement> elements) {
+      this.pipeline = pipeline;
+      this.elements = Collections.unmodifiableList(elements);
+      this.creationTime = System.currentTimeMillis();
+    }
+
+    public MediaPipeline getPipeline() {
+      return pipeline;
+    }
+
+    /**
+     * Returns the elements, in the order of {@link MediaPipelinePool#withElements}.
+     */
+    public List<MediaElement> getElements() {
+      return elements;
+    }
+
+    /**
+     * Returns the element of the given type with the given index among the elements of that type.
+     */
+    public <T extends MediaElement> T getElement(Class<T> type, int index) {
+      int count = 0;
+      for (MediaElement element : elements) {
+        if (type.isInstance(element) && count++ == index) {
+          return type.cast(element);
+        }
+      }
+      throw new IllegalArgumentException(
+          "Pooled pipeline doesn't have " + (index + 1) + " elements of type " + type.getName());
+    }
+
+    public long getCreationTime() {
+      return creationTime;
+    }
+  }
+
+  private final KurentoClient client;
+  private final int size;
+
+  private int minIdle;
+  private long idleTimeout;
+  private List<Class<? extends MediaElement>> elementTypes = Collections.emptyList();
+
+  // Oldest pipelines first. Guarded by this
+  private final Deque<PooledPipeline> idle = new ArrayDeque<>();
+
+  // Pipelines being created, or queued to be created, by the current scheduler. Guarded by this
+  private int creating;
+
+  // Refill scheduled after a failure, if any, and the delay of the next one. Guarded by this
+  private ScheduledFuture<?> retry;
+  private long retryDelay = INITIAL_RETRY_DELAY_MILLIS;
+
+  private long hits;
+  private long misses;
+
+  // Latencies (nanos) of the last acquires. Guarded by itself
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+  private int numLatencies;
+  private int nextLatency;
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * @param client
+   *          client where pipelines are created
+   * @param size
+   *          number of idle pipelines kept by the pool
+   */
+  public MediaPipelinePool(KurentoClient client, int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Pool size must be positive");
+    }
+    this.client = client;
+    this.size = size;
+    this.minIdle = size;
+  }
+
+  /**
+   * Types of the elements created in each pipeline.
+   */
+  @SafeVarargs
+  public final MediaPipelinePool withElements(Class<? extends MediaElement>... elementTypes) {
+    this.elementTypes = new ArrayList<>(Arrays.asList(elementTypes));
+    return this;
+  }
+
+  /**
+   * Pipelines idle for longer than {@code idleTimeout} millis are released, while there are more
+   * than {@code minIdle} idle pipelines. The pool is refilled up to its size again when a pipeline
+   * is acquired. By default pipelines are never released.
+   */
+  public MediaPipelinePool withIdleTimeout(long idleTimeout, int minIdle) {
+    if (idleTimeout < 0 || minIdle < 0 || minIdle > size) {
+      throw new IllegalArgumentException(
+          "Idle timeout must not be negative and minIdle must be between 0 and the pool size");
+    }
+    this.idleTimeout = idleTimeout;
+    this.minIdle = minIdle;
+    return this;
+  }
+
+  /**
+   * Starts filling the pool in background.
+   */
+  public synchronized void start() {
+
+    if (scheduler != null) {
+      return;
+    }
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "MediaPipelinePool");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    if (idleTimeout > 0) {
+      scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            releaseExpired();
+          } catch (Exception e) {
+            log.warn("Exception releasing idle pipelines", e);
+          }
+        }
+      }, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    refill();
+  }
+
+  /**
+   * Stops refilling the pool and releases its idle pipelines. Acquired pipelines are not released.
+   */
+  @PreDestroy
+  public void stop() {
+
+    List<PooledPipeline> toRelease;
+    synchronized (this) {
+      if (scheduler != null) {
+        // Queued creations are dropped and running ones won't count once the scheduler changes
+        scheduler.shutdownNow();
+        scheduler = null;
+      }
+      creating = 0;
+      retry = null;
+      retryDelay = INITIAL_RETRY_DELAY_MILLIS;
+      toRelease = new ArrayList<>(idle);
+      idle.clear();
+    }
+
+    for (PooledPipeline pooled : toRelease) {
+      release(pooled);
+    }
+  }
+
+  /**
+   * Returns an idle pipeline, or creates one if the pool is empty.
+   */
+  public PooledPipeline acquire() {
+
+    long start = System.nanoTime();
+
+    PooledPipeline pooled;
+    synchronized (this) {
+      pooled = idle.pollLast();
+      if (pooled != null) {
+        hits++;
+      } else {
+        misses++;
+      }
+    }
+
+    if (pooled == null) {
+      pooled = create();
+    }
+
+    recordLatency(System.nanoTime() - start);
+
+    refill();
+
+    return pooled;
+  }
+
+  public synchronized int getNumIdle() {
+    return idle.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the ratio of acquires served with an idle pipeline, or 0 if there were no acquires.
+   */
+  public synchronized double getHitRate() {
+    long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * Returns the given percentile (between 0 and 100) of the latency of the last acquires, in
+   * millis, or 0 if there were no acquires.
+   */
+  public double getLatencyPercentile(double percentile) {
+
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100");
+    }
+
+    long[] sorted;
+    synchronized (latencies) {
+      sorted = Arrays.copyOf(latencies, numLatencies);
+    }
+
+    if (sorted.length == 0) {
+      return 0;
+    }
+
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  private void recordLatency(long latency) {
+    synchronized (latencies) {
+      latencies[nextLatency] = latency;
+      nextLatency = (nextLatency + 1) % LATENCY_SAMPLES;
+      numLatencies = Math.min(numLatencies + 1, LATENCY_SAMPLES);
+    }
+  }
+
+  private synchronized void refill() {
+
+    // After a failure, the pool is not refilled until the retry
+    if (scheduler == null || retry != null) {
+      return;
+    }
+
+    int missing = size - idle.size() - creating;
+
+    final ScheduledExecutorService executor = scheduler;
+
+    for (int i = 0; i < missing; i++) {
+      creating++;
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          createIdle(executor);
+        }
+      });
+    }
+  }
+
+  private void createIdle(ScheduledExecutorService executor) {
+
+    PooledPipeline pooled = null;
+    boolean added = false;
+    try {
+      pooled = create();
+    } catch (RuntimeException e) {
+      log.warn("Exception creating pooled pipeline", e);
+    } finally {
+      added = addIdle(executor, pooled);
+    }
+
+    if (!added && pooled != null) {
+      release(pooled);
+    }
+  }
+
+  /**
+   * @param executor
+   *          scheduler where the pipeline was created
+   * @return false if the pipeline couldn't be created or the pool was stopped
+   */
+  private synchronized boolean addIdle(ScheduledExecutorService executor, PooledPipeline pooled) {
+
+    // Creations of a stopped scheduler were already discounted by stop()
+    if (scheduler != executor) {
+      return false;
+    }
+
+    creating--;
+
+    if (pooled == null) {
+      scheduleRetry();
+      return false;
+    }
+
+    retryDelay = INITIAL_RETRY_DELAY_MILLIS;
+    idle.addLast(pooled);
+    return true;
+  }
+
+  private synchronized void scheduleRetry() {
+
+    if (retry != null) {
+      return;
+    }
+
+    log.debug("Refilling the pool again in {} ms", retryDelay);
+
+    retry = scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (MediaPipelinePool.this) {
+          retry = null;
+          refill();
+        }
+      }
+    }, retryDelay, TimeUnit.MILLISECONDS);
+
+    retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+  }
+
+  private PooledPipeline create() {
+
+    Transaction tx = client.beginTransaction();
+
+    MediaPipeline pipeline = client.createMediaPipeline(tx);
+
+    List<MediaElement> elements = new ArrayList<>(elementTypes.size());
+    for (Class<? extends MediaElement> type : elementTypes) {
+      AbstractBuilder<MediaElement> builder =
+          new AbstractBuilder<MediaElement>(type, client.manager);
+      builder.props.add("mediaPipeline", pipeline);
+      elements.add(builder.build(tx));
+    }
+
+    tx.commit();
+
+    return new PooledPipeline(pipeline, elements);
+  }
+
+  private void releaseExpired() {
+
+    long limit = System.currentTimeMillis() - idleTimeout;
+
+    List<PooledPipeline> expired = new ArrayList<>();
+    synchronized (this) {
+      Iterator<PooledPipeline> it = idle.iterator();
+      while (it.hasNext() && idle.size() > minIdle) {
+        PooledPipeline pooled = it.next();
+        if (pooled.getCreationTime() > limit) {
+          break;
+        }
+        it.remove();
+        expired.add(pooled);
+      }
+    }
+
+    if (!expired.isEmpty()) {
+      log.debug("Releasing {} pipelines idle for more than {} ms", expired.size(), idleTimeout);
+    }
+
+    for (PooledPipeline pooled : expired) {
+      release(pooled);
+    }
+  }
+
+  private void release(PooledPipeline pooled) {
+    try {
+      pooled.getPipeline().release();
+    } catch (KurentoException e) {
+      log.debug("Exception releasing pooled pipeline {}", pooled.getPipeline().getId(), e);
+    }
+  }
+
+}
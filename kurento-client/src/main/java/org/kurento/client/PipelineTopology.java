@@ -0,0 +1,640 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.kurento.client.internal.client.RomInvocationListener;
+import org.kurento.client.internal.client.RomManager;
+import org.kurento.commons.exception.KurentoException;
+import org.kurento.jsonrpc.Props;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local copy of the elements of a {@link MediaPipeline} and the connections between them, so
+ * queries like {@link #getSinkConnections(MediaElement)} are answered without requests to the
+ * media server.
+ *
+ * The topology is read from the media server in bulk when the mirror is created and when
+ * {@link #refresh()} is called. After that, it is updated with:
+ * <ul>
+ * <li>connect, disconnect and release calls made with the same {@link KurentoClient}. They are
+ * visible as soon as the call returns (or the transaction is committed).</li>
+ * <li>ElementConnected and ElementDisconnected events of each element, and ObjectCreated and
+ * ObjectDestroyed events of the {@link ServerManager}. Changes made by other clients are visible
+ * when these events are received, so they may not be visible yet when queried.</li>
+ * </ul>
+ *
+ * If an event can't be applied (for example, it references an unknown element) or a subscription
+ * fails, the mirror is marked as stale and it is refreshed in the next query. Queries also refresh
+ * it when it is older than {@code maxAge} millis, if configured. Events lost while the client is
+ * reconnecting are not detected, so {@link #refresh()} should be called after reconnections.
+ */
+public class PipelineTopology {
+
+  private static final Logger log = LoggerFactory.getLogger(PipelineTopology.class);
+
+  private static final long SUBSCRIPTION_TIMEOUT = 10000;
+
+  private final KurentoClient client;
+  private final MediaPipeline pipeline;
+  private final RomManager manager;
+
+  private final Map<String, MediaObject> children = new LinkedHashMap<>();
+  private final Map<String, List<ElementConnectionData>> sinkConnections = new HashMap<>();
+  private final Map<String, List<ElementConnectionData>> sourceConnections = new HashMap<>();
+  private final Map<String, ElementSubscriptions> subscriptions = new HashMap<>();
+
+  private static class ElementSubscriptions {
+
+    private final MediaElement element;
+    private ListenerSubscription connected;
+    private ListenerSubscription disconnected;
+
+    private ElementSubscriptions(MediaElement element) {
+      this.element = element;
+    }
+  }
+
+  private final RomInvocationListener invocationListener = new RomInvocationListener() {
+    @Override
+    public void onInvoked(String objectRef, String method, Props params) {
+      invoked(objectRef, method, params);
+    }
+
+    @Override
+    public void onReleased(String objectRef) {
+      released(objectRef);
+    }
+  };
+
+  private ListenerSubscription objectCreatedSubscription;
+  private ListenerSubscription objectDestroyedSubscription;
+
+  private volatile long maxAge;
+  private volatile long lastRefreshTime;
+  private volatile boolean stale;
+  private volatile boolean closed;
+
+  /**
+   * Creates the mirror of the pipeline and reads its topology.
+   */
+  public static PipelineTopology create(KurentoClient client, MediaPipeline pipeline) {
+    PipelineTopology topology = new PipelineTopology(client, pipeline);
+    topology.refresh();
+    return topology;
+  }
+
+  protected PipelineTopology(KurentoClient client, MediaPipeline pipeline) {
+
+    this.client = client;
+    this.pipeline = pipeline;
+    this.manager = client.manager;
+
+    manager.addInvocationListener(invocationListener);
+
+    ServerManager serverManager = client.getServerManager();
+
+    objectCreatedSubscription =
+        serverManager.addObjectCreatedListener(new EventListener<ObjectCreatedEvent>() {
+          @Override
+          public void onEvent(ObjectCreatedEvent event) {
+            objectCreated(event.getObject());
+          }
+        });
+
+    objectDestroyedSubscription =
+        serverManager.addObjectDestroyedListener(new EventListener<ObjectDestroyedEvent>() {
+          @Override
+          public void onEvent(ObjectDestroyedEvent event) {
+            removeObject(event.getObjectId());
+          }
+        });
+  }
+
+  public MediaPipeline getPipeline() {
+    return pipeline;
+  }
+
+  /**
+   * Sets the max time (millis) since the last refresh before queries refresh the mirror. If 0
+   * (default), the mirror is only refreshed when it is stale or {@link #refresh()} is called.
+   */
+  public void setMaxAge(long maxAge) {
+    this.maxAge = maxAge;
+  }
+
+  public long getLastRefreshTime() {
+    return lastRefreshTime;
+  }
+
+  /**
+   * Returns true if some change could not be applied, so the next query will refresh the mirror.
+   */
+  public boolean isStale() {
+    return stale;
+  }
+
+  /**
+   * Reads again the elements of the pipeline and their connections. Connections of all elements
+   * are obtained in a single transaction.
+   */
+  public void refresh() {
+
+    checkNotClosed();
+
+    List<MediaObject> objects = pipeline.getChildren();
+
+    List<MediaElement> elements = new ArrayList<>();
+    for (MediaObject object : objects) {
+      if (object instanceof MediaElement) {
+        elements.add((MediaElement) object);
+      }
+    }
+
+    // Subscribe before reading connections, so changes made after reading are not lost
+    subscribe(elements, true);
+
+    List<TFuture<List<ElementConnectionData>>> futures = new ArrayList<>();
+    if (!elements.isEmpty()) {
+      Transaction tx = client.beginTransaction();
+      for (MediaElement element : elements) {
+        futures.add(element.getSinkConnections(tx));
+      }
+      tx.commit();
+    }
+
+    synchronized (this) {
+
+      children.clear();
+      sinkConnections.clear();
+      sourceConnections.clear();
+
+      for (MediaObject object : objects) {
+        children.put(object.getId(), object);
+      }
+
+      for (TFuture<List<ElementConnectionData>> future : futures) {
+        for (ElementConnectionData connection : future.get()) {
+          addConnection(connection);
+        }
+      }
+
+      for (Iterator<String> it = subscriptions.keySet().iterator(); it.hasNext();) {
+        if (!children.containsKey(it.next())) {
+          it.remove();
+        }
+      }
+
+      lastRefreshTime = System.currentTimeMillis();
+      stale = false;
+    }
+  }
+
+  public List<MediaObject> getChildren() {
+    checkFresh();
+    synchronized (this) {
+      return new ArrayList<>(children.values());
+    }
+  }
+
+  public List<ElementConnectionData> getSinkConnections(MediaElement element) {
+    checkFresh();
+    synchronized (this) {
+      return copy(sinkConnections.get(element.getId()));
+    }
+  }
+
+  public List<ElementConnectionData> getSourceConnections(MediaElement element) {
+    checkFresh();
+    synchronized (this) {
+      return copy(sourceConnections.get(element.getId()));
+    }
+  }
+
+  /**
+   * Returns the elements receiving media (of any type) from the given element.
+   */
+  public List<MediaElement> getSinks(MediaElement element) {
+    List<MediaElement> sinks = new ArrayList<>();
+    for (ElementConnectionData connection : getSinkConnections(element)) {
+      if (!sinks.contains(connection.getSink())) {
+        sinks.add(connection.getSink());
+      }
+    }
+    return sinks;
+  }
+
+  /**
+   * Returns the elements sending media (of any type) to the given element.
+   */
+  public List<MediaElement> getSources(MediaElement element) {
+    List<MediaElement> sources = new ArrayList<>();
+    for (ElementConnectionData connection : getSourceConnections(element)) {
+      if (!sources.contains(connection.getSource())) {
+        sources.add(connection.getSource());
+      }
+    }
+    return sources;
+  }
+
+  public boolean isConnected(MediaElement source, MediaElement sink) {
+    for (ElementConnectionData connection : getSinkConnections(source)) {
+      if (connection.getSink().getId().equals(sink.getId())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stops updating the mirror and removes its event listeners.
+   */
+  public void close() {
+    close(true);
+  }
+
+  private void close(boolean removeElementListeners) {
+
+    List<ElementSubscriptions> elementSubscriptions;
+
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      elementSubscriptions = new ArrayList<>(subscriptions.values());
+      subscriptions.clear();
+      children.clear();
+      sinkConnections.clear();
+      sourceConnections.clear();
+    }
+
+    manager.removeInvocationListener(invocationListener);
+
+    if (client.isClosed()) {
+      return;
+    }
+
+    // Listeners are removed asynchronously, as this can be called from a continuation
+    Continuation<Void> cont = new Continuation<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+      }
+
+      @Override
+      public void onError(Throwable cause) {
+        log.debug("Exception removing listener of pipeline topology {}", pipeline.getId(), cause);
+      }
+    };
+
+    try {
+      ServerManager serverManager = client.getServerManager();
+      serverManager.removeObjectCreatedListener(objectCreatedSubscription, cont);
+      serverManager.removeObjectDestroyedListener(objectDestroyedSubscription, cont);
+
+      if (removeElementListeners) {
+        for (ElementSubscriptions subscription : elementSubscriptions) {
+          if (subscription.connected != null) {
+            subscription.element.removeElementConnectedListener(subscription.connected, cont);
+          }
+          if (subscription.disconnected != null) {
+            subscription.element.removeElementDisconnectedListener(subscription.disconnected,
+                cont);
+          }
+        }
+      }
+    } catch (KurentoException e) {
+      log.debug("Exception removing listeners of pipeline topology {}", pipeline.getId(), e);
+    }
+  }
+
+  /**
+   * Subscribes to the connection events of the elements not subscribed yet.
+   *
+   * @param wait
+   *          if true, waits until the subscriptions are done. It must be false when called from
+   *          an event listener, as the dispatch of events (and maybe the responses) would be
+   *          blocked meanwhile
+   */
+  private void subscribe(List<MediaElement> elements, boolean wait) {
+
+    List<MediaElement> toSubscribe = new ArrayList<>();
+    synchronized (this) {
+      for (MediaElement element : elements) {
+        if (!subscriptions.containsKey(element.getId())) {
+          subscriptions.put(element.getId(), new ElementSubscriptions(element));
+          toSubscribe.add(element);
+        }
+      }
+    }
+
+    // Subscriptions are sent asynchronously to avoid a round trip per element
+    final CountDownLatch latch = wait ? new CountDownLatch(toSubscribe.size() * 2) : null;
+
+    for (final MediaElement element : toSubscribe) {
+
+      element.addElementConnectedListener(new EventListener<ElementConnectedEvent>() {
+        @Override
+        public void onEvent(ElementConnectedEvent event) {
+          elementConnected((MediaElement) event.getSource(), event.getSink(),
+              event.getMediaType(), event.getSourceMediaDescription(),
+              event.getSinkMediaDescription());
+        }
+      }, new SubscriptionContinuation(element, true, latch));
+
+      element.addElementDisconnectedListener(new EventListener<ElementDisconnectedEvent>() {
+        @Override
+        public void onEvent(ElementDisconnectedEvent event) {
+          elementDisconnected((MediaElement) event.getSource(), event.getSink(),
+              event.getMediaType(), event.getSourceMediaDescription(),
+              event.getSinkMediaDescription());
+        }
+      }, new SubscriptionContinuation(element, false, latch));
+    }
+
+    if (latch == null) {
+      return;
+    }
+
+    try {
+      if (!latch.await(SUBSCRIPTION_TIMEOUT, TimeUnit.MILLISECONDS)) {
+        log.warn("Timeout subscribing to events of pipeline {}", pipeline.getId());
+        stale = true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stale = true;
+    }
+  }
+
+  private class SubscriptionContinuation implements Continuation<ListenerSubscription> {
+
+    private final MediaElement element;
+    private final boolean connected;
+    private final CountDownLatch latch;
+
+    private SubscriptionContinuation(MediaElement element, boolean connected,
+        CountDownLatch latch) {
+      this.element = element;
+      this.connected = connected;
+      this.latch = latch;
+    }
+
+    @Override
+    public void onSuccess(ListenerSubscription subscription) {
+      synchronized (PipelineTopology.this) {
+        ElementSubscriptions elementSubscriptions = subscriptions.get(element.getId());
+        if (elementSubscriptions != null) {
+          if (connected) {
+            elementSubscriptions.connected = subscription;
+          } else {
+            elementSubscriptions.disconnected = subscription;
+          }
+        }
+      }
+      countDown();
+    }
+
+    @Override
+    public void onError(Throwable cause) {
+      log.debug("Exception subscribing to events of element {}", element.getId(), cause);
+      stale = true;
+      countDown();
+    }
+
+    private void countDown() {
+      if (latch != null) {
+        latch.countDown();
+      }
+    }
+  }
+
+  private void invoked(String objectRef, String method, Props params) {
+
+    boolean connect = method.equals("connect");
+    if (!connect && !method.equals("disconnect")) {
+      return;
+    }
+
+    MediaElement source;
+    synchronized (this) {
+      MediaObject object = children.get(objectRef);
+      if (!(object instanceof MediaElement)) {
+        return;
+      }
+      source = (MediaElement) object;
+    }
+
+    MediaElement sink = (MediaElement) params.getProp("sink");
+    MediaType mediaType = (MediaType) params.getProp("mediaType");
+    String sourceDescription = (String) params.getProp("sourceMediaDescription");
+    String sinkDescription = (String) params.getProp("sinkMediaDescription");
+
+    if (connect) {
+      elementConnected(source, sink, mediaType, sourceDescription, sinkDescription);
+    } else {
+      elementDisconnected(source, sink, mediaType, sourceDescription, sinkDescription);
+    }
+  }
+
+  private void released(String objectRef) {
+    if (objectRef.equals(pipeline.getId())) {
+      // Listeners of elements are removed by the media server with the pipeline
+      close(false);
+    } else {
+      removeObject(objectRef);
+    }
+  }
+
+  private void objectCreated(MediaObject object) {
+
+    if (object == null || !object.getId().startsWith(pipeline.getId() + "/")) {
+      return;
+    }
+
+    synchronized (this) {
+      if (closed || children.containsKey(object.getId())) {
+        return;
+      }
+      children.put(object.getId(), object);
+    }
+
+    if (object instanceof MediaElement) {
+      // Called from the event dispatch thread, so subscriptions are not waited for
+      List<MediaElement> elements = new ArrayList<>();
+      elements.add((MediaElement) object);
+      subscribe(elements, false);
+    }
+  }
+
+  private synchronized void removeObject(String objectId) {
+
+    if (children.remove(objectId) == null) {
+      return;
+    }
+
+    subscriptions.remove(objectId);
+
+    List<ElementConnectionData> sinks = sinkConnections.remove(objectId);
+    if (sinks != null) {
+      for (ElementConnectionData connection : sinks) {
+        remove(sourceConnections, connection.getSink().getId(), connection);
+      }
+    }
+
+    List<ElementConnectionData> sources = sourceConnections.remove(objectId);
+    if (sources != null) {
+      for (ElementConnectionData connection : sources) {
+        remove(sinkConnections, connection.getSource().getId(), connection);
+      }
+    }
+  }
+
+  private synchronized void elementConnected(MediaElement source, MediaElement sink,
+      MediaType mediaType, String sourceDescription, String sinkDescription) {
+
+    if (closed) {
+      return;
+    }
+
+    if (!children.containsKey(source.getId()) || !children.containsKey(sink.getId())) {
+      log.debug("Connection between unknown elements {} and {}", source.getId(), sink.getId());
+      stale = true;
+      return;
+    }
+
+    sourceDescription = sourceDescription != null ? sourceDescription : "default";
+    sinkDescription = sinkDescription != null ? sinkDescription : "default";
+
+    // Connections without media type connect all types
+    MediaType[] types = mediaType != null ? new MediaType[] { mediaType } : MediaType.values();
+
+    for (MediaType type : types) {
+      ElementConnectionData connection =
+          new ElementConnectionData(source, sink, type, sourceDescription, sinkDescription);
+      if (indexOf(sinkConnections.get(source.getId()), connection) < 0) {
+        addConnection(connection);
+      }
+    }
+  }
+
+  private synchronized void elementDisconnected(MediaElement source, MediaElement sink,
+      MediaType mediaType, String sourceDescription, String sinkDescription) {
+
+    if (closed) {
+      return;
+    }
+
+    List<ElementConnectionData> connections = sinkConnections.get(source.getId());
+    if (connections == null) {
+      return;
+    }
+
+    for (ElementConnectionData connection : new ArrayList<>(connections)) {
+      if (connection.getSink().getId().equals(sink.getId())
+          && (mediaType == null || connection.getType() == mediaType)
+          && (sourceDescription == null
+              || sourceDescription.equals(connection.getSourceDescription()))
+          && (sinkDescription == null
+              || sinkDescription.equals(connection.getSinkDescription()))) {
+        remove(sinkConnections, source.getId(), connection);
+        remove(sourceConnections, sink.getId(), connection);
+      }
+    }
+  }
+
+  private void addConnection(ElementConnectionData connection) {
+    add(sinkConnections, connection.getSource().getId(), connection);
+    add(sourceConnections, connection.getSink().getId(), connection);
+  }
+
+  private static void add(Map<String, List<ElementConnectionData>> index, String id,
+      ElementConnectionData connection) {
+    List<ElementConnectionData> connections = index.get(id);
+    if (connections == null) {
+      connections = new ArrayList<>();
+      index.put(id, connections);
+    }
+    connections.add(connection);
+  }
+
+  private static void remove(Map<String, List<ElementConnectionData>> index, String id,
+      ElementConnectionData connection) {
+    List<ElementConnectionData> connections = index.get(id);
+    if (connections != null) {
+      int pos = indexOf(connections, connection);
+      if (pos >= 0) {
+        connections.remove(pos);
+      }
+      if (connections.isEmpty()) {
+        index.remove(id);
+      }
+    }
+  }
+
+  private static int indexOf(List<ElementConnectionData> connections,
+      ElementConnectionData connection) {
+    if (connections != null) {
+      for (int i = 0; i < connections.size(); i++) {
+        ElementConnectionData other = connections.get(i);
+        if (other.getSource().getId().equals(connection.getSource().getId())
+            && other.getSink().getId().equals(connection.getSink().getId())
+            && other.getType() == connection.getType()
+            && equals(other.getSourceDescription(), connection.getSourceDescription())
+            && equals(other.getSinkDescription(), connection.getSinkDescription())) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static boolean equals(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static List<ElementConnectionData> copy(List<ElementConnectionData> connections) {
+    return connections == null ? new ArrayList<ElementConnectionData>()
+        : new ArrayList<>(connections);
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Topology of pipeline " + pipeline.getId() + " is closed");
+    }
+  }
+
+  // Must be called without holding the lock, as refreshing waits for subscriptions
+  private void checkFresh() {
+    checkNotClosed();
+    long age = System.currentTimeMillis() - lastRefreshTime;
+    if (stale || maxAge > 0 && age > maxAge) {
+      refresh();
+    }
+  }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kurento.client.ServerSnapshot.ObjectInfo;
+import org.kurento.commons.exception.KurentoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads all media objects of a media server (pipelines and their descendants) with a few large
+ * transactions instead of several requests per object.
+ *
+ * Objects are read level by level: the pipelines, then their children, and so on. The children
+ * and the selected properties of the objects of each level are requested in transactions of up to
+ * {@code batchSize} objects, and up to {@code parallelism} transactions are sent at the same time.
+ * Objects released while the snapshot is being taken are left out.
+ *
+ * <pre>
+ * ServerSnapshot snapshot = new ServerIntrospector(kurentoClient)
+ *     .withProperties(ServerIntrospector.Property.NAME).takeSnapshot();
+ * </pre>
+ */
+public class ServerIntrospector {
+
+  private static final Logger log = LoggerFactory.getLogger(ServerIntrospector.class);
+
+  public static final int DEFAULT_BATCH_SIZE = 200;
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  /**
+   * Properties that can be read for every object, besides its children.
+   */
+  public enum Property {
+    NAME, CREATION_TIME
+  }
+
+  private static class Batch implements Callable<Void> {
+
+    private final Transaction tx;
+    private final List<MediaObject> objects;
+    private final List<TFuture<List<MediaObject>>> children = new ArrayList<>();
+    private final List<TFuture<String>> names = new ArrayList<>();
+    private final List<TFuture<Integer>> creationTimes = new ArrayList<>();
+
+    private Batch(KurentoClient client, List<MediaObject> objects, Set<Property> properties) {
+      this.tx = client.beginTransaction();
+      this.objects = objects;
+      for (MediaObject object : objects) {
+        children.add(object.getChildren(tx));
+        names.add(properties.contains(Property.NAME) ? object.getName(tx) : null);
+        creationTimes.add(
+            properties.contains(Property.CREATION_TIME) ? object.getCreationTime(tx) : null);
+      }
+    }
+
+    @Override
+    public Void call() {
+      tx.commit();
+      return null;
+    }
+  }
+
+  private final KurentoClient client;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int parallelism = DEFAULT_PARALLELISM;
+  private Set<Property> properties = EnumSet.noneOf(Property.class);
+
+  public ServerIntrospector(KurentoClient client) {
+    this.client = client;
+  }
+
+  public ServerIntrospector withBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be greater than 0");
+    }
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public ServerIntrospector withParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be greater than 0");
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  public ServerIntrospector withProperties(Property... properties) {
+    this.properties = properties.length == 0 ? EnumSet.noneOf(Property.class)
+        : EnumSet.copyOf(Arrays.asList(properties));
+    return this;
+  }
+
+  public ServerSnapshot takeSnapshot() {
+
+    long start = System.currentTimeMillis();
+    AtomicInteger numTransactions = new AtomicInteger();
+
+    List<MediaPipeline> pipelines = client.getServerManager().getPipelines();
+
+    List<String> pipelineIds = new ArrayList<>();
+    Map<String, String> parents = new LinkedHashMap<>();
+    List<MediaObject> level = new ArrayList<>();
+    for (MediaPipeline pipeline : pipelines) {
+      pipelineIds.add(pipeline.getId());
+      parents.put(pipeline.getId(), null);
+      level.add(pipeline);
+    }
+
+    Map<String, ObjectInfo> objects = new LinkedHashMap<>();
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      private final AtomicInteger counter = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "ServerIntrospector-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    try {
+      while (!level.isEmpty()) {
+        level = introspectLevel(executor, level, parents, objects, numTransactions);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long elapsed = System.currentTimeMillis() - start;
+
+    log.debug("Snapshot of {} objects taken in {} ms with {} transactions", objects.size(),
+        elapsed, numTransactions.get());
+
+    return new ServerSnapshot(pipelineIds, objects, start, elapsed, numTransactions.get());
+  }
+
+  /**
+   * Reads the objects of a level and returns their children (the next level).
+   */
+  private List<MediaObject> introspectLevel(ExecutorService executor, List<MediaObject> level,
+      Map<String, String> parents, Map<String, ObjectInfo> objects,
+      AtomicInteger numTransactions) {
+
+    List<Batch> batches = new ArrayList<>();
+    List<Future<Void>> futures = new ArrayList<>();
+
+    for (int i = 0; i < level.size(); i += batchSize) {
+      Batch batch =
+          new Batch(client, level.subList(i, Math.min(level.size(), i + batchSize)), properties);
+      batches.add(batch);
+      futures.add(executor.submit(batch));
+      numTransactions.incrementAndGet();
+    }
+
+    List<MediaObject> nextLevel = new ArrayList<>();
+
+    for (int i = 0; i < batches.size(); i++) {
+
+      Batch batch = batches.get(i);
+
+      if (waitFor(futures.get(i))) {
+        for (int j = 0; j < batch.objects.size(); j++) {
+          store(batch, j, parents, objects, nextLevel);
+        }
+      } else {
+        // Some object of the batch was released. Read them one by one to find which ones
+        for (MediaObject object : batch.objects) {
+          Batch single = new Batch(client, Arrays.asList(object), properties);
+          numTransactions.incrementAndGet();
+          try {
+            single.call();
+            store(single, 0, parents, objects, nextLevel);
+          } catch (KurentoException e) {
+            log.debug("Object {} left out of the snapshot: {}", object.getId(), e.getMessage());
+          }
+        }
+      }
+    }
+
+    return nextLevel;
+  }
+
+  private boolean waitFor(Future<Void> future) {
+    try {
+      future.get();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KurentoException("Interrupted while taking snapshot", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof KurentoException) {
+        log.debug("Exception in introspection transaction", e.getCause());
+        return false;
+      }
+      throw new KurentoException("Exception taking snapshot", e.getCause());
+    }
+  }
+
+  private void store(Batch batch, int index, Map<String, String> parents,
+      Map<String, ObjectInfo> objects, List<MediaObject> nextLevel) {
+
+    MediaObject object = batch.objects.get(index);
+
+    List<String> childIds = new ArrayList<>();
+    for (MediaObject child : batch.children.get(index).get()) {
+      childIds.add(child.getId());
+      if (!parents.containsKey(child.getId())) {
+        parents.put(child.getId(), object.getId());
+        nextLevel.add(child);
+      }
+    }
+
+    TFuture<String> name = batch.names.get(index);
+    TFuture<Integer> creationTime = batch.creationTimes.get(index);
+
+    objects.put(object.getId(),
+        new ObjectInfo(object.getId(), parents.get(object.getId()), childIds,
+            name != null ? name.get() : null,
+            creationTime != null ? Long.valueOf(creationTime.get()) : null));
+  }
+
+}
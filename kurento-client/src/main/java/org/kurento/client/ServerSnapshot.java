@@ -0,0 +1,166 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of the media objects of a media server, obtained with
+ * {@link ServerIntrospector#takeSnapshot()}.
+ */
+public class ServerSnapshot {
+
+  /**
+   * Media object of the snapshot. Properties not requested to the introspector are null.
+   */
+  public static class ObjectInfo {
+
+    private final String id;
+    private final String parentId;
+    private final List<String> childIds;
+    private final String name;
+    private final Long creationTime;
+
+    ObjectInfo(String id, String parentId, List<String> childIds, String name,
+        Long creationTime) {
+      this.id = id;
+      this.parentId = parentId;
+      this.childIds = Collections.unmodifiableList(new ArrayList<>(childIds));
+      this.name = name;
+      this.creationTime = creationTime;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * Returns the type of the object (for example, WebRtcEndpoint), obtained from its id.
+     */
+    public String getType() {
+      String type = id.substring(id.lastIndexOf('_') + 1);
+      return type.substring(type.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Returns the id of the parent, or null for pipelines.
+     */
+    public String getParentId() {
+      return parentId;
+    }
+
+    public List<String> getChildIds() {
+      return childIds;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Long getCreationTime() {
+      return creationTime;
+    }
+
+    @Override
+    public String toString() {
+      return id;
+    }
+  }
+
+  private final Map<String, ObjectInfo> objects;
+  private final List<String> pipelineIds;
+  private final long timestamp;
+  private final long elapsedMillis;
+  private final int numTransactions;
+
+  ServerSnapshot(List<String> pipelineIds, Map<String, ObjectInfo> objects, long timestamp,
+      long elapsedMillis, int numTransactions) {
+    this.pipelineIds = Collections.unmodifiableList(new ArrayList<>(pipelineIds));
+    this.objects = Collections.unmodifiableMap(new LinkedHashMap<>(objects));
+    this.timestamp = timestamp;
+    this.elapsedMillis = elapsedMillis;
+    this.numTransactions = numTransactions;
+  }
+
+  public List<ObjectInfo> getPipelines() {
+    List<ObjectInfo> pipelines = new ArrayList<>();
+    for (String id : pipelineIds) {
+      ObjectInfo info = objects.get(id);
+      if (info != null) {
+        pipelines.add(info);
+      }
+    }
+    return pipelines;
+  }
+
+  /**
+   * Returns the object with the given id, or null if it was not found.
+   */
+  public ObjectInfo getObject(String id) {
+    return objects.get(id);
+  }
+
+  public List<ObjectInfo> getChildren(String id) {
+    List<ObjectInfo> children = new ArrayList<>();
+    ObjectInfo parent = objects.get(id);
+    if (parent != null) {
+      for (String childId : parent.getChildIds()) {
+        ObjectInfo child = objects.get(childId);
+        if (child != null) {
+          children.add(child);
+        }
+      }
+    }
+    return children;
+  }
+
+  /**
+   * Returns all objects (pipelines and their descendants).
+   */
+  public Collection<ObjectInfo> getObjects() {
+    return objects.values();
+  }
+
+  public int size() {
+    return objects.size();
+  }
+
+  /**
+   * Returns the time (millis) when the snapshot started.
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * Returns the number of transactions sent to take the snapshot.
+   */
+  public int getNumTransactions() {
+    return numTransactions;
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import javax.annotation.PreDestroy;
+
+import org.kurento.client.internal.transport.jsonrpc.RomClientMultiplexer;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.client.JsonRpcClient;
+import org.kurento.jsonrpc.client.JsonRpcClientNettyWebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connection to a media server that can be shared by several {@link KurentoClient}s.
+ *
+ * Each client created with {@link #createKurentoClient()} has its own objects and event
+ * listeners, but all of them use the same websocket (and the same threads) to talk to the media
+ * server. Destroying one of these clients doesn't affect the others; the websocket is closed
+ * when {@link #close()} is called.
+ *
+ * <pre>
+ * SharedKurentoConnection connection = SharedKurentoConnection.create("ws://kms:8888/kurento");
+ * KurentoClient tenant1 = connection.createKurentoClient();
+ * KurentoClient tenant2 = connection.createKurentoClient();
+ * </pre>
+ */
+public class SharedKurentoConnection {
+
+  private static Logger log = LoggerFactory.getLogger(SharedKurentoConnection.class);
+
+  private long requestTimeout =
+      PropertiesManager.getProperty("kurento.client.requestTimeout", 10000);
+
+  private long connectionTimeout =
+      PropertiesManager.getProperty("kurento.client.connectionTimeout", 5000);
+
+  private final RomClientMultiplexer multiplexer;
+
+  public static SharedKurentoConnection create(String websocketUrl) {
+    log.debug("Connecting to KMS in {} with a shared connection", websocketUrl);
+    JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(websocketUrl);
+    KurentoClient.configureJsonRpcClient(client);
+    return new SharedKurentoConnection(client);
+  }
+
+  public static SharedKurentoConnection create(String websocketUrl,
+      KurentoConnectionListener listener) {
+    log.debug("Connecting to KMS in {} with a shared connection", websocketUrl);
+    JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(websocketUrl,
+        JsonRpcConnectionListenerKurento.create(listener));
+    KurentoClient.configureJsonRpcClient(client);
+    return new SharedKurentoConnection(client);
+  }
+
+  public static SharedKurentoConnection createFromJsonRpcClient(JsonRpcClient jsonRpcClient) {
+    return new SharedKurentoConnection(jsonRpcClient);
+  }
+
+  protected SharedKurentoConnection(JsonRpcClient client) {
+    this.multiplexer = new RomClientMultiplexer(client);
+    KurentoClient.connect(client, requestTimeout, connectionTimeout);
+  }
+
+  /**
+   * Creates a new {@link KurentoClient} that uses this connection. Objects and listeners created
+   * with it are not visible from other clients of this connection.
+   */
+  public KurentoClient createKurentoClient() {
+    return new KurentoClient(multiplexer.getJsonRpcClient(), multiplexer.createRomClient());
+  }
+
+  /**
+   * Returns the number of clients created with this connection and not destroyed yet.
+   */
+  public int getNumKurentoClients() {
+    return multiplexer.getNumRomClients();
+  }
+
+  public String getSessionId() {
+    return multiplexer.getJsonRpcClient().getSession().getSessionId();
+  }
+
+  public void setLabel(String label) {
+    KurentoClient.updateLabel(multiplexer.getJsonRpcClient(), label);
+  }
+
+  public boolean isClosed() {
+    return multiplexer.isClosed();
+  }
+
+  /**
+   * Closes the connection with the media server. All clients created with this connection are
+   * closed too.
+   */
+  @PreDestroy
+  public void close() {
+    multiplexer.close();
+  }
+
+}
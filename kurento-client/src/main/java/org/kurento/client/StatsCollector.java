@@ -0,0 +1,298 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import static org.kurento.client.StatsMetric.INBOUND_BYTES;
+import static org.kurento.client.StatsMetric.INBOUND_JITTER;
+import static org.kurento.client.StatsMetric.INBOUND_PACKETS;
+import static org.kurento.client.StatsMetric.INBOUND_PACKETS_LOST;
+import static org.kurento.client.StatsMetric.OUTBOUND_BYTES;
+import static org.kurento.client.StatsMetric.OUTBOUND_PACKETS;
+import static org.kurento.client.StatsMetric.ROUND_TRIP_TIME;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.kurento.client.internal.server.KurentoServerException;
+import org.kurento.commons.exception.KurentoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls periodically the stats of a set of elements and keeps the last samples of each one in a
+ * {@link StatsSeries}.
+ *
+ * Stats of several elements are requested in the same transaction (up to {@code batchSize}
+ * elements per transaction), so polling N elements takes N / batchSize round trips instead of N.
+ * Only the values in {@link StatsMetric} are kept, in primitive arrays of fixed size, so memory
+ * used doesn't grow with time.
+ *
+ * <pre>
+ * StatsCollector collector = new StatsCollector(kurentoClient, 2000, 60);
+ * collector.register(webRtcEndpoint);
+ * collector.addListener(new StatsCollector.StatsListener() {
+ *   public void onStats(MediaElement element, StatsSeries series) {
+ *     log.info("{}: {} bps", element.getId(), series.getLast(StatsMetric.INBOUND_BITRATE));
+ *   }
+ * });
+ * collector.start();
+ * </pre>
+ */
+public class StatsCollector {
+
+  private static final Logger log = LoggerFactory.getLogger(StatsCollector.class);
+
+  public static final int DEFAULT_BATCH_SIZE = 50;
+
+  /**
+   * Receives the stats of each element after they are polled.
+   */
+  public interface StatsListener {
+
+    void onStats(MediaElement element, StatsSeries series);
+  }
+
+  private static class Entry {
+
+    private final MediaElement element;
+    private final StatsSeries series;
+
+    private Entry(MediaElement element, StatsSeries series) {
+      this.element = element;
+      this.series = series;
+    }
+  }
+
+  private final KurentoClient client;
+  private final long period;
+  private final int capacity;
+  private final int batchSize;
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final List<StatsListener> listeners = new CopyOnWriteArrayList<>();
+
+  // Only used from poll(), that is synchronized
+  private final double[] sample = new double[StatsMetric.COUNT];
+
+  private ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> task;
+
+  /**
+   * @param client
+   *          client used to create the transactions
+   * @param period
+   *          millis between polls
+   * @param capacity
+   *          samples kept of each element
+   */
+  public StatsCollector(KurentoClient client, long period, int capacity) {
+    this(client, period, capacity, DEFAULT_BATCH_SIZE);
+  }
+
+  public StatsCollector(KurentoClient client, long period, int capacity, int batchSize) {
+    if (period <= 0 || capacity <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("Period, capacity and batch size must be positive");
+    }
+    this.client = client;
+    this.period = period;
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Starts polling the stats of the element. Does nothing if it was already registered.
+   *
+   * @return the series where stats of the element are stored
+   */
+  public StatsSeries register(MediaElement element) {
+    Entry entry = new Entry(element, new StatsSeries(element.getId(), capacity));
+    Entry previous = entries.putIfAbsent(element.getId(), entry);
+    return previous != null ? previous.series : entry.series;
+  }
+
+  public void unregister(MediaElement element) {
+    entries.remove(element.getId());
+  }
+
+  public int getNumElements() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the series of the element, or null if it is not registered.
+   */
+  public StatsSeries getSeries(MediaElement element) {
+    Entry entry = entries.get(element.getId());
+    return entry != null ? entry.series : null;
+  }
+
+  /**
+   * Returns the newest values of every registered element with samples, indexed by element id.
+   * Values of each element are indexed by {@link StatsMetric} ordinal.
+   */
+  public Map<String, double[]> getSnapshot() {
+    Map<String, double[]> snapshot = new HashMap<>();
+    for (Entry entry : entries.values()) {
+      double[] values = new double[StatsMetric.COUNT];
+      if (entry.series.copyLast(values)) {
+        snapshot.put(entry.series.getElementId(), values);
+      }
+    }
+    return snapshot;
+  }
+
+  public void addListener(StatsListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(StatsListener listener) {
+    listeners.remove(listener);
+  }
+
+  public synchronized void start() {
+
+    if (scheduler != null) {
+      return;
+    }
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "StatsCollector");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    task = scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          poll();
+        } catch (Exception e) {
+          log.warn("Exception polling stats", e);
+        }
+      }
+    }, 0, period, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    if (scheduler != null) {
+      task.cancel(false);
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Polls the stats of all registered elements. It is executed periodically after
+   * {@link #start()}, but can be also called directly.
+   */
+  public synchronized void poll() {
+
+    List<Entry> toPoll = new ArrayList<>(entries.values());
+
+    for (int i = 0; i < toPoll.size(); i += batchSize) {
+      pollBatch(toPoll.subList(i, Math.min(toPoll.size(), i + batchSize)));
+    }
+  }
+
+  private void pollBatch(List<Entry> batch) {
+
+    List<TFuture<Map<String, Stats>>> futures = new ArrayList<>(batch.size());
+
+    try {
+      Transaction tx = client.beginTransaction();
+      for (Entry entry : batch) {
+        futures.add(entry.element.getStats(tx));
+      }
+      tx.commit();
+    } catch (KurentoException e) {
+      // The whole transaction fails if any element was released. Poll them one by one to find
+      // which ones
+      log.debug("Exception polling stats in transaction. Polling elements one by one", e);
+      for (Entry entry : batch) {
+        pollEntry(entry);
+      }
+      return;
+    }
+
+    long timestamp = System.currentTimeMillis();
+    for (int i = 0; i < batch.size(); i++) {
+      store(batch.get(i), timestamp, futures.get(i).get());
+    }
+  }
+
+  private void pollEntry(Entry entry) {
+    try {
+      store(entry, System.currentTimeMillis(), entry.element.getStats());
+    } catch (KurentoServerException e) {
+      log.debug("Element {} unregistered from stats collector: {}", entry.element.getId(),
+          e.getMessage());
+      entries.remove(entry.element.getId(), entry);
+    } catch (KurentoException e) {
+      log.warn("Exception polling stats of element {}", entry.element.getId(), e);
+    }
+  }
+
+  private void store(Entry entry, long timestamp, Map<String, Stats> stats) {
+
+    Arrays.fill(sample, 0);
+
+    for (Stats stat : stats.values()) {
+      if (stat instanceof RTCInboundRTPStreamStats) {
+        RTCInboundRTPStreamStats inbound = (RTCInboundRTPStreamStats) stat;
+        sample[INBOUND_BYTES.ordinal()] += inbound.getBytesReceived();
+        sample[INBOUND_PACKETS.ordinal()] += inbound.getPacketsReceived();
+        sample[INBOUND_PACKETS_LOST.ordinal()] += inbound.getPacketsLost();
+        sample[INBOUND_JITTER.ordinal()] =
+            Math.max(sample[INBOUND_JITTER.ordinal()], inbound.getJitter());
+      } else if (stat instanceof RTCOutboundRTPStreamStats) {
+        RTCOutboundRTPStreamStats outbound = (RTCOutboundRTPStreamStats) stat;
+        sample[OUTBOUND_BYTES.ordinal()] += outbound.getBytesSent();
+        sample[OUTBOUND_PACKETS.ordinal()] += outbound.getPacketsSent();
+        sample[ROUND_TRIP_TIME.ordinal()] =
+            Math.max(sample[ROUND_TRIP_TIME.ordinal()], outbound.getRoundTripTime());
+      }
+    }
+
+    entry.series.add(timestamp, sample);
+
+    for (StatsListener listener : listeners) {
+      try {
+        listener.onStats(entry.element, entry.series);
+      } catch (Exception e) {
+        log.warn("Exception in stats listener", e);
+      }
+    }
+  }
+
+}
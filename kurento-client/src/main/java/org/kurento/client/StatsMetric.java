@@ -0,0 +1,59 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+/**
+ * Values stored by {@link StatsCollector} for each sample of an element. Counters are the sum of
+ * all inbound or outbound RTP streams of the element; rates are computed from the difference with
+ * the previous sample.
+ */
+public enum StatsMetric {
+
+  /** Bytes received (counter). */
+  INBOUND_BYTES,
+
+  /** Packets received (counter). */
+  INBOUND_PACKETS,
+
+  /** Packets lost in inbound streams (counter). */
+  INBOUND_PACKETS_LOST,
+
+  /** Max jitter of inbound streams, in seconds. */
+  INBOUND_JITTER,
+
+  /** Bytes sent (counter). */
+  OUTBOUND_BYTES,
+
+  /** Packets sent (counter). */
+  OUTBOUND_PACKETS,
+
+  /** Max round trip time of outbound streams, in seconds. */
+  ROUND_TRIP_TIME,
+
+  /** Bits per second received since the previous sample. */
+  INBOUND_BITRATE,
+
+  /** Bits per second sent since the previous sample. */
+  OUTBOUND_BITRATE,
+
+  /** Fraction (0 to 1) of inbound packets lost since the previous sample. */
+  INBOUND_PACKET_LOSS;
+
+  static final int COUNT = values().length;
+
+}
@@ -0,0 +1,169 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import static org.kurento.client.StatsMetric.INBOUND_BITRATE;
+import static org.kurento.client.StatsMetric.INBOUND_BYTES;
+import static org.kurento.client.StatsMetric.INBOUND_PACKETS;
+import static org.kurento.client.StatsMetric.INBOUND_PACKETS_LOST;
+import static org.kurento.client.StatsMetric.INBOUND_PACKET_LOSS;
+import static org.kurento.client.StatsMetric.OUTBOUND_BITRATE;
+import static org.kurento.client.StatsMetric.OUTBOUND_BYTES;
+
+/**
+ * Last samples of the stats of an element, stored by {@link StatsCollector} in a fixed size ring
+ * buffer of primitive values. When the buffer is full, the oldest sample is overwritten.
+ *
+ * Samples are indexed from 0 (oldest) to {@link #size()} - 1 (newest).
+ */
+public class StatsSeries {
+
+  private final String elementId;
+  private final int capacity;
+
+  private final long[] timestamps;
+  private final double[] values;
+
+  private int next;
+  private int size;
+
+  StatsSeries(String elementId, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be greater than 0");
+    }
+    this.elementId = elementId;
+    this.capacity = capacity;
+    this.timestamps = new long[capacity];
+    this.values = new double[capacity * StatsMetric.COUNT];
+  }
+
+  public String getElementId() {
+    return elementId;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns the time (millis) when the sample was taken.
+   */
+  public synchronized long getTimestamp(int index) {
+    return timestamps[slot(index)];
+  }
+
+  public synchronized double getValue(StatsMetric metric, int index) {
+    return values[slot(index) * StatsMetric.COUNT + metric.ordinal()];
+  }
+
+  /**
+   * Returns the value of the metric in the newest sample, or NaN if there are no samples.
+   */
+  public synchronized double getLast(StatsMetric metric) {
+    return size == 0 ? Double.NaN : getValue(metric, size - 1);
+  }
+
+  public synchronized long getLastTimestamp() {
+    return size == 0 ? 0 : getTimestamp(size - 1);
+  }
+
+  /**
+   * Copies the values of the metric, from oldest to newest, to the given array.
+   *
+   * @return number of values copied
+   */
+  public synchronized int copyValues(StatsMetric metric, double[] dest) {
+    int count = Math.min(size, dest.length);
+    int first = size - count;
+    for (int i = 0; i < count; i++) {
+      dest[i] = values[slot(first + i) * StatsMetric.COUNT + metric.ordinal()];
+    }
+    return count;
+  }
+
+  /**
+   * Copies the values of all metrics of the newest sample to the given array (indexed by metric
+   * ordinal).
+   *
+   * @return false if there are no samples
+   */
+  public synchronized boolean copyLast(double[] dest) {
+    if (size == 0) {
+      return false;
+    }
+    System.arraycopy(values, slot(size - 1) * StatsMetric.COUNT, dest, 0,
+        Math.min(dest.length, StatsMetric.COUNT));
+    return true;
+  }
+
+  /**
+   * Adds a sample with the raw values (counters and gauges) in sample, and computes the rates from
+   * the previous one. Values of sample for rate metrics are overwritten.
+   */
+  synchronized void add(long timestamp, double[] sample) {
+
+    if (size > 0) {
+      int prev = slot(size - 1) * StatsMetric.COUNT;
+      double seconds = (timestamp - timestamps[slot(size - 1)]) / 1000.0;
+
+      sample[INBOUND_BITRATE.ordinal()] =
+          rate(sample, prev, INBOUND_BYTES, seconds) * 8;
+      sample[OUTBOUND_BITRATE.ordinal()] =
+          rate(sample, prev, OUTBOUND_BYTES, seconds) * 8;
+
+      double received = delta(sample, prev, INBOUND_PACKETS);
+      double lost = delta(sample, prev, INBOUND_PACKETS_LOST);
+      sample[INBOUND_PACKET_LOSS.ordinal()] =
+          received + lost > 0 ? lost / (received + lost) : 0;
+    } else {
+      sample[INBOUND_BITRATE.ordinal()] = 0;
+      sample[OUTBOUND_BITRATE.ordinal()] = 0;
+      sample[INBOUND_PACKET_LOSS.ordinal()] = 0;
+    }
+
+    timestamps[next] = timestamp;
+    System.arraycopy(sample, 0, values, next * StatsMetric.COUNT, StatsMetric.COUNT);
+
+    next = (next + 1) % capacity;
+    if (size < capacity) {
+      size++;
+    }
+  }
+
+  private double delta(double[] sample, int prev, StatsMetric counter) {
+    double delta = sample[counter.ordinal()] - values[prev + counter.ordinal()];
+    // Counters are reset when streams are renegotiated
+    return delta < 0 ? 0 : delta;
+  }
+
+  private double rate(double[] sample, int prev, StatsMetric counter, double seconds) {
+    return seconds > 0 ? delta(sample, prev, counter) / seconds : 0;
+  }
+
+  private int slot(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return (next - size + index + capacity) % capacity;
+  }
+
+}
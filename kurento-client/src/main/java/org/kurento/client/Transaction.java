@@ -25,4 +25,9 @@ public interface Transaction {
 
   public void rollback();
 
+  /**
+   * Returns the metrics of the commit of this transaction, or null if it has not been committed.
+   */
+  public TransactionMetrics getMetrics();
+
 }
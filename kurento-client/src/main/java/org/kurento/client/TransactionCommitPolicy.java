@@ -0,0 +1,185 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import org.kurento.client.internal.server.KurentoServerException;
+import org.kurento.client.internal.server.KurentoServerTransportException;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.JsonRpcErrorException;
+import org.kurento.jsonrpc.TransportException;
+
+/**
+ * Decides whether a transaction that could not be committed is sent again, and how long to wait
+ * before doing it.
+ *
+ * A transaction is retried, up to {@code maxAttempts} attempts in total, when:
+ * <ul>
+ * <li>The media server answered the whole transaction with one of the retryable error codes. The
+ * operations were not executed in this case.</li>
+ * <li>Transport errors retries are enabled, the transaction could not be sent or the connection
+ * was lost before receiving its response, and it does not create objects. Its operations may have
+ * been executed, and creating the objects again would leave duplicates in the media server.</li>
+ * </ul>
+ * Transport errors retries are disabled by default, as the operations of the transaction may be
+ * executed twice. Requests that timed out are never retried: the media server may still be
+ * executing them.
+ * Transactions with a failed operation ({@link TransactionExecutionException}) are never retried,
+ * as the other operations have been already rolled back. The delay before each retry doubles the
+ * previous one, up to the max backoff.
+ *
+ * By default there are no retryable codes and transport errors are not retried, so no transaction
+ * is retried whatever {@code maxAttempts} is. It only takes effect once some retryable code is
+ * set or transport errors retries are enabled.
+ *
+ * <pre>
+ * kurentoClient.setTransactionCommitPolicy(new TransactionCommitPolicy().withMaxAttempts(5)
+ *     .withBackoff(50, 1000).withRetryableCodes(40001));
+ * </pre>
+ */
+public class TransactionCommitPolicy {
+
+  public static final int DEFAULT_MAX_ATTEMPTS =
+      PropertiesManager.getProperty("kurento.client.transaction.maxAttempts", 3);
+
+  public static final long DEFAULT_BACKOFF =
+      PropertiesManager.getProperty("kurento.client.transaction.backoff", 100L);
+
+  public static final long DEFAULT_MAX_BACKOFF =
+      PropertiesManager.getProperty("kurento.client.transaction.maxBackoff", 2000L);
+
+  public static final boolean DEFAULT_RETRY_TRANSPORT_ERRORS =
+      PropertiesManager.getProperty("kurento.client.transaction.retryTransportErrors", false);
+
+  private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+  private volatile long backoff = DEFAULT_BACKOFF;
+  private volatile long maxBackoff = DEFAULT_MAX_BACKOFF;
+  private volatile Set<Integer> retryableCodes = Collections.emptySet();
+  private volatile boolean retryTransportErrors = DEFAULT_RETRY_TRANSPORT_ERRORS;
+
+  /**
+   * Sets the max number of times a transaction is sent, including the first one. Use 1 to disable
+   * retries. Only failures allowed by {@link #withRetryableCodes(int...)} or
+   * {@link #withTransportErrorRetries(boolean)} are retried.
+   */
+  public TransactionCommitPolicy withMaxAttempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("Max attempts must be greater than 0");
+    }
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  /**
+   * Sets the delay before the first retry and the max delay between retries, in millis.
+   */
+  public TransactionCommitPolicy withBackoff(long backoff, long maxBackoff) {
+    if (backoff < 0 || maxBackoff < backoff) {
+      throw new IllegalArgumentException(
+          "Backoff must be positive and not greater than max backoff");
+    }
+    this.backoff = backoff;
+    this.maxBackoff = maxBackoff;
+    return this;
+  }
+
+  /**
+   * Sets the error codes of the media server that make a transaction be retried.
+   */
+  public TransactionCommitPolicy withRetryableCodes(int... codes) {
+    Set<Integer> newCodes = new HashSet<>();
+    for (int code : codes) {
+      newCodes.add(code);
+    }
+    this.retryableCodes = Collections.unmodifiableSet(newCodes);
+    return this;
+  }
+
+  /**
+   * Sets whether transactions that do not create objects are retried after transport errors. Only
+   * enable it when executing their operations twice is harmless.
+   */
+  public TransactionCommitPolicy withTransportErrorRetries(boolean retryTransportErrors) {
+    this.retryTransportErrors = retryTransportErrors;
+    return this;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public Set<Integer> getRetryableCodes() {
+    return retryableCodes;
+  }
+
+  /**
+   * Returns the delay in millis before the given retry (1 for the first one).
+   */
+  public long getBackoff(int retry) {
+    long delay = backoff;
+    for (int i = 1; i < retry && delay < maxBackoff; i++) {
+      delay *= 2;
+    }
+    return Math.min(delay, maxBackoff);
+  }
+
+  /**
+   * Returns whether a transaction has to be sent again after failing with the given error.
+   *
+   * @param attempts
+   *          number of times the transaction has been sent
+   * @param createsObjects
+   *          whether the transaction has object creation operations
+   */
+  public boolean isRetryable(Throwable error, int attempts, boolean createsObjects) {
+
+    if (attempts >= maxAttempts || error instanceof TransactionExecutionException) {
+      return false;
+    }
+
+    if (error instanceof KurentoServerException) {
+      return retryableCodes.contains(((KurentoServerException) error).getCode());
+    }
+
+    if (error instanceof JsonRpcErrorException) {
+      return retryableCodes.contains(((JsonRpcErrorException) error).getCode());
+    }
+
+    return retryTransportErrors && !createsObjects && isTransportError(error);
+  }
+
+  private static boolean isTransportError(Throwable error) {
+    boolean transportError = false;
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof TimeoutException) {
+        return false;
+      }
+      if (t instanceof KurentoServerTransportException || t instanceof TransportException
+          || t instanceof IOException) {
+        transportError = true;
+      }
+    }
+    return transportError;
+  }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+/**
+ * Metrics of the commit of a transaction: number of operations, number of times it was sent to the
+ * media server and time until it was committed or failed. They are obtained with
+ * {@link Transaction#getMetrics()}.
+ */
+public interface TransactionMetrics {
+
+  public int getNumOperations();
+
+  public int getNumAttempts();
+
+  public int getNumRetries();
+
+  /**
+   * Returns the millis from the commit until the transaction was committed or failed, or -1 if it
+   * has not finished yet.
+   */
+  public long getLatencyMillis();
+
+  public boolean isFinished();
+
+  public boolean isCommitted();
+
+}
@@ -0,0 +1,469 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.kurento.client.KurentoClient;
+import org.kurento.client.ServerManager;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.client.JsonRpcClientNettyWebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link KmsProvider} that places clients in the least loaded node of a pool of media servers.
+ *
+ * The load of each node is obtained periodically from its {@link ServerManager} (number of
+ * pipelines and used memory), and measured in load points like reservations: each pipeline counts
+ * {@code pipelineLoadPoints}. The load of a node is the greatest of the points reserved in it
+ * through this provider, and the points of its pipelines in the last probe plus the points
+ * reserved since that probe started, whose pipelines it could not see yet. Nodes are not used
+ * until their first successful probe, and nodes that fail {@code maxFailures} consecutive probes
+ * are not used until a probe succeeds again.
+ *
+ * It is selected in the kurento config file with
+ * {@code kms.url.provider: org.kurento.client.internal.LoadBalancingKmsProvider}. Its settings are
+ * read with {@link PropertiesManager}, so they are given as system properties:
+ * <ul>
+ * <li>kms.provider.urls: comma separated list of KMS urls (required)</li>
+ * <li>kms.provider.probePeriod: millis between load probes (default 5000)</li>
+ * <li>kms.provider.probeTimeout: timeout in millis of each probe request (default 3000)</li>
+ * <li>kms.provider.maxFailures: consecutive failed probes to consider a node unhealthy (default
+ * 2)</li>
+ * <li>kms.provider.maxLoadPoints: max load of a node (default unlimited)</li>
+ * <li>kms.provider.pipelineLoadPoints: load points of each pipeline of a node (default 1)</li>
+ * <li>kms.provider.defaultLoadPoints: load points of clients reserved without load (default 1)
+ * </li>
+ * <li>kms.provider.maxUsedMemory: used memory (KiB) above which a node is not used (default
+ * unlimited)</li>
+ * </ul>
+ */
+public class LoadBalancingKmsProvider implements KmsProvider {
+
+  private static final Logger log = LoggerFactory.getLogger(LoadBalancingKmsProvider.class);
+
+  public static final String URLS_PROPERTY = "kms.provider.urls";
+
+  private static class Node {
+
+    private final String url;
+
+    // Not healthy until the first successful probe
+    private volatile boolean probed;
+    private volatile boolean healthy;
+    private volatile int numPipelines;
+    private volatile long usedMemory;
+    private volatile long lastProbeTime;
+
+    private int consecutiveFailures;
+    private int reservedPoints;
+    // Points of the pipelines in the last successful probe
+    private int probedPoints;
+    // Points of the reservations made since the start of the last successful probe
+    private int pendingPoints;
+
+    private KurentoClient probeClient;
+
+    private Node(String url) {
+      this.url = url;
+    }
+
+    private int getLoad() {
+      return Math.max(reservedPoints, probedPoints + pendingPoints);
+    }
+  }
+
+  private static class Reservation {
+
+    private final Node node;
+    private final int loadPoints;
+    // Not seen yet by a successful probe
+    private boolean pending = true;
+
+    private Reservation(Node node, int loadPoints) {
+      this.node = node;
+      this.loadPoints = loadPoints;
+    }
+  }
+
+  private final Map<String, Node> nodes = new LinkedHashMap<>();
+  private final Map<String, Reservation> reservations = new HashMap<>();
+
+  private final long probeTimeout;
+  private final int maxFailures;
+  private final int maxLoadPoints;
+  private final int pipelineLoadPoints;
+  private final int defaultLoadPoints;
+  private final long maxUsedMemory;
+
+  private final ScheduledExecutorService scheduler;
+
+  public LoadBalancingKmsProvider() {
+    this(parseUrls(getRequiredProperty(URLS_PROPERTY)),
+        PropertiesManager.getProperty("kms.provider.probePeriod", 5000L),
+        PropertiesManager.getProperty("kms.provider.probeTimeout", 3000L),
+        PropertiesManager.getProperty("kms.provider.maxFailures", 2),
+        PropertiesManager.getProperty("kms.provider.maxLoadPoints", Integer.MAX_VALUE),
+        PropertiesManager.getProperty("kms.provider.pipelineLoadPoints", 1),
+        PropertiesManager.getProperty("kms.provider.defaultLoadPoints", 1),
+        PropertiesManager.getProperty("kms.provider.maxUsedMemory", Long.MAX_VALUE));
+  }
+
+  /**
+   * @param urls
+   *          urls of the media servers
+   * @param probePeriod
+   *          millis between load probes. If 0, probes are only executed with {@link #probe()}
+   * @param probeTimeout
+   *          timeout in millis of probe requests
+   * @param maxFailures
+   *          consecutive failed probes to consider a node unhealthy
+   * @param maxLoadPoints
+   *          max load of a node
+   * @param pipelineLoadPoints
+   *          load points of each pipeline of a node
+   * @param defaultLoadPoints
+   *          load points of clients reserved without load
+   * @param maxUsedMemory
+   *          used memory (KiB) above which a node is not used
+   */
+  public LoadBalancingKmsProvider(List<String> urls, long probePeriod, long probeTimeout,
+      int maxFailures, int maxLoadPoints, int pipelineLoadPoints, int defaultLoadPoints,
+      long maxUsedMemory) {
+
+    if (urls.isEmpty()) {
+      throw new IllegalArgumentException("At least one KMS url is needed");
+    }
+
+    for (String url : urls) {
+      nodes.put(url, new Node(url));
+    }
+
+    this.probeTimeout = probeTimeout;
+    this.maxFailures = Math.max(1, maxFailures);
+    this.maxLoadPoints = maxLoadPoints;
+    this.pipelineLoadPoints = pipelineLoadPoints;
+    this.defaultLoadPoints = defaultLoadPoints;
+    this.maxUsedMemory = maxUsedMemory;
+
+    if (probePeriod > 0) {
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "KmsProvider-probe");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      this.scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            probe();
+          } catch (Exception e) {
+            log.warn("Exception probing KMS nodes", e);
+          }
+        }
+      }, 0, probePeriod, TimeUnit.MILLISECONDS);
+    } else {
+      this.scheduler = null;
+    }
+  }
+
+  private static String getRequiredProperty(String property) {
+    String value = PropertiesManager.getProperty(property);
+    if (value == null) {
+      throw new IllegalStateException(
+          "Property " + property + " is required by " + LoadBalancingKmsProvider.class.getName());
+    }
+    return value;
+  }
+
+  private static List<String> parseUrls(String urls) {
+    List<String> result = new ArrayList<>();
+    for (String url : urls.split(",")) {
+      if (!url.trim().isEmpty()) {
+        result.add(url.trim());
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String reserveKms(String id) throws NotEnoughResourcesException {
+    return reserveKms(id, defaultLoadPoints);
+  }
+
+  @Override
+  public String reserveKms(String id, int loadPoints) throws NotEnoughResourcesException {
+
+    if (!isAnyNodeProbed()) {
+      // Before the first periodic probe, or without them
+      probe();
+    }
+
+    return reserveProbedKms(id, loadPoints);
+  }
+
+  private synchronized boolean isAnyNodeProbed() {
+    for (Node node : nodes.values()) {
+      if (node.probed) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private synchronized String reserveProbedKms(String id, int loadPoints)
+      throws NotEnoughResourcesException {
+
+    releaseKms(id);
+
+    Node selected = null;
+    int selectedLoad = 0;
+
+    for (Node node : nodes.values()) {
+
+      if (!node.healthy || node.usedMemory > maxUsedMemory) {
+        continue;
+      }
+
+      int load = node.getLoad();
+
+      if ((long) load + loadPoints > maxLoadPoints) {
+        continue;
+      }
+
+      if (selected == null || load < selectedLoad
+          || load == selectedLoad && node.usedMemory < selected.usedMemory) {
+        selected = node;
+        selectedLoad = load;
+      }
+    }
+
+    if (selected == null) {
+      throw new NotEnoughResourcesException(
+          "No KMS with enough resources for " + loadPoints + " load points");
+    }
+
+    selected.reservedPoints += loadPoints;
+    selected.pendingPoints += loadPoints;
+    reservations.put(id, new Reservation(selected, loadPoints));
+
+    log.debug("Reserved {} load points for client {} in KMS {} (load {})", loadPoints, id,
+        selected.url, selectedLoad);
+
+    return selected.url;
+  }
+
+  @Override
+  public synchronized void releaseKms(String id) throws NotEnoughResourcesException {
+
+    Reservation reservation = reservations.remove(id);
+
+    if (reservation != null) {
+      reservation.node.reservedPoints -= reservation.loadPoints;
+      if (reservation.pending) {
+        reservation.pending = false;
+        reservation.node.pendingPoints -= reservation.loadPoints;
+      }
+      log.debug("Released {} load points of client {} in KMS {}", reservation.loadPoints, id,
+          reservation.node.url);
+    }
+  }
+
+  /**
+   * Obtains the load of all nodes. It is executed periodically, but can be called to refresh the
+   * load immediately.
+   */
+  public void probe() {
+
+    List<Node> toProbe;
+    synchronized (this) {
+      toProbe = new ArrayList<>(nodes.values());
+    }
+
+    for (Node node : toProbe) {
+      synchronized (node) {
+        probe(node);
+      }
+    }
+  }
+
+  private void probe(Node node) {
+
+    List<Reservation> probedReservations = getPendingReservations(node);
+
+    try {
+
+      if (node.probeClient == null || node.probeClient.isClosed()) {
+        node.probeClient = createProbeClient(node.url);
+      }
+
+      ServerManager serverManager = node.probeClient.getServerManager();
+      int numPipelines = serverManager.getPipelines().size();
+      node.usedMemory = serverManager.getUsedMemory();
+      node.lastProbeTime = System.currentTimeMillis();
+
+      synchronized (this) {
+        node.numPipelines = numPipelines;
+        node.probedPoints = numPipelines * pipelineLoadPoints;
+        node.consecutiveFailures = 0;
+        clearPendingPoints(probedReservations);
+        if (!node.probed) {
+          log.debug("KMS {} probed for the first time", node.url);
+          node.probed = true;
+          node.healthy = true;
+        } else if (!node.healthy) {
+          log.info("KMS {} is healthy again", node.url);
+          node.healthy = true;
+        }
+      }
+
+    } catch (Exception e) {
+
+      log.debug("Exception probing KMS {}", node.url, e);
+      destroyProbeClient(node);
+
+      synchronized (this) {
+        node.consecutiveFailures++;
+        if (node.healthy && node.consecutiveFailures >= maxFailures) {
+          log.warn("KMS {} failed {} consecutive probes. It won't be used until it recovers",
+              node.url, node.consecutiveFailures);
+          node.healthy = false;
+        } else if (!node.probed && node.consecutiveFailures == maxFailures) {
+          log.warn("KMS {} failed its first {} probes. It won't be used until one succeeds",
+              node.url, node.consecutiveFailures);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the reservations of the node not seen yet by a probe, when one starts.
+   */
+  private synchronized List<Reservation> getPendingReservations(Node node) {
+    List<Reservation> pending = new ArrayList<>();
+    for (Reservation reservation : reservations.values()) {
+      if (reservation.node == node && reservation.pending) {
+        pending.add(reservation);
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * The pipelines created by the clients reserved before the start of a probe are counted in the
+   * pipelines of the node, so their points are no longer added to them. Only the reservations
+   * pending when the probe started are cleared; later ones may not be seen by it.
+   */
+  private void clearPendingPoints(List<Reservation> probedReservations) {
+    for (Reservation reservation : probedReservations) {
+      if (reservation.pending) {
+        reservation.pending = false;
+        reservation.node.pendingPoints -= reservation.loadPoints;
+      }
+    }
+  }
+
+  protected KurentoClient createProbeClient(String url) {
+    JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(url);
+    client.setLabel("KmsProvider-probe");
+    KurentoClient kurentoClient = KurentoClient.createFromJsonRpcClient(client);
+    client.setRequestTimeout(probeTimeout);
+    return kurentoClient;
+  }
+
+  private void destroyProbeClient(Node node) {
+    if (node.probeClient != null) {
+      try {
+        node.probeClient.destroy();
+      } catch (Exception e) {
+        log.trace("Exception destroying probe client of KMS {}", node.url, e);
+      }
+      node.probeClient = null;
+    }
+  }
+
+  public synchronized List<String> getUrls() {
+    return Collections.unmodifiableList(new ArrayList<>(nodes.keySet()));
+  }
+
+  public synchronized List<String> getHealthyUrls() {
+    List<String> urls = new ArrayList<>();
+    for (Node node : nodes.values()) {
+      if (node.healthy) {
+        urls.add(node.url);
+      }
+    }
+    return urls;
+  }
+
+  public synchronized int getReservedLoadPoints(String url) {
+    return getNode(url).reservedPoints;
+  }
+
+  public synchronized int getNumPipelines(String url) {
+    return getNode(url).numPipelines;
+  }
+
+  public synchronized long getLastProbeTime(String url) {
+    return getNode(url).lastProbeTime;
+  }
+
+  private Node getNode(String url) {
+    Node node = nodes.get(url);
+    if (node == null) {
+      throw new IllegalArgumentException(
+          "Unknown KMS " + url + ". Known urls are " + nodes.keySet());
+    }
+    return node;
+  }
+
+  /**
+   * Stops probing nodes.
+   */
+  public void close() {
+
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+
+    List<Node> toClose;
+    synchronized (this) {
+      toClose = new ArrayList<>(nodes.values());
+    }
+
+    for (Node node : toClose) {
+      synchronized (node) {
+        destroyProbeClient(node);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal;
+
+/**
+ * Classes of a module, generated at build time with the module code. Indexes are found with a
+ * {@link java.util.ServiceLoader}, or by name ({@code org.kurento.module.<Module>ModuleIndex})
+ * the first time a class of the module is needed, so classes don't have to be looked up by
+ * reflection on the request path.
+ */
+public interface ModuleIndex {
+
+  /**
+   * Returns the name used in {@link ModuleName} and in the {@code __module__} property of complex
+   * types.
+   */
+  String getModuleName();
+
+  String getPackageName();
+
+  /**
+   * Returns the simple names of the remote class interfaces.
+   */
+  String[] getRemoteClasses();
+
+  /**
+   * Returns the simple names of the complex types that are not enums.
+   */
+  String[] getComplexTypes();
+
+  /**
+   * Returns the simple names of the event classes.
+   */
+  String[] getEvents();
+
+}
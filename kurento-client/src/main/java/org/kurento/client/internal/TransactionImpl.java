@@ -22,14 +22,21 @@ import java.util.List;
 
 import org.kurento.client.Continuation;
 import org.kurento.client.Transaction;
+import org.kurento.client.TransactionMetrics;
 import org.kurento.client.internal.client.RomManager;
 import org.kurento.client.internal.client.operation.Operation;
 
 public class TransactionImpl implements Transaction {
 
+  /**
+   * Prefix of the refs of the objects created in a transaction until it is committed.
+   */
+  public static final String NEW_REF_PREFIX = "newref:";
+
   private List<Operation> operations = new ArrayList<>();
   private RomManager manager;
   private int objectRef = 0;
+  private volatile TransactionMetricsImpl metrics;
 
   public TransactionImpl(RomManager manager) {
     this.manager = manager;
@@ -41,16 +48,23 @@ public class TransactionImpl implements Transaction {
 
   @Override
   public void commit() {
-    manager.transaction(operations);
+    metrics = new TransactionMetricsImpl(operations.size());
+    manager.transaction(operations, metrics);
   }
 
   @Override
   public void commit(Continuation<Void> continuation) {
-    manager.transaction(operations, continuation);
+    metrics = new TransactionMetricsImpl(operations.size());
+    manager.transaction(operations, metrics, continuation);
+  }
+
+  @Override
+  public TransactionMetrics getMetrics() {
+    return metrics;
   }
 
   public String nextObjectRef() {
-    return "newref:" + objectRef++;
+    return NEW_REF_PREFIX + objectRef++;
   }
 
   @Override
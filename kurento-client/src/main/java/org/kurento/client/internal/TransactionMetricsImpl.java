@@ -0,0 +1,83 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.kurento.client.TransactionMetrics;
+
+public class TransactionMetricsImpl implements TransactionMetrics {
+
+  private final int numOperations;
+  private final long startTime = System.nanoTime();
+
+  // Attempts are sequential, so they are not updated concurrently
+  private volatile int numAttempts;
+  private volatile long latencyMillis = -1;
+  private volatile boolean committed;
+
+  public TransactionMetricsImpl(int numOperations) {
+    this.numOperations = numOperations;
+  }
+
+  public void attemptStarted() {
+    numAttempts++;
+  }
+
+  public void finished(boolean committed) {
+    this.committed = committed;
+    this.latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+  }
+
+  @Override
+  public int getNumOperations() {
+    return numOperations;
+  }
+
+  @Override
+  public int getNumAttempts() {
+    return numAttempts;
+  }
+
+  @Override
+  public int getNumRetries() {
+    return Math.max(0, numAttempts - 1);
+  }
+
+  @Override
+  public long getLatencyMillis() {
+    return latencyMillis;
+  }
+
+  @Override
+  public boolean isFinished() {
+    return latencyMillis >= 0;
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return committed;
+  }
+
+  @Override
+  public String toString() {
+    return "[operations=" + numOperations + ", attempts=" + numAttempts + ", latency="
+        + latencyMillis + "ms, committed=" + committed + "]";
+  }
+
+}
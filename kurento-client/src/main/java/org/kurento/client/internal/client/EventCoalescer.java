@@ -0,0 +1,174 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.kurento.jsonrpc.Props;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delays the dispatch of events of configured types to reduce the number of listener invocations.
+ * Events are grouped per object and event type during a window of the configured interval, that
+ * starts with the first event received. When the window ends:
+ * <ul>
+ * <li>In {@link Mode#LATEST} mode, only the last event of the window is dispatched.</li>
+ * <li>In {@link Mode#BATCH} mode, all events of the window are dispatched together to
+ * {@link RemoteObjectBatchEventListener}s, even if there is only one, and one by one to other
+ * listeners.</li>
+ * </ul>
+ *
+ * Coalesced events are dispatched from the coalescer thread.
+ */
+public class EventCoalescer {
+
+  private static final Logger log = LoggerFactory.getLogger(EventCoalescer.class);
+
+  public enum Mode {
+    LATEST, BATCH
+  }
+
+  private static class Policy {
+
+    private final Mode mode;
+    private final long interval;
+
+    private Policy(Mode mode, long interval) {
+      this.mode = mode;
+      this.interval = interval;
+    }
+  }
+
+  private static class Key {
+
+    private final RemoteObject object;
+    private final String type;
+
+    private Key(RemoteObject object, String type) {
+      this.object = object;
+      this.type = type;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(object) * 31 + type.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return object == other.object && type.equals(other.type);
+    }
+  }
+
+  private final ConcurrentHashMap<String, Policy> policies = new ConcurrentHashMap<>();
+
+  // Events of windows not finished yet
+  private final ConcurrentHashMap<Key, List<Props>> pending = new ConcurrentHashMap<>();
+
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "KurentoClient-eventCoalescer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  public void setPolicy(String eventType, Mode mode, long interval) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Coalescing interval must be positive");
+    }
+    policies.put(eventType, new Policy(mode, interval));
+  }
+
+  public void removePolicy(String eventType) {
+    policies.remove(eventType);
+  }
+
+  public boolean isCoalesced(String eventType) {
+    return policies.containsKey(eventType);
+  }
+
+  /**
+   * Stores the event to be dispatched when the window ends.
+   *
+   * @return false if events of this type are not coalesced, so it has to be dispatched by the
+   *         caller
+   */
+  public boolean submit(final RemoteObject object, final String type, Props data) {
+
+    final Policy policy = policies.get(type);
+    if (policy == null || scheduler.isShutdown()) {
+      return false;
+    }
+
+    final Key key = new Key(object, type);
+
+    synchronized (pending) {
+      List<Props> events = pending.get(key);
+      if (events != null) {
+        if (policy.mode == Mode.LATEST) {
+          events.clear();
+        }
+        events.add(data);
+        return true;
+      }
+      events = new ArrayList<>();
+      events.add(data);
+      pending.put(key, events);
+    }
+
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        List<Props> events;
+        synchronized (pending) {
+          events = pending.remove(key);
+        }
+        if (events != null && !events.isEmpty()) {
+          log.trace("Dispatching {} coalesced events {} of object {}", events.size(), type,
+              object.getObjectRef());
+          object.dispatchEvents(type, events, policy.mode == Mode.BATCH);
+        }
+      }
+    }, policy.interval, TimeUnit.MILLISECONDS);
+
+    return true;
+  }
+
+  /**
+   * Discards pending events and stops the coalescer thread.
+   */
+  public void destroy() {
+    scheduler.shutdownNow();
+    pending.clear();
+  }
+
+}
@@ -20,6 +20,8 @@ package org.kurento.client.internal.client;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 
@@ -325,6 +327,23 @@ public class RemoteObject {
 
   public void fireEvent(String type, Props data) {
 
+    EventCoalescer coalescer = manager.getEventCoalescer();
+    if (coalescer != null && coalescer.submit(this, type, data)) {
+      return;
+    }
+
+    dispatchEvents(type, Collections.singletonList(data), false);
+  }
+
+  /**
+   * Dispatches the events to the listeners of the type.
+   *
+   * @param batch
+   *          if true, listeners that accept batches receive all the events in a single call, even
+   *          if there is only one. Other listeners receive them one by one
+   */
+  void dispatchEvents(String type, List<Props> events, boolean batch) {
+
     Collection<RemoteObjectEventListener> typeListeners;
     synchronized (this.listeners) {
       typeListeners = new ArrayList<>(this.listeners.get(type));
@@ -336,13 +355,19 @@ public class RemoteObject {
 
       log.warn(
           "Received event with data {} in object {} but there is no listener registered for it",
-          data, this.getObjectRef());
+          events, this.getObjectRef());
 
     } else {
 
       for (RemoteObjectEventListener eventListener : typeListeners) {
         try {
-          eventListener.onEvent(type, data);
+          if (batch && eventListener instanceof RemoteObjectBatchEventListener) {
+            ((RemoteObjectBatchEventListener) eventListener).onEvents(type, events);
+          } else {
+            for (Props data : events) {
+              eventListener.onEvent(type, data);
+            }
+          }
         } catch (Exception e) {
           log.error("Exception executing event listener", e);
         }
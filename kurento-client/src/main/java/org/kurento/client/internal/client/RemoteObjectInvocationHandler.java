@@ -17,11 +17,11 @@
 
 package org.kurento.client.internal.client;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -29,6 +29,7 @@ import java.util.Set;
 
 import org.kurento.client.Continuation;
 import org.kurento.client.Event;
+import org.kurento.client.EventBatchListener;
 import org.kurento.client.EventListener;
 import org.kurento.client.KurentoObject;
 import org.kurento.client.Transaction;
@@ -180,12 +181,28 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
     String eventName = eventClass.getSimpleName().substring(0,
         eventClass.getSimpleName().length() - "Event".length());
 
-    RemoteObjectEventListener listener = new RemoteObjectEventListener() {
-      @Override
-      public void onEvent(String eventType, Props data) {
-        propagateEventTo(proxy, eventClass, data, (EventListener<?>) args[0]);
-      }
-    };
+    RemoteObjectEventListener listener;
+
+    if (args[0] instanceof EventBatchListener) {
+      listener = new RemoteObjectBatchEventListener() {
+        @Override
+        public void onEvent(String eventType, Props data) {
+          propagateEventTo(proxy, eventClass, data, (EventListener<?>) args[0]);
+        }
+
+        @Override
+        public void onEvents(String eventType, List<Props> data) {
+          propagateEventsTo(proxy, eventClass, data, (EventBatchListener<?>) args[0]);
+        }
+      };
+    } else {
+      listener = new RemoteObjectEventListener() {
+        @Override
+        public void onEvent(String eventType, Props data) {
+          propagateEventTo(proxy, eventClass, data, (EventListener<?>) args[0]);
+        }
+      };
+    }
 
     if (cont != null) {
       remoteObject.addEventListener(eventName, listener,
@@ -223,26 +240,44 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
 
     try {
 
-      log.debug("Event class '" + eventClass.getSimpleName() + " Data: " + data);
+      Event event = createEvent(object, eventClass, data);
 
-      Constructor<?> constructor = eventClass.getConstructors()[0];
+      ((EventListener) listener).onEvent(event);
 
-      data.add("source", ((KurentoObject) object).getId());
+    } catch (Exception e) {
+      log.error("Exception while processing event '" + eventClass.getSimpleName()
+          + "' with params '" + data + "'", e);
+    }
+  }
 
-      Object[] params = ParamsFlattener.getInstance().unflattenParams(
-          constructor.getParameterAnnotations(), constructor.getGenericParameterTypes(), data,
-          manager);
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  protected void propagateEventsTo(Object object, Class<? extends Event> eventClass,
+      List<Props> data, EventBatchListener<?> listener) {
 
-      Event event = (Event) constructor.newInstance(params);
+    try {
 
-      ((EventListener) listener).onEvent(event);
+      List<Event> events = new ArrayList<>(data.size());
+      for (Props eventData : data) {
+        events.add(createEvent(object, eventClass, eventData));
+      }
+
+      ((EventBatchListener) listener).onEvents(events);
 
     } catch (Exception e) {
-      log.error("Exception while processing event '" + eventClass.getSimpleName()
-          + "' with params '" + data + "'", e);
+      log.error("Exception while processing " + data.size() + " events '"
+          + eventClass.getSimpleName() + "'", e);
     }
   }
 
+  private Event createEvent(Object object, Class<? extends Event> eventClass, Props data) {
+
+    log.debug("Event class '" + eventClass.getSimpleName() + " Data: " + data);
+
+    data.add("source", ((KurentoObject) object).getId());
+
+    return (Event) ParamsFlattener.getInstance().unflattedComplexType(eventClass, data, manager);
+  }
+
   public RemoteObject getRemoteObject() {
     return remoteObject;
   }
@@ -0,0 +1,32 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.client;
+
+import org.kurento.jsonrpc.Props;
+
+/**
+ * Notified by {@link RomManager} when invocations and releases made with it succeed, both sync,
+ * async and in transactions. Params are not flattened (remote objects are KurentoObjects).
+ */
+public interface RomInvocationListener {
+
+  void onInvoked(String objectRef, String method, Props params);
+
+  void onReleased(String objectRef);
+
+}
@@ -19,10 +19,18 @@ package org.kurento.client.internal.client;
 
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.kurento.client.Continuation;
 import org.kurento.client.Transaction;
+import org.kurento.client.TransactionCommitPolicy;
 import org.kurento.client.internal.TransactionImpl;
+import org.kurento.client.internal.TransactionMetricsImpl;
 import org.kurento.client.internal.client.operation.MediaObjectCreationOperation;
 import org.kurento.client.internal.client.operation.Operation;
 import org.kurento.client.internal.transport.serialization.ObjectRefsManager;
@@ -40,6 +48,16 @@ public class RomManager implements ObjectRefsManager {
   private final RomClientObjectManager manager;
   private final RomClient client;
 
+  private final List<RomInvocationListener> invocationListeners = new CopyOnWriteArrayList<>();
+
+  // Created when the first coalescing policy is configured
+  private volatile EventCoalescer eventCoalescer;
+
+  private volatile TransactionCommitPolicy commitPolicy = new TransactionCommitPolicy();
+
+  // Created when the first asynchronous commit is retried
+  private ScheduledExecutorService retryScheduler;
+
   public RomManager(RomClient client) {
     this.client = client;
     this.manager = new RomClientObjectManager(client);
@@ -147,24 +165,64 @@ public class RomManager implements ObjectRefsManager {
   public void destroy() {
     log.debug("Closing RomManager");
     this.client.destroy();
+    if (eventCoalescer != null) {
+      eventCoalescer.destroy();
+    }
+    synchronized (this) {
+      if (retryScheduler != null) {
+        retryScheduler.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Returns the event coalescer of this manager, or null if events are not coalesced.
+   */
+  public EventCoalescer getEventCoalescer() {
+    return eventCoalescer;
+  }
+
+  public synchronized EventCoalescer getOrCreateEventCoalescer() {
+    if (eventCoalescer == null) {
+      eventCoalescer = new EventCoalescer();
+    }
+    return eventCoalescer;
   }
 
   public <E> E invoke(String objectRef, String methodName, Props params, Class<E> clazz) {
-    return client.invoke(objectRef, methodName, params, clazz);
+    E result = client.invoke(objectRef, methodName, params, clazz);
+    invoked(objectRef, methodName, params);
+    return result;
   }
 
   public Object invoke(String objectRef, String operationName, Props operationParams, Type type) {
-    return client.invoke(objectRef, operationName, operationParams, type);
+    Object result = client.invoke(objectRef, operationName, operationParams, type);
+    invoked(objectRef, operationName, operationParams);
+    return result;
   }
 
-  public Object invoke(String objectRef, String operationName, Props operationParams, Type type,
-      Continuation<?> cont) {
-    return client.invoke(objectRef, operationName, operationParams, type, cont);
+  @SuppressWarnings("unchecked")
+  public Object invoke(final String objectRef, final String operationName,
+      final Props operationParams, Type type, final Continuation<?> cont) {
+
+    if (invocationListeners.isEmpty()) {
+      return client.invoke(objectRef, operationName, operationParams, type, cont);
+    }
+
+    return client.invoke(objectRef, operationName, operationParams, type,
+        new DefaultContinuation<Object>(cont) {
+          @Override
+          public void onSuccess(Object result) throws Exception {
+            invoked(objectRef, operationName, operationParams);
+            ((Continuation<Object>) cont).onSuccess(result);
+          }
+        });
   }
 
   public void release(String objectRef) {
     client.release(objectRef);
     manager.releaseObject(objectRef);
+    released(objectRef);
   }
 
   public void release(final String objectRef, final Continuation<Void> cont) {
@@ -172,6 +230,7 @@ public class RomManager implements ObjectRefsManager {
       @Override
       public void onSuccess(Void result) {
         manager.releaseObject(objectRef);
+        released(objectRef);
         try {
           cont.onSuccess(null);
         } catch (Exception e) {
@@ -197,6 +256,38 @@ public class RomManager implements ObjectRefsManager {
     client.unsubscribe(objectRef, listenerRegistration, cont);
   }
 
+  public void addInvocationListener(RomInvocationListener listener) {
+    invocationListeners.add(listener);
+  }
+
+  public void removeInvocationListener(RomInvocationListener listener) {
+    invocationListeners.remove(listener);
+  }
+
+  /**
+   * Notifies invocation listeners that an invocation succeeded. Also called by operations of
+   * committed transactions.
+   */
+  public void invoked(String objectRef, String method, Props params) {
+    for (RomInvocationListener listener : invocationListeners) {
+      try {
+        listener.onInvoked(objectRef, method, params);
+      } catch (Exception e) {
+        log.warn("Exception in invocation listener", e);
+      }
+    }
+  }
+
+  private void released(String objectRef) {
+    for (RomInvocationListener listener : invocationListeners) {
+      try {
+        listener.onReleased(objectRef);
+      } catch (Exception e) {
+        log.warn("Exception in invocation listener", e);
+      }
+    }
+  }
+
   public void addRomEventHandler(RomEventHandler eventHandler) {
     client.addRomEventHandler(eventHandler);
   }
@@ -205,32 +296,162 @@ public class RomManager implements ObjectRefsManager {
     return manager;
   }
 
+  public TransactionCommitPolicy getCommitPolicy() {
+    return commitPolicy;
+  }
+
+  public void setCommitPolicy(TransactionCommitPolicy commitPolicy) {
+    this.commitPolicy = commitPolicy;
+  }
+
   public void transaction(List<Operation> operations) {
+    transaction(operations, new TransactionMetricsImpl(operations.size()));
+  }
+
+  public void transaction(List<Operation> operations, TransactionMetricsImpl metrics) {
+
     for (Operation op : operations) {
       op.setManager(this);
     }
-    client.transaction(operations);
+
+    TransactionCommitPolicy policy = commitPolicy;
+    boolean createsObjects = createsObjects(operations);
+
+    while (true) {
+      metrics.attemptStarted();
+      try {
+        client.transaction(operations);
+        committed(metrics);
+        return;
+      } catch (RuntimeException e) {
+        if (!policy.isRetryable(e, metrics.getNumAttempts(), createsObjects)) {
+          metrics.finished(false);
+          throw e;
+        }
+        long delay = retryDelay(policy, metrics, e);
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          metrics.finished(false);
+          throw e;
+        }
+      }
+    }
   }
 
-  public void transaction(final List<Operation> operations, final Continuation<Void> continuation) {
+  public void transaction(List<Operation> operations, Continuation<Void> continuation) {
+    transaction(operations, new TransactionMetricsImpl(operations.size()), continuation);
+  }
+
+  public void transaction(List<Operation> operations, TransactionMetricsImpl metrics,
+      Continuation<Void> continuation) {
 
     for (Operation op : operations) {
       op.setManager(this);
     }
 
+    try {
+      commitAttempt(operations, metrics, commitPolicy, createsObjects(operations), continuation);
+    } catch (RuntimeException e) {
+      metrics.finished(false);
+      throw e;
+    }
+  }
+
+  private void commitAttempt(final List<Operation> operations,
+      final TransactionMetricsImpl metrics, final TransactionCommitPolicy policy,
+      final boolean createsObjects, final Continuation<Void> continuation) {
+
+    metrics.attemptStarted();
+
     client.transaction(operations, new Continuation<Void>() {
       @Override
       public void onSuccess(Void result) throws Exception {
+        committed(metrics);
         continuation.onSuccess(null);
       }
 
       @Override
       public void onError(Throwable cause) throws Exception {
-        transaction(operations, continuation);
+
+        if (!policy.isRetryable(cause, metrics.getNumAttempts(), createsObjects)) {
+          metrics.finished(false);
+          continuation.onError(cause);
+          return;
+        }
+
+        Runnable retry = new Runnable() {
+          @Override
+          public void run() {
+            try {
+              commitAttempt(operations, metrics, policy, createsObjects, continuation);
+            } catch (RuntimeException e) {
+              // The transaction could not be sent, so the continuation will not be called
+              failed(metrics, continuation, e);
+            }
+          }
+        };
+
+        try {
+          getRetryScheduler().schedule(retry, retryDelay(policy, metrics, cause),
+              TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+          failed(metrics, continuation, cause);
+        }
       }
     });
   }
 
+  private void committed(TransactionMetricsImpl metrics) {
+    metrics.finished(true);
+    log.trace("Transaction committed {}", metrics);
+  }
+
+  private void failed(TransactionMetricsImpl metrics, Continuation<Void> continuation,
+      Throwable cause) {
+    metrics.finished(false);
+    try {
+      continuation.onError(cause);
+    } catch (Exception e) {
+      log.warn("[Continuation] error invoking onError implemented by client", e);
+    }
+  }
+
+  private long retryDelay(TransactionCommitPolicy policy, TransactionMetricsImpl metrics,
+      Throwable cause) {
+    long delay = policy.getBackoff(metrics.getNumAttempts());
+    log.debug("Retrying transaction of {} operations in {} ms (attempt {} failed: {})",
+        metrics.getNumOperations(), delay, metrics.getNumAttempts(), cause.getMessage());
+    return delay;
+  }
+
+  private static boolean createsObjects(List<Operation> operations) {
+    for (Operation op : operations) {
+      if (op instanceof MediaObjectCreationOperation) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private synchronized ScheduledExecutorService getRetryScheduler() {
+    if (retryScheduler == null) {
+      if (client.isClosed()) {
+        throw new RejectedExecutionException("Client closed");
+      }
+      retryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "KurentoClient-transactionRetry");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return retryScheduler;
+  }
+
   public RomClient getRomClient() {
     return client;
   }
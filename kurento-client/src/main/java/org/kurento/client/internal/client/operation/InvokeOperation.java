@@ -56,12 +56,19 @@ public class InvokeOperation extends Operation {
   @Override
   public void processResponse(Object result) {
 
+    manager.invoked(getObjectRef(kurentoObject), method, params);
+
     if (returnType != Void.class && returnType != void.class) {
 
       future.getFuture().set(FLATTENER.unflattenValue("return", returnType, result, manager));
     }
   }
 
+  @Override
+  public String getTargetObjectRef() {
+    return getObjectRef(kurentoObject);
+  }
+
   @Override
   public String getDescription() {
     return "Invoking method '" + method + "' in object " + getObjectRef(kurentoObject)
@@ -17,6 +17,7 @@
 
 package org.kurento.client.internal.client.operation;
 
+import org.kurento.client.KurentoObject;
 import org.kurento.client.TransactionExecutionException;
 import org.kurento.client.internal.client.RemoteObject;
 import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
@@ -49,6 +50,22 @@ public class MediaObjectCreationOperation extends Operation {
     remoteObject.setCreatedObjectRef((String) response);
   }
 
+  @Override
+  public String getTargetObjectRef() {
+    Object pipeline = constructorParams != null ? constructorParams.getProp("mediaPipeline") : null;
+    if (pipeline instanceof KurentoObject) {
+      return getObjectRef(pipeline);
+    }
+    return pipeline instanceof String ? (String) pipeline : null;
+  }
+
+  /**
+   * Returns the ref of the object created by this operation, once the response has been processed.
+   */
+  public String getCreatedObjectRef() {
+    return remoteObject != null ? remoteObject.getObjectRef() : null;
+  }
+
   @Override
   public String getDescription() {
     return "Object creation of type '" + className + "' with params " + constructorParams;
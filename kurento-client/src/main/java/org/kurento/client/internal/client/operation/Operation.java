@@ -62,6 +62,14 @@ public abstract class Operation {
     }
   }
 
+  /**
+   * Returns the ref of the object the operation is made on, or the ref of the media pipeline of the
+   * object it creates; null if there is none.
+   */
+  public String getTargetObjectRef() {
+    return null;
+  }
+
   public abstract String getDescription();
 
   public abstract void processResponse(Object response);
@@ -42,6 +42,10 @@ public class SubscriptionOperation extends Operation {
     return listenerSubscription;
   }
 
+  public KurentoObject getKurentoObject() {
+    return kurentoObject;
+  }
+
   @Override
   public RequestAndResponseType createRequest(RomClientJsonRpcClient romClientJsonRpcClient) {
 
@@ -55,6 +59,11 @@ public class SubscriptionOperation extends Operation {
     getRemoteObject(kurentoObject).addEventListener(eventType, listener);
   }
 
+  @Override
+  public String getTargetObjectRef() {
+    return getObjectRef(kurentoObject);
+  }
+
   @Override
   public String getDescription() {
     return "Event subscription of type " + eventType + " in object '" + getObjectRef(kurentoObject)
@@ -53,6 +53,11 @@ public class UnsubscriptionOperation extends Operation {
     // There is nothing to do here.
   }
 
+  @Override
+  public String getTargetObjectRef() {
+    return getObjectRef(kurentoObject);
+  }
+
   @Override
   public String getDescription() {
     return "Event " + listenerSubscription.getType() + " unsubscription";
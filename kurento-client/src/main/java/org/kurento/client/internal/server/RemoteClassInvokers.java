@@ -0,0 +1,152 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.server;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.kurento.client.internal.ParamAnnotationUtils;
+import org.kurento.client.internal.RemoteClass;
+
+/**
+ * Constructor and methods of a remote class, resolved once so that {@link RomServer} doesn't use
+ * reflection on every create and invoke. Invokers are MethodHandles that take their params as an
+ * Object[], and keep the param names and generic types needed to unflatten them. Each one is
+ * resolved the first time it is used, so a method that can't be accessed only makes its own
+ * invocations fail.
+ */
+class RemoteClassInvokers {
+
+  static class Invoker {
+
+    private final MethodHandle handle;
+    private final String[] paramNames;
+    private final Type[] paramTypes;
+
+    private Invoker(MethodHandle handle, List<String> paramNames, Type[] paramTypes) {
+      int numParams = paramTypes.length;
+      this.handle = handle.asType(handle.type().generic()).asSpreader(Object[].class, numParams);
+      this.paramNames = paramNames.toArray(new String[numParams]);
+      this.paramTypes = paramTypes;
+    }
+
+    String[] getParamNames() {
+      return paramNames;
+    }
+
+    Type[] getParamTypes() {
+      return paramTypes;
+    }
+
+    Object newInstance(Object[] params) throws Throwable {
+      return handle.invoke(params);
+    }
+
+    Object invoke(Object target, Object[] params) throws Throwable {
+      return handle.invoke(target, params);
+    }
+  }
+
+  private final Class<?> clazz;
+  private final Constructor<?> constructor;
+  private final Map<String, Method> methods = new HashMap<>();
+
+  private volatile Invoker constructorInvoker;
+  private final ConcurrentHashMap<String, Invoker> methodInvokers = new ConcurrentHashMap<>();
+
+  RemoteClassInvokers(Class<?> clazz) {
+
+    this.clazz = clazz;
+
+    Constructor<?>[] constructors = clazz.getConstructors();
+    this.constructor = constructors.length > 0 ? constructors[0] : null;
+
+    for (Method method : clazz.getMethods()) {
+      // The first method found with a name is used, as overloading is not supported
+      if (!Modifier.isStatic(method.getModifiers()) && !methods.containsKey(method.getName())) {
+        methods.put(method.getName(), method);
+      }
+    }
+  }
+
+  boolean isRemoteClass() {
+    return clazz.getAnnotation(RemoteClass.class) != null;
+  }
+
+  Class<?> getRemoteClass() {
+    return clazz;
+  }
+
+  Invoker getConstructor() {
+
+    Invoker invoker = constructorInvoker;
+    if (invoker != null) {
+      return invoker;
+    }
+
+    if (constructor == null) {
+      throw new ProtocolException(
+          "Class '" + clazz.getSimpleName() + "' has no public constructor");
+    }
+
+    try {
+      invoker = new Invoker(MethodHandles.publicLookup().unreflectConstructor(constructor),
+          ParamAnnotationUtils.getParamNames(constructor), constructor.getGenericParameterTypes());
+    } catch (IllegalAccessException e) {
+      throw new ProtocolException(
+          "Constructor of class '" + clazz.getSimpleName() + "' is not accessible", e);
+    }
+
+    constructorInvoker = invoker;
+    return invoker;
+  }
+
+  Invoker getMethod(String methodName) {
+
+    Invoker invoker = methodInvokers.get(methodName);
+    if (invoker != null) {
+      return invoker;
+    }
+
+    Method method = methods.get(methodName);
+    if (method == null) {
+      throw new ProtocolException(
+          "Method '" + methodName + "' not found in class '" + clazz.getSimpleName() + "'");
+    }
+
+    try {
+      invoker = new Invoker(MethodHandles.publicLookup().unreflect(method),
+          ParamAnnotationUtils.getParamNames(method), method.getGenericParameterTypes());
+    } catch (IllegalAccessException e) {
+      throw new ProtocolException("Method '" + methodName + "' of class '"
+          + clazz.getSimpleName() + "' is not accessible", e);
+    }
+
+    Invoker oldInvoker = methodInvokers.putIfAbsent(methodName, invoker);
+    return oldInvoker != null ? oldInvoker : invoker;
+  }
+
+}
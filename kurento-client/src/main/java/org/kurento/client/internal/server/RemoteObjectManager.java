@@ -17,12 +17,11 @@
 
 package org.kurento.client.internal.server;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.kurento.client.internal.transport.serialization.ObjectRefsManager;
 import org.kurento.commons.SecretGenerator;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
-
 public class RemoteObjectManager implements ObjectRefsManager {
 
   // This class is used to control equals behavior of values in the biMap
@@ -60,30 +59,40 @@ public class RemoteObjectManager implements ObjectRefsManager {
   }
 
   private SecretGenerator secretGenerator = new SecretGenerator();
-  private BiMap<String, ObjectHolder> remoteObjects = HashBiMap.create();
+  // Both maps are updated without a common lock. An object is visible by reference before it is
+  // visible by identity, and the other way around when it is released
+  private final ConcurrentHashMap<String, ObjectHolder> remoteObjects = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<ObjectHolder, String> objectRefs = new ConcurrentHashMap<>();
 
   public String putObject(Object object) {
+
+    ObjectHolder holder = new ObjectHolder(object);
+
     String nextSecret;
     do {
       nextSecret = secretGenerator.nextSecret();
-    } while (remoteObjects.get(nextSecret) != null);
+    } while (remoteObjects.putIfAbsent(nextSecret, holder) != null);
 
-    remoteObjects.put(nextSecret, new ObjectHolder(object));
+    objectRefs.put(holder, nextSecret);
 
     return nextSecret;
   }
 
   @Override
   public Object getObject(String objectRef) {
-    return remoteObjects.get(objectRef).getObject();
+    ObjectHolder holder = remoteObjects.get(objectRef);
+    return holder != null ? holder.getObject() : null;
   }
 
   public void releaseObject(String objectRef) {
-    this.remoteObjects.remove(objectRef);
+    ObjectHolder holder = this.remoteObjects.remove(objectRef);
+    if (holder != null) {
+      objectRefs.remove(holder, objectRef);
+    }
   }
 
   public String getObjectRefFrom(Object object) {
-    return remoteObjects.inverse().get(new ObjectHolder(object));
+    return objectRefs.get(new ObjectHolder(object));
   }
 
 }
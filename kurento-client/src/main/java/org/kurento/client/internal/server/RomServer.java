@@ -17,11 +17,10 @@
 
 package org.kurento.client.internal.server;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.kurento.client.internal.RemoteClass;
+import org.kurento.client.internal.server.RemoteClassInvokers.Invoker;
 import org.kurento.client.internal.transport.serialization.ParamsFlattener;
 import org.kurento.commons.exception.KurentoException;
 import org.kurento.jsonrpc.Props;
@@ -35,6 +34,10 @@ public class RomServer {
   private final String packageName;
   private final String classSuffix;
 
+  private final ConcurrentHashMap<String, Class<?>> classesByType = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Class<?>, RemoteClassInvokers> invokers =
+      new ConcurrentHashMap<>();
+
   public RomServer(String packageName, String classSuffix) {
     this.packageName = packageName;
     this.classSuffix = classSuffix;
@@ -44,23 +47,24 @@ public class RomServer {
 
     try {
 
-      Class<?> clazz = Class.forName(packageName + "." + remoteClassType + classSuffix);
+      RemoteClassInvokers classInvokers = getInvokers(resolveClass(remoteClassType));
 
-      if (clazz.getAnnotation(RemoteClass.class) == null) {
+      if (!classInvokers.isRemoteClass()) {
         throw new ProtocolException("Remote classes must be annotated with @RemoteClass");
       }
 
-      Constructor<?> constructor = clazz.getConstructors()[0];
+      Invoker constructor = classInvokers.getConstructor();
 
-      Object[] unflattenedConstParams = FLATTENER.unflattenParams(
-          constructor.getParameterAnnotations(), constructor.getGenericParameterTypes(),
-          constructorParams, manager);
+      Object[] unflattenedConstParams = FLATTENER.unflattenParams(constructor.getParamNames(),
+          constructor.getParamTypes(), constructorParams, manager);
 
       Object object = constructor.newInstance(unflattenedConstParams);
 
       return manager.putObject(object);
 
-    } catch (Exception e) {
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable e) {
       // TODO Improve exception reporting
       throw new ProtocolException("Exception while creating an object with remoteClass='"
           + remoteClassType + "' and params=" + constructorParams, e);
@@ -84,16 +88,18 @@ public class RomServer {
 
     try {
 
-      Method method = getMethod(remoteObjClass, methodName);
+      Invoker method = getInvokers(remoteObjClass).getMethod(methodName);
 
-      Object[] unflattenParams = FLATTENER.unflattenParams(method.getParameterAnnotations(),
-          method.getGenericParameterTypes(), params, manager);
+      Object[] unflattenParams = FLATTENER.unflattenParams(method.getParamNames(),
+          method.getParamTypes(), params, manager);
 
       Object result = method.invoke(remoteObject, unflattenParams);
 
       return FLATTENER.flattenResult(result, manager);
 
-    } catch (Exception e) {
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable e) {
       // TODO Improve exception reporting
       throw new ProtocolException("Invocation exception of object with remoteClass='"
           + remoteObjClass.getSimpleName() + "', method=" + methodName + " and params=" + params,
@@ -101,14 +107,25 @@ public class RomServer {
     }
   }
 
-  private Method getMethod(Class<?> remoteObjClass, String methodName) {
-    for (Method method : remoteObjClass.getMethods()) {
-      if (method.getName().equals(methodName)) {
-        return method;
+  private Class<?> resolveClass(String remoteClassType) throws ClassNotFoundException {
+    Class<?> clazz = classesByType.get(remoteClassType);
+    if (clazz == null) {
+      clazz = Class.forName(packageName + "." + remoteClassType + classSuffix);
+      classesByType.put(remoteClassType, clazz);
+    }
+    return clazz;
+  }
+
+  private RemoteClassInvokers getInvokers(Class<?> clazz) {
+    RemoteClassInvokers classInvokers = invokers.get(clazz);
+    if (classInvokers == null) {
+      classInvokers = new RemoteClassInvokers(clazz);
+      RemoteClassInvokers oldInvokers = invokers.putIfAbsent(clazz, classInvokers);
+      if (oldInvokers != null) {
+        classInvokers = oldInvokers;
       }
     }
-    throw new ProtocolException("Method '" + methodName + "' not found in class '"
-        + remoteObjClass.getClass().getSimpleName() + "'");
+    return classInvokers;
   }
 
   public void release(String objectRef) {
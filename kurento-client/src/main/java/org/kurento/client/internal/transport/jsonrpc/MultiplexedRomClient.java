@@ -0,0 +1,159 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.transport.jsonrpc;
+
+import java.util.List;
+
+import org.kurento.client.Continuation;
+import org.kurento.client.internal.client.DefaultContinuation;
+import org.kurento.client.internal.client.RomEventHandler;
+import org.kurento.client.internal.client.operation.Operation;
+import org.kurento.client.internal.client.operation.SubscriptionOperation;
+import org.kurento.client.internal.client.operation.UnsubscriptionOperation;
+import org.kurento.client.internal.transport.serialization.ObjectRefsManager;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.client.JsonRpcClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rom client that sends its requests through a {@link JsonRpcClient} shared with other rom
+ * clients. Events are received from the {@link RomClientMultiplexer} that created it, and
+ * destroying this client doesn't close the shared connection.
+ */
+public class MultiplexedRomClient extends RomClientJsonRpcClient {
+
+  private static final Logger log = LoggerFactory.getLogger(MultiplexedRomClient.class);
+
+  private final RomClientMultiplexer multiplexer;
+
+  private volatile RomEventHandler eventHandler;
+
+  private volatile boolean closed;
+
+  MultiplexedRomClient(JsonRpcClient client, RomClientMultiplexer multiplexer) {
+    super(client);
+    this.multiplexer = multiplexer;
+  }
+
+  @Override
+  public String subscribe(final String objectRef, String eventType,
+      final Continuation<String> cont) {
+
+    if (cont == null) {
+      String subscription = super.subscribe(objectRef, eventType, null);
+      multiplexer.subscriptionCreated(subscription, objectRef, this);
+      return subscription;
+    }
+
+    return super.subscribe(objectRef, eventType, new DefaultContinuation<String>(cont) {
+      @Override
+      public void onSuccess(String subscription) throws Exception {
+        multiplexer.subscriptionCreated(subscription, objectRef, MultiplexedRomClient.this);
+        cont.onSuccess(subscription);
+      }
+    });
+  }
+
+  @Override
+  public void unsubscribe(String objectRef, String listenerSubscription, Continuation<Void> cont) {
+    multiplexer.subscriptionRemoved(listenerSubscription);
+    super.unsubscribe(objectRef, listenerSubscription, cont);
+  }
+
+  @Override
+  public void release(String objectRef, Continuation<Void> cont) {
+    multiplexer.objectReleased(objectRef, this);
+    super.release(objectRef, cont);
+  }
+
+  @Override
+  public void transaction(final List<Operation> operations, final Continuation<Void> continuation) {
+
+    if (continuation == null) {
+      super.transaction(operations, null);
+      transactionCommited(operations);
+      return;
+    }
+
+    super.transaction(operations, new DefaultContinuation<Void>(continuation) {
+      @Override
+      public void onSuccess(Void result) throws Exception {
+        transactionCommited(operations);
+        continuation.onSuccess(null);
+      }
+    });
+  }
+
+  private void transactionCommited(List<Operation> operations) {
+
+    // Released objects are notified through release(), called by the operation itself
+    for (Operation op : operations) {
+      if (op instanceof SubscriptionOperation) {
+        SubscriptionOperation subOp = (SubscriptionOperation) op;
+        multiplexer.subscriptionCreated(subOp.getListenerSubscription().getSubscriptionId(),
+            subOp.getKurentoObject().getId(), this);
+      } else if (op instanceof UnsubscriptionOperation) {
+        multiplexer.subscriptionRemoved(
+            ((UnsubscriptionOperation) op).getListenerSubscription().getSubscriptionId());
+      }
+    }
+  }
+
+  @Override
+  public void addRomEventHandler(RomEventHandler eventHandler) {
+    this.eventHandler = eventHandler;
+  }
+
+  boolean hasObject(String objectRef) {
+    RomEventHandler handler = eventHandler;
+    return handler instanceof ObjectRefsManager
+        && ((ObjectRefsManager) handler).getObject(objectRef) != null;
+  }
+
+  void fireEvent(String objectRef, String subscription, String type, Props data) {
+
+    RomEventHandler handler = eventHandler;
+
+    if (closed || handler == null) {
+      log.debug("Discarding event {} from object {} received in a closed rom client", type,
+          objectRef);
+      return;
+    }
+
+    handler.processEvent(objectRef, subscription, type, data);
+  }
+
+  @Override
+  public void destroy() {
+
+    if (closed) {
+      return;
+    }
+
+    log.debug("Destroying MultiplexedRomClient");
+    closed = true;
+    multiplexer.romClientDestroyed(this);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed || multiplexer.isClosed();
+  }
+
+}
@@ -184,7 +184,7 @@ public class RomClientJsonRpcClient implements RomClient {
     });
   }
 
-  private void processEvent(RomEventHandler eventHandler, Request<JsonObject> request) {
+  static void processEvent(RomEventHandler eventHandler, Request<JsonObject> request) {
 
     JsonObject params = request.getParams();
 
@@ -289,9 +289,8 @@ public class RomClientJsonRpcClient implements RomClient {
 
     if (operationParams != null) {
 
-      Props flatParams = ParamsFlattener.getInstance().flattenParams(operationParams, inTx);
-
-      params.add(INVOKE_OPERATION_PARAMS, JsonUtils.toJsonObject(flatParams));
+      params.add(INVOKE_OPERATION_PARAMS,
+          ParamsFlattener.getInstance().flattenParamsToJson(operationParams, inTx));
     }
 
     return new RequestAndResponseType(new Request<>(INVOKE_METHOD, params), type);
@@ -311,16 +310,14 @@ public class RomClientJsonRpcClient implements RomClient {
     params.addProperty(CREATE_TYPE, remoteClassName);
 
     if (constructorParams != null) {
-      Props flatParams = ParamsFlattener.getInstance().flattenParams(constructorParams, inTx);
-
-      params.add(CREATE_CONSTRUCTOR_PARAMS, JsonUtils.toJsonObject(flatParams));
+      params.add(CREATE_CONSTRUCTOR_PARAMS,
+          ParamsFlattener.getInstance().flattenParamsToJson(constructorParams, inTx));
     }
 
     if (genericProps != null) {
 
-      Props flatProperties = ParamsFlattener.getInstance().flattenParams(genericProps, inTx);
-
-      params.add(CREATE_PROPERTIES, JsonUtils.toJsonObject(flatProperties));
+      params.add(CREATE_PROPERTIES,
+          ParamsFlattener.getInstance().flattenParamsToJson(genericProps, inTx));
     }
 
     return new RequestAndResponseType(new Request<>(CREATE_METHOD, params), String.class);
@@ -373,7 +370,12 @@ public class RomClientJsonRpcClient implements RomClient {
       wrappedContinuation = new DefaultContinuation<List<Response<JsonElement>>>(continuation) {
         @Override
         public void onSuccess(List<Response<JsonElement>> responses) throws Exception {
-          processTransactionResponse(operations, opReqres, responses);
+          try {
+            processTransactionResponse(operations, opReqres, responses);
+          } catch (TransactionExecutionException e) {
+            continuation.onError(e);
+            return;
+          }
           continuation.onSuccess(null);
         }
       };
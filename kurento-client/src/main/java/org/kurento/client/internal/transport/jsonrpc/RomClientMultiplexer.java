@@ -0,0 +1,191 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.transport.jsonrpc;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.kurento.client.internal.client.RomEventHandler;
+import org.kurento.commons.exception.KurentoException;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClient;
+import org.kurento.jsonrpc.message.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Shares one {@link JsonRpcClient} among several {@link MultiplexedRomClient}s.
+ *
+ * Requests sent by each rom client are matched with their responses by the json-rpc client
+ * itself, so only events have to be demultiplexed. Events are routed to the rom client that
+ * created the subscription. If the subscription is not known yet (the event arrived before the
+ * subscribe response was processed), the event is delivered to the rom clients that have the
+ * source object registered.
+ */
+public class RomClientMultiplexer implements RomEventHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(RomClientMultiplexer.class);
+
+  private static class Subscription {
+
+    private final MultiplexedRomClient owner;
+    private final String objectRef;
+
+    private Subscription(MultiplexedRomClient owner, String objectRef) {
+      this.owner = owner;
+      this.objectRef = objectRef;
+    }
+  }
+
+  private final JsonRpcClient client;
+
+  private final CopyOnWriteArrayList<MultiplexedRomClient> romClients =
+      new CopyOnWriteArrayList<>();
+
+  private final ConcurrentHashMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+  private volatile boolean closed;
+
+  public RomClientMultiplexer(JsonRpcClient client) {
+
+    this.client = client;
+
+    this.client.setServerRequestHandler(new DefaultJsonRpcHandler<JsonObject>() {
+
+      @Override
+      public void handleRequest(Transaction transaction, Request<JsonObject> request)
+          throws Exception {
+        RomClientJsonRpcClient.processEvent(RomClientMultiplexer.this, request);
+      }
+    });
+  }
+
+  public JsonRpcClient getJsonRpcClient() {
+    return client;
+  }
+
+  public MultiplexedRomClient createRomClient() {
+
+    if (isClosed()) {
+      throw new KurentoException("Shared connection to KMS is already closed");
+    }
+
+    MultiplexedRomClient romClient = new MultiplexedRomClient(client, this);
+    romClients.add(romClient);
+    return romClient;
+  }
+
+  public int getNumRomClients() {
+    return romClients.size();
+  }
+
+  public int getNumSubscriptions() {
+    return subscriptions.size();
+  }
+
+  @Override
+  public void processEvent(String objectRef, String subscription, String type, Props data) {
+
+    Subscription sub = subscriptions.get(subscription);
+
+    if (sub != null) {
+      sub.owner.fireEvent(objectRef, subscription, type, data);
+      return;
+    }
+
+    boolean delivered = false;
+    for (MultiplexedRomClient romClient : romClients) {
+      if (romClient.hasObject(objectRef)) {
+        romClient.fireEvent(objectRef, subscription, type, data);
+        delivered = true;
+      }
+    }
+
+    if (!delivered) {
+      log.warn("Received event {} from object {} with unknown subscription {}. Discarding it",
+          type, objectRef, subscription);
+    }
+  }
+
+  void subscriptionCreated(String subscription, String objectRef, MultiplexedRomClient owner) {
+    if (subscription != null && !owner.isClosed()) {
+      subscriptions.put(subscription, new Subscription(owner, objectRef));
+    }
+  }
+
+  void subscriptionRemoved(String subscription) {
+    if (subscription != null) {
+      subscriptions.remove(subscription);
+    }
+  }
+
+  void objectReleased(String objectRef, MultiplexedRomClient owner) {
+    Iterator<Entry<String, Subscription>> it = subscriptions.entrySet().iterator();
+    while (it.hasNext()) {
+      Subscription sub = it.next().getValue();
+      if (sub.owner == owner && objectRef.equals(sub.objectRef)) {
+        it.remove();
+      }
+    }
+  }
+
+  void romClientDestroyed(MultiplexedRomClient romClient) {
+    romClients.remove(romClient);
+    Iterator<Subscription> it = subscriptions.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().owner == romClient) {
+        it.remove();
+      }
+    }
+  }
+
+  public boolean isClosed() {
+    return closed || client.isClosedByUser();
+  }
+
+  /**
+   * Closes the underlying {@link JsonRpcClient}. All rom clients created by this multiplexer are
+   * closed too.
+   */
+  public void close() {
+
+    if (closed) {
+      return;
+    }
+
+    log.debug("Closing shared connection with {} rom clients", romClients.size());
+
+    closed = true;
+    romClients.clear();
+    subscriptions.clear();
+
+    try {
+      client.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Exception while closing JsonRpcClient", e);
+    }
+  }
+
+}
@@ -0,0 +1,391 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.transport.jsonrpc;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kurento.client.Continuation;
+import org.kurento.client.KurentoObject;
+import org.kurento.client.internal.TransactionImpl;
+import org.kurento.client.internal.client.RomClient;
+import org.kurento.client.internal.client.RomEventHandler;
+import org.kurento.client.internal.client.operation.MediaObjectCreationOperation;
+import org.kurento.client.internal.client.operation.Operation;
+import org.kurento.client.internal.client.operation.ReleaseOperation;
+import org.kurento.client.internal.client.operation.SubscriptionOperation;
+import org.kurento.client.internal.client.operation.UnsubscriptionOperation;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.client.JsonRpcClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rom client that spreads requests over several connections to the same media server.
+ *
+ * All requests for objects of the same media pipeline are sent through the same connection, so
+ * they are executed in order. New pipelines are distributed round robin, and the connection that
+ * created each one is remembered until it is released. Objects created by other clients are
+ * assigned a connection by the hash of the ref of their pipeline. Transactions are sent through the connection of the objects they
+ * use. Subscriptions and events use the first (primary) connection, and so do the transactions
+ * with subscriptions or with objects of pipelines in different connections.
+ *
+ * Each connection is a separate session in the media server. Objects belong to the session of the
+ * connection that created them, and the media server only sends events to the session that
+ * subscribed to them; the sessions don't share anything else. If a connection is lost and can't
+ * recover its session, only the objects created through it are affected.
+ */
+public class StripedRomClient implements RomClient {
+
+  private static final Logger log = LoggerFactory.getLogger(StripedRomClient.class);
+
+  private static final String MEDIA_PIPELINE_PARAM = "mediaPipeline";
+
+  private final RomClientJsonRpcClient[] stripes;
+
+  private final AtomicInteger nextStripe = new AtomicInteger();
+
+  // Connection of the pipelines (or objects without pipeline) created through this client
+  private final ConcurrentHashMap<String, Integer> createdStripes = new ConcurrentHashMap<>();
+
+  public StripedRomClient(List<? extends JsonRpcClient> clients) {
+
+    if (clients.isEmpty()) {
+      throw new IllegalArgumentException("At least one JsonRpcClient is needed");
+    }
+
+    this.stripes = new RomClientJsonRpcClient[clients.size()];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new RomClientJsonRpcClient(clients.get(i));
+    }
+  }
+
+  public int getNumStripes() {
+    return stripes.length;
+  }
+
+  /**
+   * Returns the index of the connection used for requests to the given object.
+   */
+  public int getStripeIndex(String objectRef) {
+
+    if (objectRef == null || stripes.length == 1) {
+      return 0;
+    }
+
+    String key = getStripeKey(objectRef);
+    Integer index = createdStripes.get(key);
+    if (index != null) {
+      return index;
+    }
+
+    return (key.hashCode() & Integer.MAX_VALUE) % stripes.length;
+  }
+
+  /**
+   * Object refs of media elements are prefixed with the ref of their media pipeline. That prefix
+   * is used as key, so all objects of a pipeline share the same connection.
+   */
+  static String getStripeKey(String objectRef) {
+    int index = objectRef.indexOf('/');
+    return index == -1 ? objectRef : objectRef.substring(0, index);
+  }
+
+  private RomClientJsonRpcClient stripe(String objectRef) {
+    return stripes[getStripeIndex(objectRef)];
+  }
+
+  private RomClientJsonRpcClient primary() {
+    return stripes[0];
+  }
+
+  private int nextStripeIndex() {
+    return (nextStripe.getAndIncrement() & Integer.MAX_VALUE) % stripes.length;
+  }
+
+  private int getCreationStripeIndex(Props constructorParams) {
+
+    Object pipeline = constructorParams != null
+        ? constructorParams.getProp(MEDIA_PIPELINE_PARAM) : null;
+
+    if (pipeline instanceof KurentoObject) {
+      return getStripeIndex(((KurentoObject) pipeline).getId());
+    } else if (pipeline instanceof String) {
+      return getStripeIndex((String) pipeline);
+    }
+
+    // New pipelines (or objects without pipeline) are distributed round robin
+    return -1;
+  }
+
+  /**
+   * Remembers the connection that created a pipeline (or an object without pipeline), so the
+   * requests for it and its elements are sent through the same one.
+   */
+  private void objectCreated(String objectRef, int index) {
+    if (objectRef != null && stripes.length > 1) {
+      createdStripes.put(getStripeKey(objectRef), index);
+    }
+  }
+
+  private void objectReleased(String objectRef) {
+    if (objectRef != null && getStripeKey(objectRef).equals(objectRef)) {
+      createdStripes.remove(objectRef);
+    }
+  }
+
+  private void operationsExecuted(List<Operation> operations, int index) {
+    for (Operation operation : operations) {
+      if (operation instanceof MediaObjectCreationOperation) {
+        if (operation.getTargetObjectRef() == null) {
+          objectCreated(((MediaObjectCreationOperation) operation).getCreatedObjectRef(), index);
+        }
+      } else if (operation instanceof ReleaseOperation) {
+        objectReleased(operation.getTargetObjectRef());
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the connection a transaction is sent through: the one of the objects it
+   * uses, so it is executed in order with the rest of requests for them. Objects created in the
+   * transaction itself are not taken into account, as their refs are not known yet.
+   */
+  public int getStripeIndex(List<Operation> operations) {
+
+    int index = -1;
+
+    for (Operation operation : operations) {
+
+      if (operation instanceof SubscriptionOperation
+          || operation instanceof UnsubscriptionOperation) {
+        // Events are only received through the primary connection
+        return 0;
+      }
+
+      String objectRef = operation.getTargetObjectRef();
+      if (objectRef == null || objectRef.startsWith(TransactionImpl.NEW_REF_PREFIX)) {
+        continue;
+      }
+
+      int objectIndex = getStripeIndex(objectRef);
+      if (index == -1) {
+        index = objectIndex;
+      } else if (index != objectIndex) {
+        log.debug("Transaction with objects of several connections, sent through the primary one");
+        return 0;
+      }
+    }
+
+    return index;
+  }
+
+  private int getTransactionStripeIndex(List<Operation> operations) {
+    int index = getStripeIndex(operations);
+    // Transactions only creating new objects are distributed round robin, as new pipelines
+    return index != -1 ? index : nextStripeIndex();
+  }
+
+  // Operations
+
+  @Override
+  public String create(String remoteClassName, Props constructorParams, Props genericProps) {
+
+    int index = getCreationStripeIndex(constructorParams);
+    if (index != -1) {
+      return stripes[index].create(remoteClassName, constructorParams, genericProps);
+    }
+
+    index = nextStripeIndex();
+    String objectRef = stripes[index].create(remoteClassName, constructorParams, genericProps);
+    objectCreated(objectRef, index);
+    return objectRef;
+  }
+
+  @Override
+  public String create(String remoteClassName, Props constructorParams, Props genericProps,
+      final Continuation<String> cont) {
+
+    if (cont == null) {
+      return create(remoteClassName, constructorParams, genericProps);
+    }
+
+    int index = getCreationStripeIndex(constructorParams);
+    if (index != -1) {
+      return stripes[index].create(remoteClassName, constructorParams, genericProps, cont);
+    }
+
+    final int newIndex = nextStripeIndex();
+    return stripes[newIndex].create(remoteClassName, constructorParams, genericProps,
+        new Continuation<String>() {
+          @Override
+          public void onSuccess(String objectRef) throws Exception {
+            objectCreated(objectRef, newIndex);
+            cont.onSuccess(objectRef);
+          }
+
+          @Override
+          public void onError(Throwable cause) throws Exception {
+            cont.onError(cause);
+          }
+        });
+  }
+
+  @Override
+  public <E> E invoke(String objectRef, String methodName, Props params, Class<E> clazz) {
+    return stripe(objectRef).invoke(objectRef, methodName, params, clazz);
+  }
+
+  @Override
+  public Object invoke(String objectRef, String operationName, Props operationParams, Type type) {
+    return stripe(objectRef).invoke(objectRef, operationName, operationParams, type);
+  }
+
+  @Override
+  public Object invoke(String objectRef, String operationName, Props operationParams, Type type,
+      Continuation<?> cont) {
+    return stripe(objectRef).invoke(objectRef, operationName, operationParams, type, cont);
+  }
+
+  @Override
+  public void release(String objectRef) {
+    stripe(objectRef).release(objectRef);
+    objectReleased(objectRef);
+  }
+
+  @Override
+  public void release(final String objectRef, final Continuation<Void> cont) {
+
+    if (cont == null) {
+      release(objectRef);
+      return;
+    }
+
+    stripe(objectRef).release(objectRef, new Continuation<Void>() {
+      @Override
+      public void onSuccess(Void result) throws Exception {
+        objectReleased(objectRef);
+        cont.onSuccess(result);
+      }
+
+      @Override
+      public void onError(Throwable cause) throws Exception {
+        cont.onError(cause);
+      }
+    });
+  }
+
+  // Events are sent by the media server to the session that created the subscription
+
+  @Override
+  public String subscribe(String objectRef, String eventType) {
+    return primary().subscribe(objectRef, eventType);
+  }
+
+  @Override
+  public String subscribe(String objectRef, String type, Continuation<String> cont) {
+    return primary().subscribe(objectRef, type, cont);
+  }
+
+  @Override
+  public void unsubscribe(String objectRef, String listenerSubscription) {
+    primary().unsubscribe(objectRef, listenerSubscription);
+  }
+
+  @Override
+  public void unsubscribe(String objectRef, String listenerSubscription,
+      Continuation<Void> cont) {
+    primary().unsubscribe(objectRef, listenerSubscription, cont);
+  }
+
+  @Override
+  public void transaction(List<Operation> operations) {
+    int index = getTransactionStripeIndex(operations);
+    stripes[index].transaction(operations);
+    operationsExecuted(operations, index);
+  }
+
+  @Override
+  public void transaction(final List<Operation> operations,
+      final Continuation<Void> continuation) {
+
+    if (continuation == null) {
+      transaction(operations);
+      return;
+    }
+
+    final int index = getTransactionStripeIndex(operations);
+    stripes[index].transaction(operations, new Continuation<Void>() {
+      @Override
+      public void onSuccess(Void result) throws Exception {
+        operationsExecuted(operations, index);
+        continuation.onSuccess(result);
+      }
+
+      @Override
+      public void onError(Throwable cause) throws Exception {
+        continuation.onError(cause);
+      }
+    });
+  }
+
+  // Other methods
+
+  @Override
+  public void addRomEventHandler(RomEventHandler eventHandler) {
+    primary().addRomEventHandler(eventHandler);
+  }
+
+  @Override
+  public void destroy() {
+
+    log.debug("Destroying StripedRomClient with {} connections", stripes.length);
+
+    RuntimeException exception = null;
+    for (RomClientJsonRpcClient stripe : stripes) {
+      if (stripe.isClosed()) {
+        continue;
+      }
+      try {
+        stripe.destroy();
+      } catch (RuntimeException e) {
+        exception = e;
+      }
+    }
+
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  /**
+   * Returns true if all the connections are closed.
+   */
+  @Override
+  public boolean isClosed() {
+    for (RomClientJsonRpcClient stripe : stripes) {
+      if (!stripe.isClosed()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
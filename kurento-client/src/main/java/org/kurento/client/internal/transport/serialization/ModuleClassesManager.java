@@ -19,19 +19,147 @@ package org.kurento.client.internal.transport.serialization;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.kurento.client.internal.ModuleIndex;
 import org.kurento.client.internal.server.ProtocolException;
+import org.kurento.commons.exception.KurentoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ModuleClassesManager {
 
+  private static final Logger log = LoggerFactory.getLogger(ModuleClassesManager.class);
+
+  // Generated with the code of kurento-client itself, so they must always be found
+  private static final String[] KURENTO_MODULE_INDEXES = { "org.kurento.module.CoreModuleIndex",
+      "org.kurento.module.ElementsModuleIndex", "org.kurento.module.FiltersModuleIndex" };
+
   private final ConcurrentHashMap<String, String> pkgNamesByModuleName = new ConcurrentHashMap<>();
   private final ConcurrentHashMap<String, Class<?>> classesByClassName = new ConcurrentHashMap<>();
 
+  // Indexed by moduleName.typeName
+  private final ConcurrentHashMap<String, Class<?>> classesByTypeName = new ConcurrentHashMap<>();
+
+  private final List<ModuleIndex> indexes = new CopyOnWriteArrayList<>();
+
+  private volatile boolean indexesLoaded;
+
+  /**
+   * Registers the module indexes found in the classpath. Only the first call has effect.
+   *
+   * @throws KurentoException
+   *           if an index of the modules of kurento-client could not be loaded
+   */
+  public void loadIndexes() {
+
+    synchronized (indexes) {
+
+      if (indexesLoaded) {
+        return;
+      }
+      indexesLoaded = true;
+
+      Iterator<ModuleIndex> it = ServiceLoader.load(ModuleIndex.class).iterator();
+      while (true) {
+        try {
+          if (!it.hasNext()) {
+            break;
+          }
+          register(it.next());
+        } catch (ServiceConfigurationError e) {
+          log.warn("Module index could not be loaded", e);
+        }
+      }
+
+      for (String indexClassName : KURENTO_MODULE_INDEXES) {
+        if (!isRegistered(indexClassName)) {
+          throw new KurentoException("Module index " + indexClassName
+              + " could not be loaded. Check that the code generated for kurento-client and its "
+              + "META-INF/services entry are in the classpath");
+        }
+      }
+    }
+  }
+
+  private boolean isRegistered(String indexClassName) {
+    for (ModuleIndex index : indexes) {
+      if (index.getClass().getName().equals(indexClassName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Resolves all classes of the module, so they are not looked up when they are needed.
+   */
+  public void register(ModuleIndex index) {
+
+    String moduleName = index.getModuleName();
+    String packageName = index.getPackageName();
+    ClassLoader classLoader = index.getClass().getClassLoader();
+
+    pkgNamesByModuleName.put(moduleName, packageName);
+
+    int numClasses = 0;
+    for (String[] typeNames : new String[][] { index.getRemoteClasses(), index.getComplexTypes(),
+        index.getEvents() }) {
+      for (String typeName : typeNames) {
+        String className = packageName + "." + typeName;
+        try {
+          Class<?> clazz = Class.forName(className, false, classLoader);
+          classesByClassName.put(className, clazz);
+          classesByTypeName.put(moduleName + "." + typeName, clazz);
+          numClasses++;
+        } catch (ClassNotFoundException e) {
+          log.warn("Class {} of module index {} not found", className,
+              index.getClass().getName());
+        }
+      }
+    }
+
+    indexes.add(index);
+
+    log.debug("Registered {} classes of module {} from {}", numClasses, moduleName,
+        index.getClass().getName());
+  }
+
+  /**
+   * Returns the classes of the registered module indexes.
+   */
+  public List<Class<?>> getIndexedClasses() {
+    List<Class<?>> classes = new ArrayList<>();
+    for (ModuleIndex index : indexes) {
+      for (String[] typeNames : new String[][] { index.getRemoteClasses(),
+          index.getComplexTypes(), index.getEvents() }) {
+        for (String typeName : typeNames) {
+          Class<?> clazz = classesByTypeName.get(index.getModuleName() + "." + typeName);
+          if (clazz != null) {
+            classes.add(clazz);
+          }
+        }
+      }
+    }
+    return classes;
+  }
+
   public Class<?> getClassFor(String fullyTypeName) {
-    String[] parts = fullyTypeName.split("\\.");
-    return getClassFor(parts[0], parts[1]);
+
+    Class<?> clazz = classesByTypeName.get(fullyTypeName);
+    if (clazz != null) {
+      return clazz;
+    }
+
+    int dot = fullyTypeName.indexOf('.');
+    return getClassFor(fullyTypeName.substring(0, dot), fullyTypeName.substring(dot + 1));
   }
 
   public Class<?> getClassFor(String moduleName, String typeName) {
@@ -39,26 +167,38 @@ public class ModuleClassesManager {
     Objects.requireNonNull(typeName, "typeName must not be null");
     Objects.requireNonNull(moduleName, "moduleName must not be null");
 
+    String fullyTypeName = moduleName + "." + typeName;
+
+    Class<?> clazz = classesByTypeName.get(fullyTypeName);
+    if (clazz != null) {
+      return clazz;
+    }
+
     try {
 
       String packageName = pkgNamesByModuleName.get(moduleName);
 
       if (packageName == null) {
 
-        packageName = getPackageNameWithModuleInfoClass(moduleName);
-
-        pkgNamesByModuleName.put(moduleName, packageName);
+        if (registerIndexFor(moduleName)) {
+          packageName = pkgNamesByModuleName.get(moduleName);
+        } else {
+          packageName = getPackageNameWithModuleInfoClass(moduleName);
+          pkgNamesByModuleName.put(moduleName, packageName);
+        }
       }
 
       String className = packageName + "." + typeName;
 
-      Class<?> clazz = classesByClassName.get(className);
+      clazz = classesByClassName.get(className);
 
       if (clazz == null) {
         clazz = Class.forName(className);
         classesByClassName.put(className, clazz);
       }
 
+      classesByTypeName.put(fullyTypeName, clazz);
+
       return clazz;
 
     } catch (Exception e) {
@@ -67,6 +207,32 @@ public class ModuleClassesManager {
     }
   }
 
+  /**
+   * Registers the index of a module not found by {@link #loadIndexes()}, if it exists.
+   */
+  private boolean registerIndexFor(String moduleName) throws InstantiationException,
+      IllegalAccessException {
+
+    Class<?> indexClass;
+    try {
+      indexClass = Class.forName("org.kurento.module." + capitalize(moduleName) + "ModuleIndex");
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+
+    if (!ModuleIndex.class.isAssignableFrom(indexClass)) {
+      return false;
+    }
+
+    ModuleIndex index = (ModuleIndex) indexClass.newInstance();
+    if (!moduleName.equals(index.getModuleName())) {
+      return false;
+    }
+
+    register(index);
+    return true;
+  }
+
   private String getPackageNameWithModuleInfoClass(String moduleName) throws ClassNotFoundException,
       NoSuchMethodException, IllegalAccessException, InvocationTargetException {
 
@@ -78,12 +244,13 @@ public class ModuleClassesManager {
 
   private String getModuleInfoClassName(String moduleName) {
 
-    String moduleNameWithFirstUpper = moduleName.substring(0, 1).toUpperCase()
-        + moduleName.substring(1, moduleName.length());
-
-    String classPackageName = "org.kurento.module." + moduleNameWithFirstUpper + "ModuleInfo";
+    String classPackageName = "org.kurento.module." + capitalize(moduleName) + "ModuleInfo";
 
     return classPackageName;
   }
 
+  private String capitalize(String moduleName) {
+    return moduleName.substring(0, 1).toUpperCase() + moduleName.substring(1, moduleName.length());
+  }
+
 }
@@ -18,9 +18,13 @@
 package org.kurento.client.internal.transport.serialization;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
@@ -29,6 +33,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.kurento.client.TransactionNotCommitedException;
 import org.kurento.client.internal.ModuleName;
@@ -44,6 +49,12 @@ import org.kurento.jsonrpc.Props;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
 public class ParamsFlattener {
 
   private static final String MODULE_PROPERTY = "__module__";
@@ -51,8 +62,104 @@ public class ParamsFlattener {
 
   private static final Logger log = LoggerFactory.getLogger(ParamsFlattener.class);
 
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
   private final ModuleClassesManager moduleClassesManager = new ModuleClassesManager();
 
+  private final ConcurrentHashMap<Class<?>, FlattenPlan> flattenPlans = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Class<?>, UnflattenPlan> unflattenPlans =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Bean properties of a complex type, computed once per class. Getters are adapted to
+   * (Object)Object so they can be invoked without boxing arguments in an array.
+   */
+  private static class FlattenPlan {
+
+    private final String[] propNames;
+    private final MethodHandle[] getters;
+    private final String typeName;
+    private final String moduleName;
+
+    private FlattenPlan(Class<?> clazz) {
+
+      List<String> names = new ArrayList<>();
+      List<MethodHandle> handles = new ArrayList<>();
+
+      for (Method method : clazz.getMethods()) {
+
+        String propName = getPropName(method);
+        if (propName == null) {
+          continue;
+        }
+
+        try {
+          handles.add(MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE));
+          names.add(propName);
+        } catch (IllegalAccessException e) {
+          log.warn("Prop '{}' of class {} is not accessible", propName, clazz.getName(), e);
+        }
+      }
+
+      this.propNames = names.toArray(new String[names.size()]);
+      this.getters = handles.toArray(new MethodHandle[handles.size()]);
+      this.typeName = clazz.getSimpleName();
+
+      ModuleName name = clazz.getAnnotation(ModuleName.class);
+      this.moduleName = name != null ? name.value() : null;
+    }
+
+    private static String getPropName(Method method) {
+
+      if (method.getParameterTypes().length > 0 || Modifier.isStatic(method.getModifiers())) {
+        return null;
+      }
+
+      String methodName = method.getName();
+      String propName;
+      if (methodName.startsWith("is") && methodName.length() > 2) {
+        propName = methodName.substring(2, methodName.length());
+      } else if (methodName.startsWith("get") && methodName.length() > 3
+          && !methodName.equals("getClass")) {
+        propName = methodName.substring(3, methodName.length());
+      } else {
+        return null;
+      }
+
+      return Character.toLowerCase(propName.charAt(0)) + propName.substring(1);
+    }
+
+    private Object getValue(int index, Object object) {
+      try {
+        return getters[index].invoke(object);
+      } catch (Error e) {
+        throw e;
+      } catch (Throwable e) {
+        log.warn("Exception while accessing prop '{}' in param object: {}", propNames[index],
+            object, e);
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Constructor used to rebuild a complex type or an event and the names and types of its params,
+   * computed once per class.
+   */
+  private static class UnflattenPlan {
+
+    private final Constructor<?> constructor;
+    private final String[] paramNames;
+    private final Type[] paramTypes;
+
+    private UnflattenPlan(Class<?> clazz) {
+      this.constructor = clazz.getConstructors()[0];
+      List<String> names = ParamAnnotationUtils.getParamNames(constructor);
+      this.paramNames = names.toArray(new String[names.size()]);
+      this.paramTypes = constructor.getGenericParameterTypes();
+    }
+  }
+
   public enum RomType {
     VOID, INTEGER, BOOLEAN, FLOAT, DOUBLE, LONG, STRING, CT_ENUM, CT_REGISTER, LIST, REMOTE_CLASS, MAP
   }
@@ -119,6 +226,102 @@ public class ParamsFlattener {
     return properties;
   }
 
+  /**
+   * Flatten the parameter list directly to its JSON representation, without building intermediate
+   * Props objects. The result is the same as converting the result of
+   * {@link #flattenParams(Props, boolean)} to JSON.
+   *
+   * @param params
+   *          parameters
+   * @param inTx
+   *          if it is inside a transaction
+   * @return JSON object holding flattened params
+   */
+  public JsonObject flattenParamsToJson(Props params, boolean inTx) {
+
+    if (params == null) {
+      return null;
+    }
+
+    JsonObject json = new JsonObject();
+    for (Prop prop : params) {
+      addToJson(json, prop.getName(), prop.getValue(), inTx);
+    }
+    return json;
+  }
+
+  private void addToJson(JsonObject json, String name, Object value, boolean inTx) {
+    // Null properties are omitted, as Gson does when serializing Props
+    if (value != null) {
+      json.add(name, flattenParamToJson(value, inTx));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private JsonElement flattenParamToJson(Object param, boolean inTx) {
+
+    if (param == null) {
+      return JsonNull.INSTANCE;
+    } else if (param instanceof String) {
+      return new JsonPrimitive((String) param);
+    } else if (param instanceof Boolean) {
+      return new JsonPrimitive((Boolean) param);
+    } else if (param instanceof Number && isPrimitive(param)) {
+      return new JsonPrimitive((Number) param);
+    } else if (param instanceof RemoteObject || param instanceof Proxy) {
+      return new JsonPrimitive((String) flattenParam(param, inTx));
+    } else if (param instanceof Enum<?>) {
+      return new JsonPrimitive(param.toString());
+    } else if (param instanceof List<?>) {
+      JsonArray array = new JsonArray();
+      for (Object element : (List<?>) param) {
+        array.add(flattenParamToJson(element, inTx));
+      }
+      return array;
+    } else if (param instanceof Map<?, ?>) {
+      JsonObject json = new JsonObject();
+      for (Entry<String, ?> e : ((Map<String, ?>) param).entrySet()) {
+        addToJson(json, e.getKey(), e.getValue(), inTx);
+      }
+      return json;
+    } else if (param instanceof Props) {
+      return flattenParamsToJson((Props) param, inTx);
+    } else {
+      FlattenPlan plan = getFlattenPlan(param.getClass());
+      JsonObject json = new JsonObject();
+      for (int i = 0; i < plan.getters.length; i++) {
+        addToJson(json, plan.propNames[i], plan.getValue(i, param), inTx);
+      }
+      addToJson(json, TYPE_PROPERTY, plan.typeName, inTx);
+      addToJson(json, MODULE_PROPERTY, plan.moduleName, inTx);
+      return json;
+    }
+  }
+
+  private FlattenPlan getFlattenPlan(Class<?> clazz) {
+    FlattenPlan plan = flattenPlans.get(clazz);
+    if (plan == null) {
+      plan = new FlattenPlan(clazz);
+      FlattenPlan oldPlan = flattenPlans.putIfAbsent(clazz, plan);
+      if (oldPlan != null) {
+        plan = oldPlan;
+      }
+    }
+    return plan;
+  }
+
+  private UnflattenPlan getUnflattenPlan(Class<?> clazz) {
+    UnflattenPlan plan = unflattenPlans.get(clazz);
+    if (plan == null) {
+      plan = new UnflattenPlan(clazz);
+      UnflattenPlan oldPlan = unflattenPlans.putIfAbsent(clazz, plan);
+      if (oldPlan != null) {
+        plan = oldPlan;
+      }
+    }
+    return plan;
+  }
+
   /**
    * Flatten the parameter list to be sent to remote server using flattenParam method.
    *
@@ -245,33 +448,15 @@ public class ParamsFlattener {
   // this but with params instead result
   private Object extractResultAsProps(Object result, RemoteObjectManager manager) {
 
-    Map<String, Object> propsMap = new HashMap<>();
-    for (Method method : result.getClass().getMethods()) {
-
-      String propName = null;
-
-      String methodName = method.getName();
-      if (methodName.startsWith("is")) {
-        propName = methodName.substring(2, methodName.length());
-      } else if (methodName.startsWith("get") && !methodName.equals("getClass")) {
-        propName = methodName.substring(3, methodName.length());
-      }
-
-      if (propName != null) {
-        try {
-          propName = Character.toLowerCase(propName.charAt(0)) + propName.substring(1);
-          Object value = flattenResult(method.invoke(result), manager);
-          propsMap.put(propName, value);
+    FlattenPlan plan = getFlattenPlan(result.getClass());
 
-        } catch (Exception e) {
-          log.warn("Exception while accessing prop '{}' in param object: {}", propName, result, e);
-        }
-      }
+    Map<String, Object> propsMap = new HashMap<>();
+    for (int i = 0; i < plan.getters.length; i++) {
+      propsMap.put(plan.propNames[i], flattenResult(plan.getValue(i, result), manager));
     }
 
-    propsMap.put(TYPE_PROPERTY, result.getClass().getSimpleName());
-    ModuleName name = result.getClass().getAnnotation(ModuleName.class);
-    propsMap.put(MODULE_PROPERTY, name.value());
+    propsMap.put(TYPE_PROPERTY, plan.typeName);
+    propsMap.put(MODULE_PROPERTY, plan.moduleName);
 
     return new Props(propsMap);
   }
@@ -297,32 +482,14 @@ public class ParamsFlattener {
    */
   private Object extractParamAsProps(Object param, boolean inTx) {
 
-    Map<String, Object> propsMap = new HashMap<>();
-    for (Method method : param.getClass().getMethods()) {
-
-      String propName = null;
-
-      String methodName = method.getName();
-      if (methodName.startsWith("is")) {
-        propName = methodName.substring(2, methodName.length());
-      } else if (methodName.startsWith("get") && !methodName.equals("getClass")) {
-        propName = methodName.substring(3, methodName.length());
-      }
+    FlattenPlan plan = getFlattenPlan(param.getClass());
 
-      if (propName != null) {
-        try {
-          propName = Character.toLowerCase(propName.charAt(0)) + propName.substring(1);
-          Object value = flattenParam(method.invoke(param), inTx);
-          propsMap.put(propName, value);
-
-        } catch (Exception e) {
-          log.warn("Exception while accessing prop '{}' in param object: {}", propName, param, e);
-        }
-      }
+    Map<String, Object> propsMap = new HashMap<>();
+    for (int i = 0; i < plan.getters.length; i++) {
+      propsMap.put(plan.propNames[i], flattenParam(plan.getValue(i, param), inTx));
     }
-    propsMap.put(TYPE_PROPERTY, param.getClass().getSimpleName());
-    ModuleName name = param.getClass().getAnnotation(ModuleName.class);
-    propsMap.put(MODULE_PROPERTY, name.value());
+    propsMap.put(TYPE_PROPERTY, plan.typeName);
+    propsMap.put(MODULE_PROPERTY, plan.moduleName);
     return new Props(propsMap);
   }
 
@@ -338,18 +505,70 @@ public class ParamsFlattener {
       return null;
     }
 
+    String[] paramNames = new String[paramTypes.length];
+    for (int i = 0; i < paramTypes.length; i++) {
+      paramNames[i] = ParamAnnotationUtils.getParamAnnotation(paramAnnotations[i]).value();
+    }
+
+    return unflattenParams(paramNames, paramTypes, params, manager);
+  }
+
+  /**
+   * Unflatten params whose names have already been extracted from their {@code @Param}
+   * annotations.
+   */
+  public Object[] unflattenParams(String[] paramNames, Type[] paramTypes, Props params,
+      ObjectRefsManager manager) {
+
+    if (params == null) {
+      return null;
+    }
+
     Object[] returnParams = new Object[paramTypes.length];
 
     for (int i = 0; i < paramTypes.length; i++) {
-
-      String paramName = ParamAnnotationUtils.getParamAnnotation(paramAnnotations[i]).value();
-      Object value = params.getProp(paramName);
-      returnParams[i] = unflattenValue(paramName, paramTypes[i], value, manager);
+      Object value = params.getProp(paramNames[i]);
+      returnParams[i] = unflattenValue(paramNames[i], paramTypes[i], value, manager);
     }
 
     return returnParams;
   }
 
+  /**
+   * Registers the module indexes found in the classpath, so classes of those modules are not
+   * looked up when they are first needed.
+   */
+  public void loadModuleIndexes() {
+    moduleClassesManager.loadIndexes();
+  }
+
+  /**
+   * Prepares everything that is created the first time a class of the registered module indexes
+   * is used: proxy classes of remote classes and serialization plans of complex types and events.
+   *
+   * @return number of classes prepared
+   */
+  public int warmUp() {
+
+    int numClasses = 0;
+
+    for (Class<?> clazz : moduleClassesManager.getIndexedClasses()) {
+      try {
+        if (clazz.isInterface()) {
+          Proxy.getProxyClass(clazz.getClassLoader(), clazz);
+        } else {
+          getFlattenPlan(clazz);
+          getUnflattenPlan(clazz);
+        }
+        numClasses++;
+      } catch (Exception e) {
+        log.warn("Exception warming up class {}", clazz.getName(), e);
+      }
+    }
+
+    return numClasses;
+  }
+
   private Class<?> getOrCreateClass(Props props) {
 
     String typeName = (String) props.getProp(TYPE_PROPERTY);
@@ -425,23 +644,18 @@ public class ParamsFlattener {
         || clazz == Double.class || clazz == long.class || clazz == Long.class;
   }
 
-  private Object unflattedComplexType(Class<?> clazz, Props props, ObjectRefsManager manager) {
-
-    Constructor<?> constructor = clazz.getConstructors()[0];
-
-    Object[] constParams = new Object[constructor.getParameterTypes().length];
+  /**
+   * Creates an object of a complex type or event class with the values in props, that are passed
+   * to the params of its constructor with the same names.
+   */
+  public Object unflattedComplexType(Class<?> clazz, Props props, ObjectRefsManager manager) {
 
-    List<String> paramNames = ParamAnnotationUtils.getParamNames(constructor);
-    Class<?>[] constClasses = constructor.getParameterTypes();
+    UnflattenPlan plan = getUnflattenPlan(clazz);
 
-    for (int i = 0; i < constParams.length; i++) {
-      String paramName = paramNames.get(i);
-      constParams[i] = unflattenValue(paramName, constClasses[i], props.getProp(paramName),
-          manager);
-    }
+    Object[] constParams = unflattenParams(plan.paramNames, plan.paramTypes, props, manager);
 
     try {
-      return constructor.newInstance(constParams);
+      return plan.constructor.newInstance(constParams);
     } catch (Exception e) {
       throw new ProtocolException(
           "Exception while creating an object for the class '" + clazz.getSimpleName() + "'", e);
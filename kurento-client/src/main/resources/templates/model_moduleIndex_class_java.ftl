@@ -0,0 +1,48 @@
+${packageToFolder("org.kurento.module")}/${module.name?cap_first}ModuleIndex.java
+/**
+ * This file is generated with Kurento-maven-plugin.
+ * Please don't edit.
+ */
+package org.kurento.module;
+
+public class ${module.name?cap_first}ModuleIndex implements org.kurento.client.internal.ModuleIndex {
+
+	@Override
+	public String getModuleName() {
+		return <#if module.name=="core" || module.name=="elements" || module.name=="filters">"kurento"<#else>"${module.name}"</#if>;
+	}
+
+	@Override
+	public String getPackageName() {
+		return "${module.code.api.java.packageName}";
+	}
+
+	@Override
+	public String[] getRemoteClasses() {
+		return new String[] {
+<#list module.remoteClasses as remoteClass>
+			"${remoteClass.name}",
+</#list>
+		};
+	}
+
+	@Override
+	public String[] getComplexTypes() {
+		return new String[] {
+<#list module.complexTypes as complexType>
+<#if complexType.typeFormat == "REGISTER">
+			"${complexType.name}",
+</#if>
+</#list>
+		};
+	}
+
+	@Override
+	public String[] getEvents() {
+		return new String[] {
+<#list module.events as event>
+			"${event.name}Event",
+</#list>
+		};
+	}
+}
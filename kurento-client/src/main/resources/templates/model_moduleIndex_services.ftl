@@ -0,0 +1,10 @@
+<#if module.name != "elements" && module.name != "filters"><#rt>
+META-INF/services/org.kurento.client.internal.ModuleIndex
+<#if module.name == "core">
+org.kurento.module.CoreModuleIndex
+org.kurento.module.ElementsModuleIndex
+org.kurento.module.FiltersModuleIndex
+<#else>
+org.kurento.module.${module.name?cap_first}ModuleIndex
+</#if>
+</#if>
@@ -0,0 +1,134 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.kurento.client.StatsMetric.INBOUND_BITRATE;
+import static org.kurento.client.StatsMetric.INBOUND_BYTES;
+import static org.kurento.client.StatsMetric.INBOUND_PACKETS;
+import static org.kurento.client.StatsMetric.INBOUND_PACKETS_LOST;
+import static org.kurento.client.StatsMetric.INBOUND_PACKET_LOSS;
+import static org.kurento.client.StatsMetric.OUTBOUND_BITRATE;
+import static org.kurento.client.StatsMetric.OUTBOUND_BYTES;
+
+import org.junit.Test;
+
+public class StatsSeriesTest {
+
+  private static final double DELTA = 1e-9;
+
+  private static double[] sample(double inBytes, double inPackets, double inLost,
+      double outBytes) {
+    double[] sample = new double[StatsMetric.COUNT];
+    sample[INBOUND_BYTES.ordinal()] = inBytes;
+    sample[INBOUND_PACKETS.ordinal()] = inPackets;
+    sample[INBOUND_PACKETS_LOST.ordinal()] = inLost;
+    sample[OUTBOUND_BYTES.ordinal()] = outBytes;
+    return sample;
+  }
+
+  @Test
+  public void testRatesFromCounterDeltas() {
+
+    StatsSeries series = new StatsSeries("element", 10);
+
+    series.add(10000, sample(1000, 0, 0, 500));
+    assertEquals(0, series.getLast(INBOUND_BITRATE), DELTA);
+    assertEquals(0, series.getLast(OUTBOUND_BITRATE), DELTA);
+
+    // 250000 bytes received and 50000 sent in 2 seconds
+    series.add(12000, sample(251000, 0, 0, 50500));
+    assertEquals(1000000, series.getLast(INBOUND_BITRATE), DELTA);
+    assertEquals(200000, series.getLast(OUTBOUND_BITRATE), DELTA);
+    assertEquals(251000, series.getLast(INBOUND_BYTES), DELTA);
+
+    // Counters did not change
+    series.add(13000, sample(251000, 0, 0, 50500));
+    assertEquals(0, series.getLast(INBOUND_BITRATE), DELTA);
+    assertEquals(0, series.getLast(OUTBOUND_BITRATE), DELTA);
+
+    // Same timestamp: no rate can be computed
+    series.add(13000, sample(261000, 0, 0, 50500));
+    assertEquals(0, series.getLast(INBOUND_BITRATE), DELTA);
+  }
+
+  @Test
+  public void testCounterResetAndWrap() {
+
+    StatsSeries series = new StatsSeries("element", 10);
+
+    series.add(0, sample(1000000, 1000, 0, 4294967000.0));
+    series.add(1000, sample(2000000, 2000, 0, 4294967200.0));
+    assertEquals(8000000, series.getLast(INBOUND_BITRATE), DELTA);
+    assertEquals(1600, series.getLast(OUTBOUND_BITRATE), DELTA);
+
+    // Inbound counters reset (stream renegotiated), outbound 32 bit counter wrapped
+    series.add(2000, sample(100, 10, 0, 100));
+    assertEquals(0, series.getLast(INBOUND_BITRATE), DELTA);
+    assertEquals(0, series.getLast(OUTBOUND_BITRATE), DELTA);
+    assertEquals(0, series.getLast(INBOUND_PACKET_LOSS), DELTA);
+
+    // Rates are computed again from the new values
+    series.add(3000, sample(100100, 110, 0, 1100));
+    assertEquals(800000, series.getLast(INBOUND_BITRATE), DELTA);
+    assertEquals(8000, series.getLast(OUTBOUND_BITRATE), DELTA);
+  }
+
+  @Test
+  public void testPacketLoss() {
+
+    StatsSeries series = new StatsSeries("element", 10);
+
+    series.add(0, sample(0, 1000, 10, 0));
+    assertEquals(0, series.getLast(INBOUND_PACKET_LOSS), DELTA);
+
+    // 90 packets received and 10 lost
+    series.add(1000, sample(0, 1090, 20, 0));
+    assertEquals(0.1, series.getLast(INBOUND_PACKET_LOSS), DELTA);
+
+    // All packets lost
+    series.add(2000, sample(0, 1090, 70, 0));
+    assertEquals(1, series.getLast(INBOUND_PACKET_LOSS), DELTA);
+
+    // No packets
+    series.add(3000, sample(0, 1090, 70, 0));
+    assertEquals(0, series.getLast(INBOUND_PACKET_LOSS), DELTA);
+
+    double[] loss = new double[10];
+    assertEquals(4, series.copyValues(INBOUND_PACKET_LOSS, loss));
+    assertEquals(0.1, loss[1], DELTA);
+    assertEquals(1, loss[2], DELTA);
+  }
+
+  @Test
+  public void testOldestSamplesAreOverwritten() {
+
+    StatsSeries series = new StatsSeries("element", 3);
+
+    for (int i = 0; i < 5; i++) {
+      series.add(i * 1000, sample(i * 1000, 0, 0, 0));
+    }
+
+    assertEquals(3, series.size());
+    assertEquals(2000, series.getTimestamp(0));
+    assertEquals(4000, series.getLastTimestamp());
+    assertEquals(2000, series.getValue(INBOUND_BYTES, 0), DELTA);
+    assertEquals(8000, series.getLast(INBOUND_BITRATE), DELTA);
+  }
+
+}
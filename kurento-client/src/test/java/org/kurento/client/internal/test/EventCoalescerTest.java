@@ -0,0 +1,191 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.client.internal.client.EventCoalescer;
+import org.kurento.client.internal.client.RemoteObject;
+import org.kurento.client.internal.client.RemoteObjectBatchEventListener;
+import org.kurento.client.internal.client.RemoteObjectEventListener;
+import org.kurento.client.internal.client.RomManager;
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonObject;
+
+public class EventCoalescerTest {
+
+  private static class FakeServerHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      switch (request.getMethod()) {
+        case "create":
+          transaction.sendResponse("object");
+          break;
+        case "subscribe":
+          transaction.sendResponse("subscription");
+          break;
+        default:
+          transaction.sendResponse(null);
+      }
+    }
+  }
+
+  private static class RecordingListener implements RemoteObjectBatchEventListener {
+
+    private final List<Integer> events = new CopyOnWriteArrayList<>();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final CountDownLatch calls;
+
+    private RecordingListener(int expectedCalls) {
+      calls = new CountDownLatch(expectedCalls);
+    }
+
+    @Override
+    public void onEvent(String eventType, Props data) {
+      events.add((Integer) data.getProp("seq"));
+      calls.countDown();
+    }
+
+    @Override
+    public void onEvents(String eventType, List<Props> data) {
+      batchSizes.add(data.size());
+      for (Props props : data) {
+        events.add((Integer) props.getProp("seq"));
+      }
+      calls.countDown();
+    }
+
+    private void awaitCalls() throws InterruptedException {
+      assertTrue("Listener not called", calls.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+  private RomManager manager;
+  private RemoteObject object;
+
+  @Before
+  public void setup() {
+    manager = new RomManager(
+        new RomClientJsonRpcClient(new JsonRpcClientLocal(new FakeServerHandler())));
+    object = manager.create("SampleClass");
+  }
+
+  @After
+  public void teardown() {
+    manager.destroy();
+  }
+
+  private void fireEvents(String type, int num) {
+    for (int i = 0; i < num; i++) {
+      object.fireEvent(type, new Props("seq", i));
+    }
+  }
+
+  @Test
+  public void testLatestEventWins() throws InterruptedException {
+
+    manager.getOrCreateEventCoalescer().setPolicy("Flapping", EventCoalescer.Mode.LATEST, 100);
+
+    RecordingListener listener = new RecordingListener(1);
+    object.addEventListener("Flapping", listener);
+
+    fireEvents("Flapping", 10);
+    assertEquals(0, listener.events.size());
+
+    listener.awaitCalls();
+    assertEquals(1, listener.events.size());
+    assertEquals(0, listener.batchSizes.size());
+    assertEquals(9, (int) listener.events.get(0));
+  }
+
+  @Test
+  public void testEventsAreBatched() throws InterruptedException {
+
+    manager.getOrCreateEventCoalescer().setPolicy("Burst", EventCoalescer.Mode.BATCH, 100);
+
+    RecordingListener batchListener = new RecordingListener(1);
+    final List<Props> singleEvents = new CopyOnWriteArrayList<>();
+    final CountDownLatch singleEventsLatch = new CountDownLatch(5);
+
+    object.addEventListener("Burst", batchListener);
+    object.addEventListener("Burst", new RemoteObjectEventListener() {
+      @Override
+      public void onEvent(String eventType, Props data) {
+        singleEvents.add(data);
+        singleEventsLatch.countDown();
+      }
+    });
+
+    fireEvents("Burst", 5);
+
+    batchListener.awaitCalls();
+    assertTrue(singleEventsLatch.await(5, TimeUnit.SECONDS));
+    assertEquals(1, batchListener.batchSizes.size());
+    assertEquals(5, (int) batchListener.batchSizes.get(0));
+    assertEquals(5, batchListener.events.size());
+    assertEquals(5, singleEvents.size());
+  }
+
+  @Test
+  public void testSingleEventIsDeliveredAsBatch() throws InterruptedException {
+
+    manager.getOrCreateEventCoalescer().setPolicy("Burst", EventCoalescer.Mode.BATCH, 100);
+
+    RecordingListener listener = new RecordingListener(1);
+    object.addEventListener("Burst", listener);
+
+    fireEvents("Burst", 1);
+
+    listener.awaitCalls();
+    assertEquals(1, listener.batchSizes.size());
+    assertEquals(1, (int) listener.batchSizes.get(0));
+    assertEquals(1, listener.events.size());
+  }
+
+  @Test
+  public void testOtherEventsAreNotDelayed() {
+
+    manager.getOrCreateEventCoalescer().setPolicy("Burst", EventCoalescer.Mode.BATCH, 100);
+
+    RecordingListener listener = new RecordingListener(3);
+    object.addEventListener("Other", listener);
+
+    fireEvents("Other", 3);
+    assertEquals(3, listener.events.size());
+    assertEquals(0, listener.batchSizes.size());
+  }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kurento.client.internal.LoadBalancingKmsProvider;
+import org.kurento.client.internal.NotEnoughResourcesException;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.internal.server.config.JsonRpcConfiguration;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.server.JsonRpcConfigurer;
+import org.kurento.jsonrpc.server.JsonRpcHandlerRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+public class LoadBalancingKmsProviderTest {
+
+  /**
+   * Answers the requests of ServerManager used to probe the load of a KMS.
+   */
+  public static class FakeKmsHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private final int numPipelines;
+    private final long usedMemory;
+
+    public FakeKmsHandler(int numPipelines, long usedMemory) {
+      this.numPipelines = numPipelines;
+      this.usedMemory = usedMemory;
+    }
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      JsonObject result = new JsonObject();
+
+      if (request.getMethod().equals("invoke")) {
+
+        String operation = request.getParams().get("operation").getAsString();
+
+        if (operation.equals("getPipelines")) {
+          JsonArray pipelines = new JsonArray();
+          for (int i = 0; i < numPipelines; i++) {
+            pipelines.add(new JsonPrimitive("pipeline" + i + "_kurento.MediaPipeline"));
+          }
+          result.add("value", pipelines);
+        } else if (operation.equals("getUsedMemory")) {
+          result.addProperty("value", usedMemory);
+        }
+      }
+
+      transaction.sendResponse(result);
+    }
+  }
+
+  @Configuration
+  @ComponentScan(basePackageClasses = JsonRpcConfiguration.class)
+  @EnableAutoConfiguration
+  public static class BootTestApplication implements JsonRpcConfigurer {
+
+    @Override
+    public void registerJsonRpcHandlers(JsonRpcHandlerRegistry registry) {
+      registry.addHandler(new FakeKmsHandler(5, 2000), "/kms1");
+      registry.addHandler(new FakeKmsHandler(1, 1000), "/kms2");
+    }
+  }
+
+  private static ConfigurableApplicationContext context;
+
+  private static String kms1;
+  private static String kms2;
+  private static String deadKms;
+
+  @BeforeClass
+  public static void startServer() {
+
+    String port = getPort();
+
+    Properties properties = new Properties();
+    properties.put("server.port", port);
+
+    SpringApplication application = new SpringApplication(BootTestApplication.class);
+    application.setDefaultProperties(properties);
+    context = application.run();
+
+    kms1 = "ws://localhost:" + port + "/kms1";
+    kms2 = "ws://localhost:" + port + "/kms2";
+    deadKms = "ws://localhost:" + port + "/nonexistent";
+  }
+
+  @AfterClass
+  public static void stopServer() {
+    context.close();
+  }
+
+  protected static String getPort() {
+    String port = System.getProperty("http.port");
+    if (port == null) {
+      port = "7788";
+    }
+    return port;
+  }
+
+  private LoadBalancingKmsProvider createProvider(int maxLoadPoints, long maxUsedMemory) {
+    return new LoadBalancingKmsProvider(Arrays.asList(kms1, kms2, deadKms), 0, 3000, 1,
+        maxLoadPoints, 1, 1, maxUsedMemory);
+  }
+
+  @Test
+  public void testUnhealthyNodesAreRemoved() {
+
+    LoadBalancingKmsProvider provider = createProvider(Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    try {
+      provider.probe();
+
+      assertEquals(Arrays.asList(kms1, kms2), provider.getHealthyUrls());
+      assertEquals(5, provider.getNumPipelines(kms1));
+      assertEquals(1, provider.getNumPipelines(kms2));
+
+      for (int i = 0; i < 10; i++) {
+        String url = provider.reserveKms("client" + i);
+        assertFalse(url.equals(deadKms));
+      }
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testLeastLoadedNodeIsSelected() {
+
+    LoadBalancingKmsProvider provider = createProvider(Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    try {
+      provider.probe();
+
+      // kms1: 5 pipelines, kms2: 1 pipeline
+      assertEquals(kms2, provider.reserveKms("a", 3));
+      // Same load in both nodes, the one with less used memory is selected
+      assertEquals(kms2, provider.reserveKms("b", 1));
+      assertEquals(kms1, provider.reserveKms("c", 2));
+      assertEquals(4, provider.getReservedLoadPoints(kms2));
+      assertEquals(2, provider.getReservedLoadPoints(kms1));
+
+      provider.releaseKms("a");
+      assertEquals(1, provider.getReservedLoadPoints(kms2));
+      assertEquals(kms2, provider.reserveKms("d", 1));
+
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testLimits() {
+
+    LoadBalancingKmsProvider provider = createProvider(10, 1500);
+
+    try {
+      provider.probe();
+
+      // kms1 uses too much memory, so only kms2 (5 free load points) can be used
+      assertEquals(kms2, provider.reserveKms("a", 5));
+
+      try {
+        provider.reserveKms("b", 5);
+        fail("NotEnoughResourcesException should be thrown");
+      } catch (NotEnoughResourcesException e) {
+        // Expected
+      }
+
+      provider.releaseKms("a");
+      assertEquals(kms2, provider.reserveKms("b", 5));
+
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testNodesAreNotUsedUntilProbed() throws NotEnoughResourcesException {
+
+    LoadBalancingKmsProvider provider = createProvider(Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    try {
+      assertTrue(provider.getHealthyUrls().isEmpty());
+
+      // Probed before the first reservation
+      assertEquals(kms2, provider.reserveKms("a", 1));
+      assertEquals(Arrays.asList(kms1, kms2), provider.getHealthyUrls());
+
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testReservationsAreNotCountedTwice() throws NotEnoughResourcesException {
+
+    LoadBalancingKmsProvider provider = createProvider(Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    try {
+      provider.probe();
+
+      // kms1: 5 pipelines, kms2: 1 pipeline + 5 reserved points
+      assertEquals(kms2, provider.reserveKms("a", 5));
+      assertEquals(kms1, provider.reserveKms("b", 1));
+
+      // The pipelines of the reserved clients are counted from now on, but reserved points are
+      // still the minimum load: 5 points in both nodes, the one with less used memory is selected
+      provider.probe();
+      assertEquals(kms2, provider.reserveKms("c", 1));
+
+      // Still reserved until released
+      assertEquals(6, provider.getReservedLoadPoints(kms2));
+      provider.releaseKms("a");
+      assertEquals(1, provider.getReservedLoadPoints(kms2));
+      assertEquals(kms2, provider.reserveKms("d", 3));
+
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testReservedPointsAreCountedAfterProbes() throws NotEnoughResourcesException {
+
+    LoadBalancingKmsProvider provider = createProvider(10, 1500);
+
+    try {
+      provider.probe();
+
+      // kms2 has 1 pipeline. The client reserving 8 points creates fewer pipelines than that
+      assertEquals(kms2, provider.reserveKms("a", 8));
+      provider.probe();
+
+      try {
+        provider.reserveKms("b", 5);
+        fail("NotEnoughResourcesException should be thrown");
+      } catch (NotEnoughResourcesException e) {
+        // Expected
+      }
+
+      assertEquals(kms2, provider.reserveKms("b", 2));
+
+    } finally {
+      provider.close();
+    }
+  }
+
+}
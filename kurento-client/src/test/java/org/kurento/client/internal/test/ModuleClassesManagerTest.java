@@ -0,0 +1,99 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.internal.ModuleIndex;
+import org.kurento.client.internal.test.model.client.ComplexParam;
+import org.kurento.client.internal.test.model.client.SampleClass;
+import org.kurento.client.internal.test.model.client.SampleEnum;
+import org.kurento.client.internal.transport.serialization.ModuleClassesManager;
+
+public class ModuleClassesManagerTest {
+
+  @Test
+  public void testIndexIsFoundByModuleName() {
+
+    ModuleClassesManager manager = new ModuleClassesManager();
+
+    assertEquals(ComplexParam.class, manager.getClassFor("complexParam.ComplexParam"));
+
+    // The whole module was registered from org.kurento.module.ComplexParamModuleIndex
+    List<Class<?>> classes = manager.getIndexedClasses();
+    assertEquals(2, classes.size());
+    assertTrue(classes.contains(SampleClass.class));
+    assertTrue(classes.contains(ComplexParam.class));
+  }
+
+  @Test
+  public void testKurentoIndexesAreLoaded() {
+
+    ModuleClassesManager manager = new ModuleClassesManager();
+    manager.loadIndexes();
+
+    // Fails if the services entry generated with the indexes is missing
+    assertTrue(manager.getIndexedClasses().contains(MediaPipeline.class));
+    assertEquals(MediaPipeline.class, manager.getClassFor("kurento.MediaPipeline"));
+  }
+
+  @Test
+  public void testRegisteredIndex() {
+
+    ModuleClassesManager manager = new ModuleClassesManager();
+    manager.register(new ModuleIndex() {
+
+      @Override
+      public String getModuleName() {
+        return "test";
+      }
+
+      @Override
+      public String getPackageName() {
+        return "org.kurento.client.internal.test.model.client";
+      }
+
+      @Override
+      public String[] getRemoteClasses() {
+        return new String[] { "SampleClass", "NotFound" };
+      }
+
+      @Override
+      public String[] getComplexTypes() {
+        return new String[0];
+      }
+
+      @Override
+      public String[] getEvents() {
+        return new String[0];
+      }
+    });
+
+    assertEquals(1, manager.getIndexedClasses().size());
+    assertEquals(SampleClass.class, manager.getClassFor("test", "SampleClass"));
+
+    // Classes not in the index are found by package name
+    assertEquals(SampleEnum.class, manager.getClassFor("test.SampleEnum"));
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.kurento.client.internal.test.model.client.ComplexParam;
+import org.kurento.client.internal.test.model.client.SampleEnum;
+import org.kurento.client.internal.transport.serialization.ParamsFlattener;
+import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.Props;
+
+import com.google.gson.JsonObject;
+
+public class ParamsFlattenerTest {
+
+  private final ParamsFlattener flattener = ParamsFlattener.getInstance();
+
+  @Test
+  public void jsonFlattenIsEquivalentToPropsFlatten() {
+
+    ComplexParam param = new ComplexParam("XXX", 3);
+    param.setProp4(0.5f);
+
+    Props params = new Props("complex", param).add("list", Arrays.asList(param, null))
+        .add("map", Collections.singletonMap("key", SampleEnum.CONSTANT_1)).add("string", "YYY")
+        .add("integer", 7).add("long", 8L).add("boolean", true).add("null", null)
+        .add("props", new Props("nested", param));
+
+    JsonObject expected = JsonUtils.toJsonObject(flattener.flattenParams(params));
+
+    // Twice to use the cached plan of ComplexParam
+    assertEquals(expected, JsonUtils.toJsonObject(flattener.flattenParamsToJson(params, false)));
+    assertEquals(expected, JsonUtils.toJsonObject(flattener.flattenParamsToJson(params, false)));
+  }
+
+  @Test
+  public void complexTypeIsFlattenedWithTypeAndModule() {
+
+    JsonObject json = flattener.flattenParamsToJson(new Props("param", new ComplexParam("XXX", 3)),
+        false);
+
+    JsonObject param = json.getAsJsonObject("param");
+    assertEquals("XXX", param.get("prop1").getAsString());
+    assertEquals(3, param.get("prop2").getAsInt());
+    assertEquals("ComplexParam", param.get("__type__").getAsString());
+    assertEquals("complexParam", param.get("__module__").getAsString());
+    assertFalse(param.has("prop3"));
+    assertFalse(param.has("class"));
+  }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.client.internal.client.RemoteObject;
+import org.kurento.client.internal.client.RemoteObjectEventListener;
+import org.kurento.client.internal.client.RomManager;
+import org.kurento.client.internal.transport.jsonrpc.RomClientMultiplexer;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonObject;
+
+public class RomClientMultiplexerTest {
+
+  private static class CountingListener implements RemoteObjectEventListener {
+
+    private final AtomicInteger events = new AtomicInteger();
+
+    @Override
+    public void onEvent(String eventType, Props data) {
+      events.incrementAndGet();
+    }
+  }
+
+  private static class FakeServerHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private final AtomicInteger ids = new AtomicInteger();
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      switch (request.getMethod()) {
+        case "create":
+          transaction.sendResponse("object" + ids.incrementAndGet());
+          break;
+        case "subscribe":
+          transaction.sendResponse("subscription" + ids.incrementAndGet());
+          break;
+        default:
+          transaction.sendResponse(null);
+      }
+    }
+  }
+
+  private JsonRpcClientLocal client;
+  private RomClientMultiplexer multiplexer;
+
+  @Before
+  public void setup() {
+    client = new JsonRpcClientLocal(new FakeServerHandler());
+    multiplexer = new RomClientMultiplexer(client);
+  }
+
+  @Test
+  public void testObjectsAreIsolated() {
+
+    RomManager manager1 = new RomManager(multiplexer.createRomClient());
+    RomManager manager2 = new RomManager(multiplexer.createRomClient());
+
+    RemoteObject object1 = manager1.create("SampleClass");
+    RemoteObject object2 = manager2.create("SampleClass");
+
+    assertEquals(object1, manager1.getObjectManager().getRemoteObject(object1.getObjectRef()));
+    assertNull(manager1.getObjectManager().getRemoteObject(object2.getObjectRef()));
+    assertNull(manager2.getObjectManager().getRemoteObject(object1.getObjectRef()));
+  }
+
+  @Test
+  public void testEventsAreRoutedBySubscription() {
+
+    RomManager manager1 = new RomManager(multiplexer.createRomClient());
+    RomManager manager2 = new RomManager(multiplexer.createRomClient());
+
+    RemoteObject object1 = manager1.create("SampleClass");
+    // Same media object seen from the other client, as returned by getById
+    RemoteObject object2 = new RemoteObject(object1.getObjectRef(), "SampleClass", manager2);
+
+    CountingListener listener1 = new CountingListener();
+    CountingListener listener2 = new CountingListener();
+
+    String subscription1 = object1.addEventListener("Sample", listener1).getSubscriptionId();
+    String subscription2 = object2.addEventListener("Sample", listener2).getSubscriptionId();
+
+    multiplexer.processEvent(object1.getObjectRef(), subscription1, "Sample", new Props());
+    assertEquals(1, listener1.events.get());
+    assertEquals(0, listener2.events.get());
+
+    multiplexer.processEvent(object1.getObjectRef(), subscription2, "Sample", new Props());
+    assertEquals(1, listener1.events.get());
+    assertEquals(1, listener2.events.get());
+
+    // Unknown subscriptions are delivered to every client that has the object
+    multiplexer.processEvent(object1.getObjectRef(), "unknown", "Sample", new Props());
+    assertEquals(2, listener1.events.get());
+    assertEquals(2, listener2.events.get());
+  }
+
+  @Test
+  public void testDestroyOnlyDetachesClient() {
+
+    RomManager manager1 = new RomManager(multiplexer.createRomClient());
+    RomManager manager2 = new RomManager(multiplexer.createRomClient());
+
+    RemoteObject object2 = manager2.create("SampleClass");
+    CountingListener listener2 = new CountingListener();
+    String subscription2 = object2.addEventListener("Sample", listener2).getSubscriptionId();
+
+    assertEquals(2, multiplexer.getNumRomClients());
+    assertEquals(1, multiplexer.getNumSubscriptions());
+
+    manager2.destroy();
+
+    assertTrue(manager2.getRomClient().isClosed());
+    assertFalse(manager1.getRomClient().isClosed());
+    assertFalse(multiplexer.isClosed());
+    assertEquals(1, multiplexer.getNumRomClients());
+    assertEquals(0, multiplexer.getNumSubscriptions());
+
+    multiplexer.processEvent(object2.getObjectRef(), subscription2, "Sample", new Props());
+    assertEquals(0, listener2.events.get());
+
+    RemoteObject object1 = manager1.create("SampleClass");
+    assertEquals(object1, manager1.getObjectManager().getRemoteObject(object1.getObjectRef()));
+
+    multiplexer.close();
+
+    assertTrue(manager1.getRomClient().isClosed());
+  }
+
+  @Test
+  public void testReleaseRemovesSubscriptions() {
+
+    RomManager manager = new RomManager(multiplexer.createRomClient());
+
+    RemoteObject object = manager.create("SampleClass");
+    object.addEventListener("Sample", new CountingListener());
+    object.addEventListener("Other", new CountingListener());
+
+    assertEquals(2, multiplexer.getNumSubscriptions());
+
+    object.release();
+
+    assertEquals(0, multiplexer.getNumSubscriptions());
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.kurento.commons.PropertiesManager.getProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.kurento.client.internal.client.RomManager;
+import org.kurento.client.internal.server.RomServer;
+import org.kurento.client.internal.test.model.SampleRemoteClass;
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
+import org.kurento.client.internal.transport.jsonrpc.RomServerJsonRpcHandler;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Throughput of invocations of in-process remote objects, both calling {@link RomServer} directly
+ * and through a {@link RomManager} connected with a {@link JsonRpcClientLocal}. Defaults are small
+ * so it can run with the unit tests; use the properties to get meaningful numbers.
+ */
+public class RomServerBenchmarkTest {
+
+  private static final Logger log = LoggerFactory.getLogger(RomServerBenchmarkTest.class);
+
+  private static final String THREADS_PROP = "rom.benchmark.threads";
+  private static final int THREADS_DEFAULT = 4;
+  private static final String INVOCATIONS_PROP = "rom.benchmark.invocationsPerThread";
+  private static final int INVOCATIONS_DEFAULT = 2000;
+
+  private int numThreads = getProperty(THREADS_PROP, THREADS_DEFAULT);
+  private int invocationsPerThread = getProperty(INVOCATIONS_PROP, INVOCATIONS_DEFAULT);
+
+  @Test
+  public void romServerThroughput() throws Exception {
+
+    final RomServer server = new RomServer("org.kurento.client.internal.test.model", "Impl");
+
+    double invocationsPerSecond = measure(new Callable<Callable<Void>>() {
+      @Override
+      public Callable<Void> call() {
+        final String objectRef = server.create("SampleRemoteClass", new Props());
+        return new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < invocationsPerThread; i++) {
+              assertEquals(i,
+                  (int) server.invoke(objectRef, "methodParamInt", new Props("param", i),
+                      Integer.class));
+            }
+            return null;
+          }
+        };
+      }
+    });
+
+    log.info("RomServer: {} invocations/s", String.format("%.0f", invocationsPerSecond));
+  }
+
+  @Test
+  public void localClientThroughput() throws Exception {
+
+    final RomManager manager = new RomManager(new RomClientJsonRpcClient(new JsonRpcClientLocal(
+        new RomServerJsonRpcHandler("org.kurento.client.internal.test.model", "Impl"))));
+
+    try {
+
+      double invocationsPerSecond = measure(new Callable<Callable<Void>>() {
+        @Override
+        public Callable<Void> call() {
+          final SampleRemoteClass obj = new SampleRemoteClass.Builder(manager).build();
+          return new Callable<Void>() {
+            @Override
+            public Void call() {
+              for (int i = 0; i < invocationsPerThread; i++) {
+                assertEquals(i, obj.methodParamInt(i));
+              }
+              return null;
+            }
+          };
+        }
+      });
+
+      log.info("Local client: {} invocations/s", String.format("%.0f", invocationsPerSecond));
+
+    } finally {
+      manager.destroy();
+    }
+  }
+
+  /**
+   * Runs one task per thread, each one using its own object, and returns the invocations per
+   * second.
+   */
+  private double measure(Callable<Callable<Void>> taskFactory) throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+    try {
+
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        tasks.add(taskFactory.call());
+      }
+
+      // Warm up, so the first invocations of each method are not measured
+      tasks.get(0).call();
+
+      long start = System.nanoTime();
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      log.debug("{} threads: {} invocations in {} s", numThreads,
+          numThreads * invocationsPerThread, seconds);
+
+      return numThreads * invocationsPerThread / seconds;
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
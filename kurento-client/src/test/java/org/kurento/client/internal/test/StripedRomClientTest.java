@@ -0,0 +1,209 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.client.internal.TransactionImpl;
+import org.kurento.client.internal.client.operation.MediaObjectCreationOperation;
+import org.kurento.client.internal.client.operation.Operation;
+import org.kurento.client.internal.transport.jsonrpc.StripedRomClient;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonObject;
+
+public class StripedRomClientTest {
+
+  private static final int NUM_STRIPES = 4;
+
+  private static class CountingHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final int stripe;
+
+    private CountingHandler(int stripe) {
+      this.stripe = stripe;
+    }
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+      int id = requests.incrementAndGet();
+      if (request.getMethod().equals("create") || request.getMethod().equals("subscribe")) {
+        transaction.sendResponse("stripe" + stripe + "_ref" + id);
+      } else if (request.getMethod().equals("invoke")) {
+        JsonObject result = new JsonObject();
+        result.addProperty("value", "result" + id);
+        transaction.sendResponse(result);
+      } else {
+        transaction.sendResponse(null);
+      }
+    }
+  }
+
+  private List<CountingHandler> handlers;
+  private List<JsonRpcClientLocal> clients;
+  private StripedRomClient romClient;
+
+  @Before
+  public void setup() {
+    handlers = new ArrayList<>();
+    clients = new ArrayList<>();
+    for (int i = 0; i < NUM_STRIPES; i++) {
+      CountingHandler handler = new CountingHandler(i);
+      handlers.add(handler);
+      clients.add(new JsonRpcClientLocal(handler));
+    }
+    romClient = new StripedRomClient(clients);
+  }
+
+  @Test
+  public void testObjectsOfSamePipelineUseSameStripe() {
+
+    for (int i = 0; i < 100; i++) {
+      String pipeline = "pipeline" + i + "_kurento.MediaPipeline";
+      String element = pipeline + "/element" + i + "_kurento.WebRtcEndpoint";
+      assertEquals(romClient.getStripeIndex(pipeline), romClient.getStripeIndex(element));
+    }
+  }
+
+  @Test
+  public void testRequestsAreSentThroughObjectStripe() {
+
+    String pipeline = "pipeline_kurento.MediaPipeline";
+    int stripe = romClient.getStripeIndex(pipeline);
+
+    for (int i = 0; i < 10; i++) {
+      romClient.invoke(pipeline + "/element_kurento.PassThrough", "getName", null, String.class);
+    }
+    romClient.create("PassThrough", new Props("mediaPipeline", pipeline), null);
+
+    assertEquals(11, handlers.get(stripe).requests.get());
+  }
+
+  @Test
+  public void testSubscriptionsUsePrimaryStripe() {
+
+    for (int i = 0; i < 10; i++) {
+      romClient.subscribe("pipeline" + i + "_kurento.MediaPipeline", "Error");
+    }
+
+    assertEquals(10, handlers.get(0).requests.get());
+  }
+
+  @Test
+  public void testPipelinesAreDistributed() {
+
+    for (int i = 0; i < NUM_STRIPES * 10; i++) {
+      romClient.create("MediaPipeline", null, null);
+    }
+
+    for (CountingHandler handler : handlers) {
+      assertEquals(10, handler.requests.get());
+    }
+  }
+
+  @Test
+  public void testTransactionsUseStripeOfTheirObjects() {
+
+    String pipeline = findPipelineOutOfPrimaryStripe();
+
+    List<Operation> operations = new ArrayList<>();
+    operations.add(new MediaObjectCreationOperation("PassThrough",
+        new Props("mediaPipeline", pipeline), null, null));
+    operations.add(new MediaObjectCreationOperation("WebRtcEndpoint",
+        new Props("mediaPipeline", pipeline), null, null));
+    assertEquals(romClient.getStripeIndex(pipeline), romClient.getStripeIndex(operations));
+
+    // Objects created in the transaction don't count
+    operations.add(new MediaObjectCreationOperation("PassThrough",
+        new Props("mediaPipeline", TransactionImpl.NEW_REF_PREFIX + "0"), null, null));
+    assertEquals(romClient.getStripeIndex(pipeline), romClient.getStripeIndex(operations));
+
+    // Objects of several stripes can only be ordered with one of them
+    operations.add(new MediaObjectCreationOperation("PassThrough",
+        new Props("mediaPipeline", findPipelineInPrimaryStripe()), null, null));
+    assertEquals(0, romClient.getStripeIndex(operations));
+  }
+
+  @Test
+  public void testRequestsAreSentThroughStripeThatCreatedPipeline() {
+
+    for (int i = 0; i < NUM_STRIPES * 2; i++) {
+
+      String pipeline = romClient.create("MediaPipeline", null, null);
+      int stripe = Integer.parseInt(pipeline.substring("stripe".length(), pipeline.indexOf('_')));
+      int requests = handlers.get(stripe).requests.get();
+
+      romClient.invoke(pipeline, "getName", null, String.class);
+      romClient.create("PassThrough", new Props("mediaPipeline", pipeline), null);
+      romClient.invoke(pipeline + "/element_kurento.PassThrough", "getName", null, String.class);
+      romClient.release(pipeline);
+
+      assertEquals(requests + 4, handlers.get(stripe).requests.get());
+    }
+  }
+
+  @Test
+  public void testClosedOnlyIfAllStripesAreClosed() throws IOException {
+
+    assertFalse(romClient.isClosed());
+
+    clients.get(NUM_STRIPES - 1).close();
+    assertFalse(romClient.isClosed());
+
+    romClient.destroy();
+    assertTrue(romClient.isClosed());
+    for (JsonRpcClientLocal client : clients) {
+      assertTrue(client.isClosedByUser());
+    }
+  }
+
+  private String findPipelineOutOfPrimaryStripe() {
+    for (int i = 0;; i++) {
+      String pipeline = "pipeline" + i + "_kurento.MediaPipeline";
+      if (romClient.getStripeIndex(pipeline) != 0) {
+        return pipeline;
+      }
+    }
+  }
+
+  private String findPipelineInPrimaryStripe() {
+    for (int i = 0;; i++) {
+      String pipeline = "pipeline" + i + "_kurento.MediaPipeline";
+      if (romClient.getStripeIndex(pipeline) == 0) {
+        return pipeline;
+      }
+    }
+  }
+
+}
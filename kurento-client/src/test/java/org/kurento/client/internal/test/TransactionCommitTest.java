@@ -0,0 +1,272 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.client.Continuation;
+import org.kurento.client.TransactionCommitPolicy;
+import org.kurento.client.TransactionExecutionException;
+import org.kurento.client.TransactionMetrics;
+import org.kurento.client.internal.TransactionImpl;
+import org.kurento.client.internal.client.RomManager;
+import org.kurento.client.internal.client.operation.Operation;
+import org.kurento.client.internal.server.KurentoServerException;
+import org.kurento.client.internal.server.KurentoServerTransportException;
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient.RequestAndResponseType;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.JsonRpcException;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.ResponseError;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+public class TransactionCommitTest {
+
+  private static final int BUSY = 40001;
+  private static final int OPERATION_FAILED = 40000;
+
+  /**
+   * Answers the first {@code failures} transactions with an error, and executes the rest.
+   */
+  private static class FakeServerHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private final AtomicInteger numTransactions = new AtomicInteger();
+    private volatile int failures;
+    private volatile int errorCode = BUSY;
+    private volatile boolean failOperations;
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      if (!"transaction".equals(request.getMethod())) {
+        transaction.sendResponse(null);
+        return;
+      }
+
+      if (numTransactions.incrementAndGet() <= failures) {
+        transaction.sendError(new ResponseError(errorCode, "Server busy"));
+        return;
+      }
+
+      JsonArray responses = new JsonArray();
+      for (JsonElement op : request.getParams().getAsJsonArray("operations")) {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", op.getAsJsonObject().get("id"));
+        if (failOperations) {
+          JsonObject error = new JsonObject();
+          error.addProperty("code", OPERATION_FAILED);
+          error.addProperty("message", "Operation failed");
+          response.add("error", error);
+        } else {
+          response.add("result", new JsonObject());
+        }
+        responses.add(response);
+      }
+      transaction.sendResponse(responses);
+    }
+  }
+
+  private static class PingOperation extends Operation {
+
+    @Override
+    public RequestAndResponseType createRequest(RomClientJsonRpcClient client) {
+      return client.createInvokeRequest("object", "ping", null, Void.class, true);
+    }
+
+    @Override
+    public void processResponse(Object response) {
+    }
+
+    @Override
+    public String getDescription() {
+      return "ping";
+    }
+  }
+
+  private FakeServerHandler handler;
+  private RomManager manager;
+
+  @Before
+  public void setup() {
+    handler = new FakeServerHandler();
+    manager = new RomManager(new RomClientJsonRpcClient(new JsonRpcClientLocal(handler)));
+    manager.setCommitPolicy(new TransactionCommitPolicy().withMaxAttempts(3)
+        .withBackoff(10, 20).withRetryableCodes(BUSY));
+  }
+
+  @After
+  public void teardown() {
+    manager.destroy();
+  }
+
+  private TransactionImpl beginTransaction(int numOperations) {
+    TransactionImpl tx = new TransactionImpl(manager);
+    for (int i = 0; i < numOperations; i++) {
+      tx.addOperation(new PingOperation());
+    }
+    return tx;
+  }
+
+  @Test
+  public void testRetriedUntilCommitted() {
+
+    handler.failures = 2;
+
+    TransactionImpl tx = beginTransaction(5);
+    tx.commit();
+
+    TransactionMetrics metrics = tx.getMetrics();
+    assertTrue(metrics.isCommitted());
+    assertEquals(5, metrics.getNumOperations());
+    assertEquals(2, metrics.getNumRetries());
+    assertTrue(metrics.getLatencyMillis() >= 10);
+    assertEquals(3, handler.numTransactions.get());
+  }
+
+  @Test
+  public void testAsyncAttemptsAreLimited() throws InterruptedException {
+
+    handler.failures = Integer.MAX_VALUE;
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    TransactionImpl tx = beginTransaction(1);
+    tx.commit(new Continuation<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+        latch.countDown();
+      }
+
+      @Override
+      public void onError(Throwable cause) {
+        error.set(cause);
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(error.get() != null);
+    assertFalse(tx.getMetrics().isCommitted());
+    assertEquals(3, tx.getMetrics().getNumAttempts());
+
+    // No more attempts after the continuation is called
+    Thread.sleep(100);
+    assertEquals(3, handler.numTransactions.get());
+  }
+
+  @Test
+  public void testNotRetryableCode() {
+
+    handler.failures = 1;
+    handler.errorCode = OPERATION_FAILED;
+
+    TransactionImpl tx = beginTransaction(1);
+    try {
+      tx.commit();
+      fail("KurentoServerException should be thrown");
+    } catch (KurentoServerException e) {
+      assertEquals(OPERATION_FAILED, e.getCode());
+    }
+
+    assertEquals(1, handler.numTransactions.get());
+    assertEquals(0, tx.getMetrics().getNumRetries());
+  }
+
+  @Test
+  public void testFailedOperationsAreNotRetried() throws InterruptedException {
+
+    handler.failOperations = true;
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    beginTransaction(2).commit(new Continuation<Void>() {
+      @Override
+      public void onSuccess(Void result) {
+        latch.countDown();
+      }
+
+      @Override
+      public void onError(Throwable cause) {
+        error.set(cause);
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(error.get() instanceof TransactionExecutionException);
+    assertEquals(1, handler.numTransactions.get());
+  }
+
+  @Test
+  public void testPolicy() {
+
+    TransactionCommitPolicy policy =
+        new TransactionCommitPolicy().withMaxAttempts(5).withBackoff(100, 300);
+
+    assertEquals(100, policy.getBackoff(1));
+    assertEquals(200, policy.getBackoff(2));
+    assertEquals(300, policy.getBackoff(3));
+    assertEquals(300, policy.getBackoff(10));
+
+    Throwable transportError =
+        new KurentoServerTransportException("Error", new IOException("Connection reset"));
+
+    // Transport errors retries are opt-in
+    assertFalse(policy.isRetryable(transportError, 1, false));
+    policy.withTransportErrorRetries(true);
+
+    assertTrue(policy.isRetryable(transportError, 1, false));
+    assertFalse(policy.isRetryable(transportError, 5, false));
+
+    // The server may still be executing the transaction
+    Throwable timeout = new JsonRpcException("Timeout", new TimeoutException());
+    assertFalse(policy.isRetryable(timeout, 1, false));
+
+    // Objects could have been created in the server
+    assertFalse(policy.isRetryable(transportError, 1, true));
+
+    Throwable serverError = new KurentoServerException(new ResponseError(BUSY, "Busy"));
+    assertFalse(policy.isRetryable(serverError, 1, true));
+    policy.withRetryableCodes(BUSY);
+    assertTrue(policy.isRetryable(serverError, 1, true));
+  }
+
+}
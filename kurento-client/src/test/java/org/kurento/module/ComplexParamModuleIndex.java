@@ -0,0 +1,48 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.module;
+
+import org.kurento.client.internal.ModuleIndex;
+
+public class ComplexParamModuleIndex implements ModuleIndex {
+
+  @Override
+  public String getModuleName() {
+    return "complexParam";
+  }
+
+  @Override
+  public String getPackageName() {
+    return "org.kurento.client.internal.test.model.client";
+  }
+
+  @Override
+  public String[] getRemoteClasses() {
+    return new String[] { "SampleClass" };
+  }
+
+  @Override
+  public String[] getComplexTypes() {
+    return new String[] { "ComplexParam" };
+  }
+
+  @Override
+  public String[] getEvents() {
+    return new String[0];
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.test.benchmark;
+
+import static org.kurento.commons.PropertiesManager.getProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.PassThrough;
+import org.kurento.commons.testing.SystemFunctionalTests;
+import org.kurento.test.base.KurentoClientTest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of the requests per second that a single {@link KurentoClient} can send to KMS
+ * depending on the number of connections opened with {@link KurentoClient#createStriped}.
+ *
+ * @since 6.6.1
+ */
+@Category(SystemFunctionalTests.class)
+public class StripedConnectionsBenchmarkTest extends KurentoClientTest {
+
+  private final Logger log = LoggerFactory.getLogger(StripedConnectionsBenchmarkTest.class);
+
+  private static final String MAX_CONNECTIONS_PROP = "striped.maxConnections";
+  private static final int MAX_CONNECTIONS_DEFAULT = 8;
+  private static final String THREADS_PROP = "striped.threads";
+  private static final int THREADS_DEFAULT = 32;
+  private static final String REQUESTS_PROP = "striped.requestsPerThread";
+  private static final int REQUESTS_DEFAULT = 500;
+
+  private int maxConnections = getProperty(MAX_CONNECTIONS_PROP, MAX_CONNECTIONS_DEFAULT);
+  private int numThreads = getProperty(THREADS_PROP, THREADS_DEFAULT);
+  private int requestsPerThread = getProperty(REQUESTS_PROP, REQUESTS_DEFAULT);
+
+  @Test
+  public void test() throws Exception {
+
+    Map<Integer, Double> throughput = new LinkedHashMap<>();
+
+    for (int numConnections = 1; numConnections <= maxConnections; numConnections *= 2) {
+      throughput.put(numConnections, measure(numConnections));
+    }
+
+    for (Map.Entry<Integer, Double> entry : throughput.entrySet()) {
+      log.info("{} connections: {} requests/s", entry.getKey(),
+          String.format("%.0f", entry.getValue()));
+    }
+  }
+
+  private double measure(int numConnections) throws Exception {
+
+    final KurentoClient client = KurentoClient.createStriped(kms.getWsUri(), numConnections);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+    try {
+
+      // One pipeline per thread, so requests can be spread among connections
+      final List<PassThrough> elements = new ArrayList<>();
+      List<MediaPipeline> pipelines = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        MediaPipeline pipeline = client.createMediaPipeline();
+        pipelines.add(pipeline);
+        elements.add(new PassThrough.Builder(pipeline).build());
+      }
+
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        final PassThrough element = elements.get(i);
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int j = 0; j < requestsPerThread; j++) {
+              element.getName();
+            }
+            return null;
+          }
+        });
+      }
+
+      long start = System.nanoTime();
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      double requestsPerSecond = numThreads * requestsPerThread / seconds;
+      log.debug("{} connections: {} requests in {} s", numConnections,
+          numThreads * requestsPerThread, seconds);
+
+      for (MediaPipeline pipeline : pipelines) {
+        pipeline.release();
+      }
+
+      return requestsPerSecond;
+
+    } finally {
+      executor.shutdownNow();
+      client.destroy();
+    }
+  }
+
+}
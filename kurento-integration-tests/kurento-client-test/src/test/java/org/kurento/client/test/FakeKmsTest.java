@@ -0,0 +1,148 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.kurento.client.ElementConnectedEvent;
+import org.kurento.client.EventListener;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.PassThrough;
+import org.kurento.client.Transaction;
+import org.kurento.client.WebRtcEndpoint;
+import org.kurento.commons.exception.KurentoException;
+import org.kurento.test.fakekms.FakeKms;
+import org.kurento.test.fakekms.FakeKmsHandler;
+import org.kurento.test.fakekms.FakeKmsRule;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Checks that kurento-client works against {@link FakeKms}.
+ */
+public class FakeKmsTest {
+
+  @Rule
+  public FakeKmsRule fakeKms = new FakeKmsRule();
+
+  @Test
+  public void testObjectGraph() throws InterruptedException {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    FakeKmsHandler handler = fakeKms.getHandler();
+
+    MediaPipeline pipeline = kurento.createMediaPipeline();
+    PassThrough passThrough = new PassThrough.Builder(pipeline).build();
+    WebRtcEndpoint webRtc = new WebRtcEndpoint.Builder(pipeline).build();
+
+    assertEquals(3, handler.getNumObjects());
+    assertEquals(2, pipeline.getChildren().size());
+    assertEquals(1, kurento.getServerManager().getPipelines().size());
+
+    final CountDownLatch connected = new CountDownLatch(1);
+    passThrough.addElementConnectedListener(new EventListener<ElementConnectedEvent>() {
+      @Override
+      public void onEvent(ElementConnectedEvent event) {
+        connected.countDown();
+      }
+    });
+
+    passThrough.connect(webRtc);
+    assertTrue("ElementConnected event not received", connected.await(5, TimeUnit.SECONDS));
+    assertEquals(3, passThrough.getSinkConnections().size());
+
+    webRtc.setName("webRtc");
+    assertEquals("webRtc", webRtc.getName());
+    assertTrue(webRtc.processOffer("v=0").startsWith("v=0"));
+
+    pipeline.release();
+    assertEquals(0, handler.getNumObjects());
+    assertEquals(0, handler.getNumSubscriptions());
+  }
+
+  @Test
+  public void testTransaction() {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    MediaPipeline pipeline = kurento.createMediaPipeline();
+
+    Transaction tx = kurento.beginTransaction();
+    PassThrough passThrough1 = new PassThrough.Builder(pipeline).build(tx);
+    PassThrough passThrough2 = new PassThrough.Builder(pipeline).build(tx);
+    passThrough1.connect(passThrough2, tx);
+    tx.commit();
+
+    assertEquals(3, passThrough1.getSinkConnections().size());
+    assertEquals(3, fakeKms.getHandler().getNumObjects());
+  }
+
+  @Test
+  public void testSyntheticEvents() throws InterruptedException {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    FakeKmsHandler handler = fakeKms.getHandler();
+
+    MediaPipeline pipeline = kurento.createMediaPipeline();
+    PassThrough passThrough = new PassThrough.Builder(pipeline).build();
+
+    final AtomicInteger received = new AtomicInteger();
+    passThrough.addElementConnectedListener(new EventListener<ElementConnectedEvent>() {
+      @Override
+      public void onEvent(ElementConnectedEvent event) {
+        received.incrementAndGet();
+      }
+    });
+
+    JsonObject data = new JsonObject();
+    data.addProperty("sink", passThrough.getId());
+    data.addProperty("mediaType", "VIDEO");
+    handler.setEventData("ElementConnected", data);
+    handler.setEventRate("ElementConnected", 1000);
+    Thread.sleep(1000);
+    handler.setEventRate("ElementConnected", 0);
+
+    assertTrue("Only " + received.get() + " events received", received.get() > 500);
+  }
+
+  @Test
+  public void testInjectedErrors() {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    fakeKms.getHandler().setErrorProbability(1);
+
+    try {
+      kurento.createMediaPipeline();
+      fail("KurentoException should be thrown");
+    } catch (KurentoException e) {
+      // Expected
+    }
+
+    fakeKms.getHandler().setErrorProbability(0);
+    kurento.createMediaPipeline();
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipelinePool;
+import org.kurento.client.MediaPipelinePool.PooledPipeline;
+import org.kurento.client.PassThrough;
+import org.kurento.client.WebRtcEndpoint;
+import org.kurento.test.fakekms.FakeKmsRule;
+
+public class MediaPipelinePoolTest {
+
+  @Rule
+  public FakeKmsRule fakeKms = new FakeKmsRule();
+
+  @Test
+  public void testPipelinesAreHandedOutAndRefilled() throws InterruptedException {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    MediaPipelinePool pool = new MediaPipelinePool(kurento, 3)
+        .withElements(WebRtcEndpoint.class, WebRtcEndpoint.class, PassThrough.class);
+    pool.start();
+
+    waitForIdle(pool, 3);
+    assertEquals(12, fakeKms.getHandler().getNumObjects());
+
+    long requests = fakeKms.getHandler().getNumRequests();
+    PooledPipeline pooled = pool.acquire();
+
+    // Refilled with one transaction
+    waitForIdle(pool, 3);
+    assertEquals(requests + 1, fakeKms.getHandler().getNumRequests());
+
+    assertEquals(3, pooled.getElements().size());
+    assertTrue(pooled.getElement(WebRtcEndpoint.class, 1) instanceof WebRtcEndpoint);
+    assertEquals(pooled.getPipeline().getId(),
+        pooled.getElement(PassThrough.class, 0).getMediaPipeline().getId());
+
+    assertEquals(1, pool.getHits());
+    assertEquals(0, pool.getMisses());
+    assertEquals(1, pool.getHitRate(), 0);
+    assertTrue(pool.getLatencyPercentile(99) > 0);
+
+    pool.stop();
+    assertEquals(0, pool.getNumIdle());
+    assertEquals(4, fakeKms.getHandler().getNumObjects());
+  }
+
+  @Test
+  public void testPipelineIsCreatedWhenPoolIsEmpty() {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    MediaPipelinePool pool = new MediaPipelinePool(kurento, 1);
+
+    PooledPipeline pooled = pool.acquire();
+
+    assertEquals(0, pooled.getElements().size());
+    assertEquals(1, pool.getMisses());
+    assertEquals(0, pool.getHitRate(), 0);
+    assertEquals(1, fakeKms.getHandler().getNumObjects());
+  }
+
+  @Test
+  public void testIdlePipelinesAreReleased() throws InterruptedException {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    MediaPipelinePool pool = new MediaPipelinePool(kurento, 4).withIdleTimeout(500, 1);
+    pool.start();
+
+    waitForIdle(pool, 4);
+    waitForIdle(pool, 1);
+    assertEquals(1, fakeKms.getHandler().getNumObjects());
+
+    pool.stop();
+  }
+
+  @Test
+  public void testRefillIsRetriedWithBackoff() throws InterruptedException {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    fakeKms.getHandler().setErrorProbability(1);
+
+    long initialRequests = fakeKms.getHandler().getNumRequests();
+    MediaPipelinePool pool = new MediaPipelinePool(kurento, 2);
+    pool.start();
+
+    Thread.sleep(1000);
+    assertEquals(0, pool.getNumIdle());
+    // Two transactions on start and on each retry, after 100, 200 and 400 ms
+    long requests = fakeKms.getHandler().getNumRequests() - initialRequests;
+    assertTrue("Too many attempts to refill the pool: " + requests, requests <= 10);
+
+    fakeKms.getHandler().setErrorProbability(0);
+    waitForIdle(pool, 2);
+
+    pool.stop();
+  }
+
+  private void waitForIdle(MediaPipelinePool pool, int numIdle) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 5000;
+    while (pool.getNumIdle() != numIdle && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals(numIdle, pool.getNumIdle());
+  }
+
+}
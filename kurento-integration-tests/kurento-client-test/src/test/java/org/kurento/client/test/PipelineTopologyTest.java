@@ -0,0 +1,151 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaElement;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.MediaType;
+import org.kurento.client.PassThrough;
+import org.kurento.client.PipelineTopology;
+import org.kurento.client.Transaction;
+import org.kurento.test.fakekms.FakeKmsRule;
+
+public class PipelineTopologyTest {
+
+  @Rule
+  public FakeKmsRule fakeKms = new FakeKmsRule();
+
+  @Test
+  public void testTopologyIsSeededAndUpdated() {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    MediaPipeline pipeline = kurento.createMediaPipeline();
+    PassThrough a = new PassThrough.Builder(pipeline).build();
+    PassThrough b = new PassThrough.Builder(pipeline).build();
+    PassThrough c = new PassThrough.Builder(pipeline).build();
+    a.connect(b);
+
+    PipelineTopology topology = PipelineTopology.create(kurento, pipeline);
+
+    long requests = fakeKms.getHandler().getNumRequests();
+
+    assertEquals(3, topology.getChildren().size());
+    assertEquals(3, topology.getSinkConnections(a).size());
+    assertTrue(topology.isConnected(a, b));
+    assertEquals(b.getId(), topology.getSinks(a).get(0).getId());
+    assertEquals(a.getId(), topology.getSources(b).get(0).getId());
+
+    // Queries are answered locally
+    assertEquals(requests, fakeKms.getHandler().getNumRequests());
+
+    b.connect(c, MediaType.VIDEO);
+    assertEquals(1, topology.getSinkConnections(b).size());
+    assertEquals(1, topology.getSourceConnections(c).size());
+
+    Transaction tx = kurento.beginTransaction();
+    a.disconnect(b, tx);
+    tx.commit();
+    assertFalse(topology.isConnected(a, b));
+
+    c.release();
+    assertEquals(2, topology.getChildren().size());
+    assertEquals(0, topology.getSinkConnections(b).size());
+
+    topology.close();
+  }
+
+  @Test
+  public void testTopologyIsUpdatedWithEventsOfOtherClients() throws Exception {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    MediaPipeline pipeline = kurento.createMediaPipeline();
+    PipelineTopology topology = PipelineTopology.create(kurento, pipeline);
+
+    KurentoClient other = KurentoClient.create(fakeKms.getFakeKms().getWsUri());
+    try {
+      MediaPipeline otherPipeline = other.getById(pipeline.getId(), MediaPipeline.class);
+
+      // ObjectCreated
+      PassThrough a = new PassThrough.Builder(otherPipeline).build();
+      PassThrough b = new PassThrough.Builder(otherPipeline).build();
+      waitForChildren(topology, 2);
+
+      // ObjectCreated and ObjectDestroyed of the manager, and ElementConnected and
+      // ElementDisconnected of each element
+      waitForSubscriptions(6);
+
+      // ElementConnected
+      a.connect(b);
+      waitForSinkConnections(topology, a, 3);
+      assertTrue(topology.isConnected(a, b));
+
+      // ElementDisconnected
+      a.disconnect(b, MediaType.AUDIO);
+      waitForSinkConnections(topology, a, 2);
+      assertEquals(2, topology.getSourceConnections(b).size());
+      a.disconnect(b);
+      waitForSinkConnections(topology, a, 0);
+      assertFalse(topology.isConnected(a, b));
+
+      // ObjectDestroyed
+      b.release();
+      waitForChildren(topology, 1);
+      assertEquals(a.getId(), topology.getChildren().get(0).getId());
+    } finally {
+      other.destroy();
+    }
+
+    topology.close();
+  }
+
+  private void waitForChildren(PipelineTopology topology, int numChildren)
+      throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 5000;
+    while (topology.getChildren().size() != numChildren && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals(numChildren, topology.getChildren().size());
+  }
+
+  private void waitForSinkConnections(PipelineTopology topology, MediaElement element,
+      int numConnections) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 5000;
+    while (topology.getSinkConnections(element).size() != numConnections
+        && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals(numConnections, topology.getSinkConnections(element).size());
+  }
+
+  private void waitForSubscriptions(int numSubscriptions) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 5000;
+    while (fakeKms.getHandler().getNumSubscriptions() != numSubscriptions
+        && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals(numSubscriptions, fakeKms.getHandler().getNumSubscriptions());
+  }
+
+}
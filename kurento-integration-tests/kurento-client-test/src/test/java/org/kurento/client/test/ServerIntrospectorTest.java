@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.PassThrough;
+import org.kurento.client.ServerIntrospector;
+import org.kurento.client.ServerSnapshot;
+import org.kurento.client.ServerSnapshot.ObjectInfo;
+import org.kurento.test.fakekms.FakeKmsRule;
+
+public class ServerIntrospectorTest {
+
+  @Rule
+  public FakeKmsRule fakeKms = new FakeKmsRule();
+
+  @Test
+  public void testSnapshot() {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    PassThrough named = null;
+    for (int i = 0; i < 3; i++) {
+      MediaPipeline pipeline = kurento.createMediaPipeline();
+      for (int j = 0; j < 10; j++) {
+        named = new PassThrough.Builder(pipeline).build();
+      }
+    }
+    named.setName("named");
+
+    ServerSnapshot snapshot = new ServerIntrospector(kurento).withBatchSize(5)
+        .withParallelism(2).withProperties(ServerIntrospector.Property.NAME).takeSnapshot();
+
+    assertEquals(33, snapshot.size());
+    assertEquals(3, snapshot.getPipelines().size());
+
+    // 1 transaction for the pipelines and 6 for their 30 elements
+    assertEquals(7, snapshot.getNumTransactions());
+
+    ObjectInfo pipeline = snapshot.getPipelines().get(0);
+    assertEquals("MediaPipeline", pipeline.getType());
+    assertNull(pipeline.getParentId());
+    assertEquals(10, snapshot.getChildren(pipeline.getId()).size());
+
+    ObjectInfo element = snapshot.getObject(named.getId());
+    assertEquals("named", element.getName());
+    assertEquals("PassThrough", element.getType());
+    assertEquals(named.getMediaPipeline().getId(), element.getParentId());
+    assertNull(element.getCreationTime());
+  }
+
+}
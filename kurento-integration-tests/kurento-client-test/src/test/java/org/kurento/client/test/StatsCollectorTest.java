@@ -0,0 +1,103 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaElement;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.StatsCollector;
+import org.kurento.client.StatsMetric;
+import org.kurento.client.StatsSeries;
+import org.kurento.client.WebRtcEndpoint;
+import org.kurento.test.fakekms.FakeKmsRule;
+
+public class StatsCollectorTest {
+
+  @Rule
+  public FakeKmsRule fakeKms = new FakeKmsRule();
+
+  @Test
+  public void testElementsArePolledInBatches() {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    MediaPipeline pipeline = kurento.createMediaPipeline();
+
+    StatsCollector collector = new StatsCollector(kurento, 1000, 3, 50);
+    final AtomicInteger notified = new AtomicInteger();
+    collector.addListener(new StatsCollector.StatsListener() {
+      @Override
+      public void onStats(MediaElement element, StatsSeries series) {
+        notified.incrementAndGet();
+      }
+    });
+
+    List<WebRtcEndpoint> elements = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      WebRtcEndpoint webRtc = new WebRtcEndpoint.Builder(pipeline).build();
+      elements.add(webRtc);
+      collector.register(webRtc);
+    }
+
+    long requests = fakeKms.getHandler().getNumRequests();
+    collector.poll();
+
+    // 120 elements in batches of 50
+    assertEquals(3, fakeKms.getHandler().getNumRequests() - requests);
+    assertEquals(120, notified.get());
+
+    for (int i = 0; i < 5; i++) {
+      collector.poll();
+    }
+
+    StatsSeries series = collector.getSeries(elements.get(0));
+    assertEquals(3, series.size());
+    assertEquals(0, series.getLast(StatsMetric.INBOUND_BITRATE), 0);
+    assertTrue(series.getTimestamp(0) <= series.getTimestamp(2));
+    assertEquals(120, collector.getSnapshot().size());
+  }
+
+  @Test
+  public void testReleasedElementsAreUnregistered() {
+
+    KurentoClient kurento = fakeKms.getKurentoClient();
+    MediaPipeline pipeline = kurento.createMediaPipeline();
+
+    StatsCollector collector = new StatsCollector(kurento, 1000, 10);
+
+    WebRtcEndpoint webRtc1 = new WebRtcEndpoint.Builder(pipeline).build();
+    WebRtcEndpoint webRtc2 = new WebRtcEndpoint.Builder(pipeline).build();
+    collector.register(webRtc1);
+    collector.register(webRtc2);
+
+    webRtc1.release();
+    collector.poll();
+
+    assertEquals(1, collector.getNumElements());
+    assertEquals(1, collector.getSeries(webRtc2).size());
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientNettyWebSocket;
+import org.kurento.jsonrpc.client.ReconnectPolicy;
+import org.kurento.jsonrpc.client.ReconnectedHandler;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.test.base.JsonRpcConnectorBaseTest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Restarts the server while a lot of clients are connected and checks that all of them reconnect,
+ * and that their first reconnection attempts are spread by the backoff of the clients instead of
+ * being made in lockstep.
+ */
+public class ReconnectionStormTest extends JsonRpcConnectorBaseTest {
+
+  private static final Logger log = LoggerFactory.getLogger(ReconnectionStormTest.class);
+
+  private static final int NUM_CLIENTS =
+      PropertiesManager.getProperty("test.reconnectionStorm.numClients", 1000);
+
+  private static final int HANDSHAKES_PER_SECOND =
+      PropertiesManager.getProperty("test.reconnectionStorm.handshakesPerSecond", 500);
+
+  private static final long BASE_DELAY_MILLIS = 1000;
+  private static final long MAX_DELAY_MILLIS = 5000;
+  private static final long WINDOW_MILLIS = 100;
+
+  public static class Handler extends DefaultJsonRpcHandler<String> {
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<String> request)
+        throws Exception {
+      transaction.sendResponse("ok");
+    }
+  }
+
+  /**
+   * Records the time of the first reconnection attempt of a client, which is when it asks for a
+   * reconnection slot for the first time.
+   */
+  private static class RecordingReconnectPolicy extends ReconnectPolicy {
+
+    private final AtomicLong firstAttempt = new AtomicLong();
+
+    public RecordingReconnectPolicy() {
+      super(BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+    }
+
+    @Override
+    public boolean tryAcquireSlot() {
+      firstAttempt.compareAndSet(0, System.currentTimeMillis());
+      return super.tryAcquireSlot();
+    }
+
+    public long getFirstAttempt() {
+      return firstAttempt.get();
+    }
+  }
+
+  @AfterClass
+  public static void restoreAdmissionProperties() {
+    System.clearProperty("ws.admission.handshakesPerSecond");
+  }
+
+  @Test
+  public void givenManyConnectedClients_whenServerIsRestarted_thenClientsReconnectSpreadInTime()
+      throws Exception {
+
+    restartServer();
+
+    final CountDownLatch reconnected = new CountDownLatch(NUM_CLIENTS);
+    List<JsonRpcClientNettyWebSocket> clients = new ArrayList<>();
+    List<RecordingReconnectPolicy> policies = new ArrayList<>();
+
+    try {
+
+      for (int i = 0; i < NUM_CLIENTS; i++) {
+
+        JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(
+            "ws://localhost:" + getPort() + "/reconnection_storm");
+        client.setTryReconnectingForever(true);
+        client.onReconnected(new ReconnectedHandler() {
+          @Override
+          public void run(boolean sameServer) {
+            reconnected.countDown();
+          }
+        });
+
+        RecordingReconnectPolicy policy = new RecordingReconnectPolicy();
+        client.setReconnectPolicy(policy);
+        policies.add(policy);
+
+        clients.add(client);
+        client.connectWithSession();
+      }
+
+      log.debug("{} clients connected. Restarting server", NUM_CLIENTS);
+
+      long disconnectionTime = System.currentTimeMillis();
+      stopServer();
+
+      Thread.sleep(1000);
+
+      System.setProperty("ws.admission.handshakesPerSecond",
+          Integer.toString(HANDSHAKES_PER_SECOND));
+      restartServer();
+
+      assertThat(reconnected.await(120, TimeUnit.SECONDS))
+          .as("All clients reconnected, pending " + reconnected.getCount()).isTrue();
+
+      // With full jitter, first attempts are uniformly distributed in [0, BASE_DELAY_MILLIS]
+      Map<Long, Integer> attemptsPerWindow = new TreeMap<>();
+      long first = Long.MAX_VALUE;
+      long last = 0;
+      for (RecordingReconnectPolicy policy : policies) {
+        long time = policy.getFirstAttempt();
+        assertThat(time).as("Time of first reconnection attempt").isGreaterThan(0);
+        first = Math.min(first, time);
+        last = Math.max(last, time);
+        Long window = (time - disconnectionTime) / WINDOW_MILLIS;
+        Integer count = attemptsPerWindow.get(window);
+        attemptsPerWindow.put(window, count == null ? 1 : count + 1);
+      }
+
+      int peak = 0;
+      for (Integer count : attemptsPerWindow.values()) {
+        peak = Math.max(peak, count);
+      }
+
+      log.debug("First reconnection attempts per {} ms window after disconnection: {}",
+          WINDOW_MILLIS, attemptsPerWindow);
+
+      assertThat(last - first).as("Time between first and last initial attempts")
+          .isGreaterThan(BASE_DELAY_MILLIS / 2);
+
+      long expectedPerWindow = NUM_CLIENTS * WINDOW_MILLIS / BASE_DELAY_MILLIS;
+      assertThat(peak).as("Peak of first attempts in " + WINDOW_MILLIS + " ms")
+          .isLessThan((int) Math.max(3 * expectedPerWindow, 10));
+
+    } finally {
+      for (JsonRpcClientNettyWebSocket client : clients) {
+        client.close();
+      }
+    }
+  }
+
+  private static void restartServer() throws Exception {
+    stopServer();
+    startServer(Long.MAX_VALUE);
+  }
+
+}
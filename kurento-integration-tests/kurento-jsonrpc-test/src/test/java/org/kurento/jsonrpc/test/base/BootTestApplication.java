@@ -31,6 +31,7 @@ import org.kurento.jsonrpc.test.NewSessionTest;
 import org.kurento.jsonrpc.test.NotificationTest;
 import org.kurento.jsonrpc.test.PingPongTest;
 import org.kurento.jsonrpc.test.ReconnectionFromServerTest;
+import org.kurento.jsonrpc.test.ReconnectionStormTest;
 import org.kurento.jsonrpc.test.ReconnectionTest;
 import org.kurento.jsonrpc.test.ServerEventsTest;
 import org.kurento.jsonrpc.test.handler.EchoJsonRpcHandler;
@@ -76,6 +77,8 @@ public class BootTestApplication implements JsonRpcConfigurer {
 
     registry.addHandler(new ReconnectionFromServerTest.Handler(), "/reconnection2");
 
+    registry.addHandler(new ReconnectionStormTest.Handler(), "/reconnection_storm");
+
     registry.addHandler(new LargePackageTest.Handler(), "/largepackage");
 
     registry.addHandler(new NotificationTest.Handler(), "/notification");
@@ -43,10 +43,14 @@ public class JsonRpcConnectorBaseTest {
 
   @BeforeClass
   public static void startServer() throws Exception {
+    startServer(MAX_WS_CONNECTIONS);
+  }
+
+  protected static void startServer(long maxWsConnections) throws Exception {
 
     if (server == null || !server.isActive()) {
 
-      System.setProperty("ws.maxSessions", Integer.toString(MAX_WS_CONNECTIONS));
+      System.setProperty("ws.maxSessions", Long.toString(maxWsConnections));
       System.setProperty("java.security.egd", "file:/dev/./urandom");
 
       Properties properties = new Properties();
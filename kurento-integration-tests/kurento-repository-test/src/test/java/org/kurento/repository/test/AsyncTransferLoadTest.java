@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.kurento.commons.PropertiesManager.getProperty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.kurento.repository.RepositoryHttpPlayer;
+import org.kurento.repository.RepositoryItem;
+import org.kurento.repository.internal.http.RepositoryHttpServlet;
+import org.kurento.repository.test.util.BaseRepositoryTest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens an increasing number of concurrent downloads from clients that stop reading after the first
+ * bytes, and counts the container threads held by the servlet. With non-blocking I/O they are
+ * released while waiting for the clients, so the count doesn't grow with the number of transfers.
+ *
+ * Clients use a small receive buffer and the file is much larger than the socket buffers of both
+ * ends, so the servlet can't write the whole file and has to wait for the clients.
+ */
+public class AsyncTransferLoadTest extends BaseRepositoryTest {
+
+  private static final Logger log = LoggerFactory.getLogger(AsyncTransferLoadTest.class);
+
+  private static final String CLIENTS_PROP = "repository.benchmark.asyncClients";
+  private static final int CLIENTS_DEFAULT = 64;
+  private static final String FILE_SIZE_PROP = "repository.benchmark.fileMegabytes";
+  private static final int FILE_SIZE_DEFAULT = 64;
+  private static final int CLIENT_RECEIVE_BUFFER = 16 * 1024;
+
+  private int maxClients = getProperty(CLIENTS_PROP, CLIENTS_DEFAULT);
+  private int fileSize = getProperty(FILE_SIZE_PROP, FILE_SIZE_DEFAULT) * 1024 * 1024;
+
+  @Test
+  public void testThreadsWithSlowClients() throws Exception {
+
+    RepositoryItem item = getRepository().createRepositoryItem();
+
+    byte[] data = new byte[1024 * 1024];
+    new Random(0).nextBytes(data);
+    try (OutputStream os = item.createOutputStreamToWrite()) {
+      for (int written = 0; written < fileSize; written += data.length) {
+        os.write(data);
+      }
+    }
+
+    RepositoryHttpPlayer player = item.createRepositoryHttpPlayer();
+    player.setAutoTerminationTimeout(60000);
+    URL url = new URL(player.getURL());
+
+    for (int numClients = maxClients / 4; numClients <= maxClients; numClients *= 2) {
+
+      List<Socket> sockets = new ArrayList<>();
+
+      try {
+
+        byte[] buffer = new byte[CLIENT_RECEIVE_BUFFER];
+        for (int i = 0; i < numClients; i++) {
+          Socket socket = openSlowClient(url);
+          sockets.add(socket);
+          assertTrue(socket.getInputStream().read(buffer) > 0);
+        }
+
+        // Gives the servlet time to fill the socket buffers of the clients
+        Thread.sleep(1000);
+
+        int busyThreads = countServletThreads();
+
+        log.info("{} slow clients: {} threads in the servlet, {} live threads", numClients,
+            busyThreads, Thread.activeCount());
+
+        assertTrue(busyThreads + " threads are held by " + numClients + " transfers",
+            busyThreads < numClients / 2);
+
+      } finally {
+        for (Socket socket : sockets) {
+          socket.close();
+        }
+      }
+    }
+
+    player.stop();
+  }
+
+  /**
+   * Sends a request for the file from a socket whose receive buffer is set before connecting, so
+   * the window announced to the server is not enlarged by the autotuning of the system.
+   */
+  private Socket openSlowClient(URL url) throws IOException {
+
+    int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+
+    Socket socket = new Socket();
+    socket.setReceiveBufferSize(CLIENT_RECEIVE_BUFFER);
+    socket.connect(new InetSocketAddress(url.getHost(), port));
+
+    String request = "GET " + url.getFile() + " HTTP/1.1\r\nHost: " + url.getHost() + ":" + port
+        + "\r\nConnection: close\r\n\r\n";
+    socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+    socket.getOutputStream().flush();
+    return socket;
+  }
+
+  private int countServletThreads() {
+
+    int count = 0;
+    for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+      for (StackTraceElement element : entry.getValue()) {
+        if (element.getClassName().equals(RepositoryHttpServlet.class.getName())) {
+          count++;
+          break;
+        }
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.kurento.repository.RepositoryHttpRecorder;
+import org.kurento.repository.RepositoryItem;
+import org.kurento.repository.test.util.BaseRepositoryTest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+public class ChunkedUploadTest extends BaseRepositoryTest {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int NUM_CONNECTIONS = 4;
+
+  @Test
+  public void testParallelChunksWithResume() throws Exception {
+
+    final byte[] data = new byte[10 * CHUNK_SIZE + 1234];
+    new Random(0).nextBytes(data);
+
+    RepositoryItem repositoryItem = getRepository().createRepositoryItem();
+    RepositoryHttpRecorder recorder = repositoryItem.createRepositoryHttpRecorder();
+    final String url = recorder.getURL();
+    final RestTemplate client = getRestTemplate();
+
+    ResponseEntity<String> response = client.postForEntity(url + "?"
+        + RepositoryHttpRecorder.CHUNK_SIZE_PARAM + "=" + CHUNK_SIZE + "&"
+        + RepositoryHttpRecorder.LENGTH_PARAM + "=" + data.length, null, String.class);
+
+    assertEquals(HttpStatus.CREATED, response.getStatusCode());
+    assertEquals("11", response.getBody());
+
+    // All chunks but the second one, in reverse order from several connections
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_CONNECTIONS);
+    List<Future<HttpStatus>> results = new ArrayList<>();
+    for (int i = 10; i >= 0; i--) {
+      if (i == 1) {
+        continue;
+      }
+      final int chunk = i;
+      results.add(executor.submit(new Callable<HttpStatus>() {
+        @Override
+        public HttpStatus call() {
+          return putChunk(client, url, data, chunk);
+        }
+      }));
+    }
+    for (Future<HttpStatus> result : results) {
+      assertEquals(HttpStatus.OK, result.get());
+    }
+    executor.shutdown();
+
+    response = client.postForEntity(url + "?" + RepositoryHttpRecorder.COMMIT_PARAM, null,
+        String.class);
+    assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+
+    // Resuming only needs the missing chunks
+    response = client.getForEntity(url + "?" + RepositoryHttpRecorder.MISSING_CHUNKS_PARAM,
+        String.class);
+    assertEquals("1", response.getBody());
+
+    assertEquals(HttpStatus.OK, putChunk(client, url, data, 1));
+
+    response = client.postForEntity(url + "?" + RepositoryHttpRecorder.COMMIT_PARAM, null,
+        String.class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+
+    RepositoryItem storedItem = getRepository().findRepositoryItemById(repositoryItem.getId());
+    ResponseEntity<byte[]> download =
+        client.getForEntity(storedItem.createRepositoryHttpPlayer().getURL(), byte[].class);
+
+    assertArrayEquals(data, download.getBody());
+  }
+
+  @Test
+  public void testInvalidChunkSize() throws Exception {
+
+    RepositoryItem repositoryItem = getRepository().createRepositoryItem();
+    RepositoryHttpRecorder recorder = repositoryItem.createRepositoryHttpRecorder();
+    String url = recorder.getURL();
+    RestTemplate client = getRestTemplate();
+
+    client.postForEntity(url + "?" + RepositoryHttpRecorder.CHUNK_SIZE_PARAM + "=" + CHUNK_SIZE
+        + "&" + RepositoryHttpRecorder.LENGTH_PARAM + "=" + 2 * CHUNK_SIZE, null, String.class);
+
+    assertEquals(HttpStatus.BAD_REQUEST, putChunk(client, url, new byte[CHUNK_SIZE - 1], 0));
+
+    recorder.stop();
+  }
+
+  @Test
+  public void testUploadLimits() throws Exception {
+
+    RepositoryItem repositoryItem = getRepository().createRepositoryItem();
+    RepositoryHttpRecorder recorder = repositoryItem.createRepositoryHttpRecorder();
+    String url = recorder.getURL();
+    RestTemplate client = getRestTemplate();
+
+    assertEquals(HttpStatus.BAD_REQUEST, startUpload(client, url, 1, 2 * CHUNK_SIZE));
+    assertEquals(HttpStatus.BAD_REQUEST, startUpload(client, url,
+        RepositoryHttpRecorder.MIN_CHUNK_SIZE, Long.MAX_VALUE));
+    assertEquals(HttpStatus.OK, startUpload(client, url, RepositoryHttpRecorder.MIN_CHUNK_SIZE,
+        (long) RepositoryHttpRecorder.MIN_CHUNK_SIZE * RepositoryHttpRecorder.MAX_CHUNKS));
+
+    recorder.stop();
+  }
+
+  @Test
+  public void testOversizedChunkIsNotReceived() throws Exception {
+
+    RepositoryItem repositoryItem = getRepository().createRepositoryItem();
+    RepositoryHttpRecorder recorder = repositoryItem.createRepositoryHttpRecorder();
+    String url = recorder.getURL();
+    RestTemplate client = getRestTemplate();
+
+    client.postForEntity(url + "?" + RepositoryHttpRecorder.CHUNK_SIZE_PARAM + "=" + CHUNK_SIZE
+        + "&" + RepositoryHttpRecorder.LENGTH_PARAM + "=" + 2 * CHUNK_SIZE, null, String.class);
+
+    HttpStatus status = client.exchange(url + "?" + RepositoryHttpRecorder.CHUNK_PARAM + "=0",
+        HttpMethod.PUT, new HttpEntity<byte[]>(new byte[CHUNK_SIZE + 10]), String.class)
+        .getStatusCode();
+    assertEquals(HttpStatus.BAD_REQUEST, status);
+
+    ResponseEntity<String> response = client.getForEntity(
+        url + "?" + RepositoryHttpRecorder.MISSING_CHUNKS_PARAM, String.class);
+    assertEquals("0-1", response.getBody());
+
+    recorder.stop();
+  }
+
+  private HttpStatus startUpload(RestTemplate client, String url, int chunkSize, long length) {
+    return client.postForEntity(url + "?" + RepositoryHttpRecorder.CHUNK_SIZE_PARAM + "="
+        + chunkSize + "&" + RepositoryHttpRecorder.LENGTH_PARAM + "=" + length, null,
+        String.class).getStatusCode();
+  }
+
+  private HttpStatus putChunk(RestTemplate client, String url, byte[] data, int chunk) {
+
+    int start = chunk * CHUNK_SIZE;
+    byte[] chunkData = Arrays.copyOfRange(data, start, Math.min(data.length, start + CHUNK_SIZE));
+
+    return client.exchange(url + "?" + RepositoryHttpRecorder.CHUNK_PARAM + "=" + chunk,
+        HttpMethod.PUT, new HttpEntity<byte[]>(chunkData), String.class).getStatusCode();
+  }
+
+}
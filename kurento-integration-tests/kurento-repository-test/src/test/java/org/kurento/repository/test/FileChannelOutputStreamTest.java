@@ -0,0 +1,186 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.kurento.commons.PropertiesManager.getProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.kurento.commons.testing.RepositoryApiTests;
+import org.kurento.repository.internal.repoimpl.filesystem.FileChannelOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the write path of file repository items, and measures its throughput with several
+ * concurrent recordings written in 4 KB chunks (the size used to copy uploads). Defaults are small
+ * so it can run with the other tests; use the properties to get meaningful numbers.
+ */
+@Category(RepositoryApiTests.class)
+public class FileChannelOutputStreamTest {
+
+  private static final Logger log = LoggerFactory.getLogger(FileChannelOutputStreamTest.class);
+
+  private static final String RECORDINGS_PROP = "repository.benchmark.recordings";
+  private static final int RECORDINGS_DEFAULT = 4;
+  private static final String MEGABYTES_PROP = "repository.benchmark.megabytesPerRecording";
+  private static final int MEGABYTES_DEFAULT = 8;
+
+  private static final int CHUNK_SIZE = 4096;
+
+  private int numRecordings = getProperty(RECORDINGS_PROP, RECORDINGS_DEFAULT);
+  private int megabytesPerRecording = getProperty(MEGABYTES_PROP, MEGABYTES_DEFAULT);
+
+  private interface StreamFactory {
+    OutputStream create(File file) throws IOException;
+  }
+
+  @Test
+  public void testContentsAndAccounting() throws IOException {
+
+    File file = File.createTempFile("recording", "");
+    file.deleteOnExit();
+
+    Random random = new Random(0);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+    try (FileChannelOutputStream os = new FileChannelOutputStream(file, 64 * 1024)) {
+      for (int i = 0; i < 100; i++) {
+        // Single bytes, chunks smaller than the buffer and chunks bigger than it
+        byte[] chunk = new byte[i % 10 == 0 ? 100 * 1024 : random.nextInt(CHUNK_SIZE)];
+        random.nextBytes(chunk);
+        os.write(chunk);
+        os.write(i);
+        expected.write(chunk);
+        expected.write(i);
+      }
+      assertEquals(expected.size(), os.getWrittenBytes());
+    }
+
+    assertEquals(expected.size(), file.length());
+    assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void testSyncPolicy() throws IOException {
+
+    File file = File.createTempFile("recording", "");
+    file.deleteOnExit();
+
+    FileChannelOutputStream os = new FileChannelOutputStream(file, 16 * 1024);
+    os.setSyncPolicy(true, 100 * 1024, 0);
+
+    byte[] chunk = new byte[CHUNK_SIZE];
+    for (int i = 0; i < 256; i++) {
+      os.write(chunk);
+    }
+
+    // 1 MB written in blocks of 16 KB, synced every 112 KB
+    assertEquals(9, os.getNumSyncs());
+
+    os.close();
+    assertEquals(10, os.getNumSyncs());
+    assertEquals(256 * CHUNK_SIZE, os.getSyncedBytes());
+    assertTrue(os.isClosed());
+  }
+
+  @Test
+  public void concurrentRecordingsThroughput() throws Exception {
+
+    double plainMbps = measure(new StreamFactory() {
+      @Override
+      public OutputStream create(File file) throws IOException {
+        return new FileOutputStream(file);
+      }
+    });
+
+    double channelMbps = measure(new StreamFactory() {
+      @Override
+      public OutputStream create(File file) throws IOException {
+        return new FileChannelOutputStream(file);
+      }
+    });
+
+    log.info("{} recordings: FileOutputStream {} MB/s, FileChannelOutputStream {} MB/s",
+        numRecordings, String.format("%.1f", plainMbps), String.format("%.1f", channelMbps));
+  }
+
+  /**
+   * Writes one recording per thread and returns the total MB per second.
+   */
+  private double measure(final StreamFactory factory) throws Exception {
+
+    final File folder = Files.createTempDirectory("recordings").toFile();
+    ExecutorService executor = Executors.newFixedThreadPool(numRecordings);
+
+    try {
+
+      List<Callable<Void>> recordings = new ArrayList<>();
+      for (int i = 0; i < numRecordings; i++) {
+        final File file = new File(folder, Integer.toString(i));
+        recordings.add(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            long numChunks = megabytesPerRecording * 1024L * 1024 / CHUNK_SIZE;
+            try (OutputStream os = factory.create(file)) {
+              for (long j = 0; j < numChunks; j++) {
+                os.write(chunk);
+              }
+            }
+            assertEquals(numChunks * CHUNK_SIZE, file.length());
+            return null;
+          }
+        });
+      }
+
+      long start = System.nanoTime();
+      for (Future<Void> future : executor.invokeAll(recordings)) {
+        future.get();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      return numRecordings * megabytesPerRecording / seconds;
+
+    } finally {
+      executor.shutdownNow();
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+      folder.delete();
+    }
+  }
+
+}
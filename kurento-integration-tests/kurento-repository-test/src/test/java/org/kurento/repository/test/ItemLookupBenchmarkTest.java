@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.kurento.commons.PropertiesManager.getProperty;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.kurento.repository.Repository;
+import org.kurento.repository.RepositoryItem;
+import org.kurento.repository.internal.repoimpl.filesystem.FileRepositoryItem;
+import org.kurento.repository.test.util.BaseRepositoryTest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the cost of searching and looking up items and reading their attributes. For file
+ * system repositories it also measures probing every file as older versions did on each lookup
+ * (stat, open and read to guess the MIME type), which is what persisting the attributes avoids.
+ */
+public class ItemLookupBenchmarkTest extends BaseRepositoryTest {
+
+  private static final Logger log = LoggerFactory.getLogger(ItemLookupBenchmarkTest.class);
+
+  private static final String ITEMS_PROP = "repository.benchmark.items";
+  private static final int ITEMS_DEFAULT = 500;
+
+  private static final byte[] CONTENTS = new byte[4096];
+
+  @Test
+  public void searchAndLookupCost() throws Exception {
+
+    Repository repository = getRepository();
+    int numItems = getProperty(ITEMS_PROP, ITEMS_DEFAULT);
+    String searchValue = "lookup-" + System.currentTimeMillis();
+
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < numItems; i++) {
+      RepositoryItem item = repository.createRepositoryItem();
+      item.putMetadataEntry("benchmark", searchValue);
+      try (OutputStream os = item.createOutputStreamToWrite()) {
+        os.write(CONTENTS);
+      }
+      ids.add(item.getId());
+    }
+
+    long start = System.nanoTime();
+    List<RepositoryItem> items = repository.findRepositoryItemsByAttValue("benchmark", searchValue);
+    long searchNanos = System.nanoTime() - start;
+    assertEquals(numItems, items.size());
+
+    start = System.nanoTime();
+    for (RepositoryItem item : items) {
+      assertEquals(CONTENTS.length, item.getAttributes().getContentLength());
+    }
+    long attributesNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (String id : ids) {
+      repository.findRepositoryItemById(id).getAttributes().getMimeType();
+    }
+    long lookupNanos = System.nanoTime() - start;
+
+    log.info("{} items: search {} ms, attributes of results {} ms, lookups by id {} ms",
+        numItems, millis(searchNanos), millis(attributesNanos), millis(lookupNanos));
+
+    if (items.get(0) instanceof FileRepositoryItem) {
+      start = System.nanoTime();
+      for (RepositoryItem item : items) {
+        probe(((FileRepositoryItem) item).getFile());
+      }
+      log.info("{} items: probing the files as older versions did {} ms", numItems,
+          millis(System.nanoTime() - start));
+    }
+  }
+
+  private static void probe(File file) throws IOException {
+    if (file.exists()) {
+      file.length();
+      file.lastModified();
+      try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+        URLConnection.guessContentTypeFromStream(is);
+      }
+    }
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.1f", nanos / 1000000.0);
+  }
+
+}
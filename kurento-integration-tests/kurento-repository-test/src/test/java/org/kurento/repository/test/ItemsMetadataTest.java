@@ -18,14 +18,31 @@
 package org.kurento.repository.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.kurento.commons.testing.RepositoryApiTests;
+import org.kurento.repository.internal.repoimpl.RegexQuery;
 import org.kurento.repository.internal.repoimpl.filesystem.ItemsMetadata;
 
 @Category(RepositoryApiTests.class)
@@ -54,4 +71,313 @@ public class ItemsMetadataTest {
 
   }
 
+  @Test
+  public void testRecoveryFromJournal() throws IOException {
+
+    File tempFile = File.createTempFile("metadata", "");
+    File journalFile = new File(tempFile.getPath() + ".journal");
+
+    ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile);
+
+    itemsMetadata.loadMetadata("o1").put("att", "value1");
+    itemsMetadata.loadMetadata("o2").put("att", "value2");
+    itemsMetadata.loadMetadata("o2").remove("att");
+
+    Map<String, String> md3 = new HashMap<>();
+    md3.put("att", "value3");
+    itemsMetadata.setMetadataForId("o3", md3);
+
+    // Not saved, as if the process had crashed. A record can be half written
+    try (FileWriter writer = new FileWriter(journalFile, true)) {
+      writer.write("{ \"id\" : \"o4\" , \"meta");
+    }
+
+    itemsMetadata = new ItemsMetadata(tempFile);
+
+    assertEquals("value1", itemsMetadata.loadMetadata("o1").get("att"));
+    assertTrue(itemsMetadata.loadMetadata("o2").isEmpty());
+    assertEquals("value3", itemsMetadata.loadMetadata("o3").get("att"));
+    assertTrue(itemsMetadata.loadMetadata("o4").isEmpty());
+
+    // Written after the torn record, which must not swallow it
+    itemsMetadata.loadMetadata("o5").put("att", "value5");
+
+    itemsMetadata = new ItemsMetadata(tempFile);
+
+    assertEquals("value1", itemsMetadata.loadMetadata("o1").get("att"));
+    assertEquals("value3", itemsMetadata.loadMetadata("o3").get("att"));
+    assertEquals("value5", itemsMetadata.loadMetadata("o5").get("att"));
+  }
+
+  @Test
+  public void testConcurrentReadsAndWrites() throws Exception {
+
+    File tempFile = File.createTempFile("metadata", "");
+
+    final ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile);
+    final Map<String, String> metadata = itemsMetadata.loadMetadata("o1");
+    final AtomicBoolean finished = new AtomicBoolean();
+
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 5000; i++) {
+          metadata.put("att" + i % 50, "value" + i);
+          metadata.remove("att" + (i + 25) % 50);
+        }
+        finished.set(true);
+      }
+    };
+    writer.start();
+
+    while (!finished.get()) {
+      for (Entry<String, String> entry : metadata.entrySet()) {
+        assertTrue(entry.getKey().startsWith("att"));
+      }
+      new HashMap<>(metadata);
+      metadata.containsKey("att0");
+    }
+    writer.join();
+
+    itemsMetadata.removeItem("o1");
+
+    assertTrue(new ItemsMetadata(tempFile).loadMetadata("o1").isEmpty());
+  }
+
+  @Test
+  public void testIndexUpdates() throws IOException {
+
+    File tempFile = File.createTempFile("metadata", "");
+
+    ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile);
+
+    Map<String, String> md = itemsMetadata.loadMetadata("o1");
+    md.put("att", "old");
+    assertEquals(1, itemsMetadata.findByAttValue("att", "old").size());
+
+    md.put("att", "new");
+    assertEquals(0, itemsMetadata.findByAttValue("att", "old").size());
+    assertEquals(1, itemsMetadata.findByAttValue("att", "new").size());
+
+    Map<String, String> replacement = new HashMap<>();
+    replacement.put("other", "new");
+    itemsMetadata.setMetadataForId("o1", replacement);
+    assertEquals(0, itemsMetadata.findByAttValue("att", "new").size());
+    assertEquals("o1", itemsMetadata.findByAttValue("other", "new").get(0).getKey());
+
+    md.clear();
+    assertEquals(0, itemsMetadata.findByAttValue("other", "new").size());
+  }
+
+  @Test
+  public void testChangesThroughViews() throws IOException {
+
+    File tempFile = File.createTempFile("metadata", "");
+
+    ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile);
+
+    Map<String, String> md = itemsMetadata.loadMetadata("o1");
+    md.put("a", "1");
+    md.put("b", "2");
+    md.put("c", "3");
+
+    for (Entry<String, String> entry : md.entrySet()) {
+      if (entry.getKey().equals("a")) {
+        entry.setValue("10");
+      }
+    }
+
+    Iterator<String> keys = md.keySet().iterator();
+    while (keys.hasNext()) {
+      if (keys.next().equals("b")) {
+        keys.remove();
+      }
+    }
+
+    md.values().remove("3");
+
+    assertEquals(0, itemsMetadata.findByAttValue("a", "1").size());
+    assertEquals(1, itemsMetadata.findByAttValue("a", "10").size());
+    assertEquals(0, itemsMetadata.findByAttValue("b", "2").size());
+    assertEquals(0, itemsMetadata.findByAttValue("c", "3").size());
+
+    itemsMetadata = new ItemsMetadata(tempFile);
+
+    md = itemsMetadata.loadMetadata("o1");
+    assertEquals(1, md.size());
+    assertEquals("10", md.get("a"));
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+
+    File tempFile = File.createTempFile("metadata", "");
+    File journalFile = new File(tempFile.getPath() + ".journal");
+
+    ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile, 10);
+
+    for (int i = 0; i < 25; i++) {
+      itemsMetadata.loadMetadata("o" + i).put("att", "value");
+    }
+
+    // Compacted after 10 and 20 records
+    assertTrue(tempFile.length() > 0);
+    assertTrue(journalFile.exists());
+
+    itemsMetadata.save();
+    assertFalse(journalFile.exists());
+
+    itemsMetadata = new ItemsMetadata(tempFile, 10);
+    assertEquals(25, itemsMetadata.findByAttValue("att", "value").size());
+  }
+
+  @Test
+  public void testLegacyFile() throws IOException {
+
+    File tempFile = File.createTempFile("metadata", "");
+    try (FileWriter writer = new FileWriter(tempFile)) {
+      writer.write("{ \"o1\" : { \"att\" : \"value\"} , \"o2\" : { \"att\" : \"value\"}}");
+    }
+
+    ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile);
+    assertEquals(2, itemsMetadata.findByAttValue("att", "value").size());
+
+    itemsMetadata = new ItemsMetadata(tempFile);
+    assertEquals(2, itemsMetadata.findByAttValue("att", "value").size());
+  }
+
+  @Test
+  public void testAttributes() throws IOException {
+
+    File tempFile = File.createTempFile("metadata", "");
+
+    ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile);
+
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put("contentLength", "100");
+    itemsMetadata.setAttributesForId("o1", attributes);
+    itemsMetadata.setAttributesForId("o2", attributes);
+    itemsMetadata.setAttributesForId("o2", null);
+
+    // Replayed from the journal
+    itemsMetadata = new ItemsMetadata(tempFile);
+    assertEquals("100", itemsMetadata.loadAttributes("o1").get("contentLength"));
+    assertNull(itemsMetadata.loadAttributes("o2"));
+
+    // Kept in the snapshot even if the item has no metadata
+    itemsMetadata.save();
+    itemsMetadata = new ItemsMetadata(tempFile);
+    assertEquals("100", itemsMetadata.loadAttributes("o1").get("contentLength"));
+    assertTrue(itemsMetadata.loadMetadata("o1").isEmpty());
+  }
+
+  @Test
+  public void testRegexSearchWithIndexes() throws IOException {
+
+    File tempFile = File.createTempFile("metadata", "");
+
+    ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile);
+
+    String[] words = { "conference", "room", "meeting", "video", "demo" };
+    List<String> titles = new ArrayList<>();
+    Random random = new Random(0);
+    for (int i = 0; i < 200; i++) {
+      String title = words[random.nextInt(words.length)] + "-" + words[random.nextInt(words.length)]
+          + "-" + random.nextInt(10);
+      titles.add(title);
+      itemsMetadata.loadMetadata("o" + i).put("title", title);
+    }
+    // Values no longer used are removed from the indexes
+    itemsMetadata.loadMetadata("o0").put("title", "removed-title");
+    titles.set(0, "removed-title");
+
+    String[] regexes = { "video.*", "^demo-room-.", ".*meeting.*", ".*ting-vid.*", "room-.*-3",
+        "conference-demo-[0-4]", "removed-title", "^conference", ".*-\\d", "(video|demo).*",
+        "\\x76ideo.*", "^\\x64emo-.*", ".*\\u0072oom.*", "me\\0145ting-.*", "\\p{L}ideo.*" };
+
+    for (String regex : regexes) {
+      Set<String> expected = new HashSet<>();
+      for (int i = 0; i < titles.size(); i++) {
+        if (titles.get(i).matches(regex)) {
+          expected.add("o" + i);
+        }
+      }
+
+      Set<String> found = new HashSet<>();
+      for (Entry<String, Map<String, String>> item : itemsMetadata.findByAttRegex("title",
+          regex)) {
+        found.add(item.getKey());
+      }
+
+      assertEquals(regex, expected, found);
+    }
+  }
+
+  @Test
+  public void testPaginatedSearch() throws IOException {
+
+    File tempFile = File.createTempFile("metadata", "");
+
+    ItemsMetadata itemsMetadata = new ItemsMetadata(tempFile);
+
+    for (int i = 0; i < 50; i++) {
+      Map<String, String> md = itemsMetadata.loadMetadata(String.format("o%02d", i));
+      md.put("type", i % 2 == 0 ? "even" : "odd");
+      md.put("title", "title" + i);
+    }
+
+    Map<String, String> values = new HashMap<>();
+    values.put("type", "even");
+    Map<String, RegexQuery> regexes = new HashMap<>();
+    regexes.put("title", RegexQuery.parse("title1.*"));
+
+    // Both conditions have to match
+    List<String> ids = itemsMetadata.findIds(values, regexes, null, 3);
+    assertEquals(Arrays.asList("o10", "o12", "o14"), ids);
+
+    ids = itemsMetadata.findIds(values, regexes, "o14", 3);
+    assertEquals(Arrays.asList("o16", "o18"), ids);
+
+    List<String> all = new ArrayList<>();
+    String cursor = null;
+    do {
+      ids = itemsMetadata.findIds(values, Collections.<String, RegexQuery> emptyMap(), cursor, 7);
+      all.addAll(ids);
+      cursor = ids.isEmpty() ? null : ids.get(ids.size() - 1);
+    } while (cursor != null);
+    assertEquals(25, all.size());
+    // Sorted and without repetitions
+    assertEquals(new ArrayList<>(new TreeSet<>(all)), all);
+
+    // Regexes only, through the matching values (few of them) and through the ids (many)
+    assertEquals(25, findAllPages(itemsMetadata, "type", "ev.*", 7).size());
+    assertEquals(Arrays.asList("o01", "o10", "o11", "o12"),
+        itemsMetadata.findIds(Collections.<String, String> emptyMap(),
+            Collections.singletonMap("title", RegexQuery.parse("title1.*")), null, 4));
+    all = findAllPages(itemsMetadata, "title", ".*[05]", 3);
+    assertEquals(10, all.size());
+    assertEquals(new ArrayList<>(new TreeSet<>(all)), all);
+
+    itemsMetadata.removeItem("o10");
+    itemsMetadata = new ItemsMetadata(tempFile);
+    assertEquals(Arrays.asList("o12"), itemsMetadata.findIds(values, regexes, null, 1));
+    assertTrue(itemsMetadata.findIdsByAttValue("title", "title10").isEmpty());
+  }
+
+  private static List<String> findAllPages(ItemsMetadata itemsMetadata, String attributeName,
+      String regex, int limit) {
+
+    Map<String, RegexQuery> regexes =
+        Collections.singletonMap(attributeName, RegexQuery.parse(regex));
+
+    List<String> all = new ArrayList<>();
+    String cursor = null;
+    do {
+      List<String> ids = itemsMetadata.findIds(Collections.<String, String> emptyMap(), regexes,
+          cursor, limit);
+      all.addAll(ids);
+      cursor = ids.isEmpty() ? null : ids.get(ids.size() - 1);
+    } while (cursor != null);
+    return all;
+  }
 }
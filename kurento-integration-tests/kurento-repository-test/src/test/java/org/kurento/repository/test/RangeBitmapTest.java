@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.kurento.commons.testing.RepositoryApiTests;
+import org.kurento.repository.internal.repoimpl.RangeBitmap;
+
+@Category(RepositoryApiTests.class)
+public class RangeBitmapTest {
+
+  private static final int BLOCK_SIZE = 1000;
+
+  @Test
+  public void testOutOfOrderRanges() {
+
+    RangeBitmap bitmap = new RangeBitmap(BLOCK_SIZE);
+
+    bitmap.add(2500, 4200);
+    assertEquals(0, bitmap.getContiguousLength());
+    assertEquals(4200, bitmap.getEnd());
+
+    bitmap.add(0, 700);
+    assertEquals(700, bitmap.getContiguousLength());
+
+    bitmap.add(1500, 2600);
+    assertEquals(700, bitmap.getContiguousLength());
+    assertFalse(bitmap.isComplete(4200));
+
+    bitmap.add(600, 1600);
+    assertEquals(4200, bitmap.getContiguousLength());
+    assertTrue(bitmap.isComplete(4200));
+    assertFalse(bitmap.isComplete(4300));
+  }
+
+  @Test
+  public void testUnalignedRangesInSameBlock() {
+
+    RangeBitmap bitmap = new RangeBitmap(BLOCK_SIZE);
+
+    bitmap.add(300, 400);
+    bitmap.add(0, 100);
+    bitmap.add(100, 200);
+    assertEquals(200, bitmap.getContiguousLength());
+
+    bitmap.add(150, 350);
+    assertEquals(400, bitmap.getContiguousLength());
+
+    bitmap.add(400, 1000);
+    bitmap.add(1000, 1001);
+    assertEquals(1001, bitmap.getContiguousLength());
+    assertTrue(bitmap.isComplete(1001));
+  }
+
+  @Test
+  public void testMissingBlocks() {
+
+    RangeBitmap bitmap = new RangeBitmap(BLOCK_SIZE);
+
+    bitmap.add(1000, 2000);
+    bitmap.add(3000, 3500);
+    bitmap.add(4000, 4300);
+
+    assertRanges(bitmap.getMissingBlocks(4300), 0, 0, 2, 3);
+
+    bitmap.add(0, 1000);
+    bitmap.add(2000, 3000);
+    bitmap.add(3500, 4000);
+
+    assertRanges(bitmap.getMissingBlocks(4300));
+    assertRanges(bitmap.getMissingBlocks(4500), 4, 4);
+    assertRanges(bitmap.getMissingBlocks(8000), 4, 7);
+  }
+
+  private void assertRanges(List<int[]> ranges, int... expected) {
+    assertEquals(expected.length / 2, ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      assertEquals(expected[2 * i], ranges.get(i)[0]);
+      assertEquals(expected[2 * i + 1], ranges.get(i)[1]);
+    }
+  }
+
+  @Test
+  public void testRandomRanges() {
+
+    Random random = new Random(42);
+
+    for (int i = 0; i < 20; i++) {
+
+      int length = 1 + random.nextInt(20 * BLOCK_SIZE);
+
+      List<long[]> ranges = new ArrayList<>();
+      long position = 0;
+      while (position < length) {
+        long end = Math.min(length, position + 1 + random.nextInt(3 * BLOCK_SIZE));
+        ranges.add(new long[] { position, end });
+        position = end;
+      }
+      Collections.shuffle(ranges, random);
+
+      // The first range is kept to the end, so the contents have a gap until then
+      long[] first = null;
+      RangeBitmap bitmap = new RangeBitmap(BLOCK_SIZE);
+      for (long[] range : ranges) {
+        if (range[0] == 0) {
+          first = range;
+        } else {
+          bitmap.add(range[0], range[1]);
+        }
+      }
+
+      assertFalse(bitmap.isComplete(length));
+      assertEquals(0, bitmap.getContiguousLength());
+
+      bitmap.add(first[0], first[1]);
+
+      assertTrue(bitmap.isComplete(length));
+      assertEquals(length, bitmap.getContiguousLength());
+    }
+  }
+
+}
@@ -135,13 +135,14 @@ public class RangePutTest extends BaseRepositoryTest {
 
         } else if (numRequest == 5) {
 
-          // Simulating send ahead data
+          // Simulating send ahead data. It is written at its position, and the gap is filled by
+          // the following requests or discarded when the recorder is stopped
 
           response = putContent(url, Arrays.copyOf(info, readBytes), sentBytes + 75000);
 
           log.debug(numRequest + ": " + response.toString());
 
-          assertEquals("Returned response: " + response.getBody(), HttpStatus.NOT_IMPLEMENTED,
+          assertEquals("Returned response: " + response.getBody(), HttpStatus.OK,
               response.getStatusCode());
 
         }
@@ -0,0 +1,229 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.kurento.commons.PropertiesManager.getProperty;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.kurento.commons.testing.RepositoryApiTests;
+import org.kurento.repository.internal.http.FileContentSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the ranges sent by {@link FileContentSender}, and measures the throughput of serving
+ * random ranges of a recording with it and with the input stream of the item (skipping to the
+ * start of the range and copying with 2 KB buffers). Defaults are small so it can run with the
+ * other tests; use the properties to get meaningful numbers.
+ */
+@Category(RepositoryApiTests.class)
+public class RangeServingBenchmarkTest {
+
+  private static final Logger log = LoggerFactory.getLogger(RangeServingBenchmarkTest.class);
+
+  private static final String THREADS_PROP = "repository.benchmark.threads";
+  private static final int THREADS_DEFAULT = 4;
+  private static final String RANGES_PROP = "repository.benchmark.rangesPerThread";
+  private static final int RANGES_DEFAULT = 50;
+  private static final String FILE_SIZE_PROP = "repository.benchmark.fileMegabytes";
+  private static final int FILE_SIZE_DEFAULT = 16;
+
+  private static final int MAX_RANGE_LENGTH = 1024 * 1024;
+
+  private static File file;
+  private static byte[] contents;
+
+  private int numThreads = getProperty(THREADS_PROP, THREADS_DEFAULT);
+  private int rangesPerThread = getProperty(RANGES_PROP, RANGES_DEFAULT);
+
+  private interface RangeSender {
+    void send(OutputStream os, long start, long end) throws IOException;
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  @BeforeClass
+  public static void createRecording() throws IOException {
+    contents = new byte[getProperty(FILE_SIZE_PROP, FILE_SIZE_DEFAULT) * 1024 * 1024];
+    new Random(0).nextBytes(contents);
+    file = File.createTempFile("recording", "");
+    try (OutputStream os = new FileOutputStream(file)) {
+      os.write(contents);
+    }
+  }
+
+  @AfterClass
+  public static void deleteRecording() {
+    file.delete();
+  }
+
+  @Test
+  public void testRanges() throws IOException {
+
+    FileContentSender sender = new FileContentSender(file);
+
+    try {
+
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      sender.send(os, 100, 100);
+      sender.send(os, 1000, 1000 + 3 * FileContentSender.BUFFER_SIZE);
+      assertArrayEquals(concat(Arrays.copyOfRange(contents, 100, 101),
+          Arrays.copyOfRange(contents, 1000, 1001 + 3 * FileContentSender.BUFFER_SIZE)),
+          os.toByteArray());
+
+      os.reset();
+      sender.send(os, contents.length - 10, -1);
+      assertArrayEquals(Arrays.copyOfRange(contents, contents.length - 10, contents.length),
+          os.toByteArray());
+
+    } finally {
+      sender.close();
+    }
+  }
+
+  @Test
+  public void rangeServingThroughput() throws Exception {
+
+    double streamMbps = measure(new Callable<RangeSender>() {
+      @Override
+      public RangeSender call() {
+        return new RangeSender() {
+          @Override
+          public void send(OutputStream os, long start, long end) throws IOException {
+            try (InputStream is = new BufferedInputStream(new FileInputStream(file), 2048)) {
+              is.skip(start);
+              byte[] buffer = new byte[2048];
+              long remaining = end - start + 1;
+              while (remaining > 0) {
+                int read = is.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                os.write(buffer, 0, read);
+                remaining -= read;
+              }
+            }
+          }
+        };
+      }
+    });
+
+    double senderMbps = measure(new Callable<RangeSender>() {
+      @Override
+      public RangeSender call() {
+        return new RangeSender() {
+          @Override
+          public void send(OutputStream os, long start, long end) throws IOException {
+            FileContentSender sender = new FileContentSender(file);
+            try {
+              sender.send(os, start, end);
+            } finally {
+              sender.close();
+            }
+          }
+        };
+      }
+    });
+
+    log.info("{} threads: input stream {} MB/s, FileContentSender {} MB/s", numThreads,
+        String.format("%.1f", streamMbps), String.format("%.1f", senderMbps));
+  }
+
+  /**
+   * Serves random ranges from several threads and returns the total MB per second.
+   */
+  private double measure(Callable<RangeSender> senderFactory) throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+    try {
+
+      List<Callable<Long>> tasks = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        final RangeSender sender = senderFactory.call();
+        final Random random = new Random(i);
+        tasks.add(new Callable<Long>() {
+          @Override
+          public Long call() throws IOException {
+            CountingOutputStream os = new CountingOutputStream();
+            long expected = 0;
+            for (int j = 0; j < rangesPerThread; j++) {
+              long start = random.nextInt(contents.length - MAX_RANGE_LENGTH);
+              long end = start + random.nextInt(MAX_RANGE_LENGTH);
+              sender.send(os, start, end);
+              expected += end - start + 1;
+            }
+            assertEquals(expected, os.count);
+            return os.count;
+          }
+        });
+      }
+
+      long bytes = 0;
+      long start = System.nanoTime();
+      for (Future<Long> future : executor.invokeAll(tasks)) {
+        bytes += future.get();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      return bytes / (1024.0 * 1024) / seconds;
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] result = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.kurento.commons.testing.RepositoryApiTests;
+import org.kurento.repository.internal.repoimpl.RegexQuery;
+import org.kurento.repository.internal.repoimpl.RegexQueryCache;
+
+@Category(RepositoryApiTests.class)
+public class RegexQueryTest {
+
+  @Test
+  public void testLiteralPrefix() {
+
+    RegexQuery query = RegexQuery.parse("^video-2016.*");
+    assertTrue(query.isAnchored());
+    assertEquals("video-2016", query.getLiteralPrefix());
+    assertNull(query.getLiteral());
+
+    assertEquals("title", RegexQuery.parse("title\\d+").getLiteralPrefix());
+    assertEquals("tit", RegexQuery.parse("titl?e").getLiteralPrefix());
+    assertEquals("a.b", RegexQuery.parse("a\\.b[0-9]").getLiteralPrefix());
+    assertEquals("", RegexQuery.parse(".*title").getLiteralPrefix());
+    assertEquals("", RegexQuery.parse("(ab)c").getLiteralPrefix());
+    assertFalse(RegexQuery.parse("video.*").isAnchored());
+  }
+
+  @Test
+  public void testRequiredLiterals() {
+
+    assertEquals(Arrays.asList("conference", "room"),
+        RegexQuery.parse(".*conference.*room.*").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab", "cd"),
+        RegexQuery.parse("ab[xy]*(ef)?cd+").getRequiredLiterals());
+
+    // Not analyzed
+    assertEquals(Collections.emptyList(), RegexQuery.parse("abc|def").getRequiredLiterals());
+    assertEquals(Collections.emptyList(), RegexQuery.parse("(?i)abc").getRequiredLiterals());
+    assertEquals("", RegexQuery.parse("(?i)abc").getLiteralPrefix());
+  }
+
+  @Test
+  public void testLiteral() {
+    assertEquals("abc", RegexQuery.parse("abc").getLiteral());
+    assertEquals("abc", RegexQuery.parse("^abc$").getLiteral());
+    assertEquals("a+b", RegexQuery.parse("a\\+b").getLiteral());
+    assertNull(RegexQuery.parse("abc+").getLiteral());
+    assertNull(RegexQuery.parse("a$b").getLiteral());
+  }
+
+  @Test
+  public void testEscapesWithOperands() {
+
+    // The operands of escaped characters are not literal text
+    RegexQuery query = RegexQuery.parse("\\x41BC");
+    assertEquals("", query.getLiteralPrefix());
+    assertEquals(Arrays.asList("BC"), query.getRequiredLiterals());
+    assertNull(query.getLiteral());
+    assertTrue(query.matches("ABC"));
+
+    assertEquals(Arrays.asList("ab", "cd"),
+        RegexQuery.parse("ab\\u0041cd").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab", "cd"),
+        RegexQuery.parse("ab\\x{41}cd").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab", "cd"),
+        RegexQuery.parse("ab\\0101cd").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab", "cd"),
+        RegexQuery.parse("ab\\cJcd").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab", "cd"), RegexQuery.parse("ab\\pLcd").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab", "cd"),
+        RegexQuery.parse("ab\\p{Lu}cd").getRequiredLiterals());
+    assertEquals("ab", RegexQuery.parse("^ab\\x41").getLiteralPrefix());
+  }
+
+  @Test
+  public void testCache() {
+
+    RegexQueryCache cache = new RegexQueryCache(2);
+
+    RegexQuery query = cache.get("a.*");
+    assertSame(query, cache.get("a.*"));
+    cache.get("b.*");
+    cache.get("c.*");
+
+    // Evicted as least recently used
+    cache.get("a.*");
+    assertEquals(1, cache.getHits());
+    assertEquals(4, cache.getMisses());
+  }
+
+}
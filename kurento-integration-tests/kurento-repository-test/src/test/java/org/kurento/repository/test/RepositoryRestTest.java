@@ -18,6 +18,8 @@
 package org.kurento.repository.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.kurento.commons.PropertiesManager.getProperty;
 
@@ -25,10 +27,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.hamcrest.CoreMatchers;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -44,7 +49,9 @@ import org.kurento.repository.RepositoryApiConfiguration.RepoType;
 import org.kurento.repository.RepositoryClient;
 import org.kurento.repository.RepositoryClientProvider;
 import org.kurento.repository.internal.RepositoryApplicationContextConfiguration;
+import org.kurento.repository.internal.repoimpl.filesystem.ShardedItemLayout;
 import org.kurento.repository.internal.repoimpl.mongo.MongoRepository;
+import org.kurento.repository.service.pojo.RepositoryItemIdsPage;
 import org.kurento.repository.service.pojo.RepositoryItemPlayer;
 import org.kurento.repository.service.pojo.RepositoryItemRecorder;
 import org.kurento.repository.test.util.TestUtils;
@@ -55,6 +62,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import retrofit.RetrofitError;
 import retrofit.client.Response;
 
@@ -79,16 +88,38 @@ public class RepositoryRestTest {
   protected static ConfigurableApplicationContext app;
 
   @BeforeClass
-  public static void setUpClass() {
+  public static void setUpClass() throws IOException {
     boolean testWithFS = getProperty("testWithFS", false);
     if (testWithFS) {
       System.setProperty(RepositoryApplicationContextConfiguration.KEY_REPO_TYPE,
           RepositoryApiConfiguration.RepoType.FILESYSTEM.getTypeValue());
       log.debug("Filesystem has been forced as repo storage type");
     }
+    if (RepoType.FILESYSTEM.getTypeValue().equals(
+        getProperty(RepositoryApplicationContextConfiguration.KEY_REPO_TYPE, ""))) {
+      // Before starting the app, as the repository loads the metadata of the items on startup
+      cleanUpFileSystem();
+    }
     app = KurentoRepositoryServerApp.start();
   }
 
+  private static void cleanUpFileSystem() throws IOException {
+    String filesFolder = getProperty(RepositoryApplicationContextConfiguration.KEY_FS_FOLDER,
+        RepositoryApiConfiguration.DEFAULT_FILESYSTEM_LOC);
+    File fsFolder = new File(filesFolder);
+    if (fsFolder.exists() && fsFolder.isDirectory()) {
+      FileUtils.deleteDirectory(new File(fsFolder, ShardedItemLayout.ITEMS_FOLDER));
+      FileUtils.deleteDirectory(new File(fsFolder, "metadata"));
+      // Items and metadata stored in the flat layout of older versions
+      for (File child : fsFolder.listFiles()) {
+        if (child.isFile()) {
+          child.delete();
+        }
+      }
+    }
+    log.debug("Cleaned up the disk repository: {}", fsFolder);
+  }
+
   @AfterClass
   public static void tearDownClass() {
     app.close();
@@ -106,18 +137,6 @@ public class RepositoryRestTest {
       MongoRepository mrepo = (MongoRepository) repository;
       mrepo.getGridFS().getDB().dropDatabase();
       log.debug("Cleaned up the Mongo repository");
-    } else {
-      String filesFolder = getProperty(RepositoryApplicationContextConfiguration.KEY_FS_FOLDER,
-          RepositoryApiConfiguration.DEFAULT_FILESYSTEM_LOC);
-      File fsFolder = new File(filesFolder);
-      if (fsFolder.exists() && fsFolder.isDirectory()) {
-        for (File child : fsFolder.listFiles()) {
-          if (child.isFile()) {
-            child.delete();
-          }
-        }
-      }
-      log.debug("Cleaned up the disk repository: {}", fsFolder);
     }
     File tmpFolder = new File("test-files/tmp");
     tmpFolder.delete();
@@ -199,6 +218,48 @@ public class RepositoryRestTest {
 
   }
 
+  @Test
+  public void testPaginatedSearch() throws IOException {
+
+    for (int i = 0; i < 5; i++) {
+      Map<String, String> metadata = new HashMap<>();
+      metadata.put("pageKey", "pageValue");
+      metadata.put("index", i % 2 == 0 ? "even" : "odd");
+      restService.createRepositoryItem(metadata);
+    }
+
+    Map<String, String> searchValues = new HashMap<>();
+    searchValues.put("pageKey", "pageValue");
+    searchValues.put("index", "even");
+
+    RepositoryItemIdsPage page = restService.findItemsPage(searchValues, null, 2);
+    assertEquals(2, page.getIds().size());
+    assertNotNull("A next page was expected", page.getNextCursor());
+
+    RepositoryItemIdsPage lastPage =
+        restService.findItemsPage(searchValues, page.getNextCursor(), 2);
+    assertEquals(1, lastPage.getIds().size());
+    assertNull("No more pages were expected", lastPage.getNextCursor());
+
+    Set<String> ids = new HashSet<>(page.getIds());
+    ids.addAll(lastPage.getIds());
+    assertEquals(3, ids.size());
+
+    Map<String, String> regexValues = new HashMap<>();
+    regexValues.put("pageKey", "^page.*");
+    Response response = restService.streamRegexFindItems(regexValues);
+    try (InputStream is = response.getBody().in()) {
+      String[] streamedIds = new ObjectMapper().readValue(is, String[].class);
+      assertEquals(5, streamedIds.length);
+    }
+
+    // Rejected before streaming anything
+    regexValues.put("pageKey", "[page");
+    exception.expect(RetrofitError.class);
+    exception.expectMessage(CoreMatchers.containsString("400 Bad Request"));
+    restService.streamRegexFindItems(regexValues);
+  }
+
   protected void uploadFileWithCURL(String uploadURL, File fileToUpload)
       throws FileNotFoundException, IOException {
 
@@ -0,0 +1,108 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.kurento.commons.testing.RepositoryApiTests;
+import org.kurento.repository.internal.repoimpl.filesystem.FileSystemRepositoryMigrator;
+import org.kurento.repository.internal.repoimpl.filesystem.IdAllocator;
+import org.kurento.repository.internal.repoimpl.filesystem.ShardedItemLayout;
+
+@Category(RepositoryApiTests.class)
+public class ShardedItemLayoutTest {
+
+  @Test
+  public void testIdsNotReusedAfterRestart() throws IOException {
+
+    File folder = Files.createTempDirectory("repository").toFile();
+    try {
+      File file = new ShardedItemLayout(folder).getIdAllocatorFile();
+
+      IdAllocator allocator = new IdAllocator(file, 1, 10);
+      long lastId = 0;
+      for (int i = 0; i < 25; i++) {
+        lastId = allocator.nextId();
+      }
+      assertEquals(25, lastId);
+
+      allocator = new IdAllocator(file, 1, 10);
+      assertTrue(allocator.nextId() > lastId);
+
+    } finally {
+      FileUtils.deleteDirectory(folder);
+    }
+  }
+
+  @Test
+  public void testItemsAreSpreadInSubfolders() {
+
+    ShardedItemLayout layout = new ShardedItemLayout(new File("repository"));
+
+    File file = layout.getFile("1");
+    assertEquals("1", file.getName());
+    assertEquals(new File("repository", ShardedItemLayout.ITEMS_FOLDER),
+        file.getParentFile().getParentFile().getParentFile());
+
+    assertNotEquals(layout.getFile("1").getParentFile(), layout.getFile("2").getParentFile());
+  }
+
+  @Test
+  public void testMigrateFlatRepository() throws IOException {
+
+    File folder = Files.createTempDirectory("repository").toFile();
+    try {
+      for (int i = 1; i <= 20; i++) {
+        Files.write(new File(folder, Integer.toString(i)).toPath(),
+            ("item" + i).getBytes(StandardCharsets.UTF_8));
+      }
+      Files.write(new File(folder, "video.webm").toPath(), new byte[0]);
+
+      ShardedItemLayout layout = new ShardedItemLayout(folder);
+      assertTrue(layout.hasFlatItems());
+
+      assertEquals(21, new FileSystemRepositoryMigrator(folder).migrate());
+
+      assertFalse(layout.hasFlatItems());
+      assertEquals("item7",
+          new String(Files.readAllBytes(layout.getFile("7").toPath()), StandardCharsets.UTF_8));
+      assertTrue(layout.getFile("video.webm").exists());
+
+      IdAllocator allocator = new IdAllocator(layout.getIdAllocatorFile(), 1, 10);
+      assertTrue(allocator.nextId() > 20);
+
+      // Running it again is harmless
+      assertEquals(0, new FileSystemRepositoryMigrator(folder).migrate());
+
+    } finally {
+      FileUtils.deleteDirectory(folder);
+    }
+  }
+
+}
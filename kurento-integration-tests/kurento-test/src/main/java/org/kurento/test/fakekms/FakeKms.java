@@ -0,0 +1,123 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.test.fakekms;
+
+import java.util.Properties;
+
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.internal.server.config.JsonRpcConfiguration;
+import org.kurento.jsonrpc.server.JsonRpcConfigurer;
+import org.kurento.jsonrpc.server.JsonRpcHandlerRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * In-process fake Kurento Media Server. It answers kurento-client requests with
+ * {@link FakeKmsHandler}, without media, so it can be used to load test applications and
+ * kurento-client itself with a large number of objects and events.
+ *
+ * <pre>
+ * FakeKms fakeKms = new FakeKms();
+ * fakeKms.start();
+ * KurentoClient kurento = KurentoClient.create(fakeKms.getWsUri());
+ * </pre>
+ *
+ * @since 6.6.1
+ */
+public class FakeKms {
+
+  public static final String FAKE_KMS_PORT_PROP = "fake.kms.port";
+  public static final int FAKE_KMS_PORT_DEFAULT = 8889;
+  public static final String FAKE_KMS_PATH = "/kurento";
+
+  @Configuration
+  @ComponentScan(basePackageClasses = JsonRpcConfiguration.class)
+  @EnableAutoConfiguration
+  public static class FakeKmsApplication implements JsonRpcConfigurer {
+
+    @Autowired
+    private FakeKmsHandler handler;
+
+    @Override
+    public void registerJsonRpcHandlers(JsonRpcHandlerRegistry registry) {
+      registry.addHandler(handler, FAKE_KMS_PATH);
+    }
+  }
+
+  private final int port;
+  private final FakeKmsHandler handler;
+
+  private ConfigurableApplicationContext context;
+
+  public FakeKms() {
+    this(PropertiesManager.getProperty(FAKE_KMS_PORT_PROP, FAKE_KMS_PORT_DEFAULT));
+  }
+
+  public FakeKms(int port) {
+    this(port, new FakeKmsHandler());
+  }
+
+  public FakeKms(int port, FakeKmsHandler handler) {
+    this.port = port;
+    this.handler = handler;
+  }
+
+  public synchronized void start() {
+
+    if (context != null) {
+      return;
+    }
+
+    Properties properties = new Properties();
+    properties.put("server.port", Integer.toString(port));
+
+    SpringApplication application = new SpringApplication(FakeKmsApplication.class);
+    application.setDefaultProperties(properties);
+    application.addInitializers(
+        new ApplicationContextInitializer<ConfigurableApplicationContext>() {
+          @Override
+          public void initialize(ConfigurableApplicationContext applicationContext) {
+            applicationContext.getBeanFactory().registerSingleton("fakeKmsHandler", handler);
+          }
+        });
+
+    context = application.run();
+  }
+
+  public synchronized void stop() {
+    if (context != null) {
+      context.close();
+      context = null;
+    }
+    handler.destroy();
+  }
+
+  public String getWsUri() {
+    return "ws://localhost:" + port + FAKE_KMS_PATH;
+  }
+
+  public FakeKmsHandler getHandler() {
+    return handler;
+  }
+
+}
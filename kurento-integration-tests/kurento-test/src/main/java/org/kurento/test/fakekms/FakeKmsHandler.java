@@ -0,0 +1,899 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.test.fakekms;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kurento.client.Continuation;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.JsonRpcErrorException;
+import org.kurento.jsonrpc.Session;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.ResponseError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Json-rpc handler that implements the protocol used by kurento-client with an in memory object
+ * graph instead of real media. Objects of the core module answer to any method of their
+ * kurento-client interface: properties are stored and returned, and other methods return default
+ * values. Synthetic events can be generated at a given rate, and latency and errors can be
+ * injected in responses. Like KMS, the ServerManager sends ObjectCreated and ObjectDestroyed
+ * events, and elements send ElementConnected and ElementDisconnected events.
+ *
+ * @since 6.6.1
+ */
+public class FakeKmsHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+  private static final Logger log = LoggerFactory.getLogger(FakeKmsHandler.class);
+
+  public static final String SERVER_MANAGER_ID = "manager_ServerManager";
+
+  // Error codes used by KMS
+  public static final int ERROR_UNEXPECTED = 40000;
+  public static final int ERROR_OBJECT_NOT_FOUND = 40101;
+  public static final int ERROR_METHOD_NOT_FOUND = 40105;
+  public static final int ERROR_NOT_EXECUTED = 40402;
+  public static final int ERROR_INJECTED = 40001;
+
+  private static final String CORE_MODULE = "kurento";
+  private static final String CORE_PACKAGE = "org.kurento.client.";
+  private static final String NEWREF_PREFIX = "newref:";
+  private static final long EVENTS_TICK_MILLIS = 10;
+
+  private static class Subscription {
+
+    private final String id;
+    private final FakeMediaObject object;
+    private final String type;
+    private final Session session;
+    private double pendingEvents;
+
+    private Subscription(String id, FakeMediaObject object, String type, Session session) {
+      this.id = id;
+      this.object = object;
+      this.type = type;
+      this.session = session;
+    }
+  }
+
+  private final ConcurrentHashMap<String, FakeMediaObject> objects = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+  // Object id -> event type -> subscriptions, so events are only matched with the subscriptions
+  // of their source
+  private final ConcurrentHashMap<String, Map<String, Map<String, Subscription>>>
+      objectSubscriptions = new ConcurrentHashMap<>();
+
+  // Event type -> subscriptions, so synthetic events only go through the types with a rate
+  private final ConcurrentHashMap<String, Map<String, Subscription>> typeSubscriptions =
+      new ConcurrentHashMap<>();
+
+  private final Set<String> pipelineIds =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  // Session id -> number of objects created in it
+  private final Map<String, Integer> sessionObjects = new HashMap<>();
+
+  private final ConcurrentHashMap<String, Double> eventRates = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, JsonObject> eventData = new ConcurrentHashMap<>();
+
+  private final Map<String, Class<?>> clientClasses = new ConcurrentHashMap<>();
+
+  private volatile long latencyMillis;
+  private volatile double errorProbability;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong eventsSent = new AtomicLong();
+
+  private final ScheduledExecutorService scheduler =
+      Executors.newScheduledThreadPool(2, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "FakeKms-scheduler");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  public FakeKmsHandler() {
+
+    objects.put(SERVER_MANAGER_ID,
+        new FakeMediaObject(SERVER_MANAGER_ID, CORE_MODULE + ".ServerManager", null, null));
+
+    scheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          generateEvents(EVENTS_TICK_MILLIS / 1000.0);
+        } catch (Exception e) {
+          log.warn("Exception generating synthetic events", e);
+        }
+      }
+    }, EVENTS_TICK_MILLIS, EVENTS_TICK_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  // ---------------- Configuration -------------------
+
+  /**
+   * Delays every response the given time.
+   */
+  public void setLatency(long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+  }
+
+  /**
+   * Answers requests with an error with the given probability (between 0 and 1).
+   */
+  public void setErrorProbability(double errorProbability) {
+    this.errorProbability = errorProbability;
+  }
+
+  /**
+   * Generates events of the given type in every subscription to that type, at the given rate.
+   * Use 0 to stop generating them.
+   */
+  public void setEventRate(String eventType, double eventsPerSecond) {
+    if (eventsPerSecond <= 0) {
+      eventRates.remove(eventType);
+    } else {
+      eventRates.put(eventType, eventsPerSecond);
+    }
+  }
+
+  /**
+   * Sets properties added to the data of synthetic events of the given type, besides the common
+   * ones (source, type, timestamp and tags).
+   */
+  public void setEventData(String eventType, JsonObject data) {
+    eventData.put(eventType, data);
+  }
+
+  // ---------------- Metrics -------------------
+
+  public int getNumObjects() {
+    return objects.size() - 1;
+  }
+
+  public int getNumSubscriptions() {
+    return subscriptions.size();
+  }
+
+  public long getNumRequests() {
+    return requests.get();
+  }
+
+  public long getNumEventsSent() {
+    return eventsSent.get();
+  }
+
+  public FakeMediaObject getObject(String id) {
+    return objects.get(id);
+  }
+
+  public void destroy() {
+    scheduler.shutdownNow();
+  }
+
+  // ---------------- Requests -------------------
+
+  @Override
+  public void handleRequest(final Transaction transaction, final Request<JsonObject> request)
+      throws Exception {
+
+    requests.incrementAndGet();
+
+    long latency = latencyMillis;
+
+    if (latency <= 0) {
+      processAndRespond(transaction, request);
+      return;
+    }
+
+    transaction.startAsync();
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          processAndRespond(transaction, request);
+        } catch (Exception e) {
+          log.warn("Exception sending delayed response to {}", request, e);
+        }
+      }
+    }, latency, TimeUnit.MILLISECONDS);
+  }
+
+  private void processAndRespond(Transaction transaction, Request<JsonObject> request)
+      throws IOException {
+
+    if (errorProbability > 0 && ThreadLocalRandom.current().nextDouble() < errorProbability) {
+      transaction.sendError(new ResponseError(ERROR_INJECTED, "Injected error"));
+      return;
+    }
+
+    try {
+      JsonElement value = process(request.getMethod(), request.getParams(),
+          transaction.getSession(), new HashMap<String, String>());
+      transaction.sendResponse(createResult(value, transaction.getSession()));
+    } catch (JsonRpcErrorException e) {
+      transaction.sendError(e.getError());
+    }
+  }
+
+  private JsonObject createResult(JsonElement value, Session session) {
+    JsonObject result = new JsonObject();
+    if (value != null && !value.isJsonNull()) {
+      result.add("value", value);
+    }
+    result.addProperty("sessionId", session.getSessionId());
+    return result;
+  }
+
+  private JsonElement process(String method, JsonObject params, Session session,
+      Map<String, String> newRefs) {
+
+    if (params == null) {
+      params = new JsonObject();
+    }
+
+    switch (method) {
+      case "create":
+        return create(params, session, newRefs);
+      case "invoke":
+        return invoke(params);
+      case "subscribe":
+        return subscribe(params, session);
+      case "unsubscribe":
+        Subscription subscription = subscriptions.get(getString(params, "subscription"));
+        if (subscription != null) {
+          removeSubscription(subscription);
+        }
+        return null;
+      case "release":
+        release(getObjectParam(params, "object"));
+        return null;
+      case "transaction":
+        return transaction(params, session);
+      case "describe":
+        return describe(getObjectParam(params, "object"));
+      default:
+        throw new JsonRpcErrorException(ERROR_METHOD_NOT_FOUND, "Unknown method " + method);
+    }
+  }
+
+  private JsonElement create(JsonObject params, Session session, Map<String, String> newRefs) {
+
+    String type = getString(params, "type");
+    if (type == null) {
+      throw new JsonRpcErrorException(ERROR_UNEXPECTED, "'type' is required to create objects");
+    }
+    if (!type.contains(".")) {
+      type = CORE_MODULE + "." + type;
+    }
+
+    JsonObject constructorParams = params.has("constructorParams")
+        ? params.getAsJsonObject("constructorParams") : new JsonObject();
+
+    FakeMediaObject parent = null;
+    if (constructorParams.has("mediaPipeline")) {
+      parent = getObjectParam(constructorParams, "mediaPipeline");
+    }
+
+    String uuid = UUID.randomUUID().toString();
+    String id = parent == null ? uuid + "_" + type : parent.getId() + "/" + uuid + "_" + type;
+
+    FakeMediaObject object = new FakeMediaObject(id, type, parent, session.getSessionId());
+
+    for (Entry<String, JsonElement> param : constructorParams.entrySet()) {
+      object.setProperty(param.getKey(), param.getValue());
+    }
+    if (params.has("properties")) {
+      for (Entry<String, JsonElement> prop : params.getAsJsonObject("properties").entrySet()) {
+        object.setProperty(prop.getKey(), prop.getValue());
+      }
+    }
+
+    objects.put(id, object);
+    if (parent != null) {
+      parent.addChild(object);
+    } else if (object.getSimpleType().equals("MediaPipeline")) {
+      pipelineIds.add(id);
+    }
+    addSessionObject(object.getSessionId());
+
+    newRefs.put(NEWREF_PREFIX + newRefs.size(), id);
+
+    JsonObject data = new JsonObject();
+    data.addProperty("object", id);
+    fireEvent(SERVER_MANAGER_ID, "ObjectCreated", data);
+
+    return new JsonPrimitive(id);
+  }
+
+  private JsonElement invoke(JsonObject params) {
+
+    FakeMediaObject object = getObjectParam(params, "object");
+    String operation = getString(params, "operation");
+    JsonObject opParams = params.has("operationParams")
+        ? params.getAsJsonObject("operationParams") : new JsonObject();
+
+    switch (operation) {
+      case "getName":
+        JsonElement name = object.getProperty("name");
+        return name != null ? name : new JsonPrimitive(object.getId());
+      case "getMediaPipeline":
+        return new JsonPrimitive(object.getMediaPipeline().getId());
+      case "getParent":
+        return object.getParent() != null ? new JsonPrimitive(object.getParent().getId()) : null;
+      case "getChildren":
+      case "getChilds":
+        JsonArray children = new JsonArray();
+        for (FakeMediaObject child : object.getChildren()) {
+          children.add(new JsonPrimitive(child.getId()));
+        }
+        return children;
+      case "getCreationTime":
+        return new JsonPrimitive(object.getCreationTime() / 1000);
+      case "connect":
+        connect(object, getObjectParam(opParams, "sink"), getString(opParams, "mediaType"));
+        return null;
+      case "disconnect":
+        disconnect(object, getObjectParam(opParams, "sink"), getString(opParams, "mediaType"));
+        return null;
+      case "getSinkConnections":
+        return toJsonArray(object.getSinkConnections());
+      case "getSourceConnections":
+        return toJsonArray(object.getSourceConnections());
+      case "generateOffer":
+      case "processOffer":
+      case "processAnswer":
+      case "getLocalSessionDescriptor":
+      case "getRemoteSessionDescriptor":
+        return new JsonPrimitive(createSdp(object));
+      default:
+    }
+
+    if (object.getId().equals(SERVER_MANAGER_ID)) {
+      JsonElement result = invokeServerManager(operation);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    return invokeGeneric(object, operation, opParams);
+  }
+
+  private JsonElement invokeServerManager(String operation) {
+
+    switch (operation) {
+      case "getPipelines":
+        return toJsonArrayOfStrings(pipelineIds);
+      case "getSessions":
+        synchronized (sessionObjects) {
+          return toJsonArrayOfStrings(sessionObjects.keySet());
+        }
+      case "getUsedMemory":
+        Runtime runtime = Runtime.getRuntime();
+        return new JsonPrimitive((runtime.totalMemory() - runtime.freeMemory()) / 1024);
+      case "getCpuCount":
+        return new JsonPrimitive(Runtime.getRuntime().availableProcessors());
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Getters and setters are implemented with the properties of the object. Other methods existing
+   * in the kurento-client interface of the object return a default value of their return type.
+   */
+  private JsonElement invokeGeneric(FakeMediaObject object, String operation,
+      JsonObject opParams) {
+
+    Method method = findClientMethod(object, operation);
+
+    if (operation.startsWith("set") && operation.length() > 3 && opParams.entrySet().size() == 1) {
+      object.setProperty(toPropertyName(operation), opParams.entrySet().iterator().next()
+          .getValue());
+      return null;
+    }
+
+    if (operation.startsWith("get") && operation.length() > 3) {
+      JsonElement value = object.getProperty(toPropertyName(operation));
+      if (value != null) {
+        return value;
+      }
+    }
+
+    if (method == null) {
+      if (clientClasses.containsKey(object.getType())) {
+        throw new JsonRpcErrorException(ERROR_METHOD_NOT_FOUND,
+            "Method " + operation + " not found in type " + object.getType());
+      }
+      // Types out of the core module are not checked
+      return null;
+    }
+
+    return defaultValue(method.getReturnType());
+  }
+
+  private Method findClientMethod(FakeMediaObject object, String operation) {
+
+    Class<?> clazz = getClientClass(object.getType());
+    if (clazz == null) {
+      return null;
+    }
+
+    for (Method method : clazz.getMethods()) {
+      if (method.getName().equals(operation) && !isAsyncMethod(method)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private Class<?> getClientClass(String type) {
+
+    if (!type.startsWith(CORE_MODULE + ".")) {
+      return null;
+    }
+
+    Class<?> clazz = clientClasses.get(type);
+    if (clazz == null) {
+      try {
+        clazz = Class.forName(CORE_PACKAGE + type.substring(CORE_MODULE.length() + 1));
+        clientClasses.put(type, clazz);
+      } catch (ClassNotFoundException e) {
+        return null;
+      }
+    }
+    return clazz;
+  }
+
+  private static boolean isAsyncMethod(Method method) {
+    for (Class<?> paramType : method.getParameterTypes()) {
+      if (paramType == Continuation.class || paramType == org.kurento.client.Transaction.class) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static JsonElement defaultValue(Class<?> type) {
+
+    if (type == void.class || type == Void.class) {
+      return null;
+    } else if (type == boolean.class || type == Boolean.class) {
+      return new JsonPrimitive(false);
+    } else if (type.isPrimitive() || Number.class.isAssignableFrom(type)) {
+      return new JsonPrimitive(0);
+    } else if (type == String.class) {
+      return new JsonPrimitive("");
+    } else if (List.class.isAssignableFrom(type)) {
+      return new JsonArray();
+    } else if (Map.class.isAssignableFrom(type)) {
+      return new JsonObject();
+    } else if (type.isEnum() && type.getEnumConstants().length > 0) {
+      return new JsonPrimitive(type.getEnumConstants()[0].toString());
+    } else {
+      return null;
+    }
+  }
+
+  private static String toPropertyName(String operation) {
+    return Character.toLowerCase(operation.charAt(3)) + operation.substring(4);
+  }
+
+  private void connect(FakeMediaObject source, FakeMediaObject sink, String mediaType) {
+
+    String[] types = mediaType != null ? new String[] { mediaType }
+        : new String[] { "AUDIO", "VIDEO", "DATA" };
+
+    for (String type : types) {
+      JsonObject connection = new JsonObject();
+      connection.addProperty("source", source.getId());
+      connection.addProperty("sink", sink.getId());
+      connection.addProperty("type", type);
+      connection.addProperty("sourceDescription", "default");
+      connection.addProperty("sinkDescription", "default");
+      connection.addProperty("__module__", CORE_MODULE);
+      connection.addProperty("__type__", "ElementConnectionData");
+      source.addSinkConnection(connection);
+      sink.addSourceConnection(connection);
+
+      fireConnectionEvent("ElementConnected", connection);
+    }
+  }
+
+  private void disconnect(FakeMediaObject source, FakeMediaObject sink, String mediaType) {
+
+    for (JsonObject connection : source.getSinkConnections()) {
+      if (connection.get("sink").getAsString().equals(sink.getId())
+          && (mediaType == null || connection.get("type").getAsString().equals(mediaType))) {
+        source.removeSinkConnection(connection);
+        sink.removeSourceConnection(connection);
+
+        fireConnectionEvent("ElementDisconnected", connection);
+      }
+    }
+  }
+
+  private void fireConnectionEvent(String type, JsonObject connection) {
+    JsonObject data = new JsonObject();
+    data.add("sink", connection.get("sink"));
+    data.add("mediaType", connection.get("type"));
+    data.add("sourceMediaDescription", connection.get("sourceDescription"));
+    data.add("sinkMediaDescription", connection.get("sinkDescription"));
+    fireEvent(connection.get("source").getAsString(), type, data);
+  }
+
+  private static String createSdp(FakeMediaObject object) {
+    return "v=0\r\no=- 0 0 IN IP4 127.0.0.1\r\ns=" + object.getSimpleType()
+        + "\r\nc=IN IP4 127.0.0.1\r\nt=0 0\r\n";
+  }
+
+  private JsonElement subscribe(JsonObject params, Session session) {
+
+    FakeMediaObject object = getObjectParam(params, "object");
+    String type = getString(params, "type");
+
+    Subscription subscription =
+        new Subscription(UUID.randomUUID().toString(), object, type, session);
+    addSubscription(subscription);
+
+    return new JsonPrimitive(subscription.id);
+  }
+
+  private synchronized void addSubscription(Subscription subscription) {
+
+    subscriptions.put(subscription.id, subscription);
+
+    Map<String, Map<String, Subscription>> byType =
+        objectSubscriptions.get(subscription.object.getId());
+    if (byType == null) {
+      byType = new ConcurrentHashMap<>();
+      objectSubscriptions.put(subscription.object.getId(), byType);
+    }
+    addToIndex(byType, subscription.type, subscription);
+    addToIndex(typeSubscriptions, subscription.type, subscription);
+  }
+
+  private static void addToIndex(Map<String, Map<String, Subscription>> map, String key,
+      Subscription subscription) {
+    Map<String, Subscription> keySubscriptions = map.get(key);
+    if (keySubscriptions == null) {
+      keySubscriptions = new ConcurrentHashMap<>();
+      map.put(key, keySubscriptions);
+    }
+    keySubscriptions.put(subscription.id, subscription);
+  }
+
+  private synchronized void removeSubscription(Subscription subscription) {
+
+    if (subscriptions.remove(subscription.id) == null) {
+      return;
+    }
+
+    Map<String, Map<String, Subscription>> byType =
+        objectSubscriptions.get(subscription.object.getId());
+    if (byType != null) {
+      removeFromIndex(byType, subscription.type, subscription);
+      if (byType.isEmpty()) {
+        objectSubscriptions.remove(subscription.object.getId());
+      }
+    }
+    removeFromIndex(typeSubscriptions, subscription.type, subscription);
+  }
+
+  private static void removeFromIndex(Map<String, Map<String, Subscription>> map, String key,
+      Subscription subscription) {
+    Map<String, Subscription> keySubscriptions = map.get(key);
+    if (keySubscriptions != null) {
+      keySubscriptions.remove(subscription.id);
+      if (keySubscriptions.isEmpty()) {
+        map.remove(key);
+      }
+    }
+  }
+
+  private synchronized void removeSubscriptions(FakeMediaObject object) {
+
+    Map<String, Map<String, Subscription>> byType = objectSubscriptions.remove(object.getId());
+    if (byType == null) {
+      return;
+    }
+
+    for (Map<String, Subscription> objectTypeSubscriptions : byType.values()) {
+      for (Subscription subscription : objectTypeSubscriptions.values()) {
+        subscriptions.remove(subscription.id);
+        removeFromIndex(typeSubscriptions, subscription.type, subscription);
+      }
+    }
+  }
+
+  private void addSessionObject(String sessionId) {
+    synchronized (sessionObjects) {
+      Integer count = sessionObjects.get(sessionId);
+      sessionObjects.put(sessionId, count == null ? 1 : count + 1);
+    }
+  }
+
+  private void removeSessionObject(String sessionId) {
+    synchronized (sessionObjects) {
+      Integer count = sessionObjects.get(sessionId);
+      if (count == null || count <= 1) {
+        sessionObjects.remove(sessionId);
+      } else {
+        sessionObjects.put(sessionId, count - 1);
+      }
+    }
+  }
+
+  private void release(FakeMediaObject object) {
+
+    if (object.getId().equals(SERVER_MANAGER_ID)) {
+      throw new JsonRpcErrorException(ERROR_UNEXPECTED, "ServerManager cannot be released");
+    }
+
+    for (FakeMediaObject child : object.getChildren()) {
+      release(child);
+    }
+
+    boolean removed = objects.remove(object.getId()) != null;
+    if (removed) {
+      pipelineIds.remove(object.getId());
+      removeSessionObject(object.getSessionId());
+    }
+
+    FakeMediaObject parent = object.getParent();
+    if (parent != null) {
+      parent.removeChild(object);
+      for (FakeMediaObject sibling : parent.getChildren()) {
+        sibling.removeConnections(object.getId());
+      }
+    }
+
+    removeSubscriptions(object);
+
+    if (removed) {
+      JsonObject data = new JsonObject();
+      data.addProperty("objectId", object.getId());
+      fireEvent(SERVER_MANAGER_ID, "ObjectDestroyed", data);
+    }
+  }
+
+  private JsonElement describe(FakeMediaObject object) {
+    JsonObject description = new JsonObject();
+    description.addProperty("type", object.getSimpleType());
+    description.addProperty("qualifiedType", object.getType());
+    description.add("hierarchy", new JsonArray());
+    return description;
+  }
+
+  /**
+   * Operations are executed in order. When one of them fails, the remaining ones are not executed.
+   * Objects created in the transaction are referenced by "newref:N" in later operations.
+   */
+  private JsonElement transaction(JsonObject params, Session session) {
+
+    JsonArray operations = params.has("operations") ? params.getAsJsonArray("operations")
+        : new JsonArray();
+
+    Map<String, String> newRefs = new HashMap<>();
+    JsonArray responses = new JsonArray();
+    boolean failed = false;
+
+    for (JsonElement element : operations) {
+
+      JsonObject operation = element.getAsJsonObject();
+      JsonObject response = new JsonObject();
+      response.addProperty("jsonrpc", "2.0");
+      response.add("id", operation.get("id"));
+
+      if (failed) {
+        response.add("error",
+            createError(ERROR_NOT_EXECUTED, "Not executed: a previous operation failed"));
+      } else {
+        try {
+          JsonObject opParams = operation.has("params")
+              ? resolveNewRefs(operation.getAsJsonObject("params"), newRefs).getAsJsonObject()
+              : null;
+          JsonElement value =
+              process(operation.get("method").getAsString(), opParams, session, newRefs);
+          response.add("result", createResult(value, session));
+        } catch (JsonRpcErrorException e) {
+          response.add("error", createError(e.getCode(), e.getError().getMessage()));
+          failed = true;
+        }
+      }
+
+      responses.add(response);
+    }
+
+    return responses;
+  }
+
+  private static JsonObject createError(int code, String message) {
+    JsonObject error = new JsonObject();
+    error.addProperty("code", code);
+    error.addProperty("message", message);
+    return error;
+  }
+
+  private static JsonElement resolveNewRefs(JsonElement element, Map<String, String> newRefs) {
+
+    if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+      String value = element.getAsString();
+      if (value.startsWith(NEWREF_PREFIX)) {
+        String id = newRefs.get(value);
+        if (id == null) {
+          throw new JsonRpcErrorException(ERROR_OBJECT_NOT_FOUND, "Unknown reference " + value);
+        }
+        return new JsonPrimitive(id);
+      }
+      return element;
+    } else if (element.isJsonObject()) {
+      JsonObject resolved = new JsonObject();
+      for (Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+        resolved.add(entry.getKey(), resolveNewRefs(entry.getValue(), newRefs));
+      }
+      return resolved;
+    } else if (element.isJsonArray()) {
+      JsonArray resolved = new JsonArray();
+      for (JsonElement item : element.getAsJsonArray()) {
+        resolved.add(resolveNewRefs(item, newRefs));
+      }
+      return resolved;
+    }
+    return element;
+  }
+
+  private FakeMediaObject getObjectParam(JsonObject params, String name) {
+
+    String id = getString(params, name);
+    FakeMediaObject object = id != null ? objects.get(id) : null;
+
+    if (object == null) {
+      throw new JsonRpcErrorException(ERROR_OBJECT_NOT_FOUND, "Object '" + id + "' not found");
+    }
+    return object;
+  }
+
+  private static String getString(JsonObject params, String name) {
+    JsonElement element = params.get(name);
+    return element == null || element.isJsonNull() ? null : element.getAsString();
+  }
+
+  private static JsonArray toJsonArrayOfStrings(Collection<String> strings) {
+    JsonArray array = new JsonArray();
+    for (String string : strings) {
+      array.add(new JsonPrimitive(string));
+    }
+    return array;
+  }
+
+  private static JsonArray toJsonArray(List<JsonObject> list) {
+    JsonArray array = new JsonArray();
+    for (JsonObject item : list) {
+      array.add(item);
+    }
+    return array;
+  }
+
+  // ---------------- Events -------------------
+
+  /**
+   * Sends an event of the given type to all subscriptions of the object to that type.
+   *
+   * @return number of events sent
+   */
+  public int fireEvent(String objectId, String type, JsonObject data) {
+
+    Map<String, Map<String, Subscription>> byType = objectSubscriptions.get(objectId);
+    Map<String, Subscription> typeObjectSubscriptions = byType != null ? byType.get(type) : null;
+    if (typeObjectSubscriptions == null) {
+      return 0;
+    }
+
+    int sent = 0;
+    for (Subscription subscription : typeObjectSubscriptions.values()) {
+      sendEvent(subscription, data);
+      sent++;
+    }
+    return sent;
+  }
+
+  private void generateEvents(double elapsedSeconds) {
+
+    if (eventRates.isEmpty()) {
+      return;
+    }
+
+    for (Entry<String, Double> rate : eventRates.entrySet()) {
+
+      Map<String, Subscription> rateSubscriptions = typeSubscriptions.get(rate.getKey());
+      if (rateSubscriptions == null) {
+        continue;
+      }
+
+      for (Subscription subscription : rateSubscriptions.values()) {
+
+        subscription.pendingEvents += rate.getValue() * elapsedSeconds;
+
+        while (subscription.pendingEvents >= 1) {
+          subscription.pendingEvents--;
+          sendEvent(subscription, eventData.get(subscription.type));
+        }
+      }
+    }
+  }
+
+  private void sendEvent(Subscription subscription, JsonObject extraData) {
+
+    JsonObject data = new JsonObject();
+    data.addProperty("source", subscription.object.getId());
+    data.addProperty("type", subscription.type);
+    data.addProperty("timestamp", Long.toString(System.currentTimeMillis() / 1000));
+    data.add("tags", new JsonArray());
+    if (extraData != null) {
+      for (Entry<String, JsonElement> entry : extraData.entrySet()) {
+        data.add(entry.getKey(), entry.getValue());
+      }
+    }
+
+    JsonObject value = new JsonObject();
+    value.addProperty("object", subscription.object.getId());
+    value.addProperty("subscription", subscription.id);
+    value.addProperty("type", subscription.type);
+    value.add("data", data);
+
+    JsonObject params = new JsonObject();
+    params.add("value", value);
+
+    try {
+      subscription.session.sendNotification("onEvent", params);
+      eventsSent.incrementAndGet();
+    } catch (Exception e) {
+      log.debug("Exception sending event {} to session {}. Removing subscription",
+          subscription.type, subscription.session.getSessionId(), e);
+      removeSubscription(subscription);
+    }
+  }
+
+}
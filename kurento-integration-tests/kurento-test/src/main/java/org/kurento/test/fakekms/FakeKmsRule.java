@@ -0,0 +1,84 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.test.fakekms;
+
+import org.junit.rules.ExternalResource;
+import org.kurento.client.KurentoClient;
+
+/**
+ * JUnit rule that starts a {@link FakeKms} and connects a {@link KurentoClient} to it before each
+ * test, and destroys both after it.
+ *
+ * <pre>
+ * &#64;Rule
+ * public FakeKmsRule fakeKms = new FakeKmsRule();
+ *
+ * &#64;Test
+ * public void test() {
+ *   MediaPipeline pipeline = fakeKms.getKurentoClient().createMediaPipeline();
+ * }
+ * </pre>
+ *
+ * @since 6.6.1
+ */
+public class FakeKmsRule extends ExternalResource {
+
+  private final FakeKms fakeKms;
+  private KurentoClient kurento;
+
+  public FakeKmsRule() {
+    this(new FakeKms());
+  }
+
+  public FakeKmsRule(FakeKms fakeKms) {
+    this.fakeKms = fakeKms;
+  }
+
+  @Override
+  protected void before() {
+    fakeKms.start();
+    try {
+      kurento = KurentoClient.create(fakeKms.getWsUri());
+    } catch (RuntimeException e) {
+      fakeKms.stop();
+      throw e;
+    }
+  }
+
+  @Override
+  protected void after() {
+    if (kurento != null) {
+      kurento.destroy();
+      kurento = null;
+    }
+    fakeKms.stop();
+  }
+
+  public FakeKms getFakeKms() {
+    return fakeKms;
+  }
+
+  public FakeKmsHandler getHandler() {
+    return fakeKms.getHandler();
+  }
+
+  public KurentoClient getKurentoClient() {
+    return kurento;
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.test.fakekms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Media object stored in memory by {@link FakeKmsHandler}.
+ *
+ * @since 6.6.1
+ */
+public class FakeMediaObject {
+
+  private final String id;
+  private final String type;
+  private final FakeMediaObject parent;
+  private final String sessionId;
+  private final long creationTime = System.currentTimeMillis();
+
+  private final ConcurrentHashMap<String, JsonElement> properties = new ConcurrentHashMap<>();
+
+  private final Set<FakeMediaObject> children =
+      Collections.newSetFromMap(new ConcurrentHashMap<FakeMediaObject, Boolean>());
+
+  private final List<JsonObject> sinkConnections = new CopyOnWriteArrayList<>();
+  private final List<JsonObject> sourceConnections = new CopyOnWriteArrayList<>();
+
+  public FakeMediaObject(String id, String type, FakeMediaObject parent, String sessionId) {
+    this.id = id;
+    this.type = type;
+    this.parent = parent;
+    this.sessionId = sessionId;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the qualified type of the object (for example, kurento.WebRtcEndpoint).
+   */
+  public String getType() {
+    return type;
+  }
+
+  public String getSimpleType() {
+    return type.substring(type.lastIndexOf('.') + 1);
+  }
+
+  public FakeMediaObject getParent() {
+    return parent;
+  }
+
+  public FakeMediaObject getMediaPipeline() {
+    return parent == null ? this : parent.getMediaPipeline();
+  }
+
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  public JsonElement getProperty(String name) {
+    return properties.get(name);
+  }
+
+  public void setProperty(String name, JsonElement value) {
+    if (value == null) {
+      properties.remove(name);
+    } else {
+      properties.put(name, value);
+    }
+  }
+
+  public void addChild(FakeMediaObject child) {
+    children.add(child);
+  }
+
+  public void removeChild(FakeMediaObject child) {
+    children.remove(child);
+  }
+
+  public List<FakeMediaObject> getChildren() {
+    return new ArrayList<>(children);
+  }
+
+  public void addSinkConnection(JsonObject connection) {
+    sinkConnections.add(connection);
+  }
+
+  public void addSourceConnection(JsonObject connection) {
+    sourceConnections.add(connection);
+  }
+
+  /**
+   * Removes the connections with the given object.
+   */
+  public void removeConnections(String objectId) {
+    for (JsonObject connection : sinkConnections) {
+      if (connection.get("sink").getAsString().equals(objectId)) {
+        sinkConnections.remove(connection);
+      }
+    }
+    for (JsonObject connection : sourceConnections) {
+      if (connection.get("source").getAsString().equals(objectId)) {
+        sourceConnections.remove(connection);
+      }
+    }
+  }
+
+  public void removeSinkConnection(JsonObject connection) {
+    sinkConnections.remove(connection);
+  }
+
+  public void removeSourceConnection(JsonObject connection) {
+    sourceConnections.remove(connection);
+  }
+
+  public List<JsonObject> getSinkConnections() {
+    return new ArrayList<>(sinkConnections);
+  }
+
+  public List<JsonObject> getSourceConnections() {
+    return new ArrayList<>(sourceConnections);
+  }
+
+  @Override
+  public String toString() {
+    return id;
+  }
+
+}
@@ -134,10 +134,11 @@ public class JsonRpcClientWebSocket extends AbstractJsonRpcClientWebSocket {
 
       } catch (ExecutionException e) {
         if (e.getCause() instanceof UpgradeException && numRetries < maxRetries) {
+          long delay = getUpgradeRetryDelay(numRetries);
           log.warn(
-              "Upgrade exception when trying to connect to {}. Try {} of {}. Retrying in 200ms ",
-              uri, numRetries + 1, maxRetries);
-          Thread.sleep(200);
+              "Upgrade exception when trying to connect to {}. Try {} of {}. Retrying in {}ms ",
+              uri, numRetries + 1, maxRetries, delay);
+          Thread.sleep(delay);
           numRetries++;
         } else {
           throw e;
@@ -65,6 +65,11 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
   private static Logger log = LoggerFactory.getLogger(AbstractJsonRpcClientWebSocket.class);
 
+  /**
+   * @deprecated Delays between reconnections are calculated by the {@link ReconnectPolicy} of the
+   *             client.
+   */
+  @Deprecated
   protected static final long RECONNECT_DELAY_TIME_MILLIS = 5000;
 
   private long requestTimeout =
@@ -105,6 +110,10 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
   private long maxTimeReconnecting;
 
+  private volatile ReconnectPolicy reconnectPolicy = new ReconnectPolicy();
+
+  private volatile int reconnectAttempts;
+
   private Object executorsLock = new Object();
 
   public AbstractJsonRpcClientWebSocket(String url,
@@ -180,6 +189,24 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     return tryReconnectingForever;
   }
 
+  /**
+   * Configures the policy used to calculate the delay between reconnection attempts and between
+   * retries of rejected websocket upgrades. By default, an exponential backoff with full jitter is
+   * used.
+   *
+   * @param reconnectPolicy
+   */
+  public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+    if (reconnectPolicy == null) {
+      throw new IllegalArgumentException("ReconnectPolicy can't be null");
+    }
+    this.reconnectPolicy = reconnectPolicy;
+  }
+
+  public ReconnectPolicy getReconnectPolicy() {
+    return reconnectPolicy;
+  }
+
   /**
    * Configures how requests from server have to be processed. If concurrentServerRequest is true,
    * then a executor service with several threads is used to execute the handler of the request. If
@@ -606,7 +633,8 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
   }
 
   private void reconnect(final String closeReason) {
-    reconnect(closeReason, 0, true);
+    reconnectAttempts = 0;
+    reconnect(closeReason, reconnectPolicy.getDelay(0), true);
   }
 
   private void reconnect(final String closeReason, final long delayMillis,
@@ -627,6 +655,29 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     disconnectExec.schedule(new Runnable() {
       @Override
       public void run() {
+
+        if (!reconnectPolicy.tryAcquireSlot()) {
+
+          // Waiting for a slot is not an attempt: with no max time, the client keeps waiting to
+          // make the single attempt it is allowed
+          if (tryReconnectingMaxTime > 0 && isReconnectingTimeExceeded()) {
+            log.warn("{} Max number of concurrent reconnections ({}) reached until the max time"
+                + " reconnecting to server {}. Notifying disconnection", label,
+                ReconnectPolicy.getMaxConcurrentReconnections(), uri);
+            notifyDisconnection(closeReason, true);
+            return;
+          }
+
+          reconnectAttempts++;
+          long delay = reconnectPolicy.getDelay(reconnectAttempts);
+
+          log.debug("{} Max number of concurrent reconnections ({}) reached. Retrying in {} millis",
+              label, ReconnectPolicy.getMaxConcurrentReconnections(), delay);
+
+          reconnect(closeReason, delay, false);
+          return;
+        }
+
         try {
 
           log.debug("{} JsonRpcWsClient reconnecting to {}. ", label, uri);
@@ -634,6 +685,7 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
           connectIfNecessary();
 
           reconnecting = false;
+          reconnectAttempts = 0;
 
         } catch (Exception e) {
 
@@ -643,8 +695,7 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
           log.debug("currentTime={}", System.currentTimeMillis());
           log.debug("Parar de reconectar={}", System.currentTimeMillis() > maxTimeReconnecting);
 
-          if (!tryReconnectingForever && (tryReconnectingMaxTime == 0
-              || System.currentTimeMillis() > maxTimeReconnecting)) {
+          if (isReconnectingTimeExceeded()) {
 
             log.warn("{} Exception trying to reconnect to server {}. Notifying disconnection",
                 label, uri, e);
@@ -653,17 +704,27 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
           } else {
 
+            reconnectAttempts++;
+            long delay = reconnectPolicy.getDelay(reconnectAttempts);
+
             log.warn("{} Exception trying to reconnect to server {}. Retrying in {} millis", label,
-                uri, RECONNECT_DELAY_TIME_MILLIS, e);
+                uri, delay, e);
 
-            reconnect(closeReason, RECONNECT_DELAY_TIME_MILLIS, false);
+            reconnect(closeReason, delay, false);
           }
+        } finally {
+          reconnectPolicy.releaseSlot();
         }
       }
 
     }, delayMillis, TimeUnit.MILLISECONDS);
   }
 
+  private boolean isReconnectingTimeExceeded() {
+    return !tryReconnectingForever
+        && (tryReconnectingMaxTime == 0 || System.currentTimeMillis() > maxTimeReconnecting);
+  }
+
   @Override
   protected void closeWithReconnection() {
     log.debug("{} Closing websocket session to force reconnection", label);
@@ -883,6 +944,17 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     this.tryReconnectingMaxTime = tryReconnectingMaxTime;
   }
 
+  /**
+   * Returns the time to wait before retrying a websocket upgrade rejected by the server (for
+   * example, because the server is pacing new connections).
+   *
+   * @param retry
+   *          number of retries already executed
+   */
+  protected long getUpgradeRetryDelay(int retry) {
+    return reconnectPolicy.getDelay(retry);
+  }
+
   protected abstract void sendTextMessage(String jsonMessage) throws IOException;
 
   protected abstract void closeNativeClient();
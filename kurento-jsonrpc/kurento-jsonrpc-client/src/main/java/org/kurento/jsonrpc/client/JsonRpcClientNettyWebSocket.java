@@ -257,10 +257,11 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
           log.warn("{} ERROR connecting WS Netty client, opening channel", label, e);
         } catch (Exception e) {
           if (e.getCause() instanceof WebSocketHandshakeException && numRetries < maxRetries) {
+            long delay = getUpgradeRetryDelay(numRetries);
             log.warn(
-                "{} Upgrade exception when trying to connect to {}. Try {} of {}. Retrying in 200ms ",
-                label, uri, numRetries + 1, maxRetries);
-            Thread.sleep(200);
+                "{} Upgrade exception when trying to connect to {}. Try {} of {}. Retrying in {}ms ",
+                label, uri, numRetries + 1, maxRetries, delay);
+            Thread.sleep(delay);
             numRetries++;
           } else {
             throw e;
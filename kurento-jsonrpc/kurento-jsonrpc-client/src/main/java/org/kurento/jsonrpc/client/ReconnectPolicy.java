@@ -0,0 +1,148 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.kurento.commons.PropertiesManager;
+
+/**
+ * Policy used by websocket clients to decide how long to wait between reconnection attempts.
+ *
+ * Delays grow exponentially from {@code baseDelay} up to {@code maxDelay} and a random value
+ * between zero and the computed delay is used (full jitter), so clients disconnected at the same
+ * time from a server don't retry in lockstep. Additionally, the number of clients of the same JVM
+ * that can be executing a connection attempt at the same time is limited by a process wide
+ * semaphore.
+ *
+ * Default values can be configured with the properties
+ * {@code jsonRpcClientWebSocket.reconnect.baseDelay},
+ * {@code jsonRpcClientWebSocket.reconnect.maxDelay} and
+ * {@code jsonRpcClientWebSocket.reconnect.maxConcurrent}.
+ */
+public class ReconnectPolicy {
+
+  private static final long DEFAULT_BASE_DELAY_MILLIS =
+      PropertiesManager.getProperty("jsonRpcClientWebSocket.reconnect.baseDelay", 200L);
+
+  private static final long DEFAULT_MAX_DELAY_MILLIS =
+      PropertiesManager.getProperty("jsonRpcClientWebSocket.reconnect.maxDelay", 30000L);
+
+  private static final int MAX_CONCURRENT_RECONNECTIONS =
+      PropertiesManager.getProperty("jsonRpcClientWebSocket.reconnect.maxConcurrent", 50);
+
+  private static final Semaphore reconnectionSlots = new Semaphore(MAX_CONCURRENT_RECONNECTIONS);
+
+  private static final int MAX_SHIFT = 30;
+
+  private final long baseDelay;
+  private final long maxDelay;
+  private final boolean jitter;
+
+  public ReconnectPolicy() {
+    this(DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, true);
+  }
+
+  public ReconnectPolicy(long baseDelay, long maxDelay) {
+    this(baseDelay, maxDelay, true);
+  }
+
+  /**
+   * @param baseDelay
+   *          delay in millis used for the first retry
+   * @param maxDelay
+   *          upper bound in millis of the delay between retries
+   * @param jitter
+   *          if true, a random delay between zero and the computed value is used
+   */
+  public ReconnectPolicy(long baseDelay, long maxDelay, boolean jitter) {
+
+    if (baseDelay < 0 || maxDelay < baseDelay) {
+      throw new IllegalArgumentException(
+          "Invalid reconnect delays: baseDelay=" + baseDelay + " maxDelay=" + maxDelay);
+    }
+
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+    this.jitter = jitter;
+  }
+
+  public long getBaseDelay() {
+    return baseDelay;
+  }
+
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  public boolean isJitter() {
+    return jitter;
+  }
+
+  /**
+   * Returns the upper bound of the delay for the given attempt, without jitter.
+   *
+   * @param attempt
+   *          number of failed attempts so far (starting at 0)
+   */
+  public long getMaxDelayForAttempt(int attempt) {
+
+    int shift = Math.min(Math.max(attempt, 0), MAX_SHIFT);
+    long delay = baseDelay << shift;
+
+    if (delay < 0 || delay > maxDelay) {
+      return maxDelay;
+    }
+    return delay;
+  }
+
+  /**
+   * Returns the time in millis to wait before executing the given reconnection attempt.
+   *
+   * @param attempt
+   *          number of failed attempts so far (starting at 0)
+   */
+  public long getDelay(int attempt) {
+
+    long delay = getMaxDelayForAttempt(attempt);
+
+    if (!jitter || delay == 0) {
+      return delay;
+    }
+
+    return ThreadLocalRandom.current().nextLong(delay + 1);
+  }
+
+  /**
+   * Tries to get one of the reconnection slots shared by all clients in this JVM. If this method
+   * returns true, {@link #releaseSlot()} has to be called when the connection attempt finishes.
+   */
+  public boolean tryAcquireSlot() {
+    return reconnectionSlots.tryAcquire();
+  }
+
+  public void releaseSlot() {
+    reconnectionSlots.release();
+  }
+
+  public static int getMaxConcurrentReconnections() {
+    return MAX_CONCURRENT_RECONNECTIONS;
+  }
+
+}
@@ -87,4 +87,8 @@ public class JsonRpcConstants {
 
   public static final int ERROR_SERVER_ERROR = -32000;
 
+  public static final int ERROR_SERVER_BUSY = -32001;
+
+  public static final String SERVER_BUSY = "Server busy, retry later";
+
 }
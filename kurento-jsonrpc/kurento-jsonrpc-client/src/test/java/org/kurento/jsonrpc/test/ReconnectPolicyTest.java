@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.client.ReconnectPolicy;
+
+public class ReconnectPolicyTest {
+
+  @Test
+  public void exponentialDelaysAreBoundedByMaxDelay() {
+
+    ReconnectPolicy policy = new ReconnectPolicy(100, 5000, false);
+
+    assertEquals(100, policy.getDelay(0));
+    assertEquals(200, policy.getDelay(1));
+    assertEquals(400, policy.getDelay(2));
+    assertEquals(3200, policy.getDelay(5));
+    assertEquals(5000, policy.getDelay(6));
+    assertEquals(5000, policy.getDelay(100));
+  }
+
+  @Test
+  public void jitteredDelaysAreSpreadBetweenZeroAndMaxDelay() {
+
+    ReconnectPolicy policy = new ReconnectPolicy(100, 5000, true);
+
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+
+    for (int i = 0; i < 1000; i++) {
+      long delay = policy.getDelay(10);
+      assertTrue(delay >= 0 && delay <= 5000);
+      min = Math.min(min, delay);
+      max = Math.max(max, delay);
+    }
+
+    assertTrue("Jittered delays should be spread, min=" + min + " max=" + max, max - min > 2500);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidDelaysAreRejected() {
+    new ReconnectPolicy(1000, 100);
+  }
+
+}
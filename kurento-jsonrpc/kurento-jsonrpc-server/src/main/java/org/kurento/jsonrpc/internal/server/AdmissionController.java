@@ -0,0 +1,283 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kurento.commons.PropertiesManager;
+
+/**
+ * Decides whether new connections and requests are accepted by the server, so a flood of clients
+ * is rejected before any work is done for them.
+ *
+ * The following limits can be configured (all of them are disabled by default):
+ * <ul>
+ * <li>ws.maxSessions: max number of websocket connections</li>
+ * <li>ws.maxSessionsPerAddress: max number of websocket connections from the same remote
+ * address</li>
+ * <li>ws.admission.requestsPerSecondPerAddress, ws.admission.requestsBurstPerAddress: rate of
+ * requests accepted from the same remote address</li>
+ * <li>ws.admission.maxConcurrentRequests: max number of requests executed by handlers at the same
+ * time</li>
+ * <li>ws.admission.maxQueuedRequests: max number of requests accepted and not finished yet. Above
+ * this value, requests are answered with a "server busy" error</li>
+ * </ul>
+ */
+public class AdmissionController {
+
+  public enum Rejection {
+    NONE, MAX_CONNECTIONS, MAX_CONNECTIONS_PER_ADDRESS, REQUEST_RATE, QUEUE_FULL
+  }
+
+  private static class AddressStats {
+
+    private final String address;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final TokenBucket requestBucket;
+
+    private AddressStats(String address, TokenBucket requestBucket) {
+      this.address = address;
+      this.requestBucket = requestBucket;
+    }
+  }
+
+  // Used for connections admitted without a known remote address
+  private static final AddressStats UNKNOWN_ADDRESS = new AddressStats(null, null);
+
+  private final long maxConnections;
+  private final int maxConnectionsPerAddress;
+  private final double requestsPerSecondPerAddress;
+  private final int requestsBurstPerAddress;
+  private final int maxQueuedRequests;
+
+  private final Semaphore executionPermits;
+
+  private final AtomicLong numConnections = new AtomicLong();
+  private final AtomicInteger queuedRequests = new AtomicInteger();
+
+  private final ConcurrentHashMap<String, AddressStats> addresses = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, AddressStats> transports = new ConcurrentHashMap<>();
+
+  private final AtomicLong rejectedConnections = new AtomicLong();
+  private final AtomicLong rejectedByRate = new AtomicLong();
+  private final AtomicLong rejectedByQueue = new AtomicLong();
+
+  public AdmissionController() {
+    this(PropertiesManager.getProperty("ws.maxSessions", Long.MAX_VALUE),
+        PropertiesManager.getProperty("ws.maxSessionsPerAddress", Integer.MAX_VALUE),
+        PropertiesManager.getProperty("ws.admission.requestsPerSecondPerAddress", 0d),
+        PropertiesManager.getProperty("ws.admission.requestsBurstPerAddress", 100),
+        PropertiesManager.getProperty("ws.admission.maxConcurrentRequests", 0),
+        PropertiesManager.getProperty("ws.admission.maxQueuedRequests", Integer.MAX_VALUE));
+  }
+
+  /**
+   * @param maxConnections
+   *          max number of connections
+   * @param maxConnectionsPerAddress
+   *          max number of connections from the same remote address
+   * @param requestsPerSecondPerAddress
+   *          requests per second allowed from the same remote address. 0 means no limit
+   * @param requestsBurstPerAddress
+   *          requests allowed in a burst from the same remote address
+   * @param maxConcurrentRequests
+   *          max requests executed at the same time by handlers. 0 means no limit
+   * @param maxQueuedRequests
+   *          max requests accepted and not finished
+   */
+  public AdmissionController(long maxConnections, int maxConnectionsPerAddress,
+      double requestsPerSecondPerAddress, int requestsBurstPerAddress, int maxConcurrentRequests,
+      int maxQueuedRequests) {
+
+    this.maxConnections = maxConnections;
+    this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    this.requestsPerSecondPerAddress = requestsPerSecondPerAddress;
+    this.requestsBurstPerAddress = requestsBurstPerAddress;
+    this.maxQueuedRequests = maxQueuedRequests;
+    this.executionPermits =
+        maxConcurrentRequests > 0 ? new Semaphore(maxConcurrentRequests, true) : null;
+  }
+
+  // ---------------- Connections -------------------
+
+  /**
+   * Registers a new connection if limits allow it. If this method returns
+   * {@link Rejection#NONE}, {@link #connectionClosed(String)} has to be called when the connection
+   * is closed.
+   *
+   * @param transportId
+   *          id of the transport session
+   * @param remoteAddress
+   *          remote address of the connection. Can be null if unknown
+   */
+  public Rejection tryAdmitConnection(String transportId, String remoteAddress) {
+
+    if (!incIfBelow(numConnections, maxConnections)) {
+      rejectedConnections.incrementAndGet();
+      return Rejection.MAX_CONNECTIONS;
+    }
+
+    if (remoteAddress == null) {
+      transports.put(transportId, UNKNOWN_ADDRESS);
+      return Rejection.NONE;
+    }
+
+    synchronized (addresses) {
+
+      AddressStats stats = addresses.get(remoteAddress);
+
+      if (stats == null) {
+        stats = new AddressStats(remoteAddress, requestsPerSecondPerAddress > 0
+            ? new TokenBucket(requestsPerSecondPerAddress, requestsBurstPerAddress) : null);
+        addresses.put(remoteAddress, stats);
+      }
+
+      if (stats.connections.get() >= maxConnectionsPerAddress) {
+        if (stats.connections.get() == 0) {
+          addresses.remove(remoteAddress);
+        }
+        numConnections.decrementAndGet();
+        rejectedConnections.incrementAndGet();
+        return Rejection.MAX_CONNECTIONS_PER_ADDRESS;
+      }
+
+      stats.connections.incrementAndGet();
+      transports.put(transportId, stats);
+    }
+
+    return Rejection.NONE;
+  }
+
+  public void connectionClosed(String transportId) {
+
+    AddressStats stats = transports.remove(transportId);
+
+    if (stats == null) {
+      // Connection not admitted
+      return;
+    }
+
+    if (stats != UNKNOWN_ADDRESS) {
+      synchronized (addresses) {
+        if (stats.connections.decrementAndGet() <= 0) {
+          addresses.remove(stats.address, stats);
+        }
+      }
+    }
+
+    numConnections.decrementAndGet();
+  }
+
+  // ---------------- Requests -------------------
+
+  /**
+   * Checks if a request received in the given transport can be processed. If this method returns
+   * {@link Rejection#NONE}, {@link #requestFinished()} has to be called when the request is
+   * processed.
+   */
+  public Rejection tryAdmitRequest(String transportId) {
+
+    if (transportId != null) {
+      AddressStats stats = transports.get(transportId);
+      if (stats != null && stats.requestBucket != null && !stats.requestBucket.tryConsume()) {
+        rejectedByRate.incrementAndGet();
+        return Rejection.REQUEST_RATE;
+      }
+    }
+
+    if (!incIfBelow(queuedRequests, maxQueuedRequests)) {
+      rejectedByQueue.incrementAndGet();
+      return Rejection.QUEUE_FULL;
+    }
+
+    return Rejection.NONE;
+  }
+
+  /**
+   * Blocks until the request can be executed according to the concurrency limit.
+   */
+  public void beforeExecution() throws InterruptedException {
+    if (executionPermits != null) {
+      executionPermits.acquire();
+    }
+  }
+
+  public void afterExecution() {
+    if (executionPermits != null) {
+      executionPermits.release();
+    }
+  }
+
+  public void requestFinished() {
+    queuedRequests.decrementAndGet();
+  }
+
+  // ---------------- Metrics -------------------
+
+  public long getNumConnections() {
+    return numConnections.get();
+  }
+
+  public int getQueuedRequests() {
+    return queuedRequests.get();
+  }
+
+  public long getRejectedConnections() {
+    return rejectedConnections.get();
+  }
+
+  public long getRejectedRequestsByRate() {
+    return rejectedByRate.get();
+  }
+
+  public long getRejectedRequestsByQueue() {
+    return rejectedByQueue.get();
+  }
+
+  public long getMaxConnections() {
+    return maxConnections;
+  }
+
+  private static boolean incIfBelow(AtomicLong counter, long max) {
+    while (true) {
+      long current = counter.get();
+      if (current >= max) {
+        return false;
+      }
+      if (counter.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private static boolean incIfBelow(AtomicInteger counter, int max) {
+    while (true) {
+      int current = counter.get();
+      if (current >= max) {
+        return false;
+      }
+      if (counter.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+}
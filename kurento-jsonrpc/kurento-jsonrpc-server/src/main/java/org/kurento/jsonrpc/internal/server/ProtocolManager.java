@@ -17,6 +17,7 @@
 
 package org.kurento.jsonrpc.internal.server;
 
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.ERROR_SERVER_BUSY;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_CLOSE;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_CONNECT;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_PING;
@@ -24,6 +25,7 @@ import static org.kurento.jsonrpc.internal.JsonRpcConstants.PONG;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.PONG_PAYLOAD;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.RECONNECTION_ERROR;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.RECONNECTION_SUCCESSFUL;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.SERVER_BUSY;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -41,6 +43,7 @@ import org.kurento.jsonrpc.JsonUtils;
 import org.kurento.jsonrpc.internal.JsonRpcHandlerManager;
 import org.kurento.jsonrpc.internal.client.AbstractSession;
 import org.kurento.jsonrpc.internal.client.TransactionImpl.ResponseSender;
+import org.kurento.jsonrpc.internal.server.AdmissionController.Rejection;
 import org.kurento.jsonrpc.internal.server.PingWatchdogManager.NativeSessionCloser;
 import org.kurento.jsonrpc.message.Request;
 import org.kurento.jsonrpc.message.Response;
@@ -83,6 +86,9 @@ public class ProtocolManager {
   @Qualifier("jsonrpcTaskScheduler")
   private TaskScheduler taskScheduler;
 
+  @Autowired(required = false)
+  private AdmissionController admissionController;
+
   private final JsonRpcHandlerManager handlerManager;
 
   private String label = "";
@@ -183,45 +189,136 @@ public class ProtocolManager {
       break;
     default:
 
-      final ServerSession session = getOrCreateSession(factory, transportId, request);
+      if (!admitRequest(request, responseSender, transportId)) {
+        break;
+      }
+
+      boolean submitted = false;
+      try {
+        submitted = processAdmittedRequest(factory, request, responseSender, transportId);
+      } finally {
+        if (!submitted) {
+          requestFinished();
+        }
+      }
+      break;
+    }
+
+  }
+
+  /**
+   * Processes a request that has been admitted. Returns true if the request has been submitted to
+   * the session executor and false if it has been completely processed.
+   */
+  private boolean processAdmittedRequest(ServerSessionFactory factory,
+      final Request<JsonElement> request, final ResponseSender responseSender, String transportId)
+      throws IOException {
 
-      log.debug("{} Req-> {} [jsonRpcSessionId={}, transportId={}]", label, request,
-          session.getSessionId(), transportId);
+    final ServerSession session = getOrCreateSession(factory, transportId, request);
 
-      // TODO, Take out this an put in Http specific handler. The main
-      // reason is to wait for request before responding to the client.
-      // And for no contaminate the ProtocolManager.
-      if (request.getMethod().equals(Request.POLL_METHOD_NAME)) {
+    log.debug("{} Req-> {} [jsonRpcSessionId={}, transportId={}]", label, request,
+        session.getSessionId(), transportId);
 
-        Type collectionType = new TypeToken<List<Response<JsonElement>>>() {
-        }.getType();
+    // TODO, Take out this an put in Http specific handler. The main
+    // reason is to wait for request before responding to the client.
+    // And for no contaminate the ProtocolManager.
+    if (request.getMethod().equals(Request.POLL_METHOD_NAME)) {
 
-        List<Response<JsonElement>> responseList = JsonUtils.fromJson(request.getParams(),
-            collectionType);
+      Type collectionType = new TypeToken<List<Response<JsonElement>>>() {
+      }.getType();
 
-        for (Response<JsonElement> response : responseList) {
-          session.handleResponse(response);
+      List<Response<JsonElement>> responseList = JsonUtils.fromJson(request.getParams(),
+          collectionType);
+
+      for (Response<JsonElement> response : responseList) {
+        session.handleResponse(response);
+      }
+
+      // Wait for some time if there is a request from server to
+      // client
+
+      // TODO Allow send empty responses. Now you have to send at
+      // least an
+      // empty string
+      responseSender.sendResponse(new Response<Object>(request.getId(), Collections.emptyList()));
+
+      return false;
+
+    } else {
+
+      session.processRequest(new ServerSession.SessionTask() {
+        @Override
+        public void run() {
+          executeAdmittedRequest(session, request, responseSender);
         }
 
-        // Wait for some time if there is a request from server to
-        // client
+        @Override
+        public void discarded() {
+          log.debug("{} Request {} discarded because session {} has been closed", label,
+              request.getMethod(), session.getSessionId());
+          requestFinished();
+        }
+      });
 
-        // TODO Allow send empty responses. Now you have to send at
-        // least an
-        // empty string
-        responseSender.sendResponse(new Response<Object>(request.getId(), Collections.emptyList()));
+      return true;
+    }
+  }
 
-      } else {
-        session.processRequest(new Runnable() {
-          @Override
-          public void run() {
-            handlerManager.handleRequest(session, request, responseSender);
-          }
-        });
+  private boolean admitRequest(Request<JsonElement> request, ResponseSender responseSender,
+      String transportId) throws IOException {
+
+    if (admissionController == null) {
+      return true;
+    }
+
+    Rejection rejection = admissionController.tryAdmitRequest(transportId);
+
+    if (rejection == Rejection.NONE) {
+      return true;
+    }
+
+    log.debug("{} Req-> {} rejected because {} limit reached (transportId={})", label,
+        request.getMethod(), rejection, transportId);
+
+    if (request.getId() != null) {
+      responseSender.sendResponse(
+          new Response<>(request.getId(), new ResponseError(ERROR_SERVER_BUSY, SERVER_BUSY)));
+    }
+
+    return false;
+  }
+
+  private void executeAdmittedRequest(ServerSession session, Request<JsonElement> request,
+      ResponseSender responseSender) {
+
+    if (admissionController == null) {
+      handlerManager.handleRequest(session, request, responseSender);
+      return;
+    }
+
+    try {
+      admissionController.beforeExecution();
+      try {
+        handlerManager.handleRequest(session, request, responseSender);
+      } finally {
+        admissionController.afterExecution();
       }
-      break;
+    } catch (InterruptedException e) {
+      log.debug("{} Interrupted while waiting to execute request {}", label, request.getMethod());
+      Thread.currentThread().interrupt();
+    } finally {
+      admissionController.requestFinished();
+    }
+  }
+
+  private void requestFinished() {
+    if (admissionController != null) {
+      admissionController.requestFinished();
     }
+  }
 
+  public void setAdmissionController(AdmissionController admissionController) {
+    this.admissionController = admissionController;
   }
 
   private ServerSession getOrCreateSession(ServerSessionFactory factory, String transportId,
@@ -38,6 +38,15 @@ import com.google.gson.JsonObject;
 
 public abstract class ServerSession extends AbstractSession {
 
+  /**
+   * Task executed by the executor of the session. If the session is closed before the task is
+   * executed, {@link #discarded()} is called instead.
+   */
+  public interface SessionTask extends Runnable {
+
+    void discarded();
+  }
+
   public static final String SESSION_RECONNECTION_TIME_PROP = "ws.sessionReconnectionTime";
   private static final int SESSION_RECONNECTION_TIME_DEFAULT = 10;
 
@@ -78,7 +87,11 @@ public abstract class ServerSession extends AbstractSession {
   @Override
   public void close() throws IOException {
     this.sessionsManager.remove(this.getSessionId());
-    this.sessionExecutor.shutdownNow();
+    for (Runnable task : this.sessionExecutor.shutdownNow()) {
+      if (task instanceof SessionTask) {
+        ((SessionTask) task).discarded();
+      }
+    }
   }
 
   protected void setRsHelper(JsonRpcRequestSenderHelper rsHelper) {
@@ -0,0 +1,80 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple token bucket rate limiter. Tokens are refilled continuously at {@code ratePerSecond} up to
+ * {@code capacity}.
+ */
+public class TokenBucket {
+
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final double ratePerNano;
+  private final double capacity;
+
+  private double tokens;
+  private long lastRefill;
+
+  public TokenBucket(double ratePerSecond, double capacity) {
+
+    if (ratePerSecond <= 0 || capacity < 1) {
+      throw new IllegalArgumentException(
+          "Invalid token bucket: ratePerSecond=" + ratePerSecond + " capacity=" + capacity);
+    }
+
+    this.ratePerNano = ratePerSecond / NANOS_PER_SECOND;
+    this.capacity = capacity;
+    this.tokens = capacity;
+    this.lastRefill = System.nanoTime();
+  }
+
+  public synchronized boolean tryConsume() {
+
+    refill();
+
+    if (tokens >= 1) {
+      tokens -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the time in millis until a token will be available.
+   */
+  public synchronized long getMillisUntilAvailable() {
+
+    refill();
+
+    if (tokens >= 1) {
+      return 0;
+    }
+
+    return TimeUnit.NANOSECONDS.toMillis((long) Math.ceil((1 - tokens) / ratePerNano)) + 1;
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+    lastRefill = now;
+  }
+
+}
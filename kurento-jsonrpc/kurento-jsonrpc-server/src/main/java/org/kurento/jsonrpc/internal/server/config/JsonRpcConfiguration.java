@@ -28,9 +28,11 @@ import org.apache.catalina.Context;
 import org.apache.tomcat.websocket.server.WsSci;
 import org.kurento.jsonrpc.JsonRpcHandler;
 import org.kurento.jsonrpc.internal.http.JsonRpcHttpRequestHandler;
+import org.kurento.jsonrpc.internal.server.AdmissionController;
 import org.kurento.jsonrpc.internal.server.PerSessionJsonRpcHandler;
 import org.kurento.jsonrpc.internal.server.ProtocolManager;
 import org.kurento.jsonrpc.internal.server.SessionsManager;
+import org.kurento.jsonrpc.internal.ws.AdmissionHandshakeInterceptor;
 import org.kurento.jsonrpc.internal.ws.JsonRpcWebSocketHandler;
 import org.kurento.jsonrpc.server.JsonRpcConfigurer;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -91,6 +93,10 @@ public class JsonRpcConfiguration implements WebSocketConfigurer {
   private final List<JsonRpcConfigurer> configurers = new ArrayList<>();
   private DefaultJsonRpcHandlerRegistry instanceRegistry;
 
+  // Shared by all endpoints, handshakes are paced per process
+  private final AdmissionHandshakeInterceptor admissionInterceptor =
+      new AdmissionHandshakeInterceptor();
+
   private DefaultJsonRpcHandlerRegistry getJsonRpcHandlersRegistry() {
     if (instanceRegistry == null) {
       instanceRegistry = new DefaultJsonRpcHandlerRegistry();
@@ -215,7 +221,8 @@ public class JsonRpcConfiguration implements WebSocketConfigurer {
 
     ProtocolManager protocolManager = (ProtocolManager) ctx.getBean("protocolManager", handler);
 
-    JsonRpcWebSocketHandler wsHandler = new JsonRpcWebSocketHandler(protocolManager);
+    JsonRpcWebSocketHandler wsHandler =
+        new JsonRpcWebSocketHandler(protocolManager, jsonRpcAdmissionController());
 
     protocolManager.setPingWachdog(handler.isPingWatchdog());
 
@@ -226,6 +233,10 @@ public class JsonRpcConfiguration implements WebSocketConfigurer {
       List<String> origins = handler.allowedOrigins();
       registration.setAllowedOrigins(origins.toArray(new String[origins.size()]));
 
+      if (admissionInterceptor.isEnabled()) {
+        registration.addInterceptors(admissionInterceptor);
+      }
+
       if (handler.isSockJSEnabled()) {
         registration.withSockJS().setSessionCookieNeeded(false);
       }
@@ -263,6 +274,11 @@ public class JsonRpcConfiguration implements WebSocketConfigurer {
     return new SessionsManager();
   }
 
+  @Bean
+  public AdmissionController jsonRpcAdmissionController() {
+    return new AdmissionController();
+  }
+
   @Bean
   @Scope("prototype")
   public ProtocolManager protocolManager(JsonRpcHandler<?> key) {
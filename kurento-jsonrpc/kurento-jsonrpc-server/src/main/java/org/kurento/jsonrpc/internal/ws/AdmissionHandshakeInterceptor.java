@@ -0,0 +1,91 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.ws;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.internal.server.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+/**
+ * Paces the websocket handshakes accepted by the server. When a lot of clients try to reconnect at
+ * the same time (for example, after a server restart), handshakes above the configured rate are
+ * rejected with a 503 status and a Retry-After header, so clients back off instead of being
+ * accepted all at once.
+ *
+ * Rate is configured with {@code ws.admission.handshakesPerSecond} (0 disables pacing) and
+ * {@code ws.admission.handshakesBurst}.
+ */
+public class AdmissionHandshakeInterceptor implements HandshakeInterceptor {
+
+  private static final Logger log = LoggerFactory.getLogger(AdmissionHandshakeInterceptor.class);
+
+  private final TokenBucket bucket;
+
+  private final AtomicLong rejectedHandshakes = new AtomicLong();
+
+  public AdmissionHandshakeInterceptor() {
+    this(PropertiesManager.getProperty("ws.admission.handshakesPerSecond", 0d),
+        PropertiesManager.getProperty("ws.admission.handshakesBurst", 100));
+  }
+
+  public AdmissionHandshakeInterceptor(double handshakesPerSecond, int burst) {
+    this.bucket = handshakesPerSecond > 0 ? new TokenBucket(handshakesPerSecond, burst) : null;
+  }
+
+  public boolean isEnabled() {
+    return bucket != null;
+  }
+
+  public long getRejectedHandshakes() {
+    return rejectedHandshakes.get();
+  }
+
+  @Override
+  public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+      WebSocketHandler wsHandler, Map<String, Object> attributes) throws Exception {
+
+    if (bucket == null || bucket.tryConsume()) {
+      return true;
+    }
+
+    long retryAfterSecs = Math.max(1, (bucket.getMillisUntilAvailable() + 999) / 1000);
+
+    rejectedHandshakes.incrementAndGet();
+    log.debug("Rejected WS handshake from {}. Retry after {} s", request.getRemoteAddress(),
+        retryAfterSecs);
+
+    response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+    response.getHeaders().set("Retry-After", Long.toString(retryAfterSecs));
+    return false;
+  }
+
+  @Override
+  public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+      WebSocketHandler wsHandler, Exception exception) {
+  }
+
+}
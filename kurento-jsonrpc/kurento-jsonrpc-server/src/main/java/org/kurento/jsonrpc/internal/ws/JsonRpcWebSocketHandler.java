@@ -18,10 +18,11 @@
 package org.kurento.jsonrpc.internal.ws;
 
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.net.InetSocketAddress;
 
-import org.kurento.commons.PropertiesManager;
 import org.kurento.jsonrpc.internal.client.TransactionImpl.ResponseSender;
+import org.kurento.jsonrpc.internal.server.AdmissionController;
+import org.kurento.jsonrpc.internal.server.AdmissionController.Rejection;
 import org.kurento.jsonrpc.internal.server.ProtocolManager;
 import org.kurento.jsonrpc.internal.server.ProtocolManager.ServerSessionFactory;
 import org.kurento.jsonrpc.internal.server.ServerSession;
@@ -36,24 +37,26 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 public class JsonRpcWebSocketHandler extends TextWebSocketHandler {
 
-  public class MaxNumberWsConnectionsReachedException extends Exception {
-
-    private static final long serialVersionUID = -6621614523181088993L;
-  }
-
-  private static final long MAX_WS_CONNECTIONS =
-      PropertiesManager.getProperty("ws.maxSessions", Long.MAX_VALUE);
-
-  private static final AtomicLong numConnections = new AtomicLong();
-
   private static final Logger log = LoggerFactory.getLogger(JsonRpcWebSocketHandler.class);
 
   private final ProtocolManager protocolManager;
 
+  private final AdmissionController admissionController;
+
   private String label = "";
 
   public JsonRpcWebSocketHandler(ProtocolManager protocolManager) {
+    this(protocolManager, new AdmissionController());
+  }
+
+  public JsonRpcWebSocketHandler(ProtocolManager protocolManager,
+      AdmissionController admissionController) {
     this.protocolManager = protocolManager;
+    this.admissionController = admissionController;
+  }
+
+  public AdmissionController getAdmissionController() {
+    return admissionController;
   }
 
   public void setLabel(String label) {
@@ -64,12 +67,14 @@ public class JsonRpcWebSocketHandler extends TextWebSocketHandler {
   @Override
   public void afterConnectionEstablished(WebSocketSession session) throws Exception {
 
-    try {
-      incNumConnectionsIfAllowed();
-    } catch (MaxNumberWsConnectionsReachedException e) {
-      log.warn("Closed a WS connection because MAX_WS_CONNECTIONS={} limit reached",
-          MAX_WS_CONNECTIONS);
-      session.close();
+    Rejection rejection =
+        admissionController.tryAdmitConnection(session.getId(), getRemoteAddress(session));
+
+    if (rejection != Rejection.NONE) {
+      log.warn("{} Closed WS connection from {} because {} limit reached (MAX_WS_CONNECTIONS={})",
+          label, session.getRemoteAddress(), rejection, admissionController.getMaxConnections());
+      session.close(CloseStatus.SERVICE_OVERLOAD);
+      return;
     }
 
     try {
@@ -86,35 +91,19 @@ public class JsonRpcWebSocketHandler extends TextWebSocketHandler {
     }
   }
 
-  private void incNumConnectionsIfAllowed() throws MaxNumberWsConnectionsReachedException {
-
-    while (true) {
-
-      long curNumConn = numConnections.get();
-      if (curNumConn >= MAX_WS_CONNECTIONS) {
-        throw new MaxNumberWsConnectionsReachedException();
-      }
-
-      // Try updating the value, but only if it's equal to the
-      // one we've just seen. If it is different, we have to check again if now
-      // there are room for a new client.
-      boolean setSuccessful = numConnections.compareAndSet(curNumConn, curNumConn + 1);
-
-      if (setSuccessful) {
-        // We have incremented numConnections. Exiting.
-        break;
-      }
-
-      // Another thread updated the numConnections between our get and
-      // compareAndSet calls. It is possible that we check again
+  private String getRemoteAddress(WebSocketSession session) {
+    InetSocketAddress address = session.getRemoteAddress();
+    if (address == null || address.getAddress() == null) {
+      return null;
     }
+    return address.getAddress().getHostAddress();
   }
 
   @Override
   public void afterConnectionClosed(WebSocketSession wsSession, CloseStatus status)
       throws Exception {
 
-    numConnections.decrementAndGet();
+    admissionController.connectionClosed(wsSession.getId());
 
     try {
       ServerSession session =
@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.internal.server.AdmissionController;
+import org.kurento.jsonrpc.internal.server.AdmissionController.Rejection;
+
+public class AdmissionControllerTest {
+
+  @Test
+  public void connectionsAboveLimitsAreRejected() {
+
+    AdmissionController controller =
+        new AdmissionController(3, 2, 0, 0, 0, Integer.MAX_VALUE);
+
+    assertEquals(Rejection.NONE, controller.tryAdmitConnection("t1", "10.0.0.1"));
+    assertEquals(Rejection.NONE, controller.tryAdmitConnection("t2", "10.0.0.1"));
+    assertEquals(Rejection.MAX_CONNECTIONS_PER_ADDRESS,
+        controller.tryAdmitConnection("t3", "10.0.0.1"));
+    assertEquals(Rejection.NONE, controller.tryAdmitConnection("t4", "10.0.0.2"));
+    assertEquals(Rejection.MAX_CONNECTIONS, controller.tryAdmitConnection("t5", "10.0.0.3"));
+
+    // Closing a rejected connection doesn't change the counters
+    controller.connectionClosed("t3");
+    assertEquals(3, controller.getNumConnections());
+
+    controller.connectionClosed("t1");
+    assertEquals(2, controller.getNumConnections());
+    assertEquals(Rejection.NONE, controller.tryAdmitConnection("t6", "10.0.0.1"));
+
+    assertEquals(2, controller.getRejectedConnections());
+  }
+
+  @Test
+  public void requestsAboveRateAreRejected() {
+
+    AdmissionController controller =
+        new AdmissionController(Long.MAX_VALUE, Integer.MAX_VALUE, 1, 5, 0, Integer.MAX_VALUE);
+
+    controller.tryAdmitConnection("t1", "10.0.0.1");
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals(Rejection.NONE, controller.tryAdmitRequest("t1"));
+      controller.requestFinished();
+    }
+
+    assertEquals(Rejection.REQUEST_RATE, controller.tryAdmitRequest("t1"));
+    assertEquals(1, controller.getRejectedRequestsByRate());
+  }
+
+  @Test
+  public void requestsAboveQueueDepthAreShed() {
+
+    AdmissionController controller =
+        new AdmissionController(Long.MAX_VALUE, Integer.MAX_VALUE, 0, 0, 0, 2);
+
+    assertEquals(Rejection.NONE, controller.tryAdmitRequest("t1"));
+    assertEquals(Rejection.NONE, controller.tryAdmitRequest("t1"));
+    assertEquals(Rejection.QUEUE_FULL, controller.tryAdmitRequest("t1"));
+
+    controller.requestFinished();
+
+    assertEquals(Rejection.NONE, controller.tryAdmitRequest("t1"));
+    assertEquals(2, controller.getQueuedRequests());
+    assertEquals(1, controller.getRejectedRequestsByQueue());
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.internal.server.ServerSession;
+import org.kurento.jsonrpc.internal.server.SessionsManager;
+import org.kurento.jsonrpc.message.Response;
+
+import com.google.gson.JsonElement;
+
+public class ServerSessionTest {
+
+  private static class TestSession extends ServerSession {
+
+    public TestSession() {
+      super("session", null, new SessionsManager(), "transport");
+    }
+
+    @Override
+    public void handleResponse(Response<JsonElement> response) {
+    }
+
+    @Override
+    public void closeNativeSession(String reason) {
+    }
+  }
+
+  @Test
+  public void queuedTasksAreDiscardedWhenSessionIsClosed() throws Exception {
+
+    ServerSession session = new TestSession();
+
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger executed = new AtomicInteger();
+    final AtomicInteger discarded = new AtomicInteger();
+
+    session.processRequest(new Runnable() {
+      @Override
+      public void run() {
+        running.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+
+    for (int i = 0; i < 3; i++) {
+      session.processRequest(new ServerSession.SessionTask() {
+        @Override
+        public void run() {
+          executed.incrementAndGet();
+        }
+
+        @Override
+        public void discarded() {
+          discarded.incrementAndGet();
+        }
+      });
+    }
+
+    assertTrue(running.await(5, TimeUnit.SECONDS));
+    session.close();
+
+    assertEquals(0, executed.get());
+    assertEquals(3, discarded.get());
+  }
+
+}
@@ -19,6 +19,7 @@ package org.kurento.repository;
 import java.util.Map;
 import java.util.Set;
 
+import org.kurento.repository.service.pojo.RepositoryItemIdsPage;
 import org.kurento.repository.service.pojo.RepositoryItemPlayer;
 import org.kurento.repository.service.pojo.RepositoryItemRecorder;
 
@@ -29,6 +30,8 @@ import retrofit.http.GET;
 import retrofit.http.POST;
 import retrofit.http.PUT;
 import retrofit.http.Path;
+import retrofit.http.Query;
+import retrofit.http.Streaming;
 
 /**
  * Client API for the Kurento repository server application. It uses REST as means of communicating
@@ -92,6 +95,64 @@ public interface RepositoryClient {
   @POST("/repo/item/find/regex")
   Set<String> regexFindItems(@Body Map<String, String> searchValues);
 
+  /**
+   * Searches for repository items matching all the pairs of attributes and their expected values,
+   * returning one page of their identifiers, sorted.
+   *
+   * @param searchValues
+   *          pairs of attributes and their values
+   * @param cursor
+   *          the cursor returned with the previous page, or null to get the first page
+   * @param limit
+   *          max number of identifiers in the page
+   * @return a {@link RepositoryItemIdsPage} with the identifiers and the cursor of the next page
+   */
+  @POST("/repo/item/find/page")
+  RepositoryItemIdsPage findItemsPage(@Body Map<String, String> searchValues,
+      @Query("cursor") String cursor, @Query("limit") int limit);
+
+  /**
+   * Searches for repository items matching all the pairs of attributes and regex Strings,
+   * returning one page of their identifiers, sorted.
+   *
+   * @param searchValues
+   *          pairs of attributes and their values
+   * @param cursor
+   *          the cursor returned with the previous page, or null to get the first page
+   * @param limit
+   *          max number of identifiers in the page
+   * @return a {@link RepositoryItemIdsPage} with the identifiers and the cursor of the next page
+   */
+  @POST("/repo/item/find/regex/page")
+  RepositoryItemIdsPage regexFindItemsPage(@Body Map<String, String> searchValues,
+      @Query("cursor") String cursor, @Query("limit") int limit);
+
+  /**
+   * Searches for repository items matching all the pairs of attributes and their expected values.
+   * The server streams the identifiers as a JSON array, which can be read incrementally from the
+   * body of the response.
+   *
+   * @param searchValues
+   *          pairs of attributes and their values
+   * @return a {@link Response} whose body is the JSON array of identifiers
+   */
+  @Streaming
+  @POST("/repo/item/find/stream")
+  Response streamFindItems(@Body Map<String, String> searchValues);
+
+  /**
+   * Searches for repository items matching all the pairs of attributes and regex Strings. The
+   * server streams the identifiers as a JSON array, which can be read incrementally from the body
+   * of the response.
+   *
+   * @param searchValues
+   *          pairs of attributes and their values
+   * @return a {@link Response} whose body is the JSON array of identifiers
+   */
+  @Streaming
+  @POST("/repo/item/find/regex/stream")
+  Response streamRegexFindItems(@Body Map<String, String> searchValues);
+
   /**
    * Returns the metadata from a repository item.
    *
@@ -0,0 +1,54 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.service.pojo;
+
+import java.util.List;
+
+/**
+ * <em>POJO</em> representing a page of the identifiers of the repository items found by a search.
+ * If there can be more items, it contains the cursor to request the next page.
+ */
+public class RepositoryItemIdsPage {
+
+  private List<String> ids;
+  private String nextCursor;
+
+  public List<String> getIds() {
+    return ids;
+  }
+
+  public void setIds(List<String> ids) {
+    this.ids = ids;
+  }
+
+  /**
+   * Returns the cursor to request the next page, or null if this is the last one.
+   */
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
+  @Override
+  public String toString() {
+    return "[ids=" + ids + ", nextCursor=" + nextCursor + "]";
+  }
+}
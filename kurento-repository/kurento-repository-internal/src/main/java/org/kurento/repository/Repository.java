@@ -18,6 +18,7 @@
 package org.kurento.repository;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * This interface represents the main interface to interact with a repository of items. In the
@@ -87,6 +88,51 @@ public interface Repository {
    */
   List<RepositoryItem> findRepositoryItemsByAttRegex(String attribute, String regex);
 
+  /**
+   * Returns the ids of the repository items with the specified value in the specified attribute of
+   * their metadata. Unlike {@link #findRepositoryItemsByAttValue(String, String)}, the repository
+   * items are not created.
+   *
+   * @param attribute
+   *          attribute name of the metadata
+   * @param value
+   *          expected value in the attribute
+   * @return ids of the repository items with the specified value in the attribute
+   */
+  List<String> findRepositoryItemIdsByAttValue(String attribute, String value);
+
+  /**
+   * Returns the ids of the repository items with a value that matches the specified regular
+   * expression in the specified attribute of their metadata. Unlike
+   * {@link #findRepositoryItemsByAttRegex(String, String)}, the repository items are not created.
+   *
+   * @param attribute
+   *          attribute name of the metadata
+   * @param regex
+   *          regular expression to match the attribute's value
+   * @return ids of the repository items with an attribute's value that matches the regular
+   *         expression
+   */
+  List<String> findRepositoryItemIdsByAttRegex(String attribute, String regex);
+
+  /**
+   * Returns a page of the ids of the repository items matching all the specified attributes of
+   * their metadata. Ids are sorted as strings, so the last id of a page can be used as cursor to
+   * request the next one.
+   *
+   * @param attributes
+   *          attribute names of the metadata and their expected values (or regular expressions)
+   * @param regex
+   *          if true, the values are regular expressions to match the attributes' values
+   * @param afterId
+   *          only ids after this one are returned; null to return the first page
+   * @param limit
+   *          max number of ids returned
+   * @return sorted ids of the repository items matching all the attributes
+   */
+  List<String> findRepositoryItemIds(Map<String, String> attributes, boolean regex,
+      String afterId, int limit);
+
   /**
    * Removes the specified repository item.
    *
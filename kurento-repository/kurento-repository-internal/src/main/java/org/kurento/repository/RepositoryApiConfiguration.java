@@ -23,6 +23,9 @@ public class RepositoryApiConfiguration {
   private static final String DEFAULT_MONGO_GRIDFS = "fs";
   private static final String DEFAULT_MONGO_DBNAME = "kurento-repository";
   public static final String DEFAULT_FILESYSTEM_LOC = "repository";
+  public static final int DEFAULT_FILE_WRITE_BUFFER_SIZE = 1024 * 1024;
+  public static final int DEFAULT_METADATA_JOURNAL_MAX_RECORDS = 10000;
+  public static final int DEFAULT_REGEX_CACHE_SIZE = 256;
 
   public enum RepoType {
     FILESYSTEM("filesystem"), MONGODB("mongodb");
@@ -58,9 +61,17 @@ public class RepositoryApiConfiguration {
   private String webappPublicUrl = "";
   private RepoType repositoryType = RepoType.FILESYSTEM;
   private String fileSystemFolder = DEFAULT_FILESYSTEM_LOC;
+  private int fileWriteBufferSize = DEFAULT_FILE_WRITE_BUFFER_SIZE;
+  private boolean fileSyncOnClose = true;
+  private long fileSyncBytes;
+  private long fileSyncInterval;
+  private int metadataJournalMaxRecords = DEFAULT_METADATA_JOURNAL_MAX_RECORDS;
+  private boolean fileSystemMigrateOnStartup;
   private String mongoDatabaseName = DEFAULT_MONGO_DBNAME;
   private String mongoGridFSCollectionName = DEFAULT_MONGO_GRIDFS;
   private String mongoUrlConnection = DEFAULT_MONGO_URL;
+  private String mongoIndexedMetadata = "";
+  private int regexCacheSize = DEFAULT_REGEX_CACHE_SIZE;
 
   /**
    * Returns the repository public URL. The default value is "" and can be changed using
@@ -127,6 +138,138 @@ public class RepositoryApiConfiguration {
     this.fileSystemFolder = fileSystemFolder;
   }
 
+  /**
+   * Returns the size in bytes of the buffer used to write the files of the repository items. The
+   * default value is 1 MB. This property is only used when the repository type is "filesystem".
+   *
+   * @return the size of the write buffer.
+   */
+  public int getFileWriteBufferSize() {
+    return fileWriteBufferSize;
+  }
+
+  /**
+   * Sets the size in bytes of the buffer used to write the files of the repository items. This
+   * property is only used when the repository type is "filesystem".
+   *
+   * @param fileWriteBufferSize
+   *          size of the write buffer
+   */
+  public void setFileWriteBufferSize(int fileWriteBufferSize) {
+    this.fileWriteBufferSize = fileWriteBufferSize;
+  }
+
+  /**
+   * Returns whether the contents of an item are forced to the storage device when its recording
+   * finishes. The default value is true. This property is only used when the repository type is
+   * "filesystem".
+   *
+   * @return true if files are synced when closed.
+   */
+  public boolean isFileSyncOnClose() {
+    return fileSyncOnClose;
+  }
+
+  /**
+   * Sets whether the contents of an item are forced to the storage device when its recording
+   * finishes. This property is only used when the repository type is "filesystem".
+   *
+   * @param fileSyncOnClose
+   *          true to sync files when closed
+   */
+  public void setFileSyncOnClose(boolean fileSyncOnClose) {
+    this.fileSyncOnClose = fileSyncOnClose;
+  }
+
+  /**
+   * Returns the number of bytes written to an item between syncs to the storage device. The
+   * default value is 0 (files are not synced by size). This property is only used when the
+   * repository type is "filesystem".
+   *
+   * @return the bytes between syncs.
+   */
+  public long getFileSyncBytes() {
+    return fileSyncBytes;
+  }
+
+  /**
+   * Sets the number of bytes written to an item between syncs to the storage device, or 0 to not
+   * sync by size. This property is only used when the repository type is "filesystem".
+   *
+   * @param fileSyncBytes
+   *          bytes between syncs
+   */
+  public void setFileSyncBytes(long fileSyncBytes) {
+    this.fileSyncBytes = fileSyncBytes;
+  }
+
+  /**
+   * Returns the millis between syncs to the storage device of an item being recorded. The default
+   * value is 0 (files are not synced periodically). This property is only used when the repository
+   * type is "filesystem".
+   *
+   * @return the millis between syncs.
+   */
+  public long getFileSyncInterval() {
+    return fileSyncInterval;
+  }
+
+  /**
+   * Sets the millis between syncs to the storage device of an item being recorded, or 0 to not
+   * sync periodically. This property is only used when the repository type is "filesystem".
+   *
+   * @param fileSyncInterval
+   *          millis between syncs
+   */
+  public void setFileSyncInterval(long fileSyncInterval) {
+    this.fileSyncInterval = fileSyncInterval;
+  }
+
+  /**
+   * Returns the number of changes of the metadata of items kept in the journal before it is
+   * compacted into a snapshot. The default value is 10000. This property is only used when the
+   * repository type is "filesystem".
+   *
+   * @return the max number of records of the journal.
+   */
+  public int getMetadataJournalMaxRecords() {
+    return metadataJournalMaxRecords;
+  }
+
+  /**
+   * Sets the number of changes of the metadata of items kept in the journal before it is compacted
+   * into a snapshot. This property is only used when the repository type is "filesystem".
+   *
+   * @param metadataJournalMaxRecords
+   *          max number of records of the journal
+   */
+  public void setMetadataJournalMaxRecords(int metadataJournalMaxRecords) {
+    this.metadataJournalMaxRecords = metadataJournalMaxRecords;
+  }
+
+  /**
+   * Returns whether items stored by older versions directly in the base folder are moved to the
+   * sharded layout when the repository starts. The default value is false. This property is only
+   * used when the repository type is "filesystem".
+   *
+   * @return true if items are migrated on startup.
+   */
+  public boolean isFileSystemMigrateOnStartup() {
+    return fileSystemMigrateOnStartup;
+  }
+
+  /**
+   * Sets whether items stored by older versions directly in the base folder are moved to the
+   * sharded layout when the repository starts. This property is only used when the repository
+   * type is "filesystem".
+   *
+   * @param fileSystemMigrateOnStartup
+   *          true to migrate items on startup
+   */
+  public void setFileSystemMigrateOnStartup(boolean fileSystemMigrateOnStartup) {
+    this.fileSystemMigrateOnStartup = fileSystemMigrateOnStartup;
+  }
+
   /**
    * Returns the database name used for the repository. The default value is "kurento-repository"
    * and can be changed with a properties file or with the method
@@ -196,4 +339,47 @@ public class RepositoryApiConfiguration {
   public void setMongoUrlConnection(String mongoUrlConnection) {
     this.mongoUrlConnection = mongoUrlConnection;
   }
+
+  /**
+   * Returns the metadata attributes indexed in the database, as a comma-separated list. Searches
+   * by value or by regular expressions starting with ^ and literal text use these indexes. The
+   * default value is "". This property is only used when the repository type is "mongodb".
+   *
+   * @return the indexed metadata attributes.
+   */
+  public String getMongoIndexedMetadata() {
+    return mongoIndexedMetadata;
+  }
+
+  /**
+   * Sets the metadata attributes indexed in the database, as a comma-separated list. The indexes
+   * are created when the repository starts if they don't exist. This property is only used when
+   * the repository type is "mongodb".
+   *
+   * @param mongoIndexedMetadata
+   *          comma-separated list of metadata attributes
+   */
+  public void setMongoIndexedMetadata(String mongoIndexedMetadata) {
+    this.mongoIndexedMetadata = mongoIndexedMetadata;
+  }
+
+  /**
+   * Returns the number of compiled regular expressions kept to search items by metadata. The
+   * default value is 256.
+   *
+   * @return the size of the cache of regular expressions.
+   */
+  public int getRegexCacheSize() {
+    return regexCacheSize;
+  }
+
+  /**
+   * Sets the number of compiled regular expressions kept to search items by metadata.
+   *
+   * @param regexCacheSize
+   *          size of the cache of regular expressions
+   */
+  public void setRegexCacheSize(int regexCacheSize) {
+    this.regexCacheSize = regexCacheSize;
+  }
 }
\ No newline at end of file
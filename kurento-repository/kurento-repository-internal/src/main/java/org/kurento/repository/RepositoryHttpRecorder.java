@@ -17,6 +17,40 @@
 
 package org.kurento.repository;
 
+/**
+ * Http endpoint to record (upload) the contents of a repository item.
+ * </P>
+ * Besides uploading the contents in the body of PUT or POST requests, they can be uploaded in
+ * chunks of a fixed size, sent in any order and in parallel from several connections. The item is
+ * written in place, so an interrupted upload is resumed sending only the chunks missing. The
+ * requests of this protocol are sent to the {@link #getURL() URL} of the recorder:
+ * <ul>
+ * <li>{@code POST url?chunkSize=<bytes>&length=<bytes>} starts the upload of an item with the
+ * given length. The response contains the number of chunks. The chunk size has to be at least
+ * {@link #MIN_CHUNK_SIZE} bytes, and the item can have up to {@link #MAX_CHUNKS} chunks.</li>
+ * <li>{@code PUT url?chunk=<n>} uploads the chunk with index n, that has the chunk size (the
+ * last one can be shorter).</li>
+ * <li>{@code GET url?missingChunks} returns the chunks that have not been uploaded yet, as
+ * comma-separated ranges of indexes: {@code first-last}, or just {@code first} for a single chunk
+ * (e.g. {@code 0-3,7}).</li>
+ * <li>{@code POST url?commit} finishes the upload, stopping the recorder. If some chunks are
+ * missing, the status of the response is 409 (Conflict) and it contains their ranges.</li>
+ * </ul>
+ */
 public interface RepositoryHttpRecorder extends RepositoryHttpEndpoint {
 
+  String CHUNK_SIZE_PARAM = "chunkSize";
+
+  int MIN_CHUNK_SIZE = 64 * 1024;
+
+  int MAX_CHUNKS = 1024 * 1024;
+
+  String LENGTH_PARAM = "length";
+
+  String CHUNK_PARAM = "chunk";
+
+  String MISSING_CHUNKS_PARAM = "missingChunks";
+
+  String COMMIT_PARAM = "commit";
+
 }
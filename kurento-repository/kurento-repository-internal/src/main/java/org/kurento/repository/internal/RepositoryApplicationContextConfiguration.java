@@ -43,12 +43,21 @@ public class RepositoryApplicationContextConfiguration {
   public static final String KEY_REPO_HOST = "repository.hostname";
   public static final String KEY_REPO_PORT = "repository.port";
   public static final String KEY_REPO_TYPE = "repository.type";
+  public static final String KEY_REGEX_CACHE_SIZE = "repository.regexCacheSize";
 
   public static final String KEY_FS_FOLDER = "repository.filesystem.folder";
+  public static final String KEY_FS_WRITE_BUFFER = "repository.filesystem.writeBufferSize";
+  public static final String KEY_FS_SYNC_ON_CLOSE = "repository.filesystem.syncOnClose";
+  public static final String KEY_FS_SYNC_BYTES = "repository.filesystem.syncBytes";
+  public static final String KEY_FS_SYNC_INTERVAL = "repository.filesystem.syncInterval";
+  public static final String KEY_FS_METADATA_JOURNAL_MAX_RECORDS =
+      "repository.filesystem.metadataJournalMaxRecords";
+  public static final String KEY_FS_MIGRATE_ON_STARTUP = "repository.filesystem.migrateOnStartup";
 
   public static final String KEY_MG_DB = "repository.mongodb.dbName";
   public static final String KEY_MG_GRID = "repository.mongodb.gridName";
   public static final String KEY_MG_URL = "repository.mongodb.urlConn";
+  public static final String KEY_MG_INDEXED_METADATA = "repository.mongodb.indexedMetadata";
 
   static {
     ConfigFileManager.loadConfigFile(KEY_CONFIG_FILENAME);
@@ -96,11 +105,23 @@ public class RepositoryApplicationContextConfiguration {
     config.setRepositoryType(type);
     StringBuilder sb = new StringBuilder(type.getTypeValue());
 
+    config.setRegexCacheSize(getProperty(KEY_REGEX_CACHE_SIZE, config.getRegexCacheSize()));
+
     if (type.isFilesystem()) {
 
       String filesFolder = getProperty(KEY_FS_FOLDER, config.getFileSystemFolder());
       config.setFileSystemFolder(filesFolder);
       sb.append("\n\t").append("folder : ").append(filesFolder);
+      config.setFileWriteBufferSize(
+          getProperty(KEY_FS_WRITE_BUFFER, config.getFileWriteBufferSize()));
+      config.setFileSyncOnClose(getProperty(KEY_FS_SYNC_ON_CLOSE, config.isFileSyncOnClose()));
+      config.setFileSyncBytes(getProperty(KEY_FS_SYNC_BYTES, config.getFileSyncBytes()));
+      config.setFileSyncInterval(getProperty(KEY_FS_SYNC_INTERVAL, config.getFileSyncInterval()));
+      config.setMetadataJournalMaxRecords(getProperty(KEY_FS_METADATA_JOURNAL_MAX_RECORDS,
+          config.getMetadataJournalMaxRecords()));
+      config.setFileSystemMigrateOnStartup(
+          getProperty(KEY_FS_MIGRATE_ON_STARTUP, config.isFileSystemMigrateOnStartup()));
+      sb.append("\n\t").append("writeBufferSize : ").append(config.getFileWriteBufferSize());
 
     } else if (type.isMongoDB()) {
 
@@ -113,6 +134,8 @@ public class RepositoryApplicationContextConfiguration {
       String url = getProperty(KEY_MG_URL, config.getMongoUrlConnection());
       config.setMongoUrlConnection(url);
       sb.append("\n\t").append("urlConn : ").append(url);
+      config.setMongoIndexedMetadata(
+          getProperty(KEY_MG_INDEXED_METADATA, config.getMongoIndexedMetadata()));
     }
 
     log.debug("Repository config: {}", sb.toString());
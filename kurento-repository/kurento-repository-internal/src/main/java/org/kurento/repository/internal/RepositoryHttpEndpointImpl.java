@@ -32,9 +32,18 @@ import org.kurento.repository.RepositoryHttpEndpoint;
 import org.kurento.repository.RepositoryHttpEventListener;
 import org.kurento.repository.RepositoryItem;
 import org.kurento.repository.internal.http.RepositoryHttpManager;
+import org.kurento.repository.internal.repoimpl.AbstractRepositoryItem;
+import org.kurento.repository.internal.repoimpl.RangeBitmap;
+import org.kurento.repository.internal.repoimpl.RangeWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class RepositoryHttpEndpointImpl implements RepositoryHttpEndpoint {
 
+  private static final Logger log = LoggerFactory.getLogger(RepositoryHttpEndpointImpl.class);
+
+  private static final int RANGE_BUFFER_SIZE = 64 * 1024;
+
   private final RepositoryHttpManager httpManager;
   private final RepositoryItem repositoryItem;
 
@@ -53,7 +62,11 @@ public class RepositoryHttpEndpointImpl implements RepositoryHttpEndpoint {
   private boolean startedEventFired;
 
   private long writtenBytes;
-  private boolean outputStreamClosed;
+  private volatile boolean outputStreamClosed;
+
+  private RangeWriter rangeWriter;
+  private RangeBitmap writtenRanges;
+  private long declaredLength = -1;
 
   public RepositoryHttpEndpointImpl(RepositoryItem repositoryItem, String sessionId, String url,
       RepositoryHttpManager httpManager) {
@@ -130,7 +143,11 @@ public class RepositoryHttpEndpointImpl implements RepositoryHttpEndpoint {
   }
 
   @Override
-  public OutputStream getRepoItemOutputStream() {
+  public synchronized OutputStream getRepoItemOutputStream() {
+
+    if (rangeWriter != null) {
+      throw new IllegalStateException("The contents are being written by ranges");
+    }
 
     if (outputStreamClosed) {
       throw new IllegalStateException("The outputStream is closed");
@@ -158,8 +175,155 @@ public class RepositoryHttpEndpointImpl implements RepositoryHttpEndpoint {
     writtenBytes += numBytes;
   }
 
+  /**
+   * Returns the number of bytes written from the start of the item. When writing by ranges, the
+   * bytes after the first gap are not counted.
+   */
   public long getWrittenBytes() {
-    return writtenBytes;
+    RangeBitmap ranges = writtenRanges;
+    return ranges != null ? ranges.getContiguousLength() : writtenBytes;
+  }
+
+  /**
+   * Returns whether contents can be written at any position with
+   * {@link #writeRange(long, long, InputStream)}. This is not possible if the output stream of the
+   * item has been used.
+   */
+  public synchronized boolean isRangeWriteSupported() {
+    return os == null && repositoryItem instanceof AbstractRepositoryItem;
+  }
+
+  public synchronized boolean isWritingRanges() {
+    return rangeWriter != null;
+  }
+
+  /**
+   * Writes the contents read from the stream directly at the given position of the item, so ranges
+   * can be received in any order and concurrently.
+   *
+   * @param position
+   *          position of the first byte
+   * @param totalLength
+   *          total length of the item, or -1 if unknown
+   * @param is
+   *          stream with the contents of the range
+   * @return the number of bytes written
+   */
+  public long writeRange(long position, long totalLength, InputStream is) throws IOException {
+    startRange(totalLength);
+    return copyRange(position, is, true);
+  }
+
+  /**
+   * Writes the contents read from the stream at the given position of the item, without marking
+   * them as written. They are only taken into account when they are marked with
+   * {@link #markRangeWritten(long, long)}, so contents that turn out to be invalid can be discarded
+   * and written again.
+   *
+   * @return the number of bytes written
+   */
+  protected long writeUnmarkedRange(long position, InputStream is) throws IOException {
+    return copyRange(position, is, false);
+  }
+
+  /**
+   * Marks as written the contents between start (inclusive) and end (exclusive).
+   */
+  protected void markRangeWritten(long start, long end) {
+    getWrittenRanges().add(start, end);
+  }
+
+  private long copyRange(long position, InputStream is, boolean mark) throws IOException {
+
+    byte[] buffer = new byte[RANGE_BUFFER_SIZE];
+    long current = position;
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      writeRange(current, buffer, 0, read, mark);
+      current += read;
+    }
+
+    return current - position;
+  }
+
+  /**
+   * Prepares the endpoint to receive a range, that is written with
+   * {@link #writeRange(long, byte[], int, int)} as its contents arrive.
+   *
+   * @param totalLength
+   *          total length of the item, or -1 if unknown
+   */
+  public synchronized void startRange(long totalLength) {
+
+    if (outputStreamClosed) {
+      throw new IllegalStateException("The outputStream is closed");
+    }
+
+    if (totalLength >= 0) {
+      if (declaredLength >= 0 && declaredLength != totalLength) {
+        throw new IllegalArgumentException("The total length " + totalLength
+            + " doesn't match the length declared previously " + declaredLength);
+      }
+      declaredLength = totalLength;
+    }
+
+    if (rangeWriter == null) {
+      startRangeWriting(RangeBitmap.DEFAULT_BLOCK_SIZE);
+    }
+  }
+
+  /**
+   * Writes part of a range at the given position of the item.
+   */
+  public void writeRange(long position, byte[] data, int offset, int length) throws IOException {
+    writeRange(position, data, offset, length, true);
+  }
+
+  private void writeRange(long position, byte[] data, int offset, int length, boolean mark)
+      throws IOException {
+
+    RangeWriter writer;
+    RangeBitmap ranges;
+
+    synchronized (this) {
+      if (rangeWriter == null) {
+        throw new IllegalStateException("The contents are not being written by ranges");
+      }
+      writer = rangeWriter;
+      ranges = writtenRanges;
+    }
+
+    writer.write(position, data, offset, length);
+    if (mark) {
+      // Marked as they are written, so an interrupted range can be resumed from where it stopped
+      ranges.add(position, position + length);
+    }
+  }
+
+  /**
+   * Starts writing the contents by ranges, keeping track of the ranges written in blocks of the
+   * given size.
+   */
+  protected synchronized void startRangeWriting(int blockSize) {
+
+    if (!isRangeWriteSupported() || rangeWriter != null || outputStreamClosed) {
+      throw new IllegalStateException("The contents of the item are already being written");
+    }
+
+    rangeWriter = ((AbstractRepositoryItem) repositoryItem).createRangeWriter();
+    writtenRanges = new RangeBitmap(blockSize);
+  }
+
+  protected synchronized void setDeclaredLength(long declaredLength) {
+    this.declaredLength = declaredLength;
+  }
+
+  public synchronized long getDeclaredLength() {
+    return declaredLength;
+  }
+
+  protected synchronized RangeBitmap getWrittenRanges() {
+    return writtenRanges;
   }
 
   // TODO Review for potentially race conditions if the timer is cancelled at
@@ -218,6 +382,42 @@ public class RepositoryHttpEndpointImpl implements RepositoryHttpEndpoint {
         throw new KurentoException(e);
       }
     }
+
+    closeRangeWriter();
+  }
+
+  private void closeRangeWriter() {
+
+    String error = null;
+    synchronized (this) {
+
+      if (rangeWriter == null || outputStreamClosed) {
+        return;
+      }
+
+      outputStreamClosed = true;
+
+      long length = declaredLength >= 0 ? declaredLength : writtenRanges.getEnd();
+
+      if (!writtenRanges.isComplete(length)) {
+        // Only the contents without gaps are kept, so the item is consistent
+        long contiguousLength = writtenRanges.getContiguousLength();
+        error = "Upload of item " + repositoryItem.getId() + " is incomplete: missing contents "
+            + "from byte " + contiguousLength + " of " + length;
+        length = contiguousLength;
+      }
+
+      try {
+        rangeWriter.close(length);
+      } catch (IOException e) {
+        throw new KurentoException(e);
+      }
+    }
+
+    if (error != null) {
+      log.warn(error);
+      listeners.fireEvent(new HttpSessionErrorEvent(this, error));
+    }
   }
 
 }
@@ -17,9 +17,15 @@
 
 package org.kurento.repository.internal;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.commons.io.input.BoundedInputStream;
 import org.kurento.repository.RepositoryHttpRecorder;
 import org.kurento.repository.RepositoryItem;
 import org.kurento.repository.internal.http.RepositoryHttpManager;
+import org.kurento.repository.internal.repoimpl.RangeBitmap;
 
 public class RepositoryHttpRecorderImpl extends RepositoryHttpEndpointImpl
     implements RepositoryHttpRecorder {
@@ -29,4 +35,97 @@ public class RepositoryHttpRecorderImpl extends RepositoryHttpEndpointImpl
     super(repositoryItem, id, url, httpManager);
   }
 
+  /**
+   * Starts a chunked upload of an item with the given length.
+   *
+   * @return the number of chunks
+   */
+  public synchronized int startChunkedUpload(int chunkSize, long length) {
+
+    if (chunkSize < MIN_CHUNK_SIZE) {
+      throw new IllegalArgumentException(
+          "Invalid chunk size " + chunkSize + ", it has to be at least " + MIN_CHUNK_SIZE);
+    }
+
+    if (length <= 0) {
+      throw new IllegalArgumentException("Invalid length " + length);
+    }
+
+    int numChunks = getNumChunks(length, chunkSize);
+
+    startRangeWriting(chunkSize);
+    setDeclaredLength(length);
+
+    return numChunks;
+  }
+
+  /**
+   * Writes a chunk at its position in the item. It can be called concurrently for different
+   * chunks. The chunk is only marked as received if it has the expected size; otherwise it is
+   * still missing and has to be sent again.
+   *
+   * @param contentLength
+   *          length of the chunk declared by the client, or -1 if unknown
+   */
+  public void writeChunk(int chunk, long contentLength, InputStream is) throws IOException {
+
+    int chunkSize = getChunkSize();
+    long length = getDeclaredLength();
+
+    if (chunk < 0 || chunk >= getNumChunks()) {
+      throw new IllegalArgumentException("Invalid chunk " + chunk);
+    }
+
+    long position = (long) chunk * chunkSize;
+    long expectedBytes = Math.min(chunkSize, length - position);
+
+    if (contentLength >= 0 && contentLength != expectedBytes) {
+      throw new IllegalArgumentException(
+          "The size of chunk " + chunk + " should be " + expectedBytes + " bytes");
+    }
+
+    long bytes = writeUnmarkedRange(position, new BoundedInputStream(is, expectedBytes));
+
+    if (bytes < expectedBytes || is.read() != -1) {
+      throw new IllegalArgumentException(
+          "The size of chunk " + chunk + " should be " + expectedBytes + " bytes");
+    }
+
+    markRangeWritten(position, position + expectedBytes);
+  }
+
+  /**
+   * Returns the ranges of indexes (first and last, inclusive) of the chunks that have not been
+   * written yet.
+   */
+  public List<int[]> getMissingChunks() {
+    return getChunkedRanges().getMissingBlocks(getDeclaredLength());
+  }
+
+  public int getChunkSize() {
+    return getChunkedRanges().getBlockSize();
+  }
+
+  public int getNumChunks() {
+    return getNumChunks(getDeclaredLength(), getChunkSize());
+  }
+
+  private static int getNumChunks(long length, int chunkSize) {
+    // Can't overflow, as length is positive
+    long numChunks = (length - 1) / chunkSize + 1;
+    if (numChunks > MAX_CHUNKS) {
+      throw new IllegalArgumentException("An item of " + length + " bytes would have "
+          + numChunks + " chunks of " + chunkSize + " bytes, and the max is " + MAX_CHUNKS);
+    }
+    return (int) numChunks;
+  }
+
+  private RangeBitmap getChunkedRanges() {
+    RangeBitmap ranges = getWrittenRanges();
+    if (ranges == null || getDeclaredLength() < 0) {
+      throw new IllegalStateException("There is no chunked upload in progress");
+    }
+    return ranges;
+  }
+
 }
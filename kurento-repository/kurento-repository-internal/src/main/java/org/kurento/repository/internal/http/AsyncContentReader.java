@@ -0,0 +1,123 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+/**
+ * Reads the contents of a request with non-blocking I/O, so a slow client doesn't hold a container
+ * thread during the whole transfer. Data is passed to the sink as it arrives.
+ */
+public class AsyncContentReader implements ReadListener {
+
+  /**
+   * Destination of the contents of the request.
+   */
+  public interface Sink {
+
+    void write(byte[] data, int offset, int length) throws IOException;
+  }
+
+  private final AsyncContext asyncContext;
+  private final ServletInputStream in;
+  private final Sink sink;
+
+  private ByteBuffer buffer;
+  private long readBytes;
+  private boolean finished;
+
+  public AsyncContentReader(AsyncContext asyncContext, Sink sink) throws IOException {
+    this.asyncContext = asyncContext;
+    this.in = asyncContext.getRequest().getInputStream();
+    this.sink = sink;
+  }
+
+  /**
+   * Starts reading the contents. The response is completed when all of them have been read.
+   */
+  public void start() {
+    buffer = FileContentSender.acquireBuffer();
+    in.setReadListener(this);
+  }
+
+  @Override
+  public void onDataAvailable() throws IOException {
+
+    try {
+
+      byte[] data = buffer.array();
+      while (in.isReady() && !in.isFinished()) {
+        int read = in.read(data);
+        if (read < 0) {
+          // onAllDataRead will be called
+          return;
+        }
+        sink.write(data, 0, read);
+        readBytes += read;
+      }
+
+    } catch (IOException e) {
+      finish(e);
+    }
+  }
+
+  @Override
+  public void onAllDataRead() {
+    finish(null);
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    finish(t);
+  }
+
+  private void finish(Throwable error) {
+
+    if (finished) {
+      return;
+    }
+    finished = true;
+
+    FileContentSender.releaseBuffer(buffer);
+    buffer = null;
+
+    try {
+      onFinished(error, readBytes);
+    } finally {
+      asyncContext.complete();
+    }
+  }
+
+  /**
+   * Called when all contents have been read or the transfer has failed, before the response is
+   * completed.
+   *
+   * @param error
+   *          the cause of the failure, or null if all contents have been read
+   * @param readBytes
+   *          number of bytes passed to the sink
+   */
+  protected void onFinished(Throwable error, long readBytes) {
+  }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.http;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the contents of a response with non-blocking I/O. Data is only read from the sources when
+ * the container is ready to send it, so a slow client doesn't hold a container thread during the
+ * whole transfer.
+ */
+public class AsyncContentWriter implements WriteListener {
+
+  private static final Logger log = LoggerFactory.getLogger(AsyncContentWriter.class);
+
+  /**
+   * A part of the contents of the response.
+   */
+  public interface Source extends Closeable {
+
+    /**
+     * Reads the next data of the source into the buffer, from its position up to its limit.
+     *
+     * @return the number of bytes read, or -1 if there is no more data
+     */
+    int read(ByteBuffer buffer) throws IOException;
+  }
+
+  private final AsyncContext asyncContext;
+  private final ServletOutputStream out;
+  private final Iterator<Source> sources;
+
+  private Source current;
+  private ByteBuffer buffer;
+  private boolean finished;
+
+  public AsyncContentWriter(AsyncContext asyncContext, List<Source> sources) throws IOException {
+    this.asyncContext = asyncContext;
+    this.out = asyncContext.getResponse().getOutputStream();
+    this.sources = sources.iterator();
+  }
+
+  /**
+   * Starts writing the contents. The response is completed when all of them have been written.
+   */
+  public void start() {
+    buffer = FileContentSender.acquireBuffer();
+    current = sources.hasNext() ? sources.next() : null;
+    out.setWriteListener(this);
+  }
+
+  @Override
+  public void onWritePossible() throws IOException {
+
+    try {
+
+      while (out.isReady()) {
+
+        if (current == null) {
+          finish(null);
+          return;
+        }
+
+        buffer.clear();
+        int read = current.read(buffer);
+
+        if (read < 0) {
+          current.close();
+          current = sources.hasNext() ? sources.next() : null;
+        } else {
+          // The container copies the data if it can't be sent now, so the buffer can be reused
+          out.write(buffer.array(), 0, read);
+        }
+      }
+
+    } catch (IOException e) {
+      finish(e);
+    }
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    finish(t);
+  }
+
+  private void finish(Throwable error) {
+
+    if (finished) {
+      return;
+    }
+    finished = true;
+
+    while (current != null) {
+      try {
+        current.close();
+      } catch (IOException e) {
+        log.warn("Exception closing source of response contents", e);
+      }
+      current = sources.hasNext() ? sources.next() : null;
+    }
+
+    FileContentSender.releaseBuffer(buffer);
+    buffer = null;
+
+    try {
+      onFinished(error);
+    } finally {
+      asyncContext.complete();
+    }
+  }
+
+  /**
+   * Called when all contents have been written or the transfer has failed, before the response is
+   * completed.
+   *
+   * @param error
+   *          the cause of the failure, or null if all contents have been written
+   */
+  protected void onFinished(Throwable error) {
+  }
+
+  /**
+   * Creates a source with the given bytes.
+   */
+  public static Source bytesSource(final byte[] data) {
+    return new Source() {
+
+      private int position;
+
+      @Override
+      public int read(ByteBuffer buffer) {
+        if (position == data.length) {
+          return -1;
+        }
+        int length = Math.min(buffer.remaining(), data.length - position);
+        buffer.put(data, position, length);
+        position += length;
+        return length;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  /**
+   * Creates a source with a range of a file, read with positional reads. The sender is not closed
+   * with the source, so the sources of all the ranges of a response can share it.
+   *
+   * @param end
+   *          last byte of the range (inclusive), or -1 to read until the end of the file
+   */
+  public static Source fileSource(final FileContentSender sender, final long start,
+      final long end) {
+
+    return new Source() {
+
+      private long position = start;
+
+      @Override
+      public int read(ByteBuffer buffer) throws IOException {
+
+        long rangeEnd = end < 0 ? sender.size() - 1 : end;
+        if (position > rangeEnd) {
+          return -1;
+        }
+
+        buffer.limit((int) Math.min(buffer.limit(), rangeEnd - position + 1));
+        int read = sender.read(buffer, position);
+        if (read < 0) {
+          throw new EOFException("End of file reached at " + position + " while sending range "
+              + start + "-" + rangeEnd);
+        }
+        position += read;
+        return read;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  /**
+   * Source with a range of the contents of a stream, which is opened when they are read for the
+   * first time.
+   */
+  public abstract static class StreamSource implements Source {
+
+    private final long start;
+    private long remaining;
+    private InputStream is;
+
+    /**
+     * @param end
+     *          last byte of the range (inclusive), or -1 to read until the end of the stream
+     */
+    public StreamSource(long start, long end) {
+      this.start = start;
+      this.remaining = end < 0 ? Long.MAX_VALUE : end - start + 1;
+    }
+
+    protected abstract InputStream openStream() throws IOException;
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+
+      if (is == null) {
+        is = openStream();
+        long skipped = 0;
+        while (skipped < start) {
+          long n = is.skip(start - skipped);
+          if (n <= 0) {
+            throw new EOFException("Has been skiped " + skipped + " when " + start
+                + " is required");
+          }
+          skipped += n;
+        }
+      }
+
+      if (remaining == 0) {
+        return -1;
+      }
+
+      int length = (int) Math.min(buffer.remaining(), remaining);
+      int read = is.read(buffer.array(), buffer.position(), length);
+      if (read > 0) {
+        remaining -= read;
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (is != null) {
+        is.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.http;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Sends ranges of files of the repository, reading them with positional reads of a
+ * {@link FileChannel} instead of skipping through an input stream.
+ *
+ * If the servlet container supports sendfile (Tomcat with a NIO or APR connector does), a single
+ * range can be handed to the container, which sends it from the kernel without copying it to user
+ * space. Otherwise, ranges are copied with pooled buffers much larger than the default servlet
+ * ones.
+ */
+public class FileContentSender {
+
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+  private static final int MAX_POOLED_BUFFERS = 32;
+
+  private static final ConcurrentLinkedQueue<ByteBuffer> bufferPool =
+      new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger numPooledBuffers = new AtomicInteger();
+
+  private final File file;
+  private FileChannel channel;
+
+  public FileContentSender(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Asks the container to send the given range of the file after the servlet returns. The content
+   * length of the response has to be set to the length of the range.
+   *
+   * @param start
+   *          first byte of the range
+   * @param end
+   *          last byte of the range (inclusive)
+   * @return false if the container does not support sendfile, so the range has to be sent with
+   *         {@link #send(OutputStream, long, long)}
+   */
+  public boolean sendWithContainer(HttpServletRequest request, long start, long end)
+      throws IOException {
+
+    if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+      return false;
+    }
+
+    request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+    request.setAttribute(SENDFILE_START_ATTR, Long.valueOf(start));
+    request.setAttribute(SENDFILE_END_ATTR, Long.valueOf(end + 1));
+    return true;
+  }
+
+  /**
+   * Writes the given range of the file to the output stream. Several ranges can be sent with the
+   * same sender, which keeps the file open until it is closed.
+   *
+   * @param start
+   *          first byte of the range
+   * @param end
+   *          last byte of the range (inclusive), or -1 to send until the end of the file
+   */
+  public void send(OutputStream os, long start, long end) throws IOException {
+
+    long last = end < 0 ? getChannel().size() - 1 : end;
+
+    ByteBuffer buffer = acquireBuffer();
+    try {
+      long position = start;
+      while (position <= last) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), last - position + 1));
+        int read = read(buffer, position);
+        if (read < 0) {
+          throw new EOFException("End of file " + file + " reached at " + position
+              + " while sending range " + start + "-" + last);
+        }
+        os.write(buffer.array(), 0, read);
+        position += read;
+      }
+    } finally {
+      releaseBuffer(buffer);
+    }
+  }
+
+  /**
+   * Reads the file from the given position into the buffer, returning -1 at the end of the file.
+   */
+  int read(ByteBuffer buffer, long position) throws IOException {
+    return getChannel().read(buffer, position);
+  }
+
+  long size() throws IOException {
+    return getChannel().size();
+  }
+
+  private FileChannel getChannel() throws IOException {
+    if (channel == null) {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+    return channel;
+  }
+
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+
+  // Heap buffers are used because servlet streams only accept arrays. File channels read them
+  // through their own cached direct buffers
+  static ByteBuffer acquireBuffer() {
+    ByteBuffer buffer = bufferPool.poll();
+    if (buffer != null) {
+      numPooledBuffers.decrementAndGet();
+      return buffer;
+    }
+    return ByteBuffer.allocate(BUFFER_SIZE);
+  }
+
+  static void releaseBuffer(ByteBuffer buffer) {
+    if (numPooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+      bufferPool.offer(buffer);
+    } else {
+      numPooledBuffers.decrementAndGet();
+    }
+  }
+
+}
@@ -18,6 +18,8 @@
 package org.kurento.repository.internal.http;
 
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_CONFLICT;
+import static javax.servlet.http.HttpServletResponse.SC_CREATED;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
@@ -26,19 +28,19 @@ import static javax.servlet.http.HttpServletResponse.SC_PRECONDITION_FAILED;
 import static javax.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 
 import java.io.BufferedInputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.StringTokenizer;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
-import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.WebServlet;
@@ -54,14 +56,17 @@ import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.IOUtils;
 import org.kurento.commons.exception.KurentoException;
 import org.kurento.repository.RepositoryApiConfiguration;
+import org.kurento.repository.RepositoryHttpRecorder;
 import org.kurento.repository.RepositoryItem;
 import org.kurento.repository.RepositoryItemAttributes;
 import org.kurento.repository.internal.RepositoryHttpEndpointImpl;
+import org.kurento.repository.internal.RepositoryHttpRecorderImpl;
+import org.kurento.repository.internal.repoimpl.filesystem.FileRepositoryItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-@WebServlet(value = "/repository_servlet/*", loadOnStartup = 1)
+@WebServlet(value = "/repository_servlet/*", loadOnStartup = 1, asyncSupported = true)
 public class RepositoryHttpServlet extends HttpServlet {
 
   protected static class Range {
@@ -278,7 +283,11 @@ public class RepositoryHttpServlet extends HttpServlet {
   @Override
   protected void doPost(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
-    doPut(request, response);
+    if (isChunkedUploadRequest(request)) {
+      chunkedUpload(request, response);
+    } else {
+      doPut(request, response);
+    }
   }
 
   /**
@@ -297,7 +306,11 @@ public class RepositoryHttpServlet extends HttpServlet {
   @Override
   protected void doPut(HttpServletRequest req, HttpServletResponse resp)
       throws ServletException, IOException {
-    uploadContent(req, resp);
+    if (isChunkedUploadRequest(req)) {
+      chunkedUpload(req, resp);
+    } else {
+      uploadContent(req, resp);
+    }
   }
 
   /**
@@ -316,7 +329,109 @@ public class RepositoryHttpServlet extends HttpServlet {
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
-    serveResource(request, response, true);
+    if (isChunkedUploadRequest(request)) {
+      chunkedUpload(request, response);
+    } else {
+      serveResource(request, response, true);
+    }
+  }
+
+  /**
+   * Checks if the request belongs to the chunked upload protocol described in
+   * {@link RepositoryHttpRecorder}.
+   */
+  protected boolean isChunkedUploadRequest(HttpServletRequest req) {
+
+    // The query string is checked first so the parameters of a form are not parsed from the body
+    if (req.getQueryString() == null) {
+      return false;
+    }
+
+    return req.getParameter(RepositoryHttpRecorder.CHUNK_SIZE_PARAM) != null
+        || req.getParameter(RepositoryHttpRecorder.CHUNK_PARAM) != null
+        || req.getParameter(RepositoryHttpRecorder.MISSING_CHUNKS_PARAM) != null
+        || req.getParameter(RepositoryHttpRecorder.COMMIT_PARAM) != null;
+  }
+
+  protected void chunkedUpload(HttpServletRequest req, HttpServletResponse resp)
+      throws IOException {
+
+    RepositoryHttpEndpointImpl elem = repoHttpManager.getHttpRepoItemElem(extractSessionId(req));
+
+    if (!(elem instanceof RepositoryHttpRecorderImpl)) {
+      resp.setStatus(SC_NOT_FOUND);
+      return;
+    }
+
+    RepositoryHttpRecorderImpl recorder = (RepositoryHttpRecorderImpl) elem;
+
+    recorder.stopCurrentTimer();
+    recorder.fireStartedEventIfFirstTime();
+
+    boolean stopped = false;
+
+    try {
+
+      String chunk = req.getParameter(RepositoryHttpRecorder.CHUNK_PARAM);
+
+      if (req.getParameter(RepositoryHttpRecorder.CHUNK_SIZE_PARAM) != null) {
+
+        int numChunks = recorder.startChunkedUpload(
+            Integer.parseInt(req.getParameter(RepositoryHttpRecorder.CHUNK_SIZE_PARAM)),
+            Long.parseLong(req.getParameter(RepositoryHttpRecorder.LENGTH_PARAM)));
+
+        resp.setStatus(SC_CREATED);
+        resp.setContentType("text/plain");
+        resp.getWriter().print(numChunks);
+
+      } else if (chunk != null) {
+
+        try (InputStream requestInputStream = req.getInputStream()) {
+          recorder.writeChunk(Integer.parseInt(chunk), req.getContentLengthLong(),
+              requestInputStream);
+        }
+        resp.setStatus(SC_OK);
+
+      } else {
+
+        List<int[]> missingChunks = recorder.getMissingChunks();
+
+        if (req.getParameter(RepositoryHttpRecorder.COMMIT_PARAM) != null) {
+          if (missingChunks.isEmpty()) {
+            recorder.stop();
+            stopped = true;
+            resp.setStatus(SC_OK);
+            return;
+          }
+          resp.setStatus(SC_CONFLICT);
+        } else {
+          resp.setStatus(SC_OK);
+        }
+
+        resp.setContentType("text/plain");
+        PrintWriter writer = resp.getWriter();
+        for (int i = 0; i < missingChunks.size(); i++) {
+          if (i > 0) {
+            writer.print(',');
+          }
+          int[] range = missingChunks.get(i);
+          writer.print(range[0]);
+          if (range[1] != range[0]) {
+            writer.print('-');
+            writer.print(range[1]);
+          }
+        }
+      }
+
+    } catch (IllegalArgumentException e) {
+      resp.sendError(SC_BAD_REQUEST, e.getMessage());
+    } catch (IllegalStateException e) {
+      resp.sendError(SC_CONFLICT, e.getMessage());
+    } finally {
+      if (!stopped) {
+        recorder.stopInTimeout();
+      }
+    }
   }
 
   protected void uploadContent(HttpServletRequest req, HttpServletResponse resp)
@@ -334,11 +449,40 @@ public class RepositoryHttpServlet extends HttpServlet {
     elem.stopCurrentTimer();
     elem.fireStartedEventIfFirstTime();
 
+    Range range = parseContentRange(req, resp);
+
+    if (range == null && req.getHeader("Content-Range") != null) {
+      // Invalid range, the error has already been sent
+      elem.stopInTimeout();
+      return;
+    }
+
+    if (req.isAsyncSupported() && uploadAsync(req, resp, elem, range)) {
+      // The timer is started again when the upload finishes
+      return;
+    }
+
     try (InputStream requestInputStream = req.getInputStream()) {
 
-      OutputStream repoItemOutputStream = elem.getRepoItemOutputStream();
+      if (elem.isRangeWriteSupported() && (range != null || elem.isWritingRanges())) {
 
-      Range range = parseContentRange(req, resp);
+        // Ranges are written at their position in the item, in any order. A request without range
+        // after some ranges appends to the contents written without gaps
+        long position = range != null ? range.start : elem.getWrittenBytes();
+        long totalLength = range != null ? range.length : -1;
+
+        try {
+          long bytes = elem.writeRange(position, totalLength, requestInputStream);
+          resp.setStatus(SC_OK);
+          log.debug("Bytes received at position {}: {}", position, bytes);
+        } catch (IllegalArgumentException e) {
+          resp.sendError(SC_BAD_REQUEST, e.getMessage());
+        }
+
+        return;
+      }
+
+      OutputStream repoItemOutputStream = elem.getRepoItemOutputStream();
 
       if (range != null) {
 
@@ -404,6 +548,80 @@ public class RepositoryHttpServlet extends HttpServlet {
     }
   }
 
+  /**
+   * Receives the contents of the request as they arrive, without blocking a thread of the
+   * container. Multipart requests and ranges of contents written with the output stream of the
+   * item are received with blocking I/O.
+   *
+   * @return false if the request has to be received with blocking I/O
+   */
+  private boolean uploadAsync(HttpServletRequest req, final HttpServletResponse resp,
+      final RepositoryHttpEndpointImpl elem, Range range) throws IOException {
+
+    AsyncContentReader.Sink sink;
+
+    if (elem.isRangeWriteSupported() && (range != null || elem.isWritingRanges())) {
+
+      final long position = range != null ? range.start : elem.getWrittenBytes();
+
+      try {
+        elem.startRange(range != null ? range.length : -1);
+      } catch (IllegalArgumentException e) {
+        resp.sendError(SC_BAD_REQUEST, e.getMessage());
+        elem.stopInTimeout();
+        return true;
+      }
+
+      sink = new AsyncContentReader.Sink() {
+
+        private long current = position;
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+          elem.writeRange(current, data, offset, length);
+          current += length;
+        }
+      };
+
+    } else if (range == null && !ServletFileUpload.isMultipartContent(req)) {
+
+      final OutputStream repoItemOutputStream = elem.getRepoItemOutputStream();
+
+      sink = new AsyncContentReader.Sink() {
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+          repoItemOutputStream.write(data, offset, length);
+        }
+      };
+
+    } else {
+      return false;
+    }
+
+    log.debug("Start to receive bytes (estimated " + req.getContentLength() + " bytes)");
+
+    AsyncContext asyncContext = req.startAsync();
+    asyncContext.setTimeout(0);
+
+    new AsyncContentReader(asyncContext, sink) {
+      @Override
+      protected void onFinished(Throwable error, long readBytes) {
+        if (error == null) {
+          resp.setStatus(SC_OK);
+          log.debug("Bytes received: " + readBytes);
+        } else {
+          log.warn("Exception when uploading content", error);
+          elem.fireSessionErrorEvent(
+              error instanceof Exception ? (Exception) error : new KurentoException(error));
+          resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        elem.stopInTimeout();
+      }
+    }.start();
+
+    return true;
+  }
+
   private void uploadMultipart(HttpServletRequest req, HttpServletResponse resp,
       OutputStream repoItemOutputStrem) throws IOException {
 
@@ -486,73 +704,6 @@ public class RepositoryHttpServlet extends HttpServlet {
 
   }
 
-  /**
-   * Handle a partial PUT. New content specified in request is appended to existing content in
-   * oldRevisionContent (if present). This code does not support simultaneous partial updates to the
-   * same resource.
-   */
-  protected File executePartialPut(HttpServletRequest req, Range range, String sessionId)
-      throws IOException {
-
-    // TODO: Change this implementation to avoid Files. Try to
-    // make the work on the repository implementation.
-
-    // Append data specified in ranges to existing content for this
-    // resource - create a temp. file on the local filesystem to
-    // perform this operation
-    // Assume just one range is specified for now
-
-    File tempDir = (File) getServletContext().getAttribute(ServletContext.TEMPDIR);
-
-    // Convert all '/' characters to '.' in resourcePath
-    String convertedResourcePath = sessionId.replace('/', '.');
-
-    File contentFile = new File(tempDir, convertedResourcePath);
-
-    if (contentFile.createNewFile()) {
-      // Clean up contentFile when Tomcat is terminated
-      contentFile.deleteOnExit();
-    }
-
-    try (RandomAccessFile randAccessContentFile = new RandomAccessFile(contentFile, "rw")) {
-
-      RepositoryHttpEndpointImpl repoItemHttpElem = repoHttpManager.getHttpRepoItemElem(sessionId);
-
-      // Copy data in oldRevisionContent to contentFile
-      if (repoItemHttpElem != null) {
-
-        try (BufferedInputStream bufOldRevStream = new BufferedInputStream(
-            repoItemHttpElem.createRepoItemInputStream(), FILE_BUFFER_SIZE)) {
-
-          int numBytesRead;
-          byte[] copyBuffer = new byte[FILE_BUFFER_SIZE];
-          while ((numBytesRead = bufOldRevStream.read(copyBuffer)) != -1) {
-            randAccessContentFile.write(copyBuffer, 0, numBytesRead);
-          }
-        }
-      }
-
-      randAccessContentFile.setLength(range.length);
-
-      // Append data in request input stream to contentFile
-      randAccessContentFile.seek(range.start);
-
-      int numBytesRead;
-
-      byte[] transferBuffer = new byte[FILE_BUFFER_SIZE];
-
-      try (BufferedInputStream requestBufInStream =
-          new BufferedInputStream(req.getInputStream(), FILE_BUFFER_SIZE)) {
-
-        while ((numBytesRead = requestBufInStream.read(transferBuffer)) != -1) {
-          randAccessContentFile.write(transferBuffer, 0, numBytesRead);
-        }
-      }
-    }
-
-    return contentFile;
-  }
-
   /**
    * Check if the conditions specified in the optional If headers are satisfied.
    *
@@ -681,7 +832,23 @@ public class RepositoryHttpServlet extends HttpServlet {
 
       // Copy the input stream to our output stream (if requested)
       if (serveContent) {
-        copy(elem, response);
+
+        long end = contentLength >= 0 && !contentWritten ? contentLength - 1 : -1;
+
+        if (!sendFileWithContainer(request, response, elem, 0, end)) {
+
+          if (request.isAsyncSupported()) {
+            FileContentSender sender = createFileSender(elem);
+            List<AsyncContentWriter.Source> sources = new ArrayList<>();
+            sources.add(createSource(elem, sender, 0, end));
+            writeAsync(request, elem, sender, sources);
+            return;
+          }
+
+          if (!sendFile(response, elem, 0, end)) {
+            copy(elem, response);
+          }
+        }
       }
 
     } else {
@@ -705,8 +872,20 @@ public class RepositoryHttpServlet extends HttpServlet {
         setContentLength(response, length);
         setContentType(response, contentType);
 
-        if (serveContent) {
-          copy(elem, response, range);
+        if (serveContent
+            && !sendFileWithContainer(request, response, elem, range.start, range.end)) {
+
+          if (request.isAsyncSupported()) {
+            FileContentSender sender = createFileSender(elem);
+            List<AsyncContentWriter.Source> sources = new ArrayList<>();
+            sources.add(createSource(elem, sender, range.start, range.end));
+            writeAsync(request, elem, sender, sources);
+            return;
+          }
+
+          if (!sendFile(response, elem, range.start, range.end)) {
+            copy(elem, response, range);
+          }
         }
 
       } else {
@@ -714,6 +893,14 @@ public class RepositoryHttpServlet extends HttpServlet {
         response.setContentType("multipart/byteranges; boundary=" + MIME_SEPARATION);
 
         if (serveContent) {
+
+          if (request.isAsyncSupported()) {
+            FileContentSender sender = createFileSender(elem);
+            writeAsync(request, elem, sender,
+                createMultipartSources(elem, sender, ranges, contentType));
+            return;
+          }
+
           copy(elem, response, ranges, contentType);
         }
       }
@@ -723,6 +910,130 @@ public class RepositoryHttpServlet extends HttpServlet {
 
   }
 
+  /**
+   * Hands a range of an item stored in a file to the sendfile support of the container.
+   *
+   * @param end
+   *          last byte of the range, or -1 to send until the end of the file
+   * @return false if the range has to be sent by the servlet
+   */
+  private boolean sendFileWithContainer(HttpServletRequest request, HttpServletResponse response,
+      RepositoryHttpEndpointImpl repoItemHttpElem, long start, long end) throws IOException {
+
+    if (end < 0 || response.isCommitted()) {
+      return false;
+    }
+
+    FileContentSender sender = createFileSender(repoItemHttpElem);
+    return sender != null && sender.sendWithContainer(request, start, end);
+  }
+
+  /**
+   * Sends a range of an item stored in a file, using positional reads.
+   *
+   * @param end
+   *          last byte of the range, or -1 to send until the end of the file
+   * @return false if the item is not stored in a file, so it has to be sent with its input stream
+   */
+  private boolean sendFile(HttpServletResponse response,
+      RepositoryHttpEndpointImpl repoItemHttpElem, long start, long end) throws IOException {
+
+    FileContentSender sender = createFileSender(repoItemHttpElem);
+    if (sender == null) {
+      return false;
+    }
+
+    try (ServletOutputStream ostream = response.getOutputStream()) {
+      sender.send(ostream, start, end);
+    } finally {
+      sender.close();
+    }
+
+    return true;
+  }
+
+  /**
+   * Writes the contents of the response as the client is ready to receive them, without blocking a
+   * thread of the container. The headers of the response must have been set.
+   *
+   * @param sender
+   *          sender shared by the file sources, closed when the response is finished, or null
+   */
+  private void writeAsync(HttpServletRequest request, final RepositoryHttpEndpointImpl elem,
+      final FileContentSender sender, List<AsyncContentWriter.Source> sources)
+      throws IOException {
+
+    AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(0);
+
+    new AsyncContentWriter(asyncContext, sources) {
+      @Override
+      protected void onFinished(Throwable error) {
+        if (error != null) {
+          log.debug("Exception when serving content of session {}: {}", elem.getSessionId(),
+              error.getMessage());
+        }
+        if (sender != null) {
+          try {
+            sender.close();
+          } catch (IOException e) {
+            log.warn("Exception closing file of session {}", elem.getSessionId(), e);
+          }
+        }
+        elem.stopInTimeout();
+      }
+    }.start();
+  }
+
+  private AsyncContentWriter.Source createSource(final RepositoryHttpEndpointImpl elem,
+      FileContentSender sender, long start, long end) {
+
+    if (sender != null) {
+      return AsyncContentWriter.fileSource(sender, start, end);
+    }
+
+    return new AsyncContentWriter.StreamSource(start, end) {
+      @Override
+      protected InputStream openStream() {
+        return new BufferedInputStream(elem.createRepoItemInputStream(), INPUT_BUFFER_SIZE);
+      }
+    };
+  }
+
+  private List<AsyncContentWriter.Source> createMultipartSources(RepositoryHttpEndpointImpl elem,
+      FileContentSender sender, List<Range> ranges, String contentType) {
+
+    List<AsyncContentWriter.Source> sources = new ArrayList<>();
+
+    for (Range range : ranges) {
+
+      StringBuilder header = new StringBuilder();
+      header.append("\r\n--").append(MIME_SEPARATION).append("\r\n");
+      if (contentType != null) {
+        header.append("Content-Type: ").append(contentType).append("\r\n");
+      }
+      header.append("Content-Range: bytes ").append(range.start).append('-').append(range.end)
+          .append('/').append(range.length).append("\r\n\r\n");
+
+      sources.add(AsyncContentWriter.bytesSource(header.toString()
+          .getBytes(StandardCharsets.ISO_8859_1)));
+      sources.add(createSource(elem, sender, range.start, range.end));
+    }
+
+    sources.add(AsyncContentWriter.bytesSource(("\r\n--" + MIME_SEPARATION + "--")
+        .getBytes(StandardCharsets.ISO_8859_1)));
+
+    return sources;
+  }
+
+  private FileContentSender createFileSender(RepositoryHttpEndpointImpl repoItemHttpElem) {
+    RepositoryItem item = repoItemHttpElem.getRepositoryItem();
+    if (item instanceof FileRepositoryItem && item.getState() == RepositoryItem.State.STORED) {
+      return new FileContentSender(((FileRepositoryItem) item).getFile());
+    }
+    return null;
+  }
+
   private String getContentType(RepositoryHttpEndpointImpl repoItemHttpElem,
       RepositoryItemAttributes attributes) {
 
@@ -1211,27 +1522,36 @@ public class RepositoryHttpServlet extends HttpServlet {
     }
 
     IOException exception = null;
+    FileContentSender sender = createFileSender(repoItemHttpElem);
+
     try (ServletOutputStream ostream = response.getOutputStream()) {
 
       for (Range currentRange : ranges) {
 
-        try (InputStream istream = new BufferedInputStream(
-            repoItemHttpElem.createRepoItemInputStream(), INPUT_BUFFER_SIZE)) {
+        // Writing MIME header.
+        ostream.println();
+        ostream.println("--" + MIME_SEPARATION);
 
-          // Writing MIME header.
-          ostream.println();
-          ostream.println("--" + MIME_SEPARATION);
-
-          if (contentType != null) {
-            ostream.println("Content-Type: " + contentType);
-          }
-
-          ostream.println("Content-Range: bytes " + currentRange.start + "-" + currentRange.end
-              + "/" + currentRange.length);
-          ostream.println();
+        if (contentType != null) {
+          ostream.println("Content-Type: " + contentType);
+        }
 
-          exception = copyStreamsRange(istream, ostream, currentRange);
+        ostream.println("Content-Range: bytes " + currentRange.start + "-" + currentRange.end
+            + "/" + currentRange.length);
+        ostream.println();
 
+        if (sender != null) {
+          try {
+            sender.send(ostream, currentRange.start, currentRange.end);
+          } catch (IOException e) {
+            exception = e;
+            break;
+          }
+        } else {
+          try (InputStream istream = new BufferedInputStream(
+              repoItemHttpElem.createRepoItemInputStream(), INPUT_BUFFER_SIZE)) {
+            exception = copyStreamsRange(istream, ostream, currentRange);
+          }
           if (exception != null) {
             break;
           }
@@ -1240,6 +1560,10 @@ public class RepositoryHttpServlet extends HttpServlet {
 
       ostream.println();
       ostream.print("--" + MIME_SEPARATION + "--");
+    } finally {
+      if (sender != null) {
+        sender.close();
+      }
     }
     // Rethrow any exception that has occurred
     if (exception != null) {
@@ -77,6 +77,12 @@ public abstract class AbstractRepositoryItem implements RepositoryItem {
     return repository.getRepositoryHttpManager().createRepositoryHttpRecorder(this, sessionIdInUrl);
   }
 
+  /**
+   * Creates a writer to store the contents of this item at any position, as an alternative to
+   * {@link #createOutputStreamToWrite()}.
+   */
+  public abstract RangeWriter createRangeWriter();
+
   @Override
   public RepositoryItemAttributes getAttributes() {
     return attributes;
@@ -0,0 +1,117 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number, duration and results of the searches made in a repository, by type of query.
+ */
+public class QueryStats {
+
+  /**
+   * Accumulated values of a type of query.
+   */
+  public static class Counters {
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong results = new AtomicLong();
+
+    private void add(long nanos, int numResults) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      results.addAndGet(numResults);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getTotalMicros() {
+      return TimeUnit.NANOSECONDS.toMicros(totalNanos.get());
+    }
+
+    public long getMaxMicros() {
+      return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    public long getResults() {
+      return results.get();
+    }
+
+    @Override
+    public String toString() {
+      long queries = getCount();
+      return "count=" + queries + ", avgMicros=" + (queries > 0 ? getTotalMicros() / queries : 0)
+          + ", maxMicros=" + getMaxMicros() + ", results=" + getResults();
+    }
+  }
+
+  private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+  /**
+   * Records a query.
+   *
+   * @param type
+   *          the type of query, as "value" or "regex"
+   * @param startNanos
+   *          the value of {@link System#nanoTime()} when the query started
+   * @param numResults
+   *          the number of items found
+   * @return the duration of the query in microseconds
+   */
+  public long record(String type, long startNanos, int numResults) {
+
+    long nanos = System.nanoTime() - startNanos;
+
+    Counters typeCounters = counters.get(type);
+    if (typeCounters == null) {
+      Counters newCounters = new Counters();
+      typeCounters = counters.putIfAbsent(type, newCounters);
+      if (typeCounters == null) {
+        typeCounters = newCounters;
+      }
+    }
+
+    typeCounters.add(nanos, numResults);
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  /**
+   * Returns the counters by type of query.
+   */
+  public Map<String, Counters> getCounters() {
+    return counters;
+  }
+
+  @Override
+  public String toString() {
+    return counters.toString();
+  }
+
+}
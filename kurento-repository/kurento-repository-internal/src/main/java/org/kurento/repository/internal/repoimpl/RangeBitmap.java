@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of the ranges of an item that have been written. Completed blocks are marked in a
+ * bitmap, and the written intervals of blocks not completed yet are kept apart, so it is exact
+ * regardless of how ranges are aligned.
+ */
+public class RangeBitmap {
+
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  private final int blockSize;
+  private final BitSet blocks = new BitSet();
+
+  // Written intervals (start to end, exclusive) of incomplete blocks. They never cross blocks
+  private final TreeMap<Long, Long> partial = new TreeMap<>();
+
+  private long end;
+
+  public RangeBitmap() {
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  public RangeBitmap(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Marks the bytes from start (inclusive) to end (exclusive) as written.
+   */
+  public synchronized void add(long start, long end) {
+
+    if (start >= end) {
+      return;
+    }
+
+    this.end = Math.max(this.end, end);
+
+    long firstFull = (start + blockSize - 1) / blockSize;
+    long lastFull = end / blockSize;
+
+    if (firstFull >= lastFull) {
+      // Inside a block, or across the boundary of two blocks without completing any of them
+      long boundary = (start / blockSize + 1) * blockSize;
+      addPartial(start, Math.min(end, boundary));
+      if (end > boundary) {
+        addPartial(boundary, end);
+      }
+      return;
+    }
+
+    blocks.set(toIndex(firstFull), toIndex(lastFull));
+    partial.subMap(firstFull * blockSize, lastFull * blockSize).clear();
+
+    if (start < firstFull * blockSize) {
+      addPartial(start, firstFull * blockSize);
+    }
+    if (end > lastFull * blockSize) {
+      addPartial(lastFull * blockSize, end);
+    }
+  }
+
+  private void addPartial(long start, long end) {
+
+    long block = start / blockSize;
+    if (blocks.get(toIndex(block))) {
+      return;
+    }
+
+    long blockStart = block * blockSize;
+    long blockEnd = blockStart + blockSize;
+
+    Entry<Long, Long> floor = partial.floorEntry(start);
+    if (floor != null && floor.getKey() >= blockStart && floor.getValue() >= start) {
+      start = floor.getKey();
+      end = Math.max(end, floor.getValue());
+      partial.remove(floor.getKey());
+    }
+
+    Entry<Long, Long> next = partial.ceilingEntry(start);
+    while (next != null && next.getKey() <= end && next.getKey() < blockEnd) {
+      end = Math.max(end, next.getValue());
+      partial.remove(next.getKey());
+      next = partial.ceilingEntry(start);
+    }
+
+    if (start == blockStart && end == blockEnd) {
+      blocks.set(toIndex(block));
+    } else {
+      partial.put(start, end);
+    }
+  }
+
+  /**
+   * Returns the end (exclusive) of the furthest range written.
+   */
+  public synchronized long getEnd() {
+    return end;
+  }
+
+  /**
+   * Returns the number of bytes written from the start of the item without gaps.
+   */
+  public synchronized long getContiguousLength() {
+    long position = (long) blocks.nextClearBit(0) * blockSize;
+    Long partialEnd = partial.get(position);
+    return Math.min(end, partialEnd != null ? partialEnd : position);
+  }
+
+  /**
+   * Returns whether all bytes of an item of the given length have been written.
+   */
+  public synchronized boolean isComplete(long length) {
+    return getContiguousLength() >= length;
+  }
+
+  /**
+   * Returns the blocks of an item of the given length that have not been completely written, as
+   * ranges of indexes (first and last, inclusive) of consecutive blocks.
+   */
+  public synchronized List<int[]> getMissingBlocks(long length) {
+
+    List<int[]> missing = new ArrayList<>();
+    int[] current = null;
+
+    int numBlocks = length <= 0 ? 0 : toIndex((length - 1) / blockSize + 1);
+    for (int i = blocks.nextClearBit(0); i < numBlocks; i = blocks.nextClearBit(i + 1)) {
+      // The last block can be shorter than the rest
+      long start = (long) i * blockSize;
+      Long end = partial.get(start);
+      if (end != null && end >= Math.min(length, start + blockSize)) {
+        continue;
+      }
+      if (current != null && current[1] == i - 1) {
+        current[1] = i;
+      } else {
+        current = new int[] { i, i };
+        missing.add(current);
+      }
+    }
+
+    return missing;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  private static int toIndex(long block) {
+    if (block > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Position out of range");
+    }
+    return (int) block;
+  }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl;
+
+import java.io.IOException;
+
+/**
+ * Writes the contents of a repository item at any position, so they can be uploaded in ranges sent
+ * in any order. Ranges can be written concurrently.
+ */
+public interface RangeWriter {
+
+  void write(long position, byte[] data, int offset, int length) throws IOException;
+
+  /**
+   * Finishes writing the item, which will have the given length. Data written beyond it is
+   * discarded.
+   */
+  void close(long length) throws IOException;
+
+}
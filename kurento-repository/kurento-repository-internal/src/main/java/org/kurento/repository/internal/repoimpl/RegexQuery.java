@@ -0,0 +1,292 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression used to search items by the value of a metadata attribute. It is compiled
+ * once, and analyzed to find the literal text that any matching value has to contain, so indexes
+ * can be used to find candidate values before running the regular expression.
+ * <p>
+ * The analysis is conservative: regular expressions with alternations or inline flags are not
+ * analyzed, and literals inside groups and character classes are ignored.
+ * </p>
+ */
+public class RegexQuery {
+
+  private final String regex;
+  private final Pattern pattern;
+  private final boolean anchored;
+  private final String literalPrefix;
+  private final String literal;
+  private final List<String> requiredLiterals;
+
+  private RegexQuery(String regex, Pattern pattern, boolean anchored, String literalPrefix,
+      String literal, List<String> requiredLiterals) {
+    this.regex = regex;
+    this.pattern = pattern;
+    this.anchored = anchored;
+    this.literalPrefix = literalPrefix;
+    this.literal = literal;
+    this.requiredLiterals = Collections.unmodifiableList(requiredLiterals);
+  }
+
+  /**
+   * Compiles and analyzes a regular expression.
+   *
+   * @throws java.util.regex.PatternSyntaxException
+   *           if the regular expression is not valid
+   */
+  public static RegexQuery parse(String regex) {
+
+    Pattern pattern = Pattern.compile(regex);
+    boolean anchored = regex.startsWith("^");
+
+    if (regex.contains("|") || regex.contains("(?") || regex.contains("\\Q")) {
+      return new RegexQuery(regex, pattern, anchored, "", null, new ArrayList<String>());
+    }
+
+    List<String> literals = new ArrayList<>();
+    StringBuilder run = new StringBuilder();
+    String prefix = null;
+    boolean allLiteral = true;
+
+    int i = anchored ? 1 : 0;
+    while (i < regex.length()) {
+
+      char c = regex.charAt(i);
+
+      if (c == '\\' && i + 1 < regex.length()) {
+        char escaped = regex.charAt(i + 1);
+        i += 2;
+        if (Character.isLetterOrDigit(escaped)) {
+          // Character classes, boundaries, back references and escaped characters (\xhh...)
+          // are not taken as literal text, and neither are their operands
+          prefix = endRun(run, literals, prefix);
+          allLiteral = false;
+          i = skipEscapeOperands(regex, i, escaped);
+        } else {
+          run.append(escaped);
+        }
+        continue;
+      }
+
+      switch (c) {
+        case '?':
+        case '*':
+        case '{':
+          // The previous character is optional or repeated an unknown number of times
+          if (run.length() > 0) {
+            run.setLength(run.length() - 1);
+          }
+          prefix = endRun(run, literals, prefix);
+          allLiteral = false;
+          i = c == '{' ? regex.indexOf('}', i) + 1 : i + 1;
+          i = skipQuantifierMode(regex, i);
+          break;
+        case '+':
+          prefix = endRun(run, literals, prefix);
+          allLiteral = false;
+          i = skipQuantifierMode(regex, i + 1);
+          break;
+        case '[':
+          prefix = endRun(run, literals, prefix);
+          allLiteral = false;
+          i = skipClass(regex, i);
+          break;
+        case '(':
+          prefix = endRun(run, literals, prefix);
+          allLiteral = false;
+          i = skipGroup(regex, i);
+          break;
+        case '$':
+          prefix = endRun(run, literals, prefix);
+          // Matched against whole values, only a trailing $ keeps it literal
+          allLiteral &= i == regex.length() - 1;
+          i++;
+          break;
+        case '.':
+        case '^':
+        case ')':
+          prefix = endRun(run, literals, prefix);
+          allLiteral = false;
+          i++;
+          break;
+        default:
+          run.append(c);
+          i++;
+      }
+    }
+
+    prefix = endRun(run, literals, prefix);
+
+    return new RegexQuery(regex, pattern, anchored, prefix, allLiteral ? prefix : null, literals);
+  }
+
+  private static String endRun(StringBuilder run, List<String> literals, String prefix) {
+    if (run.length() > 0) {
+      literals.add(run.toString());
+    }
+    String result = prefix != null ? prefix : run.toString();
+    run.setLength(0);
+    return result;
+  }
+
+  /**
+   * Skips the operands of the escape sequence whose letter or digit precedes position i.
+   */
+  private static int skipEscapeOperands(String regex, int i, char escaped) {
+    switch (escaped) {
+      case 'x':
+        return i < regex.length() && regex.charAt(i) == '{' ? skipPast(regex, i, '}')
+            : Math.min(i + 2, regex.length());
+      case 'u':
+        return Math.min(i + 4, regex.length());
+      case 'c':
+        return Math.min(i + 1, regex.length());
+      case 'k':
+        return skipPast(regex, i, '>');
+      case 'p':
+      case 'P':
+      case 'N':
+        return i < regex.length() && regex.charAt(i) == '{' ? skipPast(regex, i, '}')
+            : Math.min(i + 1, regex.length());
+      default:
+        if (Character.isDigit(escaped)) {
+          // Octal escapes and back references of several digits
+          while (i < regex.length() && Character.isDigit(regex.charAt(i))) {
+            i++;
+          }
+        }
+        return i;
+    }
+  }
+
+  private static int skipPast(String regex, int i, char end) {
+    int endIndex = regex.indexOf(end, i);
+    return endIndex >= 0 ? endIndex + 1 : regex.length();
+  }
+
+  private static int skipQuantifierMode(String regex, int i) {
+    // Reluctant and possessive quantifiers
+    if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+      return i + 1;
+    }
+    return i;
+  }
+
+  private static int skipClass(String regex, int start) {
+    int i = start + 1;
+    if (i < regex.length() && regex.charAt(i) == '^') {
+      i++;
+    }
+    if (i < regex.length() && regex.charAt(i) == ']') {
+      i++;
+    }
+    int depth = 1;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      if (c == '[') {
+        depth++;
+      } else if (c == ']' && --depth == 0) {
+        return i + 1;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipGroup(String regex, int start) {
+    int i = start + 1;
+    int depth = 1;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      if (c == '[') {
+        i = skipClass(regex, i);
+        continue;
+      }
+      if (c == '(') {
+        depth++;
+      } else if (c == ')' && --depth == 0) {
+        return i + 1;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  public String getRegex() {
+    return regex;
+  }
+
+  public Pattern getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Returns whether the whole value matches the regular expression.
+   */
+  public boolean matches(String value) {
+    return pattern.matcher(value).matches();
+  }
+
+  /**
+   * Returns whether the regular expression starts with ^, so it only matches at the beginning of
+   * the value even when it is used to find a match inside it.
+   */
+  public boolean isAnchored() {
+    return anchored;
+  }
+
+  /**
+   * Returns the literal text the regular expression starts with, or an empty string if it doesn't
+   * start with literal text. Values matched as a whole start with it; when a match is searched
+   * inside the value, only if the regular expression {@link #isAnchored() is anchored}.
+   */
+  public String getLiteralPrefix() {
+    return literalPrefix;
+  }
+
+  /**
+   * Returns the only value matched as a whole by the regular expression, if it is made only of
+   * literal text, or null otherwise.
+   */
+  public String getLiteral() {
+    return literal;
+  }
+
+  /**
+   * Returns pieces of literal text that every matching value contains.
+   */
+  public List<String> getRequiredLiterals() {
+    return requiredLiterals;
+  }
+
+}
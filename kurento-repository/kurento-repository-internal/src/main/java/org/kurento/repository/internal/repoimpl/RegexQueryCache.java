@@ -0,0 +1,77 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least recently used cache of {@link RegexQuery}, so the regular expressions repeated by clients
+ * are not compiled and analyzed on every search.
+ */
+public class RegexQueryCache {
+
+  private final Map<String, RegexQuery> queries;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public RegexQueryCache(final int maxSize) {
+    this.queries = new LinkedHashMap<String, RegexQuery>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, RegexQuery> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  public RegexQuery get(String regex) {
+
+    synchronized (queries) {
+      RegexQuery query = queries.get(regex);
+      if (query != null) {
+        hits.incrementAndGet();
+        return query;
+      }
+    }
+
+    misses.incrementAndGet();
+
+    // Compiled outside the lock; a concurrent miss of the same regex compiles it twice
+    RegexQuery query = RegexQuery.parse(regex);
+
+    synchronized (queries) {
+      queries.put(regex, query);
+    }
+
+    return query;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output stream that writes to a file through a {@link FileChannel}, gathering small writes in a
+ * direct buffer so the file is written in large blocks. Writes bigger than the buffer go straight
+ * to the channel.
+ *
+ * Written data is forced to the storage device:
+ * <ul>
+ * <li>When the stream is closed, if {@code syncOnClose} is set.</li>
+ * <li>Every {@code syncBytes} bytes, if greater than 0.</li>
+ * <li>Every {@code syncInterval} millis, if greater than 0. The interval is checked on each write,
+ * and the buffer is written to the file before forcing it.</li>
+ * </ul>
+ *
+ * Instances are not thread safe.
+ */
+public class FileChannelOutputStream extends OutputStream {
+
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  private static final int MAX_POOLED_BUFFERS = 16;
+
+  // Direct buffers are expensive to allocate and only released by the GC, so they are reused
+  private static final ConcurrentLinkedQueue<ByteBuffer> bufferPool =
+      new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger numPooledBuffers = new AtomicInteger();
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+
+  private boolean syncOnClose = true;
+  private long syncBytes;
+  private long syncIntervalNanos;
+
+  private long writtenBytes;
+  private long flushedBytes;
+  private long syncedBytes;
+  private long lastSyncTime = System.nanoTime();
+  private int numSyncs;
+  private boolean closed;
+
+  public FileChannelOutputStream(File file) throws IOException {
+    this(file, DEFAULT_BUFFER_SIZE);
+  }
+
+  public FileChannelOutputStream(File file, int bufferSize) throws IOException {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be greater than 0");
+    }
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.buffer = acquireBuffer(bufferSize);
+  }
+
+  /**
+   * Sets when written data is forced to the storage device.
+   *
+   * @param syncOnClose
+   *          whether data is forced when the stream is closed
+   * @param syncBytes
+   *          bytes written between syncs, or 0 to not sync by size
+   * @param syncIntervalMillis
+   *          millis between syncs, or 0 to not sync periodically
+   */
+  public void setSyncPolicy(boolean syncOnClose, long syncBytes, long syncIntervalMillis) {
+    this.syncOnClose = syncOnClose;
+    this.syncBytes = syncBytes;
+    this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if (!buffer.hasRemaining()) {
+      drain();
+    }
+    buffer.put((byte) b);
+    writtenBytes++;
+    checkSyncInterval();
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+
+    ensureOpen();
+
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    if (len >= buffer.capacity()) {
+      drain();
+      writeToChannel(ByteBuffer.wrap(b, off, len));
+    } else {
+      if (len > buffer.remaining()) {
+        drain();
+      }
+      buffer.put(b, off, len);
+    }
+
+    writtenBytes += len;
+    checkSyncInterval();
+  }
+
+  /**
+   * Writes the buffered bytes to the file. They are not forced to the storage device unless the
+   * sync policy says so.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    drain();
+  }
+
+  /**
+   * Writes the buffered bytes to the file and forces them to the storage device.
+   */
+  public void sync() throws IOException {
+    ensureOpen();
+    drain();
+    force();
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+
+    try {
+      drain();
+      if (syncOnClose && syncedBytes < flushedBytes) {
+        force();
+      }
+    } finally {
+      try {
+        channel.close();
+      } finally {
+        releaseBuffer(buffer);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes written to this stream, including those not written to the file
+   * yet.
+   */
+  public long getWrittenBytes() {
+    return writtenBytes;
+  }
+
+  /**
+   * Returns the number of bytes forced to the storage device.
+   */
+  public long getSyncedBytes() {
+    return syncedBytes;
+  }
+
+  public int getNumSyncs() {
+    return numSyncs;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private void drain() throws IOException {
+    if (buffer.position() > 0) {
+      buffer.flip();
+      writeToChannel(buffer);
+      buffer.clear();
+    }
+  }
+
+  private void writeToChannel(ByteBuffer src) throws IOException {
+
+    while (src.hasRemaining()) {
+      flushedBytes += channel.write(src);
+    }
+
+    if (syncBytes > 0 && flushedBytes - syncedBytes >= syncBytes) {
+      force();
+    }
+  }
+
+  private void checkSyncInterval() throws IOException {
+    if (syncIntervalNanos > 0 && System.nanoTime() - lastSyncTime >= syncIntervalNanos) {
+      drain();
+      force();
+    }
+  }
+
+  private void force() throws IOException {
+    channel.force(false);
+    syncedBytes = flushedBytes;
+    lastSyncTime = System.nanoTime();
+    numSyncs++;
+  }
+
+  private static ByteBuffer acquireBuffer(int bufferSize) {
+    ByteBuffer pooled = bufferPool.poll();
+    if (pooled != null) {
+      numPooledBuffers.decrementAndGet();
+      if (pooled.capacity() == bufferSize) {
+        pooled.clear();
+        return pooled;
+      }
+    }
+    return ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  private static void releaseBuffer(ByteBuffer buffer) {
+    if (numPooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+      bufferPool.offer(buffer);
+    } else {
+      numPooledBuffers.decrementAndGet();
+    }
+  }
+
+}
@@ -21,58 +21,109 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.kurento.commons.exception.KurentoException;
+import org.kurento.repository.RepositoryApiConfiguration;
 import org.kurento.repository.RepositoryItemAttributes;
 import org.kurento.repository.internal.repoimpl.AbstractRepositoryItem;
+import org.kurento.repository.internal.repoimpl.RangeWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class FileRepositoryItem extends AbstractRepositoryItem {
 
   private static final Logger log = LoggerFactory.getLogger(FileRepositoryItem.class);
+
+  private static final String CONTENT_LENGTH_ATT = "contentLength";
+  private static final String LAST_MODIFIED_ATT = "lastModified";
+  private static final String MIME_TYPE_ATT = "mimeType";
+
   private final File file;
   private OutputStream storingOutputStream;
 
+  private Map<String, String> storedAttributes;
+
   public FileRepositoryItem(FileSystemRepository repository, File file, String id,
       Map<String, String> metadata) {
 
-    super(id, calculateState(file), loadAttributes(file), repository);
+    // Attributes are loaded the first time they are requested
+    super(id, null, null, repository);
     this.file = file;
+    this.storedAttributes = repository.loadAttributesForItem(id);
+    this.state = calculateState();
     setMetadata(metadata);
   }
 
-  private static State calculateState(File file) {
+  private State calculateState() {
+    if (storedAttributes != null) {
+      return Long.parseLong(storedAttributes.get(CONTENT_LENGTH_ATT)) > 0 ? State.STORED
+          : State.NEW;
+    }
     return file.exists() && file.length() > 0 ? State.STORED : State.NEW;
   }
 
-  private static RepositoryItemAttributes loadAttributes(File file) {
+  @Override
+  public synchronized RepositoryItemAttributes getAttributes() {
+    if (attributes == null) {
+      attributes = loadAttributes();
+    }
+    return attributes;
+  }
+
+  private RepositoryItemAttributes loadAttributes() {
 
     RepositoryItemAttributes attributes = new RepositoryItemAttributes();
 
-    if (file.exists()) {
+    if (storedAttributes != null) {
+      attributes.setContentLength(Long.parseLong(storedAttributes.get(CONTENT_LENGTH_ATT)));
+      attributes.setLastModified(Long.parseLong(storedAttributes.get(LAST_MODIFIED_ATT)));
+      attributes.setMimeType(storedAttributes.get(MIME_TYPE_ATT));
+
+    } else if (file.exists()) {
+      // Stored by a version that didn't keep the attributes
       attributes.setContentLength(file.length());
       attributes.setLastModified(file.lastModified());
+      attributes.setMimeType(guessMimeType());
 
-      String mimeType = null;
-      try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
-        mimeType = URLConnection.guessContentTypeFromStream(is);
-      } catch (Exception e) {
-        log.warn("Exception produced during load of attributes", e);
+      if (state == State.STORED) {
+        storeAttributes(attributes);
       }
-
-      attributes.setMimeType(mimeType);
     }
 
     return attributes;
   }
 
+  private String guessMimeType() {
+    try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+      return URLConnection.guessContentTypeFromStream(is);
+    } catch (Exception e) {
+      log.warn("Exception produced during load of attributes", e);
+      return null;
+    }
+  }
+
+  private void storeAttributes(RepositoryItemAttributes attributes) {
+
+    Map<String, String> newAttributes = new HashMap<>();
+    newAttributes.put(CONTENT_LENGTH_ATT, Long.toString(attributes.getContentLength()));
+    newAttributes.put(LAST_MODIFIED_ATT, Long.toString(attributes.getLastModified()));
+    if (attributes.getMimeType() != null) {
+      newAttributes.put(MIME_TYPE_ATT, attributes.getMimeType());
+    }
+
+    ((FileSystemRepository) repository).setAttributesForItem(this, newAttributes);
+    storedAttributes = newAttributes;
+  }
+
   @Override
   public InputStream createInputStreamToRead() {
 
@@ -91,28 +142,93 @@ public class FileRepositoryItem extends AbstractRepositoryItem {
 
     checkState(State.NEW);
 
+    RepositoryApiConfiguration config = ((FileSystemRepository) repository).getConfig();
+
     try {
 
       this.state = State.STORING;
 
-      storingOutputStream = new FilterOutputStream(new FileOutputStream(file)) {
-        @Override
-        public void close() throws java.io.IOException {
-          refreshAttributesOnClose();
-        }
-      };
+      FileChannelOutputStream os =
+          new FileChannelOutputStream(file, config.getFileWriteBufferSize()) {
+            @Override
+            public void close() throws IOException {
+              if (!isClosed()) {
+                try {
+                  super.close();
+                } finally {
+                  refreshAttributesOnClose(getWrittenBytes());
+                }
+              }
+            }
+          };
+
+      os.setSyncPolicy(config.isFileSyncOnClose(), config.getFileSyncBytes(),
+          config.getFileSyncInterval());
+
+      storingOutputStream = os;
 
       return storingOutputStream;
 
-    } catch (FileNotFoundException e) {
+    } catch (IOException e) {
       throw new KurentoException("There is a problem opening the output stream to the file "
           + "that will store the contents of the repositoty item", e);
     }
   }
 
-  private void refreshAttributesOnClose() {
+  @Override
+  public RangeWriter createRangeWriter() {
+
+    checkState(State.NEW);
+
+    final boolean syncOnClose = ((FileSystemRepository) repository).getConfig().isFileSyncOnClose();
+
+    try {
+
+      final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+      this.state = State.STORING;
+
+      return new RangeWriter() {
+
+        @Override
+        public void write(long position, byte[] data, int offset, int length) throws IOException {
+          // Positional writes don't use the position of the channel, so they can be concurrent
+          ByteBuffer src = ByteBuffer.wrap(data, offset, length);
+          while (src.hasRemaining()) {
+            position += channel.write(src, position);
+          }
+        }
+
+        @Override
+        public void close(long length) throws IOException {
+          try {
+            channel.truncate(length);
+            if (syncOnClose) {
+              channel.force(false);
+            }
+          } finally {
+            channel.close();
+            refreshAttributesOnClose(length);
+          }
+        }
+      };
+
+    } catch (IOException e) {
+      throw new KurentoException("There is a problem opening the file that will store the "
+          + "contents of the repositoty item", e);
+    }
+  }
+
+  private synchronized void refreshAttributesOnClose(long writtenBytes) {
     state = State.STORED;
-    attributes.setContentLength(file.length());
+    if (attributes == null) {
+      attributes = new RepositoryItemAttributes();
+    }
+    attributes.setContentLength(writtenBytes);
+    attributes.setLastModified(file.lastModified());
+    attributes.setMimeType(guessMimeType());
+    storeAttributes(attributes);
   }
 
   public File getFile() {
@@ -121,7 +237,6 @@ public class FileRepositoryItem extends AbstractRepositoryItem {
 
   @Override
   public void setMetadata(Map<String, String> metadata) {
-    super.setMetadata(metadata);
-    ((FileSystemRepository) repository).setMetadataForItem(this, metadata);
+    super.setMetadata(((FileSystemRepository) repository).setMetadataForItem(this, metadata));
   }
 }
@@ -18,7 +18,10 @@
 package org.kurento.repository.internal.repoimpl.filesystem;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -32,6 +35,9 @@ import org.kurento.repository.DuplicateItemException;
 import org.kurento.repository.RepositoryApiConfiguration;
 import org.kurento.repository.RepositoryItem;
 import org.kurento.repository.internal.http.RepositoryHttpManager;
+import org.kurento.repository.internal.repoimpl.QueryStats;
+import org.kurento.repository.internal.repoimpl.RegexQuery;
+import org.kurento.repository.internal.repoimpl.RegexQueryCache;
 import org.kurento.repository.internal.repoimpl.RepositoryWithHttp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,11 +54,15 @@ public class FileSystemRepository implements RepositoryWithHttp {
 
   private File baseFolder;
 
-  private int nextFreeFileNumber = 1;
-  private boolean firstIdRequest = true;
+  private ShardedItemLayout layout;
+  private boolean flatItems;
+  private IdAllocator idAllocator;
 
   private ItemsMetadata metadata;
 
+  private RegexQueryCache regexCache;
+  private final QueryStats queryStats = new QueryStats();
+
   @Autowired
   private RepositoryHttpManager httpManager;
 
@@ -62,8 +72,32 @@ public class FileSystemRepository implements RepositoryWithHttp {
 
     baseFolder = new File(config.getFileSystemFolder());
     checkFolder(baseFolder);
-    calculateNextId(true);
-    metadata = new ItemsMetadata(new File(baseFolder, ITEMS_METADATA_FILE_PATH));
+    layout = new ShardedItemLayout(baseFolder);
+
+    try {
+
+      if (config.isFileSystemMigrateOnStartup()) {
+        new FileSystemRepositoryMigrator(baseFolder).migrate();
+      }
+
+      flatItems = layout.hasFlatItems();
+      if (flatItems) {
+        log.warn("Repository {} has items in the flat layout of older versions. Migrate them with "
+            + "{} to avoid looking them up in both layouts", baseFolder,
+            FileSystemRepositoryMigrator.class.getSimpleName());
+      }
+
+      File idAllocatorFile = layout.getIdAllocatorFile();
+      idAllocator = new IdAllocator(idAllocatorFile,
+          idAllocatorFile.exists() ? 1 : findFirstFreeId(), IdAllocator.DEFAULT_BLOCK_SIZE);
+
+    } catch (IOException e) {
+      throw new KurentoException("Exception initializing repository in " + baseFolder, e);
+    }
+
+    metadata = new ItemsMetadata(new File(baseFolder, ITEMS_METADATA_FILE_PATH),
+        config.getMetadataJournalMaxRecords());
+    regexCache = new RegexQueryCache(config.getRegexCacheSize());
   }
 
   @PreDestroy
@@ -72,27 +106,28 @@ public class FileSystemRepository implements RepositoryWithHttp {
     this.metadata.save();
   }
 
-  private synchronized String calculateNextId(boolean init) {
-    // Very naive unique identifier system
-    if (firstIdRequest) {
-      firstIdRequest = false;
-      while (true) {
-        File file = getFileForId(Integer.toString(nextFreeFileNumber));
-        if (file.exists()) {
-          log.debug("File with id {} already exists, trying next value", nextFreeFileNumber);
-          nextFreeFileNumber++;
-        } else {
-          if (init) {
-            nextFreeFileNumber--;
-          }
-          break;
-        }
+  /**
+   * Looks for the first numeric id not used, as older versions did on every startup. Only needed
+   * when the state of the id allocator has not been persisted yet.
+   */
+  private long findFirstFreeId() {
+    long id = 1;
+    while (getFileForId(Long.toString(id)).exists()) {
+      id++;
+    }
+    return id;
+  }
+
+  private String calculateNextId() {
+    while (true) {
+      // Items can also be created with explicit ids
+      String id = Long.toString(idAllocator.nextId());
+      if (!getFileForId(id).exists()) {
+        log.debug("Returning next free ID {}", id);
+        return id;
       }
-    } else {
-      nextFreeFileNumber++;
+      log.debug("File with id {} already exists, trying next value", id);
     }
-    log.debug("Returning next free ID {}", nextFreeFileNumber);
-    return Integer.toString(nextFreeFileNumber);
   }
 
   private void checkFolder(File folder) {
@@ -124,8 +159,10 @@ public class FileSystemRepository implements RepositoryWithHttp {
 
   @Override
   public RepositoryItem createRepositoryItem() {
-    String id = calculateNextId(false);
-    return new FileRepositoryItem(this, getFileForId(id), id, metadata.loadMetadata(id));
+    String id = calculateNextId();
+    File file = getFileForId(id);
+    file.getParentFile().mkdirs();
+    return new FileRepositoryItem(this, file, id, metadata.loadMetadata(id));
   }
 
   @Override
@@ -137,17 +174,73 @@ public class FileSystemRepository implements RepositoryWithHttp {
       throw new DuplicateItemException(id);
     }
 
+    file.getParentFile().mkdirs();
     return new FileRepositoryItem(this, file, id, metadata.loadMetadata(id));
   }
 
   @Override
   public List<RepositoryItem> findRepositoryItemsByAttValue(String attributeName, String value) {
-    return createItemsForIds(metadata.findByAttValue(attributeName, value));
+    long start = System.nanoTime();
+    List<Entry<String, Map<String, String>>> itemsInfo =
+        metadata.findByAttValue(attributeName, value);
+    long micros = queryStats.record("value", start, itemsInfo.size());
+    log.debug("Search of {}={} found {} items in {} us", attributeName, value, itemsInfo.size(),
+        micros);
+    return createItemsForIds(itemsInfo);
   }
 
   @Override
   public List<RepositoryItem> findRepositoryItemsByAttRegex(String attributeName, String regex) {
-    return createItemsForIds(metadata.findByAttRegex(attributeName, regex));
+    long start = System.nanoTime();
+    List<Entry<String, Map<String, String>>> itemsInfo =
+        metadata.findByAttRegex(attributeName, regexCache.get(regex));
+    long micros = queryStats.record("regex", start, itemsInfo.size());
+    log.debug("Search of {} matching {} found {} items in {} us", attributeName, regex,
+        itemsInfo.size(), micros);
+    return createItemsForIds(itemsInfo);
+  }
+
+  @Override
+  public List<String> findRepositoryItemIdsByAttValue(String attributeName, String value) {
+    long start = System.nanoTime();
+    List<String> ids = metadata.findIdsByAttValue(attributeName, value);
+    long micros = queryStats.record("value", start, ids.size());
+    log.debug("Search of {}={} found {} ids in {} us", attributeName, value, ids.size(), micros);
+    return ids;
+  }
+
+  @Override
+  public List<String> findRepositoryItemIdsByAttRegex(String attributeName, String regex) {
+    long start = System.nanoTime();
+    List<String> ids = metadata.findIdsByAttRegex(attributeName, regexCache.get(regex));
+    long micros = queryStats.record("regex", start, ids.size());
+    log.debug("Search of {} matching {} found {} ids in {} us", attributeName, regex, ids.size(),
+        micros);
+    return ids;
+  }
+
+  @Override
+  public List<String> findRepositoryItemIds(Map<String, String> attributes, boolean regex,
+      String afterId, int limit) {
+
+    long start = System.nanoTime();
+
+    List<String> ids;
+    if (regex) {
+      Map<String, RegexQuery> regexes = new HashMap<>();
+      for (Entry<String, String> attribute : attributes.entrySet()) {
+        regexes.put(attribute.getKey(), regexCache.get(attribute.getValue()));
+      }
+      ids = metadata.findIds(Collections.<String, String> emptyMap(), regexes, afterId, limit);
+    } else {
+      ids = metadata.findIds(attributes, Collections.<String, RegexQuery> emptyMap(), afterId,
+          limit);
+    }
+
+    long micros = queryStats.record(regex ? "pageRegex" : "pageValue", start, ids.size());
+    log.debug("Search of {} after {} found {} ids in {} us", attributes, afterId, ids.size(),
+        micros);
+    return ids;
   }
 
   private List<RepositoryItem> createItemsForIds(
@@ -161,7 +254,25 @@ public class FileSystemRepository implements RepositoryWithHttp {
   }
 
   private File getFileForId(String id) {
-    return new File(baseFolder, id);
+    File file = layout.getFile(id);
+    if (flatItems && !file.exists()) {
+      File flatFile = layout.getFlatFile(id);
+      if (flatFile.exists()) {
+        return flatFile;
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Returns the number and duration of the searches made by metadata.
+   */
+  public QueryStats getQueryStats() {
+    return queryStats;
+  }
+
+  public RepositoryApiConfiguration getConfig() {
+    return config;
   }
 
   @Override
@@ -178,10 +289,32 @@ public class FileSystemRepository implements RepositoryWithHttp {
     if (!success) {
       throw new KurentoException("The file can't be deleted");
     }
+    metadata.removeItem(item.getId());
   }
 
-  public void setMetadataForItem(FileRepositoryItem fileRepositoryItem,
+  /**
+   * Stores the metadata of an item, returning the map where it is kept. Changes made to that map
+   * are stored too.
+   */
+  public Map<String, String> setMetadataForItem(FileRepositoryItem fileRepositoryItem,
       Map<String, String> metadata) {
-    this.metadata.setMetadataForId(fileRepositoryItem.getId(), metadata);
+    return this.metadata.setMetadataForId(fileRepositoryItem.getId(), metadata);
+  }
+
+  /**
+   * Returns the attributes stored for the contents of an item, or null if they haven't been stored
+   * yet.
+   */
+  public Map<String, String> loadAttributesForItem(String id) {
+    return metadata.loadAttributes(id);
+  }
+
+  /**
+   * Stores the attributes of the contents of an item, so they don't have to be read from its file
+   * the next time the item is looked up.
+   */
+  public void setAttributesForItem(FileRepositoryItem fileRepositoryItem,
+      Map<String, String> attributes) {
+    metadata.setAttributesForId(fileRepositoryItem.getId(), attributes);
   }
 }
@@ -0,0 +1,163 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts a {@link FileSystemRepository} written by older versions, with all items directly in
+ * the base folder, to the {@link ShardedItemLayout}. Items are moved in place (renamed) so no
+ * contents are copied, and the id allocator is set after the highest numeric id found in either
+ * layout. Files whose names are not item ids are left in the base folder. The migration can be
+ * interrupted and run again; it continues with the items not moved yet.
+ * <p>
+ * It is run when the repository starts if {@code repository.filesystem.migrateOnStartup} is true,
+ * or with the repository stopped, running the main method of this class with the folder of the
+ * repository as argument.
+ * </p>
+ */
+public class FileSystemRepositoryMigrator {
+
+  private static final Logger log = LoggerFactory.getLogger(FileSystemRepositoryMigrator.class);
+
+  private final ShardedItemLayout layout;
+  private final File idAllocatorFile;
+
+  public FileSystemRepositoryMigrator(File baseFolder) {
+    this.layout = new ShardedItemLayout(baseFolder);
+    this.idAllocatorFile = layout.getIdAllocatorFile();
+  }
+
+  /**
+   * Moves all items of the flat layout.
+   *
+   * @return the number of items moved
+   */
+  public int migrate() throws IOException {
+
+    int movedItems = 0;
+    long maxNumericId = 0;
+
+    try (DirectoryStream<Path> entries =
+        Files.newDirectoryStream(layout.getBaseFolder().toPath())) {
+
+      for (Path entry : entries) {
+
+        if (!Files.isRegularFile(entry)) {
+          continue;
+        }
+
+        String id = entry.getFileName().toString();
+        if (!ShardedItemLayout.isItemId(id)) {
+          log.warn("File {} is not an item; it is not migrated", entry);
+          continue;
+        }
+
+        File target = layout.getFile(id);
+
+        if (target.exists()) {
+          log.warn("Item {} exists in both layouts; the flat one is not migrated", id);
+          continue;
+        }
+
+        target.getParentFile().mkdirs();
+        Files.move(entry, target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        movedItems++;
+
+        maxNumericId = Math.max(maxNumericId, parseNumericId(id));
+
+        if (movedItems % 10000 == 0) {
+          log.info("{} items migrated", movedItems);
+        }
+      }
+    }
+
+    if (movedItems > 0 || !idAllocatorFile.exists()) {
+
+      // Items already moved by an interrupted run, or created after a previous migration
+      if (layout.getItemsFolder().isDirectory()) {
+        maxNumericId = Math.max(maxNumericId, findMaxShardedNumericId());
+      }
+
+      IdAllocator allocator =
+          new IdAllocator(idAllocatorFile, 1, IdAllocator.DEFAULT_BLOCK_SIZE);
+      allocator.skipTo(maxNumericId + 1);
+    }
+
+    log.info("Migration of repository {} finished: {} items moved", layout.getBaseFolder(),
+        movedItems);
+
+    return movedItems;
+  }
+
+  private long findMaxShardedNumericId() throws IOException {
+
+    long maxNumericId = 0;
+
+    try (DirectoryStream<Path> firstLevel =
+        Files.newDirectoryStream(layout.getItemsFolder().toPath())) {
+      for (Path first : firstLevel) {
+        if (!Files.isDirectory(first)) {
+          continue;
+        }
+        try (DirectoryStream<Path> secondLevel = Files.newDirectoryStream(first)) {
+          for (Path second : secondLevel) {
+            if (!Files.isDirectory(second)) {
+              continue;
+            }
+            try (DirectoryStream<Path> items = Files.newDirectoryStream(second)) {
+              for (Path item : items) {
+                maxNumericId = Math.max(maxNumericId,
+                    parseNumericId(item.getFileName().toString()));
+              }
+            }
+          }
+        }
+      }
+    }
+
+    return maxNumericId;
+  }
+
+  private static long parseNumericId(String id) {
+    try {
+      return Long.parseLong(id);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+
+    if (args.length != 1) {
+      System.err.println("Usage: FileSystemRepositoryMigrator <repository folder>");
+      System.exit(1);
+    }
+
+    new FileSystemRepositoryMigrator(new File(args[0])).migrate();
+  }
+
+}
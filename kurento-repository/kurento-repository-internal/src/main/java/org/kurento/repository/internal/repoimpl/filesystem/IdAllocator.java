@@ -0,0 +1,114 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl.filesystem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.kurento.commons.exception.KurentoException;
+
+/**
+ * Allocates sequential numeric ids for the items of a {@link FileSystemRepository}, without
+ * probing the file system. Ids are reserved in blocks and the end of the last reserved block is
+ * persisted, so after a restart allocation continues from there; if the process crashes, at most
+ * the rest of a block is skipped, but no id is allocated twice.
+ */
+public class IdAllocator {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private final File file;
+  private final int blockSize;
+
+  private long next;
+  private long reservedEnd;
+
+  /**
+   * @param file
+   *          file where the end of the reserved ids is stored
+   * @param firstId
+   *          id to start with if the file doesn't exist
+   */
+  public IdAllocator(File file, long firstId, int blockSize) throws IOException {
+
+    this.file = file;
+    this.blockSize = blockSize;
+
+    if (file.exists()) {
+      String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      try {
+        next = Long.parseLong(content.trim());
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid content in id allocator file " + file, e);
+      }
+    } else {
+      next = firstId;
+    }
+
+    reservedEnd = next;
+  }
+
+  public synchronized long nextId() {
+    if (next >= reservedEnd) {
+      reserve(next + blockSize);
+    }
+    return next++;
+  }
+
+  /**
+   * Makes sure ids are never allocated below the given one, because they are already in use.
+   */
+  public synchronized void skipTo(long id) {
+    if (id > next) {
+      next = id;
+      if (next > reservedEnd) {
+        reserve(next);
+      }
+    }
+  }
+
+  private void reserve(long end) {
+
+    File tmpFile = new File(file.getPath() + TMP_SUFFIX);
+
+    try {
+
+      file.getAbsoluteFile().getParentFile().mkdirs();
+
+      try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+        fos.write(Long.toString(end).getBytes(StandardCharsets.UTF_8));
+        fos.getFD().sync();
+      }
+
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+
+    } catch (IOException e) {
+      throw new KurentoException("Exception persisting id allocator file " + file, e);
+    }
+
+    reservedEnd = end;
+  }
+
+}
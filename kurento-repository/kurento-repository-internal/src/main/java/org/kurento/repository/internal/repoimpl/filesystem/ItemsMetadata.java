@@ -18,36 +18,299 @@
 package org.kurento.repository.internal.repoimpl.filesystem;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
+import org.kurento.repository.RepositoryApiConfiguration;
+import org.kurento.repository.internal.repoimpl.RegexQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import com.mongodb.util.JSON;
 
+/**
+ * Metadata of the items of a {@link FileSystemRepository}.
+ * </P>
+ * Every change is appended to a journal when it is made, so it is not lost if the process crashes.
+ * When the journal reaches a number of records, it is compacted into a snapshot of all the
+ * metadata. Both files have a JSON record per line with the whole metadata of an item; on startup
+ * the snapshot is loaded and the journal is replayed over it. Searches by exact value use an
+ * inverted index per attribute, updated with each change. Searches by regular expression look for
+ * candidate values in that index, by the literal prefix of the expression or by the trigrams of
+ * the literal text it contains, and only run the expression on those values.
+ * </P>
+ * Records also hold the attributes of the contents of the item (length, last modification and MIME
+ * type) once it has been written, so they don't have to be read from the file on every lookup.
+ */
 public class ItemsMetadata {
 
+  private static final String JOURNAL_SUFFIX = ".journal";
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private static final String ID_FIELD = "id";
+  private static final String METADATA_FIELD = "metadata";
+  private static final String ATTRIBUTES_FIELD = "attributes";
+
   private final Logger log = LoggerFactory.getLogger(ItemsMetadata.class);
 
   // TODO Avoid potential memory leaks using Google's MapMaker
-  private ConcurrentMap<String, Map<String, String>> itemsMetadata;
+  // Sorted by id, so pages of search results can be taken from any id
+  private final ConcurrentNavigableMap<String, MetadataMap> itemsMetadata =
+      new ConcurrentSkipListMap<>();
+
+  private final ConcurrentMap<String, Map<String, String>> itemsAttributes =
+      new ConcurrentHashMap<>();
+
+  // Attribute name -> value -> sorted ids of the items with that value
+  private final Map<String, TreeMap<String, NavigableSet<String>>> index = new HashMap<>();
+
+  // Attribute name -> trigram -> values of the attribute containing it
+  private final Map<String, Map<String, Set<String>>> trigramIndex = new HashMap<>();
 
   private final File itemsMetadataFile;
+  private final File journalFile;
+  private final int maxJournalRecords;
+
+  private Writer journal;
+  private int journalRecords;
+
+  /**
+   * Metadata of an item. Changes made to it are indexed and journaled, whatever the method used to
+   * make them: the inherited ones, the views and their iterators and entries all end up calling
+   * {@link #put(String, String)} or {@link #remove(Object)}. Reads hold the same lock as writes,
+   * and views iterate a copy of the keys, so the map can be used from any thread.
+   */
+  private class MetadataMap extends AbstractMap<String, String> {
+
+    private final String id;
+    private final Map<String, String> values = new HashMap<>();
+
+    public MetadataMap(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public int size() {
+      synchronized (ItemsMetadata.this) {
+        return values.size();
+      }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      synchronized (ItemsMetadata.this) {
+        return values.containsKey(key);
+      }
+    }
+
+    @Override
+    public String get(Object key) {
+      synchronized (ItemsMetadata.this) {
+        return values.get(key);
+      }
+    }
+
+    @Override
+    public String put(String key, String value) {
+      synchronized (ItemsMetadata.this) {
+        boolean existed = values.containsKey(key);
+        String oldValue = values.put(key, value);
+        if (!existed || !Objects.equals(oldValue, value)) {
+          removeFromIndex(id, key, oldValue);
+          addToIndex(id, key, value);
+          appendToJournal(id);
+        }
+        return oldValue;
+      }
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> metadata) {
+      synchronized (ItemsMetadata.this) {
+        for (Entry<? extends String, ? extends String> entry : metadata.entrySet()) {
+          removeFromIndex(id, entry.getKey(), values.put(entry.getKey(), entry.getValue()));
+          addToIndex(id, entry.getKey(), entry.getValue());
+        }
+        appendToJournal(id);
+      }
+    }
+
+    @Override
+    public String remove(Object key) {
+      synchronized (ItemsMetadata.this) {
+        if (!values.containsKey(key)) {
+          return null;
+        }
+        String oldValue = values.remove(key);
+        removeFromIndex(id, (String) key, oldValue);
+        appendToJournal(id);
+        return oldValue;
+      }
+    }
+
+    @Override
+    public void clear() {
+      synchronized (ItemsMetadata.this) {
+        clearWithoutJournal();
+        appendToJournal(id);
+      }
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+      return new AbstractSet<Entry<String, String>>() {
+
+        @Override
+        public int size() {
+          return MetadataMap.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+          synchronized (ItemsMetadata.this) {
+            return new MetadataIterator(new ArrayList<>(values.keySet()).iterator());
+          }
+        }
+      };
+    }
+
+    private void clearWithoutJournal() {
+      for (Entry<String, String> entry : values.entrySet()) {
+        removeFromIndex(id, entry.getKey(), entry.getValue());
+      }
+      values.clear();
+    }
+
+    private void putAllWithoutJournal(Map<String, String> metadata) {
+      for (Entry<String, String> entry : metadata.entrySet()) {
+        values.put(entry.getKey(), entry.getValue());
+        addToIndex(id, entry.getKey(), entry.getValue());
+      }
+    }
+
+    /**
+     * Iterates the entries of the metadata from a copy of its keys, removing them through
+     * {@link MetadataMap#remove(Object)}.
+     */
+    private class MetadataIterator implements Iterator<Entry<String, String>> {
+
+      private final Iterator<String> keys;
+      private String current;
+
+      public MetadataIterator(Iterator<String> keys) {
+        this.keys = keys;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return keys.hasNext();
+      }
+
+      @Override
+      public Entry<String, String> next() {
+        current = keys.next();
+        return new MetadataEntry(current);
+      }
+
+      @Override
+      public void remove() {
+        if (current == null) {
+          throw new IllegalStateException();
+        }
+        MetadataMap.this.remove(current);
+        current = null;
+      }
+    }
+
+    /**
+     * Entry of the metadata whose value is set through {@link MetadataMap#put(String, String)}.
+     */
+    private class MetadataEntry implements Entry<String, String> {
+
+      private final String key;
+
+      public MetadataEntry(String key) {
+        this.key = key;
+      }
+
+      @Override
+      public String getKey() {
+        return key;
+      }
+
+      @Override
+      public String getValue() {
+        return get(key);
+      }
+
+      @Override
+      public String setValue(String value) {
+        return put(key, value);
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+        if (!(obj instanceof Entry)) {
+          return false;
+        }
+        Entry<?, ?> entry = (Entry<?, ?>) obj;
+        return Objects.equals(key, entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+      }
+
+      @Override
+      public int hashCode() {
+        return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+      }
+
+      @Override
+      public String toString() {
+        return key + "=" + getValue();
+      }
+    }
+  }
 
   public ItemsMetadata(File itemsMetadataFile) {
+    this(itemsMetadataFile, RepositoryApiConfiguration.DEFAULT_METADATA_JOURNAL_MAX_RECORDS);
+  }
+
+  public ItemsMetadata(File itemsMetadataFile, int maxJournalRecords) {
     this.itemsMetadataFile = itemsMetadataFile;
+    this.journalFile = new File(itemsMetadataFile.getPath() + JOURNAL_SUFFIX);
+    this.maxJournalRecords = maxJournalRecords;
     try {
       loadItemsMetadata();
     } catch (IOException e) {
@@ -55,18 +318,117 @@ public class ItemsMetadata {
     }
   }
 
-  private void loadItemsMetadata() throws IOException {
-    itemsMetadata = new ConcurrentHashMap<>();
+  private synchronized void loadItemsMetadata() throws IOException {
+
+    if (itemsMetadataFile.exists() && loadRecords(itemsMetadataFile, false) < 0) {
+      // Written by a version without journal, as a single JSON object
+      loadLegacyFile();
+      compact();
+    }
+
+    if (journalFile.exists()) {
+      int invalidRecords = loadRecords(journalFile, true);
+      log.debug("Replayed {} records of metadata journal {}", journalRecords, journalFile);
+      if (invalidRecords > 0 || !endsWithNewLine(journalFile)) {
+        // Otherwise the next record would be appended to the torn one, in the same line
+        log.info("Rewriting metadata after recovering from a damaged journal {}", journalFile);
+        compact();
+      }
+    }
+  }
+
+  /**
+   * Loads the records of a snapshot or a journal.
+   *
+   * @return the number of invalid records ignored, or -1 if the file is not made of records
+   */
+  private int loadRecords(File file, boolean isJournal) throws IOException {
+
+    int invalidRecords = 0;
+
+    try (BufferedReader br = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+
+      int lineNumber = 0;
+      String line;
+      while ((line = br.readLine()) != null) {
+
+        lineNumber++;
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+
+        Object record = null;
+        try {
+          record = JSON.parse(line);
+        } catch (RuntimeException e) {
+          // Ignored below
+        }
+
+        if (!isRecord(record)) {
+          if (lineNumber == 1 && !isJournal) {
+            return -1;
+          }
+          // The last record can be incomplete if the process crashed while writing it
+          log.warn("Ignoring invalid metadata record in line {} of {}", lineNumber, file);
+          invalidRecords++;
+          continue;
+        }
+
+        DBObject dbRecord = (DBObject) record;
+        String id = (String) dbRecord.get(ID_FIELD);
+        Map<String, String> metadata = toMap((DBObject) dbRecord.get(METADATA_FIELD));
+        DBObject attributes = (DBObject) dbRecord.get(ATTRIBUTES_FIELD);
+
+        if (metadata.isEmpty() && attributes == null) {
+          // Written when an item is removed. Not kept, as in the snapshots
+          removeItemWithoutJournal(id);
+        } else {
+          setMetadataWithoutJournal(id, metadata);
+          if (attributes != null) {
+            itemsAttributes.put(id, toMap(attributes));
+          } else {
+            itemsAttributes.remove(id);
+          }
+        }
+
+        if (isJournal) {
+          journalRecords++;
+        }
+      }
+    }
+
+    return invalidRecords;
+  }
+
+  private static boolean endsWithNewLine(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      if (raf.length() == 0) {
+        return true;
+      }
+      raf.seek(raf.length() - 1);
+      return raf.read() == '\n';
+    }
+  }
+
+  private static boolean isRecord(Object record) {
+    if (!(record instanceof DBObject)) {
+      return false;
+    }
+    DBObject dbRecord = (DBObject) record;
+    Object attributes = dbRecord.get(ATTRIBUTES_FIELD);
+    return dbRecord.keySet().size() == (attributes != null ? 3 : 2)
+        && dbRecord.get(ID_FIELD) instanceof String
+        && dbRecord.get(METADATA_FIELD) instanceof DBObject
+        && (attributes == null || attributes instanceof DBObject);
+  }
+
+  private void loadLegacyFile() throws IOException {
     DBObject contents = (DBObject) JSON.parse(loadFileAsString());
     if (contents != null) {
       for (String key : contents.keySet()) {
         try {
-          DBObject metadata = (DBObject) contents.get(key);
-          Map<String, String> map = new HashMap<>();
-          for (String metadataKey : metadata.keySet()) {
-            map.put(metadataKey, metadata.get(metadataKey).toString());
-          }
-          itemsMetadata.put(key, map);
+          setMetadataWithoutJournal(key, toMap((DBObject) contents.get(key)));
         } catch (ClassCastException e) {
           log.warn("Attribute '{}' should be an object", key);
         }
@@ -74,6 +436,14 @@ public class ItemsMetadata {
     }
   }
 
+  private static Map<String, String> toMap(DBObject metadata) {
+    Map<String, String> map = new HashMap<>();
+    for (String metadataKey : metadata.keySet()) {
+      map.put(metadataKey, metadata.get(metadataKey).toString());
+    }
+    return map;
+  }
+
   private String loadFileAsString() throws IOException {
 
     if (!itemsMetadataFile.exists()) {
@@ -92,28 +462,74 @@ public class ItemsMetadata {
     return sb.toString();
   }
 
-  public synchronized void setMetadataForId(String id, Map<String, String> metadata) {
-    itemsMetadata.put(id, metadata);
+  /**
+   * Replaces the metadata of an item.
+   *
+   * @return the map holding the metadata, where further changes have to be made
+   */
+  public synchronized Map<String, String> setMetadataForId(String id,
+      Map<String, String> metadata) {
+
+    MetadataMap map = getOrCreate(id);
+    if (map != metadata) {
+      Map<String, String> newMetadata = new HashMap<>(metadata);
+      map.clearWithoutJournal();
+      map.putAllWithoutJournal(newMetadata);
+      appendToJournal(id);
+    }
+    return map;
+  }
+
+  /**
+   * Returns the attributes stored for the contents of an item, or null if there are none.
+   */
+  public Map<String, String> loadAttributes(String id) {
+    return itemsAttributes.get(id);
+  }
+
+  /**
+   * Stores the attributes of the contents of an item, replacing the previous ones. A null value
+   * removes them.
+   */
+  public synchronized void setAttributesForId(String id, Map<String, String> attributes) {
+    if (attributes != null) {
+      itemsAttributes.put(id, new HashMap<>(attributes));
+    } else if (itemsAttributes.remove(id) == null) {
+      return;
+    }
+    appendToJournal(id);
+  }
+
+  private void setMetadataWithoutJournal(String id, Map<String, String> metadata) {
+    MetadataMap map = getOrCreate(id);
+    map.clearWithoutJournal();
+    map.putAllWithoutJournal(metadata);
   }
 
   public synchronized Map<String, String> loadMetadata(String id) {
-    Map<String, String> metadata = itemsMetadata.get(id);
+    return getOrCreate(id);
+  }
+
+  private MetadataMap getOrCreate(String id) {
+    MetadataMap metadata = itemsMetadata.get(id);
     if (metadata == null) {
-      metadata = new HashMap<>();
+      metadata = new MetadataMap(id);
       itemsMetadata.put(id, metadata);
     }
     return metadata;
   }
 
-  public List<Entry<String, Map<String, String>>> findByAttValue(String attributeName,
-      String value) {
+  public synchronized List<Entry<String, Map<String, String>>> findByAttValue(
+      String attributeName, String value) {
 
     List<Entry<String, Map<String, String>>> list = new ArrayList<>();
 
-    for (Entry<String, Map<String, String>> item : itemsMetadata.entrySet()) {
-      String attValue = item.getValue().get(attributeName);
-      if (attValue != null && attValue.equals(value)) {
-        list.add(item);
+    Map<String, NavigableSet<String>> values = index.get(attributeName);
+    Set<String> ids = values != null ? values.get(value) : null;
+
+    if (ids != null) {
+      for (String id : ids) {
+        list.add(new SimpleImmutableEntry<String, Map<String, String>>(id, itemsMetadata.get(id)));
       }
     }
 
@@ -122,34 +538,403 @@ public class ItemsMetadata {
 
   public List<Entry<String, Map<String, String>>> findByAttRegex(String attributeName,
       String regex) {
+    return findByAttRegex(attributeName, RegexQuery.parse(regex));
+  }
 
-    Pattern pattern = Pattern.compile(regex);
+  /**
+   * Finds the items with a value of the attribute matching the regular expression as a whole.
+   */
+  public synchronized List<Entry<String, Map<String, String>>> findByAttRegex(
+      String attributeName, RegexQuery query) {
 
     List<Entry<String, Map<String, String>>> list = new ArrayList<>();
 
-    for (Entry<String, Map<String, String>> item : itemsMetadata.entrySet()) {
-      String value = item.getValue().get(attributeName);
-      if (value != null && pattern.matcher(value).matches()) {
-        list.add(item);
+    for (String id : findIdsByAttRegex(attributeName, query)) {
+      list.add(new SimpleImmutableEntry<String, Map<String, String>>(id, itemsMetadata.get(id)));
+    }
+
+    return list;
+  }
+
+  /**
+   * Returns the ids of the items with the value in the attribute.
+   */
+  public synchronized List<String> findIdsByAttValue(String attributeName, String value) {
+    Map<String, NavigableSet<String>> values = index.get(attributeName);
+    Set<String> ids = values != null ? values.get(value) : null;
+    return ids != null ? new ArrayList<>(ids) : new ArrayList<String>();
+  }
+
+  /**
+   * Returns the ids of the items with a value of the attribute matching the regular expression as
+   * a whole.
+   */
+  public synchronized List<String> findIdsByAttRegex(String attributeName, RegexQuery query) {
+
+    List<String> list = new ArrayList<>();
+
+    TreeMap<String, NavigableSet<String>> values = index.get(attributeName);
+    if (values == null) {
+      return list;
+    }
+
+    for (String value : findCandidateValues(attributeName, values, query)) {
+      if (query.matches(value)) {
+        list.addAll(values.get(value));
       }
     }
 
     return list;
   }
 
-  public void save() {
+  /**
+   * Returns a page of the sorted ids of the items matching all the conditions. Candidates are
+   * taken in order from the given id, from the most selective exact value, or from the values
+   * matching the first regular expression if there are none, and checked against the rest of
+   * conditions. The search stops once the page is full, so going through all the pages costs about
+   * the same as a single search.
+   *
+   * @param values
+   *          attributes and their expected values
+   * @param regexes
+   *          attributes and the regular expressions their values have to match
+   * @param afterId
+   *          only ids after this one are returned, or all if null
+   * @param limit
+   *          max number of ids returned
+   */
+  public synchronized List<String> findIds(Map<String, String> values,
+      Map<String, RegexQuery> regexes, String afterId, int limit) {
+
+    TreeSet<String> page = new TreeSet<>();
+
+    if (limit <= 0 || values.isEmpty() && regexes.isEmpty()) {
+      return new ArrayList<>(page);
+    }
+
+    NavigableSet<String> candidates = null;
+    for (Entry<String, String> value : values.entrySet()) {
+      Map<String, NavigableSet<String>> attValues = index.get(value.getKey());
+      NavigableSet<String> ids = attValues != null ? attValues.get(value.getValue()) : null;
+      if (ids == null) {
+        return new ArrayList<>(page);
+      }
+      if (candidates == null || ids.size() < candidates.size()) {
+        candidates = ids;
+      }
+    }
+
+    if (candidates != null) {
+      addToPage(page, tailSet(candidates, afterId), values, regexes, limit);
+      return new ArrayList<>(page);
+    }
+
+    Entry<String, RegexQuery> regex = regexes.entrySet().iterator().next();
+    TreeMap<String, NavigableSet<String>> attValues = index.get(regex.getKey());
+    if (attValues == null) {
+      return new ArrayList<>(page);
+    }
+
+    Collection<String> candidateValues =
+        findCandidateValues(regex.getKey(), attValues, regex.getValue());
+
+    if (candidateValues.size() > limit) {
+      // Running the expression on every candidate value for each page would cost more than going
+      // through the ids in order until the page is full
+      addToPage(page, tailSet(itemsMetadata.navigableKeySet(), afterId), values, regexes, limit);
+    } else {
+      for (String value : candidateValues) {
+        if (regex.getValue().matches(value)) {
+          addToPage(page, tailSet(attValues.get(value), afterId), values, regexes, limit);
+        }
+      }
+    }
+
+    return new ArrayList<>(page);
+  }
+
+  private static NavigableSet<String> tailSet(NavigableSet<String> ids, String afterId) {
+    return afterId != null ? ids.tailSet(afterId, false) : ids;
+  }
+
+  /**
+   * Adds the sorted ids matching all the conditions to the page, keeping up to the limit of the
+   * lowest ones, and stops as soon as the rest would not fit in it.
+   */
+  private void addToPage(TreeSet<String> page, Iterable<String> sortedIds,
+      Map<String, String> values, Map<String, RegexQuery> regexes, int limit) {
+
+    for (String id : sortedIds) {
+      if (page.size() == limit && id.compareTo(page.last()) > 0) {
+        return;
+      }
+      if (matches(itemsMetadata.get(id), values, regexes)) {
+        page.add(id);
+        if (page.size() > limit) {
+          page.pollLast();
+        }
+      }
+    }
+  }
+
+  private static boolean matches(Map<String, String> metadata, Map<String, String> values,
+      Map<String, RegexQuery> regexes) {
+
+    for (Entry<String, String> value : values.entrySet()) {
+      if (!value.getValue().equals(metadata.get(value.getKey()))) {
+        return false;
+      }
+    }
+
+    for (Entry<String, RegexQuery> regex : regexes.entrySet()) {
+      String value = metadata.get(regex.getKey());
+      if (value == null || !regex.getValue().matches(value)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Removes the metadata and attributes of a removed item.
+   */
+  public synchronized void removeItem(String id) {
+    MetadataMap metadata = itemsMetadata.get(id);
+    if (metadata == null) {
+      return;
+    }
+    metadata.clearWithoutJournal();
+    itemsAttributes.remove(id);
+    appendToJournal(id);
+    itemsMetadata.remove(id);
+  }
+
+  private void removeItemWithoutJournal(String id) {
+    MetadataMap metadata = itemsMetadata.remove(id);
+    if (metadata != null) {
+      metadata.clearWithoutJournal();
+    }
+    itemsAttributes.remove(id);
+  }
+
+  private Collection<String> findCandidateValues(String attributeName,
+      TreeMap<String, NavigableSet<String>> values, RegexQuery query) {
+
+    if (query.getLiteral() != null) {
+      return values.containsKey(query.getLiteral()) ? Collections.singleton(query.getLiteral())
+          : Collections.<String> emptySet();
+    }
+
+    String prefix = query.getLiteralPrefix();
+    if (!prefix.isEmpty()) {
+      List<String> candidates = new ArrayList<>();
+      for (String value : values.tailMap(prefix).keySet()) {
+        if (!value.startsWith(prefix)) {
+          break;
+        }
+        candidates.add(value);
+      }
+      return candidates;
+    }
+
+    Set<String> candidates = null;
+    Map<String, Set<String>> trigrams = trigramIndex.get(attributeName);
+    for (String literal : query.getRequiredLiterals()) {
+      for (String trigram : getTrigrams(literal)) {
+        Set<String> trigramValues = trigrams != null ? trigrams.get(trigram) : null;
+        if (trigramValues == null) {
+          return Collections.emptySet();
+        }
+        if (candidates == null) {
+          candidates = new HashSet<>(trigramValues);
+        } else {
+          candidates.retainAll(trigramValues);
+        }
+      }
+    }
+
+    if (candidates == null) {
+      // No literal text long enough, all values have to be checked
+      return values.keySet();
+    }
+
+    log.trace("{} candidate values for regex {}", candidates.size(), query.getRegex());
+    return candidates;
+  }
+
+  private static Set<String> getTrigrams(String text) {
+    Set<String> trigrams = new HashSet<>();
+    for (int i = 0; i + 3 <= text.length(); i++) {
+      trigrams.add(text.substring(i, i + 3));
+    }
+    return trigrams;
+  }
+
+  private void addToIndex(String id, String attributeName, String value) {
+
+    if (value == null) {
+      return;
+    }
+
+    TreeMap<String, NavigableSet<String>> values = index.get(attributeName);
+    if (values == null) {
+      values = new TreeMap<>();
+      index.put(attributeName, values);
+    }
+
+    NavigableSet<String> ids = values.get(value);
+    if (ids == null) {
+      ids = new TreeSet<>();
+      values.put(value, ids);
+      addToTrigramIndex(attributeName, value);
+    }
+    ids.add(id);
+  }
+
+  private void addToTrigramIndex(String attributeName, String value) {
+
+    Map<String, Set<String>> trigrams = trigramIndex.get(attributeName);
+    if (trigrams == null) {
+      trigrams = new HashMap<>();
+      trigramIndex.put(attributeName, trigrams);
+    }
+
+    for (String trigram : getTrigrams(value)) {
+      Set<String> values = trigrams.get(trigram);
+      if (values == null) {
+        values = new HashSet<>();
+        trigrams.put(trigram, values);
+      }
+      values.add(value);
+    }
+  }
+
+  private void removeFromTrigramIndex(String attributeName, String value) {
+
+    Map<String, Set<String>> trigrams = trigramIndex.get(attributeName);
+    if (trigrams == null) {
+      return;
+    }
+
+    for (String trigram : getTrigrams(value)) {
+      Set<String> values = trigrams.get(trigram);
+      if (values != null && values.remove(value) && values.isEmpty()) {
+        trigrams.remove(trigram);
+      }
+    }
+
+    if (trigrams.isEmpty()) {
+      trigramIndex.remove(attributeName);
+    }
+  }
+
+  private void removeFromIndex(String id, String attributeName, String value) {
+
+    if (value == null) {
+      return;
+    }
+
+    TreeMap<String, NavigableSet<String>> values = index.get(attributeName);
+    if (values == null) {
+      return;
+    }
+
+    Set<String> ids = values.get(value);
+    if (ids != null && ids.remove(id) && ids.isEmpty()) {
+      values.remove(value);
+      removeFromTrigramIndex(attributeName, value);
+      if (values.isEmpty()) {
+        index.remove(attributeName);
+      }
+    }
+  }
+
+  private void appendToJournal(String id) {
 
     try {
-      if (!itemsMetadataFile.exists()) {
-        itemsMetadataFile.getParentFile().mkdirs();
-        itemsMetadataFile.createNewFile();
+
+      if (journal == null) {
+        journalFile.getAbsoluteFile().getParentFile().mkdirs();
+        journal = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
       }
-      try (PrintWriter writer = new PrintWriter(itemsMetadataFile)) {
-        String content = JSON.serialize(itemsMetadata);
-        writer.print(content);
+
+      journal.write(toRecord(id));
+      journal.write('\n');
+      // Flushed for every record, so it is in the OS if the process crashes
+      journal.flush();
+
+    } catch (IOException e) {
+      log.error("Exception writing metadata journal", e);
+      return;
+    }
+
+    journalRecords++;
+    if (journalRecords >= maxJournalRecords) {
+      compact();
+    }
+  }
+
+  private String toRecord(String id) {
+
+    MetadataMap metadata = getOrCreate(id);
+    BasicDBObject record =
+        new BasicDBObject(ID_FIELD, id).append(METADATA_FIELD, new BasicDBObject(metadata));
+
+    Map<String, String> attributes = itemsAttributes.get(id);
+    if (attributes != null) {
+      record.append(ATTRIBUTES_FIELD, new BasicDBObject(attributes));
+    }
+
+    return JSON.serialize(record);
+  }
+
+  /**
+   * Writes a snapshot of all the metadata and empties the journal. The snapshot replaces the
+   * previous one atomically, and the journal is only emptied afterwards; if the process crashes in
+   * between, replaying the journal over the new snapshot is harmless.
+   */
+  private void compact() {
+
+    File tmpFile = new File(itemsMetadataFile.getPath() + TMP_SUFFIX);
+
+    try {
+
+      itemsMetadataFile.getAbsoluteFile().getParentFile().mkdirs();
+
+      try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+        for (MetadataMap metadata : itemsMetadata.values()) {
+          if (!metadata.isEmpty() || itemsAttributes.containsKey(metadata.id)) {
+            writer.write(toRecord(metadata.id));
+            writer.write('\n');
+          }
+        }
+        writer.flush();
+        fos.getFD().sync();
       }
+
+      Files.move(tmpFile.toPath(), itemsMetadataFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+      closeJournal();
+      Files.deleteIfExists(journalFile.toPath());
+      journalRecords = 0;
+
     } catch (IOException e) {
       log.error("Exception writing metadata file", e);
     }
   }
+
+  private void closeJournal() throws IOException {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+  }
+
+  public synchronized void save() {
+    compact();
+  }
 }
@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.repository.internal.repoimpl.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Location of the files of the items of a {@link FileSystemRepository}. Items are spread in two
+ * levels of folders named after the first bytes of the MD5 hash of their id
+ * ({@code items/3f/a2/<id>}), so no folder grows too large to be handled efficiently.
+ * </P>
+ * Older versions stored the items directly in the base folder. They can be moved to this layout
+ * with {@link FileSystemRepositoryMigrator}.
+ */
+public class ShardedItemLayout {
+
+  public static final String ITEMS_FOLDER = "items";
+  public static final String ID_ALLOCATOR_FILE_PATH = "metadata/next-id";
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private final File baseFolder;
+  private final File itemsFolder;
+
+  public ShardedItemLayout(File baseFolder) {
+    this.baseFolder = baseFolder;
+    this.itemsFolder = new File(baseFolder, ITEMS_FOLDER);
+  }
+
+  public File getFile(String id) {
+    byte[] hash = md5(id);
+    return new File(new File(new File(itemsFolder, toHex(hash[0])), toHex(hash[1])), id);
+  }
+
+  /**
+   * Returns the location of an item in the flat layout of older versions.
+   */
+  public File getFlatFile(String id) {
+    return new File(baseFolder, id);
+  }
+
+  /**
+   * Checks if a file name can be the id of an item. Hidden files and temporary files left in the
+   * base folder are not items.
+   */
+  public static boolean isItemId(String name) {
+    return !name.isEmpty() && !name.startsWith(".") && !name.endsWith(TMP_SUFFIX);
+  }
+
+  /**
+   * Checks if there are items stored with the flat layout. The base folder is only read until the
+   * first of them is found.
+   */
+  public boolean hasFlatItems() throws IOException {
+    if (!baseFolder.isDirectory()) {
+      return false;
+    }
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(baseFolder.toPath())) {
+      for (Path entry : entries) {
+        if (Files.isRegularFile(entry) && isItemId(entry.getFileName().toString())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the file where the state of the {@link IdAllocator} of the repository is stored.
+   */
+  public File getIdAllocatorFile() {
+    return new File(baseFolder, ID_ALLOCATOR_FILE_PATH);
+  }
+
+  public File getBaseFolder() {
+    return baseFolder;
+  }
+
+  public File getItemsFolder() {
+    return itemsFolder;
+  }
+
+  private static String toHex(byte b) {
+    return new String(new char[] { HEX_DIGITS[(b >> 4) & 0xf], HEX_DIGITS[b & 0xf] });
+  }
+
+  private static byte[] md5(String id) {
+    try {
+      return MessageDigest.getInstance("MD5").digest(id.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not supported", e);
+    }
+  }
+
+}
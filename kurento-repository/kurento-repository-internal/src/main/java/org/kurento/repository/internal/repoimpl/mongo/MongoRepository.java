@@ -21,40 +21,68 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 
 import javax.annotation.PostConstruct;
 
 import org.kurento.repository.DuplicateItemException;
+import org.kurento.repository.RepositoryApiConfiguration;
 import org.kurento.repository.RepositoryItem;
 import org.kurento.repository.internal.http.RepositoryHttpManager;
+import org.kurento.repository.internal.repoimpl.QueryStats;
+import org.kurento.repository.internal.repoimpl.RegexQuery;
+import org.kurento.repository.internal.repoimpl.RegexQueryCache;
 import org.kurento.repository.internal.repoimpl.RepositoryWithHttp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.MongoTemplate;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.gridfs.GridFS;
 import com.mongodb.gridfs.GridFSDBFile;
 import com.mongodb.gridfs.GridFSInputFile;
-import com.mongodb.util.JSON;
 
 public class MongoRepository implements RepositoryWithHttp {
 
   private final Logger log = LoggerFactory.getLogger(MongoRepository.class);
 
+  private static final String METADATA_PREFIX = "metadata.";
+  private static final String FILENAME_FIELD = "filename";
+
   @Autowired
   private MongoTemplate mongoTemplate;
 
+  @Autowired
+  private RepositoryApiConfiguration config;
+
   private GridFS gridFS;
 
+  private RegexQueryCache regexCache;
+  private final QueryStats queryStats = new QueryStats();
+
   @Autowired
   private RepositoryHttpManager httpManager;
 
   @PostConstruct
   private void postConstruct() {
     gridFS = new GridFS(mongoTemplate.getDb());
+    regexCache = new RegexQueryCache(config.getRegexCacheSize());
+    createMetadataIndexes();
+  }
+
+  private void createMetadataIndexes() {
+    for (String attributeName : config.getMongoIndexedMetadata().split(",")) {
+      attributeName = attributeName.trim();
+      if (!attributeName.isEmpty()) {
+        log.debug("Creating index of metadata attribute {}", attributeName);
+        DBObject keys = new BasicDBObject(METADATA_PREFIX + attributeName, 1);
+        gridFS.getFilesCollection().createIndex(keys);
+      }
+    }
   }
 
   // TODO Define ways to let users access to low level mongo backend. I prefer
@@ -137,21 +165,44 @@ public class MongoRepository implements RepositoryWithHttp {
   @Override
   public List<RepositoryItem> findRepositoryItemsByAttValue(String attributeName, String value) {
 
-    String query = "{'metadata." + attributeName + "':'" + value + "'}";
+    DBObject query = new BasicDBObject(METADATA_PREFIX + attributeName, value);
 
-    return findRepositoryItemsByQuery(query);
+    return findRepositoryItemsByQuery("value", query);
   }
 
   @Override
   public List<RepositoryItem> findRepositoryItemsByAttRegex(String attributeName, String regex) {
 
-    String query = "{'metadata." + attributeName + "': { $regex : '" + regex + "'}}";
+    DBObject query =
+        new BasicDBObject(METADATA_PREFIX + attributeName, createRegexCondition(regex));
+
+    return findRepositoryItemsByQuery("regex", query);
+  }
+
+  private DBObject createRegexCondition(String regex) {
+
+    RegexQuery regexQuery = regexCache.get(regex);
+    BasicDBObject condition = new BasicDBObject("$regex", regexQuery.getPattern());
 
-    return findRepositoryItemsByQuery(query);
+    // Anchored regexes with a literal prefix can be resolved with a range scan of the index
+    String prefix = regexQuery.getLiteralPrefix();
+    if (regexQuery.isAnchored() && !prefix.isEmpty()) {
+      condition.append("$gte", prefix);
+      char last = prefix.charAt(prefix.length() - 1);
+      if (last != Character.MAX_VALUE) {
+        condition.append("$lt", prefix.substring(0, prefix.length() - 1) + (char) (last + 1));
+      }
+    }
+
+    return condition;
   }
 
-  private List<RepositoryItem> findRepositoryItemsByQuery(String query) {
-    List<GridFSDBFile> files = gridFS.find((DBObject) JSON.parse(query));
+  private List<RepositoryItem> findRepositoryItemsByQuery(String type, DBObject query) {
+
+    long start = System.nanoTime();
+    List<GridFSDBFile> files = gridFS.find(query);
+    long micros = queryStats.record(type, start, files.size());
+    log.debug("Query {} found {} items in {} us", query, files.size(), micros);
 
     List<RepositoryItem> repositoryItems = new ArrayList<>();
     for (GridFSDBFile file : files) {
@@ -161,4 +212,77 @@ public class MongoRepository implements RepositoryWithHttp {
     return repositoryItems;
   }
 
+  @Override
+  public List<String> findRepositoryItemIdsByAttValue(String attributeName, String value) {
+
+    DBObject query = new BasicDBObject(METADATA_PREFIX + attributeName, value);
+
+    return findIdsByQuery("value", query, 0);
+  }
+
+  @Override
+  public List<String> findRepositoryItemIdsByAttRegex(String attributeName, String regex) {
+
+    DBObject query =
+        new BasicDBObject(METADATA_PREFIX + attributeName, createRegexCondition(regex));
+
+    return findIdsByQuery("regex", query, 0);
+  }
+
+  @Override
+  public List<String> findRepositoryItemIds(Map<String, String> attributes, boolean regex,
+      String afterId, int limit) {
+
+    if (attributes.isEmpty() || limit <= 0) {
+      return new ArrayList<>();
+    }
+
+    BasicDBObject query = new BasicDBObject();
+    for (Entry<String, String> attribute : attributes.entrySet()) {
+      query.append(METADATA_PREFIX + attribute.getKey(),
+          regex ? createRegexCondition(attribute.getValue()) : attribute.getValue());
+    }
+
+    if (afterId != null) {
+      query.append(FILENAME_FIELD, new BasicDBObject("$gt", afterId));
+    }
+
+    return findIdsByQuery(regex ? "pageRegex" : "pageValue", query, limit);
+  }
+
+  /**
+   * Returns the ids (file names) of the files matching the query, reading only that field. If
+   * there is a limit, they are sorted.
+   */
+  private List<String> findIdsByQuery(String type, DBObject query, int limit) {
+
+    long start = System.nanoTime();
+
+    DBCursor cursor =
+        gridFS.getFilesCollection().find(query, new BasicDBObject(FILENAME_FIELD, 1));
+    if (limit > 0) {
+      cursor.sort(new BasicDBObject(FILENAME_FIELD, 1)).limit(limit);
+    }
+
+    List<String> ids = new ArrayList<>();
+    try {
+      for (DBObject file : cursor) {
+        ids.add((String) file.get(FILENAME_FIELD));
+      }
+    } finally {
+      cursor.close();
+    }
+
+    long micros = queryStats.record(type, start, ids.size());
+    log.debug("Query {} found {} ids in {} us", query, ids.size(), micros);
+    return ids;
+  }
+
+  /**
+   * Returns the number and duration of the searches made by metadata.
+   */
+  public QueryStats getQueryStats() {
+    return queryStats;
+  }
+
 }
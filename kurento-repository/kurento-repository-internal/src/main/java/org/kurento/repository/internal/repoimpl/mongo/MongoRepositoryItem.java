@@ -21,6 +21,11 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -28,9 +33,13 @@ import java.util.Map.Entry;
 import org.kurento.commons.exception.KurentoException;
 import org.kurento.repository.RepositoryItemAttributes;
 import org.kurento.repository.internal.repoimpl.AbstractRepositoryItem;
+import org.kurento.repository.internal.repoimpl.RangeWriter;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.gridfs.GridFS;
 import com.mongodb.gridfs.GridFSDBFile;
 import com.mongodb.gridfs.GridFSFile;
 import com.mongodb.gridfs.GridFSInputFile;
@@ -91,6 +100,13 @@ public class MongoRepositoryItem extends AbstractRepositoryItem {
     return storingOutputStream;
   }
 
+  @Override
+  public RangeWriter createRangeWriter() {
+    checkState(State.NEW);
+    state = State.STORING;
+    return new GridFSRangeWriter();
+  }
+
   @Override
   public void setMetadata(Map<String, String> metadata) {
     super.setMetadata(metadata);
@@ -120,4 +136,119 @@ public class MongoRepositoryItem extends AbstractRepositoryItem {
     }
   }
 
+  /**
+   * Writes the chunks of the file directly, so a range only touches the chunks it overlaps. The
+   * file document is saved when closing, so the item is not visible until it is complete.
+   *
+   * Ranges are written concurrently. Only the writes of the same chunk are serialized, as a
+   * partially written chunk is read, completed and written again.
+   */
+  private class GridFSRangeWriter implements RangeWriter {
+
+    private static final int CHUNK_LOCKS = 64;
+
+    private final GridFS gridFS = ((MongoRepository) repository).getGridFS();
+    private final DBCollection chunks =
+        gridFS.getDB().getCollection(gridFS.getBucketName() + ".chunks");
+    private final int chunkSize = (int) dbFile.getChunkSize();
+
+    private final Object[] chunkLocks = new Object[CHUNK_LOCKS];
+
+    private GridFSRangeWriter() {
+      for (int i = 0; i < chunkLocks.length; i++) {
+        chunkLocks[i] = new Object();
+      }
+    }
+
+    @Override
+    public void write(long position, byte[] data, int offset, int length) {
+
+      while (length > 0) {
+
+        int n = (int) (position / chunkSize);
+        int chunkOffset = (int) (position % chunkSize);
+        int count = Math.min(length, chunkSize - chunkOffset);
+
+        synchronized (chunkLocks[n % CHUNK_LOCKS]) {
+          byte[] chunk;
+          if (count == chunkSize) {
+            chunk = Arrays.copyOfRange(data, offset, offset + count);
+          } else {
+            // Partially written chunk, the rest of its data is kept
+            DBObject existing = chunks.findOne(chunkQuery(n));
+            byte[] previous = existing != null ? (byte[]) existing.get("data") : new byte[0];
+            chunk = Arrays.copyOf(previous, Math.max(previous.length, chunkOffset + count));
+            System.arraycopy(data, offset, chunk, chunkOffset, count);
+          }
+
+          chunks.update(chunkQuery(n), chunkQuery(n).append("data", chunk), true, false);
+        }
+
+        position += count;
+        offset += count;
+        length -= count;
+      }
+    }
+
+    @Override
+    public synchronized void close(long length) {
+
+      int numChunks = (int) ((length + chunkSize - 1) / chunkSize);
+      chunks.remove(new BasicDBObject("files_id", dbFile.getId()).append("n",
+          new BasicDBObject("$gte", numChunks)));
+
+      int lastChunkSize = (int) (length - (long) (numChunks - 1) * chunkSize);
+      if (numChunks > 0 && lastChunkSize < chunkSize) {
+        DBObject last = chunks.findOne(chunkQuery(numChunks - 1));
+        byte[] data = (byte[]) last.get("data");
+        if (data.length > lastChunkSize) {
+          chunks.update(chunkQuery(numChunks - 1), chunkQuery(numChunks - 1).append("data",
+              Arrays.copyOf(data, lastChunkSize)), false, false);
+        }
+      }
+
+      putMetadataInGridFS(false);
+
+      DBObject file = new BasicDBObject("_id", dbFile.getId())
+          .append("filename", dbFile.getFilename()).append("contentType", dbFile.getContentType())
+          .append("length", length).append("chunkSize", (long) chunkSize)
+          .append("uploadDate", new Date()).append("md5", computeMd5())
+          .append("metadata", dbFile.getMetaData());
+
+      gridFS.getDB().getCollection(gridFS.getBucketName() + ".files").save(file);
+
+      refreshAttributesOnClose();
+    }
+
+    /**
+     * Computes the md5 of the contents from the chunks in order, as GridFS does when the file is
+     * written as a stream.
+     */
+    private String computeMd5() {
+
+      MessageDigest md5;
+      try {
+        md5 = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        throw new KurentoException("MD5 is not available", e);
+      }
+
+      DBCursor cursor = chunks.find(new BasicDBObject("files_id", dbFile.getId()))
+          .sort(new BasicDBObject("n", 1));
+      try {
+        for (DBObject chunk : cursor) {
+          md5.update((byte[]) chunk.get("data"));
+        }
+      } finally {
+        cursor.close();
+      }
+
+      return String.format("%032x", new BigInteger(1, md5.digest()));
+    }
+
+    private BasicDBObject chunkQuery(int n) {
+      return new BasicDBObject("files_id", dbFile.getId()).append("n", n);
+    }
+  }
+
 }
@@ -18,12 +18,16 @@
 package org.kurento.repository;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.kurento.commons.exception.KurentoException;
+import org.kurento.repository.RepositoryService.ItemIdsListener;
+import org.kurento.repository.service.pojo.RepositoryItemIdsPage;
 import org.kurento.repository.service.pojo.RepositoryItemPlayer;
 import org.kurento.repository.service.pojo.RepositoryItemRecorder;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,8 +36,13 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
 /**
  * Controller for the REST API of Kurento Repository.
  *
@@ -46,6 +55,8 @@ public class RepositoryController {
   @Autowired
   private RepositoryService repoService;
 
+  private final JsonFactory jsonFactory = new JsonFactory();
+
   @RequestMapping(method = RequestMethod.POST)
   public RepositoryItemRecorder createRepositoryItem(
       @RequestBody(required = false) Map<String, String> metadata) {
@@ -95,6 +106,75 @@ public class RepositoryController {
     return repoService.findItems(searchValues, true);
   }
 
+  @RequestMapping(method = RequestMethod.POST, value = "/find/page")
+  public RepositoryItemIdsPage simpleFindItemsPage(
+      @RequestBody(required = true) Map<String, String> searchValues,
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "limit", defaultValue = "0") int limit) {
+    return repoService.findItemsPage(searchValues, false, cursor, limit);
+  }
+
+  @RequestMapping(method = RequestMethod.POST, value = "/find/regex/page")
+  public RepositoryItemIdsPage regexFindItemsPage(
+      @RequestBody(required = true) Map<String, String> searchValues,
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "limit", defaultValue = "0") int limit) {
+    return repoService.findItemsPage(searchValues, true, cursor, limit);
+  }
+
+  @RequestMapping(method = RequestMethod.POST, value = "/find/stream")
+  public void simpleStreamItems(@RequestBody(required = true) Map<String, String> searchValues,
+      HttpServletResponse response) throws IOException {
+    streamItems(searchValues, false, response);
+  }
+
+  @RequestMapping(method = RequestMethod.POST, value = "/find/regex/stream")
+  public void regexStreamItems(@RequestBody(required = true) Map<String, String> searchValues,
+      HttpServletResponse response) throws IOException {
+    streamItems(searchValues, true, response);
+  }
+
+  /**
+   * Writes the ids of the items found as a JSON array, flushing each page of results as soon as it
+   * is found.
+   */
+  private void streamItems(Map<String, String> searchValues, boolean regex,
+      HttpServletResponse response) throws IOException {
+
+    // Once the first page is written the status can't be changed, so invalid searches are rejected
+    // before writing anything
+    try {
+      repoService.validateSearch(searchValues, regex);
+    } catch (PatternSyntaxException e) {
+      response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+      return;
+    }
+
+    response.setContentType("application/json");
+
+    try (JsonGenerator generator =
+        jsonFactory.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+
+      // If the search fails in the middle, the array must be left unclosed, so the client doesn't
+      // take the results written until then for all of them
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+      generator.writeStartArray();
+
+      repoService.findAllItems(searchValues, regex, new ItemIdsListener() {
+        @Override
+        public void onItemIds(List<String> ids) throws IOException {
+          for (String id : ids) {
+            generator.writeString(id);
+          }
+          generator.flush();
+        }
+      });
+
+      generator.writeEndArray();
+    }
+  }
+
   @RequestMapping(method = RequestMethod.GET, value = "/{itemId}/metadata")
   public Map<String, String> getRepositoryItemMetadata(@PathVariable("itemId") String itemId,
       HttpServletResponse response) {
@@ -17,13 +17,18 @@
 
 package org.kurento.repository;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import org.kurento.repository.service.pojo.RepositoryItemIdsPage;
 import org.kurento.repository.service.pojo.RepositoryItemPlayer;
 import org.kurento.repository.service.pojo.RepositoryItemRecorder;
 import org.slf4j.Logger;
@@ -41,6 +46,16 @@ public class RepositoryService {
 
   private static final Logger log = LoggerFactory.getLogger(RepositoryService.class);
 
+  public static final int DEFAULT_PAGE_SIZE = 100;
+  public static final int MAX_PAGE_SIZE = 10000;
+
+  /**
+   * Receives the identifiers found by a search, a page at a time.
+   */
+  public interface ItemIdsListener {
+    void onItemIds(List<String> ids) throws IOException;
+  }
+
   @Autowired
   private Repository repository;
 
@@ -104,21 +119,93 @@ public class RepositoryService {
   public Set<String> findItems(Map<String, String> metadata, boolean regex) {
     Set<String> itemIds = new HashSet<String>();
     for (Entry<String, String> data : metadata.entrySet()) {
-      List<RepositoryItem> foundItems = null;
       if (regex) {
-        foundItems = repository.findRepositoryItemsByAttRegex(data.getKey(), data.getValue());
+        itemIds.addAll(repository.findRepositoryItemIdsByAttRegex(data.getKey(), data.getValue()));
       } else {
-        foundItems = repository.findRepositoryItemsByAttValue(data.getKey(), data.getValue());
-      }
-      if (foundItems != null) {
-        for (RepositoryItem item : foundItems) {
-          itemIds.add(item.getId());
-        }
+        itemIds.addAll(repository.findRepositoryItemIdsByAttValue(data.getKey(), data.getValue()));
       }
     }
     return itemIds;
   }
 
+  /**
+   * Searches for repository items matching all the pairs of attributes and their values, returning
+   * a page of their identifiers. The search is made by the repository, that only keeps one page of
+   * results.
+   *
+   * @param metadata
+   *          pairs of attributes and their values (can be regexes)
+   * @param regex
+   *          if true, will activate search by attribute regex
+   * @param cursor
+   *          cursor returned with the previous page, or null for the first page
+   * @param limit
+   *          max number of identifiers, up to {@link #MAX_PAGE_SIZE}; {@link #DEFAULT_PAGE_SIZE} if
+   *          it's not positive
+   * @return a {@link RepositoryItemIdsPage} with the identifiers and the cursor of the next page
+   */
+  public RepositoryItemIdsPage findItemsPage(Map<String, String> metadata, boolean regex,
+      String cursor, int limit) {
+
+    int pageSize = limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+
+    // One more to know if there is a next page
+    List<String> ids = repository.findRepositoryItemIds(metadata, regex, cursor, pageSize + 1);
+
+    RepositoryItemIdsPage page = new RepositoryItemIdsPage();
+    if (ids.size() > pageSize) {
+      page.setIds(new ArrayList<>(ids.subList(0, pageSize)));
+      page.setNextCursor(ids.get(pageSize - 1));
+    } else {
+      page.setIds(ids);
+    }
+    return page;
+  }
+
+  /**
+   * Checks that a search can be made, so it can be rejected before sending any of its results.
+   *
+   * @param metadata
+   *          pairs of attributes and their values (can be regexes)
+   * @param regex
+   *          if true, the values are regexes
+   * @throws PatternSyntaxException
+   *           if any of the regexes is not valid
+   */
+  public void validateSearch(Map<String, String> metadata, boolean regex) {
+    if (regex) {
+      for (String value : metadata.values()) {
+        Pattern.compile(value);
+      }
+    }
+  }
+
+  /**
+   * Searches for repository items matching all the pairs of attributes and their values, passing
+   * their identifiers to the listener a page at a time, so they are never held in memory at once.
+   *
+   * @param metadata
+   *          pairs of attributes and their values (can be regexes)
+   * @param regex
+   *          if true, will activate search by attribute regex
+   * @param listener
+   *          receives the pages of identifiers
+   * @throws IOException
+   *           if the listener fails
+   */
+  public void findAllItems(Map<String, String> metadata, boolean regex, ItemIdsListener listener)
+      throws IOException {
+
+    String cursor = null;
+    do {
+      List<String> ids = repository.findRepositoryItemIds(metadata, regex, cursor, MAX_PAGE_SIZE);
+      if (!ids.isEmpty()) {
+        listener.onItemIds(ids);
+      }
+      cursor = ids.size() == MAX_PAGE_SIZE ? ids.get(ids.size() - 1) : null;
+    } while (cursor != null);
+  }
+
   /**
    * Returns the metadata from a repository item.
    *